@@ -1,24 +1,65 @@
 package ch.so.agi.cli;
 
+import ch.so.agi.arrow.ArrowExporter;
+import ch.so.agi.arrow.ArrowTableWriter;
+import ch.so.agi.cloudformats.ConnectionFactory;
 import ch.so.agi.cloudformats.GeoPackageGeometryReader;
 import ch.so.agi.cloudformats.GeoPackageTableDescriptorProvider;
+import ch.so.agi.cloudformats.MultiFormatTableWriter;
+import ch.so.agi.cloudformats.ShardingOptions;
+import ch.so.agi.cloudformats.TableExporter;
 import ch.so.agi.cloudformats.TableDescriptorProvider;
 import ch.so.agi.flatgeobuf.FlatGeobufExporter;
+import ch.so.agi.flatgeobuf.FlatGeobufTableWriter;
 import ch.so.agi.parquet.ParquetExporter;
 import ch.so.agi.parquet.ParquetTableWriter;
+import ch.so.agi.pmtiles.PmTilesExporter;
+import ch.so.agi.pmtiles.PmTilesTableWriter;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 public final class Gpkg2CloudFormatCli {
+    private static final String OPTION_FLATGEOBUF_PREFIX = "--flatgeobuf-";
+    private static final String OPTION_FLATGEOBUF_OVERVIEWS = "--flatgeobuf-overviews";
+    private static final String OPTION_FLATGEOBUF_ENCODING_THREADS = "--flatgeobuf-encoding-threads";
+    private static final String OPTION_PARQUET_PREFIX = "--parquet-";
     private static final String OPTION_PARQUET_ROW_GROUP_SIZE = "--parquet-row-group-size";
+    private static final String OPTION_PARQUET_COMPRESSION = "--parquet-compression";
+    private static final String OPTION_PARQUET_PAGE_SIZE = "--parquet-page-size";
+    private static final String OPTION_PARQUET_DICTIONARY = "--parquet-dictionary";
+    private static final String OPTION_PARQUET_DICTIONARY_PAGE_SIZE = "--parquet-dictionary-page-size";
+    private static final String OPTION_PARQUET_STATISTICS = "--parquet-statistics";
+    private static final String OPTION_PARQUET_PAGE_ROW_COUNT_LIMIT = "--parquet-page-row-count-limit";
+    private static final String OPTION_PARQUET_BYTE_STREAM_SPLIT = "--parquet-byte-stream-split";
+    private static final String OPTION_PARQUET_BLOOM_FILTER = "--parquet-bloom-filter";
+    private static final String OPTION_PARQUET_COLUMNS = "--parquet-columns";
+    private static final String OPTION_PARQUET_ENCODING_THREADS = "--parquet-encoding-threads";
+    private static final String OPTION_PARQUET_MAX_ROW_GROUPS_IN_FLIGHT = "--parquet-max-row-groups-in-flight";
+    private static final String OPTION_PARQUET_GEOMETRY_ENCODING = "--parquet-geometry-encoding";
+    private static final String OPTION_ARROW_PREFIX = "--arrow-";
+    private static final String OPTION_ARROW_RECORD_BATCH_SIZE = "--arrow-record-batch-size";
+    private static final String OPTION_ARROW_GEOMETRY_ENCODING = "--arrow-geometry-encoding";
+    private static final String OPTION_PMTILES_PREFIX = "--pmtiles-";
+    private static final String OPTION_PMTILES_MIN_ZOOM = "--pmtiles-min-zoom";
+    private static final String OPTION_PMTILES_MAX_ZOOM = "--pmtiles-max-zoom";
+    private static final String OPTION_PMTILES_BUFFER = "--pmtiles-buffer";
+    private static final String OPTION_PMTILES_SIMPLIFICATION = "--pmtiles-simplification";
+    private static final String OPTION_PMTILES_MAX_FEATURES_PER_TILE = "--pmtiles-max-features-per-tile";
+    private static final String OPTION_PMTILES_MAX_TILE_BYTES = "--pmtiles-max-tile-bytes";
+    private static final String OPTION_PMTILES_ENCODING_THREADS = "--pmtiles-encoding-threads";
+    private static final String OPTION_PMTILES_MEMORY_BUDGET = "--pmtiles-memory-budget";
+    private static final String OPTION_SHARD_CELL_SIZE = "--shard-cell-size";
+    private static final String OPTION_SHARD_MAX_FEATURES = "--shard-max-features";
+    private static final String OPTION_SHARD_MAX_BYTES = "--shard-max-bytes";
+    private static final String OPTION_THREADS = "--threads";
     private static final long DEFAULT_PARQUET_ROW_GROUP_SIZE = ParquetTableWriter.ParquetWriteOptions.builder()
             .build()
             .rowGroupSize();
@@ -49,14 +90,43 @@ public final class Gpkg2CloudFormatCli {
 
     private static String usage() {
         return """
-                Usage: java -jar gpkg2cloudformat.jar --input <gpkg> --output <dir> [--tables \"<table1>\";\"<table2>\"] --format <flatgeobuf|parquet>
+                Usage: java -jar gpkg2cloudformat.jar --input <gpkg> --output <dir> [--tables \"<table1>\";\"<table2>\"] --format <flatgeobuf|parquet|arrow|pmtiles|flatgeobuf,parquet,...> [--threads <n>]
 
                 Options:
                   --input    Geopackage-Datei
                   --output   Verzeichnis fuer exportierte Dateien (muss existieren)
                   --tables   Optionale, mit Semikolon getrennte Liste von Tabellennamen in doppelten Anfuehrungszeichen
-                  --format   flatgeobuf oder parquet
+                  --format   flatgeobuf, parquet, arrow, pmtiles oder eine mit Komma getrennte Liste (Tabelle wird nur einmal gelesen)
+                  --flatgeobuf-overviews  Generalisierte Uebersichtsdateien <tabelle>.z<zoom>.fgb, z.B. "8:5;12:0.5" (Zoom:Toleranz)
+                  --flatgeobuf-encoding-threads  Threads, die Features und Uebersichten parallel kodieren (Default: 1)
                   --parquet-row-group-size  Row group size fuer parquet in Bytes (Default: %d)
+                  --parquet-compression  uncompressed, snappy, gzip, lz4_raw oder zstd (Default: uncompressed)
+                  --parquet-page-size  Page size in Bytes
+                  --parquet-dictionary  true oder false: Dictionary Encoding (Default: true)
+                  --parquet-dictionary-page-size  Maximale Dictionary Page Size in Bytes
+                  --parquet-statistics  true oder false: Min/Max-Statistiken und Page Index (Default: true)
+                  --parquet-page-row-count-limit  Maximale Anzahl Zeilen pro Page (Granularitaet des Page Index)
+                  --parquet-byte-stream-split  true oder false: BYTE_STREAM_SPLIT fuer FLOAT/DOUBLE (Default: false)
+                  --parquet-bloom-filter  true oder false: Bloom Filter fuer alle Spalten (Default: false)
+                  --parquet-columns  Einstellungen pro Spalte, z.B. "t_ili_tid:bloom-filter=true,dictionary=false;flaeche:byte-stream-split=true"
+                                     (dictionary, byte-stream-split, statistics, bloom-filter, bloom-filter-ndv, bloom-filter-fpp)
+                  --parquet-encoding-threads  Threads, die Row Groups parallel kodieren und komprimieren (Default: 1)
+                  --parquet-max-row-groups-in-flight  Maximale Anzahl gleichzeitig gepufferter Row Groups (Default: 2 x Threads)
+                  --parquet-geometry-encoding  wkb oder native: GeoParquet-Kodierung der Geometrie (Default: wkb)
+                  --arrow-record-batch-size  Anzahl Zeilen pro Record Batch (Default: 65536)
+                  --arrow-geometry-encoding  wkb oder native: GeoArrow-Kodierung der Geometrie (Default: wkb)
+                  --pmtiles-min-zoom  Kleinste Zoomstufe (Default: 0)
+                  --pmtiles-max-zoom  Groesste Zoomstufe, hoechstens 15 (Default: 14)
+                  --pmtiles-buffer  Puffer um jede Kachel in Kacheleinheiten (Default: 64)
+                  --pmtiles-simplification  Toleranz der Generalisierung in Pixeln (Default: 1.0)
+                  --pmtiles-max-features-per-tile  Maximale Anzahl Features pro Kachel (Default: 200000)
+                  --pmtiles-max-tile-bytes  Maximale Groesse einer komprimierten Kachel in Bytes (Default: 500000)
+                  --pmtiles-encoding-threads  Threads, die Kacheln parallel kodieren (Default: 1)
+                  --pmtiles-memory-budget  Speicher fuer die Zuordnung Feature-Kachel pro Durchgang in Bytes (Default: 268435456)
+                  --shard-cell-size  Tabellen in Rasterzellen dieser Groesse (Einheit des Bezugssystems) aufteilen
+                  --shard-max-features  Tabellen entlang der Hilbert-Kurve in Teile mit hoechstens so vielen Features aufteilen
+                  --shard-max-bytes  Tabellen entlang der Hilbert-Kurve in Teile mit hoechstens so vielen Bytes WKB aufteilen
+                  --threads  Anzahl Tabellen, die parallel exportiert werden (Default: 1)
                 """.formatted(DEFAULT_PARQUET_ROW_GROUP_SIZE).trim();
     }
 
@@ -81,37 +151,292 @@ public final class Gpkg2CloudFormatCli {
             }
 
             List<String> tables = parseTables(options.get("--tables"));
-            Format format = Format.from(formatValue);
+            Set<Format> formats = Format.parse(formatValue);
             Long parquetRowGroupSize = parseOptionalLong(options, OPTION_PARQUET_ROW_GROUP_SIZE);
+            Integer threadsValue = parseOptionalInt(options, OPTION_THREADS);
+            int threads = threadsValue == null ? 1 : threadsValue;
+            if (threads < 1) {
+                throw new IllegalArgumentException(OPTION_THREADS + " muss >= 1 sein.");
+            }
 
-            if (format != Format.PARQUET && parquetRowGroupSize != null) {
-                throw new IllegalArgumentException(OPTION_PARQUET_ROW_GROUP_SIZE + " ist nur fuer parquet zulaessig.");
+            if (!formats.contains(Format.FLATGEOBUF)) {
+                for (String option : options.keySet()) {
+                    if (option.startsWith(OPTION_FLATGEOBUF_PREFIX)) {
+                        throw new IllegalArgumentException(option + " ist nur fuer flatgeobuf zulaessig.");
+                    }
+                }
+            }
+            if (!formats.contains(Format.PARQUET)) {
+                for (String option : options.keySet()) {
+                    if (option.startsWith(OPTION_PARQUET_PREFIX)) {
+                        throw new IllegalArgumentException(option + " ist nur fuer parquet zulaessig.");
+                    }
+                }
+            }
+            if (!formats.contains(Format.ARROW)) {
+                for (String option : options.keySet()) {
+                    if (option.startsWith(OPTION_ARROW_PREFIX)) {
+                        throw new IllegalArgumentException(option + " ist nur fuer arrow zulaessig.");
+                    }
+                }
+            }
+            if (!formats.contains(Format.PMTILES)) {
+                for (String option : options.keySet()) {
+                    if (option.startsWith(OPTION_PMTILES_PREFIX)) {
+                        throw new IllegalArgumentException(option + " ist nur fuer pmtiles zulaessig.");
+                    }
+                }
             }
 
-            try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + input.toAbsolutePath())) {
+            ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(input);
+            try {
                 TableDescriptorProvider provider = new GeoPackageTableDescriptorProvider(tables);
-                switch (format) {
-                    case FLATGEOBUF -> {
-                        FlatGeobufExporter exporter = new FlatGeobufExporter(new GeoPackageGeometryReader());
-                        exporter.exportTables(connection, provider, outputDir);
-                    }
-                    case PARQUET -> {
-                        ParquetExporter exporter = new ParquetExporter(new GeoPackageGeometryReader());
-                        ParquetTableWriter.ParquetWriteOptions.Builder parquetOptions = ParquetTableWriter.ParquetWriteOptions.builder();
-                        if (parquetRowGroupSize != null) {
-                            parquetOptions.rowGroupSize(parquetRowGroupSize);
-                        }
-                        exporter.exportTables(connection, provider, outputDir, parquetOptions.build());
+                GeoPackageGeometryReader geometryReader = new GeoPackageGeometryReader();
+                FlatGeobufTableWriter.FlatGeobufWriteOptions flatGeobufOptions = flatGeobufOptions(options);
+                ParquetTableWriter.ParquetWriteOptions.Builder parquetOptions = ParquetTableWriter.ParquetWriteOptions.builder();
+                if (parquetRowGroupSize != null) {
+                    parquetOptions.rowGroupSize(parquetRowGroupSize);
+                }
+                configureParquet(options, parquetOptions);
+                ArrowTableWriter.ArrowWriteOptions arrowOptions = arrowOptions(options);
+                PmTilesTableWriter.PmTilesWriteOptions pmTilesOptions = pmTilesOptions(options);
+                ShardingOptions sharding = shardingOptions(options);
+                if (formats.size() > 1 || sharding != null) {
+                    List<MultiFormatTableWriter.Format<?>> writers = new ArrayList<>();
+                    for (Format format : formats) {
+                        writers.add(switch (format) {
+                            case FLATGEOBUF -> new MultiFormatTableWriter.Format<>(
+                                    new FlatGeobufTableWriter(geometryReader), flatGeobufOptions);
+                            case PARQUET -> new MultiFormatTableWriter.Format<>(
+                                    new ParquetTableWriter(geometryReader), parquetOptions.build());
+                            case ARROW -> new MultiFormatTableWriter.Format<>(
+                                    new ArrowTableWriter(geometryReader), arrowOptions);
+                            case PMTILES -> new MultiFormatTableWriter.Format<>(
+                                    new PmTilesTableWriter(geometryReader), pmTilesOptions);
+                        });
                     }
+                    MultiFormatTableWriter writer = new MultiFormatTableWriter(geometryReader, writers);
+                    TableExporter exporter = sharding == null
+                            ? new TableExporter()
+                            : new TableExporter(geometryReader, sharding);
+                    exporter.exportTables(connectionFactory, provider, outputDir, writer, writer.defaultOptions(), threads);
+                } else if (formats.contains(Format.FLATGEOBUF)) {
+                    FlatGeobufExporter exporter = new FlatGeobufExporter(geometryReader);
+                    exporter.exportTables(connectionFactory, provider, outputDir, flatGeobufOptions, threads);
+                } else if (formats.contains(Format.PARQUET)) {
+                    ParquetExporter exporter = new ParquetExporter(geometryReader);
+                    exporter.exportTables(connectionFactory, provider, outputDir, parquetOptions.build(), threads);
+                } else if (formats.contains(Format.ARROW)) {
+                    ArrowExporter exporter = new ArrowExporter(geometryReader);
+                    exporter.exportTables(connectionFactory, provider, outputDir, arrowOptions, threads);
+                } else {
+                    PmTilesExporter exporter = new PmTilesExporter(geometryReader);
+                    exporter.exportTables(connectionFactory, provider, outputDir, pmTilesOptions, threads);
                 }
             } catch (SQLException e) {
                 throw new IllegalArgumentException(e.getMessage(), e);
             }
 
-            out.printf("Export completed (%s).%n", format.name().toLowerCase(Locale.ROOT));
+            out.printf("Export completed (%s).%n", String.join(", ",
+                    formats.stream().map(format -> format.name().toLowerCase(Locale.ROOT)).toList()));
             return 0;
         }
 
+        private FlatGeobufTableWriter.FlatGeobufWriteOptions flatGeobufOptions(Map<String, String> options) {
+            FlatGeobufTableWriter.FlatGeobufWriteOptions.Builder builder =
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder();
+            Integer encodingThreads = parseOptionalInt(options, OPTION_FLATGEOBUF_ENCODING_THREADS);
+            if (encodingThreads != null) {
+                builder.encodingThreads(encodingThreads);
+            }
+            String overviews = options.get(OPTION_FLATGEOBUF_OVERVIEWS);
+            if (overviews != null && !overviews.isBlank()) {
+                for (String overview : overviews.split(";")) {
+                    String[] zoomTolerance = overview.split(":", 2);
+                    if (zoomTolerance.length != 2) {
+                        throw new IllegalArgumentException("Ungueltiger Wert fuer " + OPTION_FLATGEOBUF_OVERVIEWS + ": "
+                                + overview);
+                    }
+                    int zoom = parseInt(OPTION_FLATGEOBUF_OVERVIEWS, zoomTolerance[0].trim());
+                    builder.overview(zoom, parseDouble(OPTION_FLATGEOBUF_OVERVIEWS, zoomTolerance[1].trim()));
+                }
+            }
+            return builder.build();
+        }
+
+        private void configureParquet(Map<String, String> options, ParquetTableWriter.ParquetWriteOptions.Builder builder) {
+            String compression = options.get(OPTION_PARQUET_COMPRESSION);
+            if (compression != null) {
+                try {
+                    builder.compression(ParquetTableWriter.Compression.valueOf(compression.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Ungueltiger Wert fuer " + OPTION_PARQUET_COMPRESSION + ": " + compression);
+                }
+            }
+            Integer pageSize = parseOptionalInt(options, OPTION_PARQUET_PAGE_SIZE);
+            if (pageSize != null) {
+                builder.pageSize(pageSize);
+            }
+            Boolean dictionary = parseOptionalBoolean(options, OPTION_PARQUET_DICTIONARY);
+            if (dictionary != null) {
+                builder.dictionaryEncoding(dictionary);
+            }
+            Integer dictionaryPageSize = parseOptionalInt(options, OPTION_PARQUET_DICTIONARY_PAGE_SIZE);
+            if (dictionaryPageSize != null) {
+                builder.dictionaryPageSize(dictionaryPageSize);
+            }
+            Boolean statistics = parseOptionalBoolean(options, OPTION_PARQUET_STATISTICS);
+            if (statistics != null) {
+                builder.statistics(statistics);
+            }
+            Integer pageRowCountLimit = parseOptionalInt(options, OPTION_PARQUET_PAGE_ROW_COUNT_LIMIT);
+            if (pageRowCountLimit != null) {
+                builder.pageRowCountLimit(pageRowCountLimit);
+            }
+            Boolean byteStreamSplit = parseOptionalBoolean(options, OPTION_PARQUET_BYTE_STREAM_SPLIT);
+            if (byteStreamSplit != null) {
+                builder.byteStreamSplit(byteStreamSplit);
+            }
+            Boolean bloomFilter = parseOptionalBoolean(options, OPTION_PARQUET_BLOOM_FILTER);
+            if (bloomFilter != null) {
+                builder.bloomFilter(bloomFilter);
+            }
+            Integer encodingThreads = parseOptionalInt(options, OPTION_PARQUET_ENCODING_THREADS);
+            if (encodingThreads != null) {
+                builder.encodingThreads(encodingThreads);
+            }
+            Integer maxRowGroupsInFlight = parseOptionalInt(options, OPTION_PARQUET_MAX_ROW_GROUPS_IN_FLIGHT);
+            if (maxRowGroupsInFlight != null) {
+                builder.maxRowGroupsInFlight(maxRowGroupsInFlight);
+            }
+            String geometryEncoding = options.get(OPTION_PARQUET_GEOMETRY_ENCODING);
+            if (geometryEncoding != null) {
+                try {
+                    builder.geometryEncoding(ParquetTableWriter.GeometryEncoding.valueOf(
+                            geometryEncoding.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Ungueltiger Wert fuer " + OPTION_PARQUET_GEOMETRY_ENCODING + ": "
+                            + geometryEncoding);
+                }
+            }
+            String columns = options.get(OPTION_PARQUET_COLUMNS);
+            if (columns != null && !columns.isBlank()) {
+                for (String column : columns.split(";")) {
+                    parseColumnOptions(column.trim(), builder);
+                }
+            }
+        }
+
+        private ArrowTableWriter.ArrowWriteOptions arrowOptions(Map<String, String> options) {
+            ArrowTableWriter.ArrowWriteOptions.Builder builder = ArrowTableWriter.ArrowWriteOptions.builder();
+            Integer recordBatchSize = parseOptionalInt(options, OPTION_ARROW_RECORD_BATCH_SIZE);
+            if (recordBatchSize != null) {
+                builder.recordBatchSize(recordBatchSize);
+            }
+            String geometryEncoding = options.get(OPTION_ARROW_GEOMETRY_ENCODING);
+            if (geometryEncoding != null) {
+                try {
+                    builder.geometryEncoding(ArrowTableWriter.GeometryEncoding.valueOf(
+                            geometryEncoding.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Ungueltiger Wert fuer " + OPTION_ARROW_GEOMETRY_ENCODING + ": "
+                            + geometryEncoding);
+                }
+            }
+            return builder.build();
+        }
+
+        private ShardingOptions shardingOptions(Map<String, String> options) {
+            String cellSize = options.get(OPTION_SHARD_CELL_SIZE);
+            Long maxFeatures = parseOptionalLong(options, OPTION_SHARD_MAX_FEATURES);
+            Long maxBytes = parseOptionalLong(options, OPTION_SHARD_MAX_BYTES);
+            boolean grid = cellSize != null && !cellSize.isBlank();
+            if (!grid && maxFeatures == null && maxBytes == null) {
+                return null;
+            }
+            if (grid && (maxFeatures != null || maxBytes != null)) {
+                throw new IllegalArgumentException(OPTION_SHARD_CELL_SIZE + " kann nicht mit " + OPTION_SHARD_MAX_FEATURES
+                        + " oder " + OPTION_SHARD_MAX_BYTES + " kombiniert werden.");
+            }
+            ShardingOptions.Builder builder = ShardingOptions.builder();
+            if (grid) {
+                builder.cellSize(parseDouble(OPTION_SHARD_CELL_SIZE, cellSize));
+            }
+            if (maxFeatures != null) {
+                builder.maxFeatures(maxFeatures);
+            }
+            if (maxBytes != null) {
+                builder.maxBytes(maxBytes);
+            }
+            return builder.build();
+        }
+
+        private PmTilesTableWriter.PmTilesWriteOptions pmTilesOptions(Map<String, String> options) {
+            PmTilesTableWriter.PmTilesWriteOptions.Builder builder = PmTilesTableWriter.PmTilesWriteOptions.builder();
+            Integer minZoom = parseOptionalInt(options, OPTION_PMTILES_MIN_ZOOM);
+            if (minZoom != null) {
+                builder.minZoom(minZoom);
+            }
+            Integer maxZoom = parseOptionalInt(options, OPTION_PMTILES_MAX_ZOOM);
+            if (maxZoom != null) {
+                builder.maxZoom(maxZoom);
+            }
+            Integer buffer = parseOptionalInt(options, OPTION_PMTILES_BUFFER);
+            if (buffer != null) {
+                builder.buffer(buffer);
+            }
+            String simplification = options.get(OPTION_PMTILES_SIMPLIFICATION);
+            if (simplification != null && !simplification.isBlank()) {
+                builder.simplification(parseDouble(OPTION_PMTILES_SIMPLIFICATION, simplification));
+            }
+            Integer maxFeaturesPerTile = parseOptionalInt(options, OPTION_PMTILES_MAX_FEATURES_PER_TILE);
+            if (maxFeaturesPerTile != null) {
+                builder.maxFeaturesPerTile(maxFeaturesPerTile);
+            }
+            Integer maxTileBytes = parseOptionalInt(options, OPTION_PMTILES_MAX_TILE_BYTES);
+            if (maxTileBytes != null) {
+                builder.maxTileBytes(maxTileBytes);
+            }
+            Integer encodingThreads = parseOptionalInt(options, OPTION_PMTILES_ENCODING_THREADS);
+            if (encodingThreads != null) {
+                builder.encodingThreads(encodingThreads);
+            }
+            Long memoryBudget = parseOptionalLong(options, OPTION_PMTILES_MEMORY_BUDGET);
+            if (memoryBudget != null) {
+                builder.memoryBudget(memoryBudget);
+            }
+            return builder.build();
+        }
+
+        private void parseColumnOptions(String value, ParquetTableWriter.ParquetWriteOptions.Builder builder) {
+            int separator = value.indexOf(':');
+            if (separator <= 0 || separator == value.length() - 1) {
+                throw new IllegalArgumentException("Ungueltige Spalteneinstellung fuer " + OPTION_PARQUET_COLUMNS + ": " + value);
+            }
+            String column = value.substring(0, separator).trim();
+            ParquetTableWriter.ColumnOptions.Builder columnOptions = ParquetTableWriter.ColumnOptions.builder();
+            for (String setting : value.substring(separator + 1).split(",")) {
+                String[] keyValue = setting.split("=", 2);
+                if (keyValue.length != 2) {
+                    throw new IllegalArgumentException("Ungueltige Spalteneinstellung fuer " + OPTION_PARQUET_COLUMNS + ": " + setting);
+                }
+                String key = keyValue[0].trim().toLowerCase(Locale.ROOT);
+                String name = OPTION_PARQUET_COLUMNS + " " + column + ":" + key;
+                String text = keyValue[1].trim();
+                switch (key) {
+                    case "dictionary" -> columnOptions.dictionaryEncoding(parseBoolean(name, text));
+                    case "byte-stream-split" -> columnOptions.byteStreamSplit(parseBoolean(name, text));
+                    case "statistics" -> columnOptions.statistics(parseBoolean(name, text));
+                    case "bloom-filter" -> columnOptions.bloomFilter(parseBoolean(name, text));
+                    case "bloom-filter-ndv" -> columnOptions.bloomFilterNdv(parseLong(name, text));
+                    case "bloom-filter-fpp" -> columnOptions.bloomFilterFpp(parseDouble(name, text));
+                    default -> throw new IllegalArgumentException("Unbekannte Spalteneinstellung fuer "
+                            + OPTION_PARQUET_COLUMNS + ": " + key);
+                }
+            }
+            builder.column(column, columnOptions.build());
+        }
+
         private Map<String, String> parseOptions(String[] args) {
             Map<String, String> options = new HashMap<>();
             for (int index = 0; index < args.length; index++) {
@@ -168,22 +493,80 @@ public final class Gpkg2CloudFormatCli {
             if (value == null || value.isBlank()) {
                 return null;
             }
+            return parseLong(name, value);
+        }
+
+        private Boolean parseOptionalBoolean(Map<String, String> options, String name) {
+            String value = options.get(name);
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            return parseBoolean(name, value);
+        }
+
+        private long parseLong(String name, String value) {
             try {
                 return Long.parseLong(value);
             } catch (NumberFormatException e) {
                 throw new IllegalArgumentException("Ungueltiger Wert fuer " + name + ": " + value);
             }
         }
+
+        private double parseDouble(String name, String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Ungueltiger Wert fuer " + name + ": " + value);
+            }
+        }
+
+        private boolean parseBoolean(String name, String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "true" -> true;
+                case "false" -> false;
+                default -> throw new IllegalArgumentException("Ungueltiger Wert fuer " + name + ": " + value);
+            };
+        }
+
+        private Integer parseOptionalInt(Map<String, String> options, String name) {
+            String value = options.get(name);
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            return parseInt(name, value);
+        }
+
+        private int parseInt(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Ungueltiger Wert fuer " + name + ": " + value);
+            }
+        }
     }
 
     private enum Format {
         FLATGEOBUF,
-        PARQUET;
+        PARQUET,
+        ARROW,
+        PMTILES;
+
+        private static Set<Format> parse(String value) {
+            Set<Format> formats = EnumSet.noneOf(Format.class);
+            for (String part : value.split(",")) {
+                if (!formats.add(from(part.trim()))) {
+                    throw new IllegalArgumentException("Format provided multiple times: " + part.trim());
+                }
+            }
+            return formats;
+        }
 
         private static Format from(String value) {
             return switch (value.toLowerCase(Locale.ROOT)) {
                 case "flatgeobuf" -> FLATGEOBUF;
                 case "parquet" -> PARQUET;
+                case "arrow" -> ARROW;
+                case "pmtiles" -> PMTILES;
                 default -> throw new IllegalArgumentException("Unsupported format: " + value);
             };
         }
@@ -1,6 +1,7 @@
 package ch.so.agi.cli;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -61,6 +62,197 @@ class Gpkg2CloudFormatCliTest {
         assertThat(header.toUpperCase(Locale.ROOT)).isEqualTo("PAR1");
     }
 
+    @Test
+    void exportsCompressedParquetWithColumnOptions() throws Exception {
+        Path geopackage = resourcePath();
+        Path plainDir = Files.createDirectory(tempDir.resolve("parquet-plain"));
+        Path zstdDir = Files.createDirectory(tempDir.resolve("parquet-zstd"));
+
+        assertThat(runCli("--input", geopackage.toString(), "--output", plainDir.toString(),
+                "--tables", "\"abbaustelle\"", "--format", "parquet")).isZero();
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", zstdDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "parquet",
+                "--parquet-compression", "zstd",
+                "--parquet-page-size", "65536",
+                "--parquet-byte-stream-split", "true",
+                "--parquet-columns", "t_ili_tid:bloom-filter=true,dictionary=false;aktennummer:statistics=false",
+                "--parquet-encoding-threads", "2");
+
+        assertThat(exitCode).isZero();
+        assertThat(Files.size(zstdDir.resolve("abbaustelle.parquet")))
+                .isLessThan(Files.size(plainDir.resolve("abbaustelle.parquet")));
+    }
+
+    @Test
+    void exportsParquetWithoutHadoopOnClasspath() throws Exception {
+        Path geopackage = resourcePath();
+
+        assertThatThrownBy(() -> Class.forName("org.apache.hadoop.conf.Configuration"))
+                .isInstanceOf(ClassNotFoundException.class);
+        for (String compression : new String[]{"snappy", "gzip", "lz4_raw"}) {
+            Path outputDir = Files.createDirectory(tempDir.resolve("parquet-" + compression));
+            assertThat(runCli("--input", geopackage.toString(), "--output", outputDir.toString(),
+                    "--tables", "\"abbaustelle\"", "--format", "parquet",
+                    "--parquet-compression", compression)).isZero();
+            assertThat(Files.size(outputDir.resolve("abbaustelle.parquet"))).isGreaterThan(4L);
+        }
+    }
+
+    @Test
+    void rejectsInvalidParquetColumnOptions() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("parquet-invalid"));
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int exitCode = Gpkg2CloudFormatCli.run(
+                new String[]{"--input", geopackage.toString(), "--output", outputDir.toString(), "--format", "parquet",
+                        "--parquet-columns", "t_ili_tid:bloom=true"},
+                new PrintStream(ByteArrayOutputStream.nullOutputStream()),
+                new PrintStream(err));
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(err.toString()).contains("Unbekannte Spalteneinstellung");
+    }
+
+    @Test
+    void exportsTablesInParallel() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("parallel-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--format", "flatgeobuf",
+                "--threads", "4");
+
+        assertThat(exitCode).isZero();
+        assertThat(outputDir.resolve("abbaustelle.fgb")).exists();
+    }
+
+    @Test
+    void exportsSeveralFormatsFromOneRead() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("multi-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "flatgeobuf,parquet",
+                "--parquet-row-group-size", "65536");
+
+        assertThat(exitCode).isZero();
+        try (var input = Files.newInputStream(outputDir.resolve("abbaustelle.fgb"))) {
+            assertThat(HeaderMeta.read(input).featuresCount).isPositive();
+        }
+        assertThat(Files.size(outputDir.resolve("abbaustelle.parquet"))).isGreaterThan(4L);
+    }
+
+    @Test
+    void exportsArrowNextToOtherFormats() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("arrow-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "flatgeobuf,arrow",
+                "--arrow-record-batch-size", "100",
+                "--arrow-geometry-encoding", "native");
+
+        assertThat(exitCode).isZero();
+        byte[] bytes = Files.readAllBytes(outputDir.resolve("abbaustelle.arrow"));
+        assertThat(new String(bytes, 0, 6, StandardCharsets.US_ASCII)).isEqualTo("ARROW1");
+        assertThat(new String(bytes, bytes.length - 6, 6, StandardCharsets.US_ASCII)).isEqualTo("ARROW1");
+        assertThat(outputDir.resolve("abbaustelle.fgb")).exists();
+    }
+
+    @Test
+    void exportsFlatGeobufOverviews() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("overviews-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "flatgeobuf",
+                "--flatgeobuf-overviews", "8:50;12:2",
+                "--flatgeobuf-encoding-threads", "2");
+
+        assertThat(exitCode).isZero();
+        assertThat(outputDir.resolve("abbaustelle.fgb")).exists();
+        assertThat(Files.size(outputDir.resolve("abbaustelle.z8.fgb")))
+                .isLessThan(Files.size(outputDir.resolve("abbaustelle.z12.fgb")));
+        assertThat(Files.size(outputDir.resolve("abbaustelle.z12.fgb")))
+                .isLessThanOrEqualTo(Files.size(outputDir.resolve("abbaustelle.fgb")));
+    }
+
+    @Test
+    void exportsSpatialShardsWithManifest() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("shards-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "flatgeobuf",
+                "--shard-cell-size", "10000");
+
+        assertThat(exitCode).isZero();
+        assertThat(outputDir.resolve("abbaustelle.fgb")).doesNotExist();
+        String manifest = Files.readString(outputDir.resolve("abbaustelle.shards.json"));
+        assertThat(manifest).startsWith("{\"table\":\"abbaustelle\",\"srid\":2056,\"sharding\":\"grid\"");
+        try (var files = Files.list(outputDir)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .filteredOn(name -> name.endsWith(".fgb"))
+                    .isNotEmpty()
+                    .allMatch(name -> name.matches("abbaustelle\\.x\\d+_y\\d+\\.fgb") && manifest.contains(name));
+        }
+    }
+
+    @Test
+    void exportsPmTiles() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("pmtiles-out"));
+
+        int exitCode = runCli(
+                "--input", geopackage.toString(),
+                "--output", outputDir.toString(),
+                "--tables", "\"abbaustelle\"",
+                "--format", "pmtiles,parquet",
+                "--pmtiles-max-zoom", "10",
+                "--pmtiles-encoding-threads", "2");
+
+        assertThat(exitCode).isZero();
+        byte[] bytes = Files.readAllBytes(outputDir.resolve("abbaustelle.pmtiles"));
+        assertThat(new String(bytes, 0, 7, StandardCharsets.US_ASCII)).isEqualTo("PMTiles");
+        assertThat(bytes[7]).isEqualTo((byte) 3);
+        assertThat(bytes[101]).isEqualTo((byte) 10);
+        assertThat(outputDir.resolve("abbaustelle.parquet")).exists();
+    }
+
+    @Test
+    void rejectsArrowOptionsWithoutArrowFormat() throws Exception {
+        Path geopackage = resourcePath();
+        Path outputDir = Files.createDirectory(tempDir.resolve("arrow-invalid"));
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int exitCode = Gpkg2CloudFormatCli.run(
+                new String[]{"--input", geopackage.toString(), "--output", outputDir.toString(), "--format", "parquet",
+                        "--arrow-record-batch-size", "100"},
+                new PrintStream(ByteArrayOutputStream.nullOutputStream()),
+                new PrintStream(err));
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(err.toString()).contains("nur fuer arrow zulaessig");
+    }
+
     @Test
     void failsWhenOutputDirectoryMissing() throws Exception {
         Path geopackage = resourcePath();
@@ -0,0 +1,82 @@
+package ch.so.agi.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Growable little-endian byte buffer holding one Arrow buffer (validity bitmap, offsets or values) of a record batch.
+final class ArrowBuffer {
+    static final ArrowBuffer EMPTY = new ArrowBuffer();
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(bytes, 0, size, (byte) 0);
+        size = 0;
+    }
+
+    void putInt(int value) {
+        ensure(Integer.BYTES);
+        INT.set(bytes, size, value);
+        size += Integer.BYTES;
+    }
+
+    void putLong(long value) {
+        ensure(Long.BYTES);
+        LONG.set(bytes, size, value);
+        size += Long.BYTES;
+    }
+
+    void putFloat(float value) {
+        putInt(Float.floatToRawIntBits(value));
+    }
+
+    void putDouble(double value) {
+        putLong(Double.doubleToRawLongBits(value));
+    }
+
+    void putBytes(byte[] value, int offset, int length) {
+        ensure(length);
+        System.arraycopy(value, offset, bytes, size, length);
+        size += length;
+    }
+
+    void putZeros(int length) {
+        ensure(length);
+        size += length;
+    }
+
+    // Bitmaps grow byte by byte; bits past the last set one stay zero, as Arrow requires for validity padding.
+    void setBit(int index, boolean value) {
+        int byteIndex = index >>> 3;
+        if (byteIndex >= size) {
+            putZeros(byteIndex + 1 - size);
+        }
+        if (value) {
+            bytes[byteIndex] |= (byte) (1 << (index & 7));
+        }
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    private void ensure(int length) {
+        int required = Math.addExact(size, length);
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, required));
+        }
+    }
+}
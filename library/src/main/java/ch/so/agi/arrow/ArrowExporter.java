@@ -0,0 +1,40 @@
+package ch.so.agi.arrow;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.TableDescriptorProvider;
+import ch.so.agi.cloudformats.TableExporter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class ArrowExporter {
+    private final ArrowTableWriter tableWriter;
+    private final TableExporter tableExporter;
+
+    public ArrowExporter(GeometryReader geometryReader) {
+        this.tableWriter = new ArrowTableWriter(geometryReader);
+        this.tableExporter = new TableExporter();
+    }
+
+    public void exportTables(Connection connection, TableDescriptorProvider tableDescriptorProvider, Path outputDirectory)
+            throws SQLException, IOException {
+        exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter.defaultOptions());
+    }
+
+    public void exportTables(Connection connection,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             ArrowTableWriter.ArrowWriteOptions options) throws SQLException, IOException {
+        tableExporter.exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter, options);
+    }
+
+    public void exportTables(ConnectionFactory connectionFactory,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             ArrowTableWriter.ArrowWriteOptions options,
+                             int threads) throws SQLException, IOException {
+        tableExporter.exportTables(connectionFactory, tableDescriptorProvider, outputDirectory, tableWriter, options, threads);
+    }
+}
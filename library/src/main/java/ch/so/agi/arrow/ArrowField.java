@@ -0,0 +1,59 @@
+package ch.so.agi.arrow;
+
+import java.util.List;
+import java.util.Map;
+
+// A field of the Arrow schema. Dictionary encoded fields carry the value type and a dictionary id >= 0.
+record ArrowField(String name,
+                  boolean nullable,
+                  ArrowType type,
+                  long dictionaryId,
+                  List<ArrowField> children,
+                  Map<String, String> metadata) {
+    static final long NO_DICTIONARY = -1;
+
+    ArrowField {
+        children = List.copyOf(children);
+        metadata = Map.copyOf(metadata);
+    }
+
+    static ArrowField of(String name, boolean nullable, ArrowType type) {
+        return new ArrowField(name, nullable, type, NO_DICTIONARY, List.of(), Map.of());
+    }
+
+    boolean dictionaryEncoded() {
+        return dictionaryId != NO_DICTIONARY;
+    }
+
+    // Type ids and enum values of Arrow's Schema.fbs; byteWidth is 0 for types that are not fixed width.
+    enum ArrowType {
+        INT32(2, 4),
+        INT64(2, 8),
+        FLOAT32(3, 4),
+        FLOAT64(3, 8),
+        BINARY(4, 0),
+        UTF8(5, 0),
+        BOOL(6, 0),
+        DATE_DAY(8, 4),
+        TIME_MILLIS(9, 4),
+        TIMESTAMP_MILLIS_UTC(10, 8),
+        LIST(12, 0),
+        STRUCT(13, 0);
+
+        private final byte typeId;
+        private final int byteWidth;
+
+        ArrowType(int typeId, int byteWidth) {
+            this.typeId = (byte) typeId;
+            this.byteWidth = byteWidth;
+        }
+
+        byte typeId() {
+            return typeId;
+        }
+
+        int byteWidth() {
+            return byteWidth;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package ch.so.agi.arrow;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Writes the Arrow IPC file format: magic, schema message, record batches, dictionary batches and the footer that
+// indexes them. The messages are built with the Schema.fbs, Message.fbs and File.fbs table layouts (field slots
+// in declaration order, unions taking a type and a value slot), so no generated Arrow classes are needed.
+final class ArrowIpcWriter implements Closeable {
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final short METADATA_VERSION_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_DICTIONARY_BATCH = 2;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final int ALIGNMENT = 8;
+    private static final byte[] ZEROS = new byte[ALIGNMENT];
+
+    private final OutputStream out;
+    private final List<ArrowField> fields;
+    private final List<Block> dictionaries = new ArrayList<>();
+    private final List<Block> recordBatches = new ArrayList<>();
+    private long position;
+
+    ArrowIpcWriter(OutputStream out, List<ArrowField> fields) throws IOException {
+        this.out = out;
+        this.fields = List.copyOf(fields);
+        write(MAGIC, MAGIC.length);
+        writeZeros(align(MAGIC.length) - MAGIC.length);
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        writeMessage(builder, HEADER_SCHEMA, schema(builder), 0);
+    }
+
+    void writeRecordBatch(int length, List<ArrowVector> vectors) throws IOException {
+        List<ArrowVector.FieldNode> nodes = new ArrayList<>();
+        List<ArrowBuffer> buffers = new ArrayList<>();
+        for (ArrowVector vector : vectors) {
+            vector.collect(nodes, buffers);
+        }
+        recordBatches.add(writeBatch(length, nodes, buffers, ArrowField.NO_DICTIONARY));
+    }
+
+    // The file format only requires the dictionaries to be somewhere in the file, so they can follow the batches.
+    void writeDictionary(long id, ArrowVector values) throws IOException {
+        List<ArrowVector.FieldNode> nodes = new ArrayList<>();
+        List<ArrowBuffer> buffers = new ArrayList<>();
+        values.collect(nodes, buffers);
+        dictionaries.add(writeBatch(values.length(), nodes, buffers, id));
+    }
+
+    void finish() throws IOException {
+        writeInt(CONTINUATION);
+        writeInt(0);
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        int schema = schema(builder);
+        int dictionaryBlocks = blocks(builder, dictionaries);
+        int recordBatchBlocks = blocks(builder, recordBatches);
+        builder.startTable(4);
+        builder.addShort(0, METADATA_VERSION_V5, 0);
+        builder.addOffset(1, schema, 0);
+        builder.addOffset(2, dictionaryBlocks, 0);
+        builder.addOffset(3, recordBatchBlocks, 0);
+        builder.finish(builder.endTable());
+        byte[] footer = builder.sizedByteArray();
+        write(footer, footer.length);
+        writeInt(footer.length);
+        write(MAGIC, MAGIC.length);
+        out.flush();
+    }
+
+    private Block writeBatch(int length, List<ArrowVector.FieldNode> nodes, List<ArrowBuffer> buffers, long dictionaryId)
+            throws IOException {
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        builder.startVector(16, nodes.size(), 8);
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            builder.prep(8, 16);
+            builder.putLong(nodes.get(i).nullCount());
+            builder.putLong(nodes.get(i).length());
+        }
+        int nodeVector = builder.endVector();
+        long[] offsets = new long[buffers.size()];
+        long bodyLength = 0;
+        for (int i = 0; i < buffers.size(); i++) {
+            offsets[i] = bodyLength;
+            bodyLength += align(buffers.get(i).size());
+        }
+        builder.startVector(16, buffers.size(), 8);
+        for (int i = buffers.size() - 1; i >= 0; i--) {
+            builder.prep(8, 16);
+            builder.putLong(buffers.get(i).size());
+            builder.putLong(offsets[i]);
+        }
+        int bufferVector = builder.endVector();
+        builder.startTable(3);
+        builder.addLong(0, length, 0);
+        builder.addOffset(1, nodeVector, 0);
+        builder.addOffset(2, bufferVector, 0);
+        int recordBatch = builder.endTable();
+
+        Block block;
+        if (dictionaryId == ArrowField.NO_DICTIONARY) {
+            block = writeMessage(builder, HEADER_RECORD_BATCH, recordBatch, bodyLength);
+        } else {
+            builder.startTable(2);
+            builder.addLong(0, dictionaryId, 0);
+            builder.addOffset(1, recordBatch, 0);
+            block = writeMessage(builder, HEADER_DICTIONARY_BATCH, builder.endTable(), bodyLength);
+        }
+        for (ArrowBuffer buffer : buffers) {
+            buffer.writeTo(out);
+            position += buffer.size();
+            writeZeros(align(buffer.size()) - buffer.size());
+        }
+        return block;
+    }
+
+    // Encapsulated message: continuation marker, padded metadata length, Message flatbuffer; the body follows.
+    private Block writeMessage(FlatBufferBuilder builder, byte headerType, int header, long bodyLength)
+            throws IOException {
+        builder.startTable(4);
+        builder.addShort(0, METADATA_VERSION_V5, 0);
+        builder.addByte(1, headerType, 0);
+        builder.addOffset(2, header, 0);
+        builder.addLong(3, bodyLength, 0);
+        builder.finish(builder.endTable());
+        byte[] metadata = builder.sizedByteArray();
+        int paddedLength = (int) align(metadata.length + 2L * Integer.BYTES) - 2 * Integer.BYTES;
+        long offset = position;
+        writeInt(CONTINUATION);
+        writeInt(paddedLength);
+        write(metadata, metadata.length);
+        writeZeros(paddedLength - metadata.length);
+        return new Block(offset, 2 * Integer.BYTES + paddedLength, bodyLength);
+    }
+
+    private int schema(FlatBufferBuilder builder) {
+        int[] fieldOffsets = new int[fields.size()];
+        for (int i = 0; i < fieldOffsets.length; i++) {
+            fieldOffsets[i] = field(builder, fields.get(i));
+        }
+        int fieldVector = builder.createVectorOfTables(fieldOffsets);
+        builder.startTable(2);
+        builder.addOffset(1, fieldVector, 0);
+        return builder.endTable();
+    }
+
+    private static int field(FlatBufferBuilder builder, ArrowField field) {
+        int name = builder.createString(field.name());
+        int type = type(builder, field.type());
+        int dictionary = 0;
+        if (field.dictionaryEncoded()) {
+            int indexType = intType(builder, Integer.SIZE);
+            builder.startTable(2);
+            builder.addLong(0, field.dictionaryId(), 0);
+            builder.addOffset(1, indexType, 0);
+            dictionary = builder.endTable();
+        }
+        int[] childOffsets = new int[field.children().size()];
+        for (int i = 0; i < childOffsets.length; i++) {
+            childOffsets[i] = field(builder, field.children().get(i));
+        }
+        int children = builder.createVectorOfTables(childOffsets);
+        int metadata = 0;
+        if (!field.metadata().isEmpty()) {
+            List<Integer> entries = new ArrayList<>();
+            for (Map.Entry<String, String> entry : new TreeMap<>(field.metadata()).entrySet()) {
+                int key = builder.createString(entry.getKey());
+                int value = builder.createString(entry.getValue());
+                builder.startTable(2);
+                builder.addOffset(0, key, 0);
+                builder.addOffset(1, value, 0);
+                entries.add(builder.endTable());
+            }
+            metadata = builder.createVectorOfTables(entries.stream().mapToInt(Integer::intValue).toArray());
+        }
+        builder.startTable(7);
+        builder.addOffset(0, name, 0);
+        builder.addBoolean(1, field.nullable(), false);
+        builder.addByte(2, field.type().typeId(), 0);
+        builder.addOffset(3, type, 0);
+        builder.addOffset(4, dictionary, 0);
+        builder.addOffset(5, children, 0);
+        builder.addOffset(6, metadata, 0);
+        return builder.endTable();
+    }
+
+    private static int type(FlatBufferBuilder builder, ArrowField.ArrowType type) {
+        switch (type) {
+            case INT32, INT64 -> {
+                return intType(builder, type.byteWidth() * Byte.SIZE);
+            }
+            case FLOAT32, FLOAT64 -> {
+                builder.startTable(1);
+                builder.addShort(0, (short) (type == ArrowField.ArrowType.FLOAT32 ? 1 : 2), 0);
+            }
+            case DATE_DAY -> {
+                builder.startTable(1);
+                builder.addShort(0, (short) 0, 1);
+            }
+            case TIME_MILLIS -> {
+                builder.startTable(2);
+                builder.addShort(0, (short) 1, 1);
+                builder.addInt(1, Integer.SIZE, Integer.SIZE);
+            }
+            case TIMESTAMP_MILLIS_UTC -> {
+                int timezone = builder.createString("UTC");
+                builder.startTable(2);
+                builder.addShort(0, (short) 1, 0);
+                builder.addOffset(1, timezone, 0);
+            }
+            default -> builder.startTable(0);
+        }
+        return builder.endTable();
+    }
+
+    private static int intType(FlatBufferBuilder builder, int bitWidth) {
+        builder.startTable(2);
+        builder.addInt(0, bitWidth, 0);
+        builder.addBoolean(1, true, false);
+        return builder.endTable();
+    }
+
+    private static int blocks(FlatBufferBuilder builder, List<Block> blocks) {
+        builder.startVector(24, blocks.size(), 8);
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Block block = blocks.get(i);
+            builder.prep(8, 24);
+            builder.putLong(block.bodyLength());
+            builder.pad(4);
+            builder.putInt(block.metadataLength());
+            builder.putLong(block.offset());
+        }
+        return builder.endVector();
+    }
+
+    private static long align(long length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+        position += Integer.BYTES;
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        position += length;
+    }
+
+    private void writeZeros(long length) throws IOException {
+        write(ZEROS, (int) length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private record Block(long offset, int metadataLength, long bodyLength) {
+    }
+}
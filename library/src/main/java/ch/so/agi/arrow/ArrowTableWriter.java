@@ -0,0 +1,407 @@
+package ch.so.agi.arrow;
+
+import ch.so.agi.cloudformats.BatchTableWriter;
+import ch.so.agi.cloudformats.CrsDefinitions;
+import ch.so.agi.cloudformats.GeoPackageGeometryColumns;
+import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.Ili2dbColumns;
+import ch.so.agi.cloudformats.IsoWkb;
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchReader;
+import ch.so.agi.cloudformats.RowBatchSink;
+import ch.so.agi.cloudformats.SqlValues;
+import ch.so.agi.cloudformats.TableDescriptor;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+// Writes Arrow IPC files (Feather V2, uncompressed) that readers can memory-map and use without decoding.
+public class ArrowTableWriter implements BatchTableWriter<ArrowTableWriter.ArrowWriteOptions> {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final GeometryReader geometryReader;
+
+    public ArrowTableWriter(GeometryReader geometryReader) {
+        this.geometryReader = geometryReader;
+    }
+
+    @Override
+    public String fileExtension() {
+        return "arrow";
+    }
+
+    @Override
+    public ArrowWriteOptions defaultOptions() {
+        return ArrowWriteOptions.builder().build();
+    }
+
+    @Override
+    public void writeTable(Connection connection, TableDescriptor table, Path outputFile, ArrowWriteOptions options)
+            throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
+             ResultSet resultSet = statement.executeQuery();
+             RowBatchSink sink = openSink(connection, table, resultSet.getMetaData(), outputFile, options)) {
+            RowBatchReader reader = new RowBatchReader(resultSet, sink.columns(),
+                    table.hasGeometry() ? table.geometryColumn() : null, geometryReader);
+            RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+            while (reader.read(batch)) {
+                sink.write(batch);
+            }
+            sink.finish();
+        }
+    }
+
+    @Override
+    public ArrowWriteOptions withMemoryBudget(ArrowWriteOptions options, long memoryBudget) {
+        return new ArrowWriteOptions(options.recordBatchSize(), Math.min(options.maxRecordBatchBytes(), memoryBudget),
+                options.geometryEncoding(), options.dictionaryColumns(), options.ili2dbEnumDictionaries());
+    }
+
+    @Override
+    public RowBatchSink openSink(Connection connection,
+                                 TableDescriptor table,
+                                 ResultSetMetaData metaData,
+                                 Path outputFile,
+                                 ArrowWriteOptions options) throws SQLException, IOException {
+        Set<String> dictionaryColumns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        dictionaryColumns.addAll(options.dictionaryColumns());
+        if (options.ili2dbEnumDictionaries()) {
+            dictionaryColumns.addAll(Ili2dbColumns.enumColumns(connection, table.tableName()));
+        }
+        List<ArrowColumn> columns = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String name = metaData.getColumnName(i);
+            if (table.hasGeometry() && name.equalsIgnoreCase(table.geometryColumn())) {
+                continue;
+            }
+            boolean nullable = metaData.isNullable(i) != ResultSetMetaData.columnNoNulls;
+            long dictionaryId = dictionaryColumns.contains(name) ? columns.size() : ArrowField.NO_DICTIONARY;
+            columns.add(buildColumn(name, i, metaData.getColumnType(i), nullable, dictionaryId));
+        }
+        NativeGeometryVector nativeGeometry = null;
+        ArrowField geometryField = null;
+        boolean z = table.hasGeometry() && GeoPackageGeometryColumns.hasZ(connection, table);
+        if (table.hasGeometry()) {
+            String extensionMetadata = extensionMetadata(table.srid());
+            if (options.geometryEncoding() == GeometryEncoding.NATIVE) {
+                if (!NativeGeometryVector.supports(table.geometryType())) {
+                    throw new IllegalArgumentException("Native GeoArrow encoding needs a single geometry type, "
+                            + table.tableName() + " has mixed or unknown geometry types.");
+                }
+                nativeGeometry = new NativeGeometryVector(table.geometryColumn(), table.geometryType(), z,
+                        extensionMetadata);
+                geometryField = nativeGeometry.field();
+            } else {
+                geometryField = new ArrowField(table.geometryColumn(), true, ArrowField.ArrowType.BINARY,
+                        ArrowField.NO_DICTIONARY, List.of(),
+                        Map.of("ARROW:extension:name", "geoarrow.wkb", "ARROW:extension:metadata", extensionMetadata));
+            }
+        }
+        return new ArrowBatchSink(columns, geometryField, nativeGeometry, z, outputFile, options);
+    }
+
+    // GeoArrow takes PROJJSON, or an authority code for SRIDs without a bundled definition.
+    private static String extensionMetadata(int srid) {
+        if (srid <= 0) {
+            return "{}";
+        }
+        String projJson = CrsDefinitions.projJson(srid);
+        return projJson != null
+                ? "{\"crs\":" + projJson + "}"
+                : "{\"crs\":\"EPSG:" + srid + "\",\"crs_type\":\"authority_code\"}";
+    }
+
+    private static ArrowColumn buildColumn(String name, int index, int sqlType, boolean nullable, long dictionaryId) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> new ArrowColumn(
+                    ArrowField.of(name, nullable, ArrowField.ArrowType.INT32), index, RowBatch.ColumnKind.LONG,
+                    (vector, batch, column, row) -> ((ArrowVector.FixedWidth) vector)
+                            .appendInt((int) batch.getLong(column, row)));
+            case Types.BIGINT -> new ArrowColumn(
+                    ArrowField.of(name, nullable, ArrowField.ArrowType.INT64), index, RowBatch.ColumnKind.LONG,
+                    (vector, batch, column, row) -> ((ArrowVector.FixedWidth) vector)
+                            .appendLong(batch.getLong(column, row)));
+            case Types.FLOAT, Types.REAL -> new ArrowColumn(
+                    ArrowField.of(name, nullable, ArrowField.ArrowType.FLOAT32), index, RowBatch.ColumnKind.DOUBLE,
+                    (vector, batch, column, row) -> ((ArrowVector.FixedWidth) vector)
+                            .appendFloat((float) batch.getDouble(column, row)));
+            case Types.DOUBLE, Types.NUMERIC, Types.DECIMAL -> new ArrowColumn(
+                    ArrowField.of(name, nullable, ArrowField.ArrowType.FLOAT64), index, RowBatch.ColumnKind.DOUBLE,
+                    (vector, batch, column, row) -> ((ArrowVector.FixedWidth) vector)
+                            .appendDouble(batch.getDouble(column, row)));
+            // Values the driver returns in an unexpected form are written as null, so these columns are nullable.
+            case Types.BOOLEAN, Types.BIT -> new ArrowColumn(
+                    ArrowField.of(name, true, ArrowField.ArrowType.BOOL), index, RowBatch.ColumnKind.OBJECT,
+                    (vector, batch, column, row) -> ((ArrowVector.Bits) vector)
+                            .appendBoolean(SqlValues.toBoolean(batch.getObject(column, row))));
+            case Types.DATE -> new ArrowColumn(
+                    ArrowField.of(name, true, ArrowField.ArrowType.DATE_DAY), index, RowBatch.ColumnKind.OBJECT,
+                    (vector, batch, column, row) -> {
+                        LocalDate date = SqlValues.toLocalDate(batch.getObject(column, row));
+                        if (date == null) {
+                            vector.appendNull();
+                        } else {
+                            ((ArrowVector.FixedWidth) vector).appendInt((int) date.toEpochDay());
+                        }
+                    });
+            case Types.TIME -> new ArrowColumn(
+                    ArrowField.of(name, true, ArrowField.ArrowType.TIME_MILLIS), index, RowBatch.ColumnKind.OBJECT,
+                    (vector, batch, column, row) -> {
+                        LocalTime time = SqlValues.toLocalTime(batch.getObject(column, row));
+                        if (time == null) {
+                            vector.appendNull();
+                        } else {
+                            ((ArrowVector.FixedWidth) vector)
+                                    .appendInt(time.toSecondOfDay() * 1000 + time.getNano() / 1_000_000);
+                        }
+                    });
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new ArrowColumn(
+                    ArrowField.of(name, true, ArrowField.ArrowType.TIMESTAMP_MILLIS_UTC), index,
+                    RowBatch.ColumnKind.OBJECT,
+                    (vector, batch, column, row) -> {
+                        Instant instant = SqlValues.toInstant(batch.getObject(column, row));
+                        if (instant == null) {
+                            vector.appendNull();
+                        } else {
+                            ((ArrowVector.FixedWidth) vector).appendLong(instant.toEpochMilli());
+                        }
+                    });
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> new ArrowColumn(
+                    ArrowField.of(name, nullable, ArrowField.ArrowType.BINARY), index, RowBatch.ColumnKind.BLOB,
+                    (vector, batch, column, row) -> ((ArrowVector.VarBinary) vector)
+                            .append(batch.bytes(column), batch.offset(column, row), batch.length(column, row)));
+            default -> dictionaryId == ArrowField.NO_DICTIONARY
+                    ? new ArrowColumn(ArrowField.of(name, nullable, ArrowField.ArrowType.UTF8), index,
+                            RowBatch.ColumnKind.TEXT,
+                            (vector, batch, column, row) -> ((ArrowVector.VarBinary) vector)
+                                    .append(batch.bytes(column), batch.offset(column, row), batch.length(column, row)))
+                    : new ArrowColumn(new ArrowField(name, nullable, ArrowField.ArrowType.UTF8, dictionaryId, List.of(),
+                            Map.of()), index, RowBatch.ColumnKind.TEXT,
+                            (vector, batch, column, row) -> ((ArrowVector.Dictionary) vector)
+                                    .append(batch.bytes(column), batch.offset(column, row), batch.length(column, row)));
+        };
+    }
+
+    public enum GeometryEncoding {
+        WKB,
+        NATIVE
+    }
+
+    public record ArrowWriteOptions(int recordBatchSize,
+                                    long maxRecordBatchBytes,
+                                    GeometryEncoding geometryEncoding,
+                                    Set<String> dictionaryColumns,
+                                    boolean ili2dbEnumDictionaries) {
+        public ArrowWriteOptions {
+            dictionaryColumns = Set.copyOf(dictionaryColumns);
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static final class Builder {
+            private int recordBatchSize = 65_536;
+            private long maxRecordBatchBytes = Long.MAX_VALUE;
+            private GeometryEncoding geometryEncoding = GeometryEncoding.WKB;
+            private final Set<String> dictionaryColumns = new TreeSet<>();
+            private boolean ili2dbEnumDictionaries = true;
+
+            // Rows per record batch; a batch is built in memory before it is written.
+            public Builder recordBatchSize(int recordBatchSize) {
+                if (recordBatchSize < 1) {
+                    throw new IllegalArgumentException("recordBatchSize must be >= 1");
+                }
+                this.recordBatchSize = recordBatchSize;
+                return this;
+            }
+
+            // Ends a record batch early once its buffers reach this size; checked after every RowBatch.
+            public Builder maxRecordBatchBytes(long maxRecordBatchBytes) {
+                if (maxRecordBatchBytes < 1) {
+                    throw new IllegalArgumentException("maxRecordBatchBytes must be >= 1");
+                }
+                this.maxRecordBatchBytes = maxRecordBatchBytes;
+                return this;
+            }
+
+            public Builder geometryEncoding(GeometryEncoding geometryEncoding) {
+                this.geometryEncoding = geometryEncoding;
+                return this;
+            }
+
+            // Text columns written as dictionary encoded strings, matched case-insensitively.
+            public Builder dictionaryColumn(String column) {
+                dictionaryColumns.add(column);
+                return this;
+            }
+
+            // Dictionary encodes the ili2db enumeration columns (T_ILI2DB_COLUMN_PROP typeKind ENUM).
+            public Builder ili2dbEnumDictionaries(boolean ili2dbEnumDictionaries) {
+                this.ili2dbEnumDictionaries = ili2dbEnumDictionaries;
+                return this;
+            }
+
+            public ArrowWriteOptions build() {
+                return new ArrowWriteOptions(recordBatchSize, maxRecordBatchBytes, geometryEncoding, dictionaryColumns,
+                        ili2dbEnumDictionaries);
+            }
+        }
+    }
+
+    private static final class ArrowBatchSink implements RowBatchSink {
+        private final List<ArrowColumn> arrowColumns;
+        private final List<RowBatch.Column> columns;
+        private final ArrowVector[] vectors;
+        private final ArrowVector geometryVector;
+        private final NativeGeometryVector nativeGeometry;
+        private final List<ArrowVector> batchVectors;
+        private final ArrowIpcWriter writer;
+        private final int recordBatchSize;
+        private final long maxRecordBatchBytes;
+        private final WKBReader wkbReader = new WKBReader();
+        private final IsoWkb isoWkb;
+        private int rows;
+
+        private ArrowBatchSink(List<ArrowColumn> arrowColumns,
+                               ArrowField geometryField,
+                               NativeGeometryVector nativeGeometry,
+                               boolean z,
+                               Path outputFile,
+                               ArrowWriteOptions options) throws IOException {
+            this.arrowColumns = List.copyOf(arrowColumns);
+            this.columns = arrowColumns.stream()
+                    .map(column -> new RowBatch.Column(column.field().name(), column.index(), column.kind()))
+                    .toList();
+            this.vectors = arrowColumns.stream().map(column -> ArrowVector.of(column.field())).toArray(ArrowVector[]::new);
+            this.nativeGeometry = nativeGeometry;
+            this.isoWkb = new IsoWkb(z);
+            this.geometryVector = nativeGeometry != null ? nativeGeometry.vector()
+                    : geometryField != null ? ArrowVector.of(geometryField) : null;
+            List<ArrowField> fields = new ArrayList<>();
+            arrowColumns.forEach(column -> fields.add(column.field()));
+            this.batchVectors = new ArrayList<>(Arrays.asList(vectors));
+            if (geometryField != null) {
+                fields.add(geometryField);
+                batchVectors.add(geometryVector);
+            }
+            this.recordBatchSize = options.recordBatchSize();
+            this.maxRecordBatchBytes = options.maxRecordBatchBytes();
+            this.writer = new ArrowIpcWriter(
+                    new BufferedOutputStream(Files.newOutputStream(outputFile), OUTPUT_BUFFER_SIZE), fields);
+        }
+
+        @Override
+        public List<RowBatch.Column> columns() {
+            return columns;
+        }
+
+        @Override
+        public void write(RowBatch batch) throws SQLException, IOException {
+            for (int row = 0; row < batch.size(); row++) {
+                for (int column = 0; column < vectors.length; column++) {
+                    if (batch.isNull(column, row)) {
+                        vectors[column].appendNull();
+                    } else {
+                        arrowColumns.get(column).appender().append(vectors[column], batch, column, row);
+                    }
+                }
+                if (nativeGeometry != null) {
+                    nativeGeometry.append(geometry(batch, row));
+                } else if (geometryVector != null) {
+                    appendWkb(batch, row);
+                }
+                if (++rows == recordBatchSize) {
+                    flush();
+                }
+            }
+            if (rows > 0 && maxRecordBatchBytes != Long.MAX_VALUE && byteSize() >= maxRecordBatchBytes) {
+                flush();
+            }
+        }
+
+        private long byteSize() {
+            long size = 0;
+            for (ArrowVector vector : batchVectors) {
+                size += vector.byteSize();
+            }
+            return size;
+        }
+
+        private void appendWkb(RowBatch batch, int row) throws SQLException {
+            ByteBuffer wkb = isoWkb.read(batch, row);
+            if (wkb == null) {
+                geometryVector.appendNull();
+            } else {
+                ((ArrowVector.VarBinary) geometryVector)
+                        .append(wkb.array(), wkb.arrayOffset() + wkb.position(), wkb.remaining());
+            }
+        }
+
+        private Geometry geometry(RowBatch batch, int row) throws SQLException {
+            if (batch.geometry(row) != null || !batch.hasGeometry(row)) {
+                return batch.geometry(row);
+            }
+            int offset = batch.wkbOffset(row);
+            try {
+                return wkbReader.read(Arrays.copyOfRange(batch.wkbArray(row), offset, offset + batch.wkbLength(row)));
+            } catch (ParseException e) {
+                throw new SQLException("Unable to parse WKB geometry.", e);
+            }
+        }
+
+        private void flush() throws IOException {
+            writer.writeRecordBatch(rows, batchVectors);
+            for (ArrowVector vector : batchVectors) {
+                vector.clear();
+            }
+            rows = 0;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (rows > 0) {
+                flush();
+            }
+            for (int column = 0; column < vectors.length; column++) {
+                if (vectors[column] instanceof ArrowVector.Dictionary dictionary) {
+                    writer.writeDictionary(arrowColumns.get(column).field().dictionaryId(), dictionary.values());
+                }
+            }
+            writer.finish();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private record ArrowColumn(ArrowField field, int index, RowBatch.ColumnKind kind, ValueAppender appender) {
+    }
+
+    private interface ValueAppender {
+        void append(ArrowVector vector, RowBatch batch, int column, int row);
+    }
+}
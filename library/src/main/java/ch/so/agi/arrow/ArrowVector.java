@@ -0,0 +1,300 @@
+package ch.so.agi.arrow;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Column values of the current record batch in Arrow's memory layout, so a batch is written without conversion.
+abstract class ArrowVector {
+    private final ArrowBuffer validity = new ArrowBuffer();
+    private int length;
+    private int nullCount;
+
+    static ArrowVector of(ArrowField field) {
+        if (field.dictionaryEncoded()) {
+            return new Dictionary();
+        }
+        return switch (field.type()) {
+            case BOOL -> new Bits();
+            case UTF8, BINARY -> new VarBinary();
+            case LIST -> new ListOf(of(field.children().get(0)));
+            case STRUCT -> new StructOfDoubles(field.children().size());
+            default -> new FixedWidth(field.type().byteWidth());
+        };
+    }
+
+    int length() {
+        return length;
+    }
+
+    void appendNull() {
+        appendNullValue();
+        validity.setBit(length++, false);
+        nullCount++;
+    }
+
+    // Called after the value buffers received the value of the new slot.
+    protected void appendValid() {
+        validity.setBit(length++, true);
+    }
+
+    protected abstract void appendNullValue();
+
+    // Field nodes and buffers in the depth-first order of the schema fields, as the RecordBatch message lists them.
+    void collect(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+        nodes.add(new FieldNode(length, nullCount));
+        buffers.add(nullCount == 0 ? ArrowBuffer.EMPTY : validity);
+        collectValues(nodes, buffers);
+    }
+
+    protected abstract void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers);
+
+    // Size of the current batch in the record batch body, without padding.
+    long byteSize() {
+        List<ArrowBuffer> buffers = new ArrayList<>();
+        collect(new ArrayList<>(), buffers);
+        long size = 0;
+        for (ArrowBuffer buffer : buffers) {
+            size += buffer.size();
+        }
+        return size;
+    }
+
+    void clear() {
+        validity.clear();
+        length = 0;
+        nullCount = 0;
+        clearValues();
+    }
+
+    protected abstract void clearValues();
+
+    record FieldNode(long length, long nullCount) {
+    }
+
+    static final class FixedWidth extends ArrowVector {
+        private final int byteWidth;
+        private final ArrowBuffer values = new ArrowBuffer();
+
+        private FixedWidth(int byteWidth) {
+            this.byteWidth = byteWidth;
+        }
+
+        void appendInt(int value) {
+            values.putInt(value);
+            appendValid();
+        }
+
+        void appendLong(long value) {
+            values.putLong(value);
+            appendValid();
+        }
+
+        void appendFloat(float value) {
+            values.putFloat(value);
+            appendValid();
+        }
+
+        void appendDouble(double value) {
+            values.putDouble(value);
+            appendValid();
+        }
+
+        @Override
+        protected void appendNullValue() {
+            values.putZeros(byteWidth);
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            buffers.add(values);
+        }
+
+        @Override
+        protected void clearValues() {
+            values.clear();
+        }
+    }
+
+    static final class Bits extends ArrowVector {
+        private final ArrowBuffer values = new ArrowBuffer();
+
+        void appendBoolean(boolean value) {
+            values.setBit(length(), value);
+            appendValid();
+        }
+
+        @Override
+        protected void appendNullValue() {
+            values.setBit(length(), false);
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            buffers.add(values);
+        }
+
+        @Override
+        protected void clearValues() {
+            values.clear();
+        }
+    }
+
+    static final class VarBinary extends ArrowVector {
+        private final ArrowBuffer offsets = new ArrowBuffer();
+        private final ArrowBuffer data = new ArrowBuffer();
+
+        VarBinary() {
+            offsets.putInt(0);
+        }
+
+        void append(byte[] value, int offset, int length) {
+            data.putBytes(value, offset, length);
+            offsets.putInt(data.size());
+            appendValid();
+        }
+
+        @Override
+        protected void appendNullValue() {
+            offsets.putInt(data.size());
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            buffers.add(offsets);
+            buffers.add(data);
+        }
+
+        @Override
+        protected void clearValues() {
+            offsets.clear();
+            offsets.putInt(0);
+            data.clear();
+        }
+    }
+
+    static final class ListOf extends ArrowVector {
+        private final ArrowBuffer offsets = new ArrowBuffer();
+        private final ArrowVector child;
+
+        private ListOf(ArrowVector child) {
+            this.child = child;
+            offsets.putInt(0);
+        }
+
+        ArrowVector child() {
+            return child;
+        }
+
+        // Closes a list holding the child values appended since the previous list.
+        void endList() {
+            offsets.putInt(child.length());
+            appendValid();
+        }
+
+        @Override
+        protected void appendNullValue() {
+            offsets.putInt(child.length());
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            buffers.add(offsets);
+            child.collect(nodes, buffers);
+        }
+
+        @Override
+        protected void clearValues() {
+            offsets.clear();
+            offsets.putInt(0);
+            child.clear();
+        }
+    }
+
+    // Only used for coordinates; a null struct still needs a slot in every child, which gets NaN.
+    static final class StructOfDoubles extends ArrowVector {
+        private final FixedWidth[] children;
+
+        private StructOfDoubles(int size) {
+            this.children = new FixedWidth[size];
+            for (int i = 0; i < size; i++) {
+                children[i] = new FixedWidth(Double.BYTES);
+            }
+        }
+
+        void append(double x, double y) {
+            children[0].appendDouble(x);
+            children[1].appendDouble(y);
+            appendValid();
+        }
+
+        void append(double x, double y, double z) {
+            children[0].appendDouble(x);
+            children[1].appendDouble(y);
+            children[2].appendDouble(z);
+            appendValid();
+        }
+
+        @Override
+        protected void appendNullValue() {
+            for (FixedWidth child : children) {
+                child.appendDouble(Double.NaN);
+            }
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            for (FixedWidth child : children) {
+                child.collect(nodes, buffers);
+            }
+        }
+
+        @Override
+        protected void clearValues() {
+            for (FixedWidth child : children) {
+                child.clear();
+            }
+        }
+    }
+
+    // The dictionary keeps growing over all record batches and is written once, before the footer.
+    static final class Dictionary extends ArrowVector {
+        private final ArrowBuffer indices = new ArrowBuffer();
+        private final VarBinary values = new VarBinary();
+        private final Map<ByteBuffer, Integer> index = new HashMap<>();
+
+        void append(byte[] value, int offset, int length) {
+            Integer entry = index.get(ByteBuffer.wrap(value, offset, length));
+            if (entry == null) {
+                byte[] copy = Arrays.copyOfRange(value, offset, offset + length);
+                entry = values.length();
+                index.put(ByteBuffer.wrap(copy), entry);
+                values.append(copy, 0, length);
+            }
+            indices.putInt(entry);
+            appendValid();
+        }
+
+        VarBinary values() {
+            return values;
+        }
+
+        @Override
+        protected void appendNullValue() {
+            indices.putInt(0);
+        }
+
+        @Override
+        protected void collectValues(List<FieldNode> nodes, List<ArrowBuffer> buffers) {
+            buffers.add(indices);
+        }
+
+        @Override
+        protected void clearValues() {
+            indices.clear();
+        }
+    }
+}
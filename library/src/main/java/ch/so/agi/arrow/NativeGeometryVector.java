@@ -0,0 +1,187 @@
+package ch.so.agi.arrow;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+// GeoArrow native encoding with separated coordinates: points are struct<x, y[, z]>, every nesting level of the
+// geometry type (parts, rings, vertices) is a list around it. Single geometries in multi columns become one part.
+final class NativeGeometryVector {
+    private final int geometryType;
+    private final boolean z;
+    private final ArrowField field;
+    private final ArrowVector vector;
+
+    NativeGeometryVector(String name, int geometryType, boolean z, String extensionMetadata) {
+        this.geometryType = geometryType;
+        this.z = z;
+        ArrowField layout = layout(geometryType, coordinates(childName(geometryType), z));
+        this.field = new ArrowField(name, true, layout.type(), ArrowField.NO_DICTIONARY, layout.children(),
+                Map.of("ARROW:extension:name", "geoarrow." + name(geometryType),
+                        "ARROW:extension:metadata", extensionMetadata));
+        this.vector = ArrowVector.of(field);
+    }
+
+    static boolean supports(int geometryType) {
+        return name(geometryType) != null;
+    }
+
+    ArrowField field() {
+        return field;
+    }
+
+    ArrowVector vector() {
+        return vector;
+    }
+
+    void append(Geometry geometry) throws IOException {
+        if (geometry == null) {
+            vector.appendNull();
+            return;
+        }
+        switch (geometryType) {
+            case GeometryType.Point -> point((ArrowVector.StructOfDoubles) vector, require(geometry, Point.class));
+            case GeometryType.LineString -> vertices((ArrowVector.ListOf) vector,
+                    require(geometry, LineString.class).getCoordinateSequence());
+            case GeometryType.Polygon -> polygon((ArrowVector.ListOf) vector, require(geometry, Polygon.class));
+            case GeometryType.MultiPoint -> {
+                ArrowVector.ListOf points = (ArrowVector.ListOf) vector;
+                Geometry multiPoint = geometry instanceof Point ? geometry : require(geometry, MultiPoint.class);
+                for (int i = 0; i < multiPoint.getNumGeometries(); i++) {
+                    point((ArrowVector.StructOfDoubles) points.child(), (Point) multiPoint.getGeometryN(i));
+                }
+                points.endList();
+            }
+            case GeometryType.MultiLineString -> {
+                ArrowVector.ListOf lineStrings = (ArrowVector.ListOf) vector;
+                Geometry multiLineString = geometry instanceof LineString ? geometry
+                        : require(geometry, MultiLineString.class);
+                for (int i = 0; i < multiLineString.getNumGeometries(); i++) {
+                    vertices((ArrowVector.ListOf) lineStrings.child(),
+                            ((LineString) multiLineString.getGeometryN(i)).getCoordinateSequence());
+                }
+                lineStrings.endList();
+            }
+            default -> {
+                ArrowVector.ListOf polygons = (ArrowVector.ListOf) vector;
+                Geometry multiPolygon = geometry instanceof Polygon ? geometry : require(geometry, MultiPolygon.class);
+                for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+                    polygon((ArrowVector.ListOf) polygons.child(), (Polygon) multiPolygon.getGeometryN(i));
+                }
+                polygons.endList();
+            }
+        }
+    }
+
+    private void polygon(ArrowVector.ListOf rings, Polygon polygon) throws IOException {
+        if (!polygon.isEmpty()) {
+            vertices((ArrowVector.ListOf) rings.child(), polygon.getExteriorRing().getCoordinateSequence());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                vertices((ArrowVector.ListOf) rings.child(), polygon.getInteriorRingN(i).getCoordinateSequence());
+            }
+        }
+        rings.endList();
+    }
+
+    private void vertices(ArrowVector.ListOf vertices, CoordinateSequence sequence) throws IOException {
+        checkDimension(sequence);
+        ArrowVector.StructOfDoubles coordinates = (ArrowVector.StructOfDoubles) vertices.child();
+        for (int i = 0; i < sequence.size(); i++) {
+            coordinate(coordinates, sequence, i);
+        }
+        vertices.endList();
+    }
+
+    // GeoArrow writes empty points as NaN coordinates.
+    private void point(ArrowVector.StructOfDoubles coordinates, Point point) throws IOException {
+        CoordinateSequence sequence = point.getCoordinateSequence();
+        checkDimension(sequence);
+        if (sequence.size() == 0) {
+            if (z) {
+                coordinates.append(Double.NaN, Double.NaN, Double.NaN);
+            } else {
+                coordinates.append(Double.NaN, Double.NaN);
+            }
+        } else {
+            coordinate(coordinates, sequence, 0);
+        }
+    }
+
+    private void coordinate(ArrowVector.StructOfDoubles coordinates, CoordinateSequence sequence, int index) {
+        if (z) {
+            coordinates.append(sequence.getX(index), sequence.getY(index), sequence.getZ(index));
+        } else {
+            coordinates.append(sequence.getX(index), sequence.getY(index));
+        }
+    }
+
+    private void checkDimension(CoordinateSequence sequence) throws IOException {
+        if (!z && sequence.hasZ() && sequence.size() > 0 && !Double.isNaN(sequence.getZ(0))) {
+            throw new IOException("Geometry has z coordinates, but the geometry column is declared as 2D.");
+        }
+    }
+
+    private <G extends Geometry> G require(Geometry geometry, Class<G> type) throws IOException {
+        if (!type.isInstance(geometry)) {
+            throw new IOException("Geometry type " + geometry.getGeometryType() + " does not match the column type "
+                    + name(geometryType) + ".");
+        }
+        return type.cast(geometry);
+    }
+
+    private static ArrowField coordinates(String name, boolean z) {
+        List<ArrowField> axes = z
+                ? List.of(axis("x"), axis("y"), axis("z"))
+                : List.of(axis("x"), axis("y"));
+        return new ArrowField(name, false, ArrowField.ArrowType.STRUCT, ArrowField.NO_DICTIONARY, axes, Map.of());
+    }
+
+    private static ArrowField axis(String name) {
+        return ArrowField.of(name, false, ArrowField.ArrowType.FLOAT64);
+    }
+
+    // The layout of the column itself; its name and nullability are set by the caller.
+    private static ArrowField layout(int geometryType, ArrowField coordinates) {
+        return switch (geometryType) {
+            case GeometryType.Point -> coordinates;
+            case GeometryType.LineString, GeometryType.MultiPoint -> list("", coordinates);
+            case GeometryType.Polygon -> list("", list("rings", coordinates));
+            case GeometryType.MultiLineString -> list("", list("linestrings", coordinates));
+            default -> list("", list("polygons", list("rings", coordinates)));
+        };
+    }
+
+    private static ArrowField list(String name, ArrowField child) {
+        return new ArrowField(name, false, ArrowField.ArrowType.LIST, ArrowField.NO_DICTIONARY, List.of(child), Map.of());
+    }
+
+    // Names of the innermost list's struct child, as in the GeoArrow examples.
+    private static String childName(int geometryType) {
+        return switch (geometryType) {
+            case GeometryType.Point -> "";
+            case GeometryType.MultiPoint -> "points";
+            default -> "vertices";
+        };
+    }
+
+    private static String name(int geometryType) {
+        return switch (geometryType) {
+            case GeometryType.Point -> "point";
+            case GeometryType.LineString -> "linestring";
+            case GeometryType.Polygon -> "polygon";
+            case GeometryType.MultiPoint -> "multipoint";
+            case GeometryType.MultiLineString -> "multilinestring";
+            case GeometryType.MultiPolygon -> "multipolygon";
+            default -> null;
+        };
+    }
+}
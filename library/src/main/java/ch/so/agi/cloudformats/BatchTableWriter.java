@@ -0,0 +1,22 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+public interface BatchTableWriter<O> extends TableWriter<O> {
+    // The caller reads the table and hands the batches to the sink; finish() completes the output file.
+    RowBatchSink openSink(Connection connection,
+                          TableDescriptor table,
+                          ResultSetMetaData metaData,
+                          Path outputFile,
+                          O options) throws SQLException, IOException;
+
+    // Options for a sink that shares the heap with other open sinks: buffers that grow with the data written, such as
+    // row groups or record batches, stay within about memoryBudget bytes. Disk spills are not limited.
+    default O withMemoryBudget(O options, long memoryBudget) {
+        return options;
+    }
+}
@@ -0,0 +1,21 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.sqlite.SQLiteConfig;
+
+@FunctionalInterface
+public interface ConnectionFactory {
+    Connection open() throws SQLException;
+
+    static ConnectionFactory sqliteReadOnly(Path database) {
+        String url = "jdbc:sqlite:" + database.toAbsolutePath();
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        Properties properties = config.toProperties();
+        return () -> DriverManager.getConnection(url, properties);
+    }
+}
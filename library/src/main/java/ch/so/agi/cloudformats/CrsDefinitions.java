@@ -0,0 +1,24 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+public final class CrsDefinitions {
+    private CrsDefinitions() {
+    }
+
+    // PROJJSON ships for the CRSs in the crs resource folder (2056, 21781, 4326, 3857); null for other SRIDs, since
+    // an object with only an id is not valid PROJJSON.
+    public static String projJson(int srid) {
+        try (InputStream in = CrsDefinitions.class.getResourceAsStream("crs/EPSG_" + srid + ".json")) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+}
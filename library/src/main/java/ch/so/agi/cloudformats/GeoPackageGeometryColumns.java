@@ -0,0 +1,42 @@
+package ch.so.agi.cloudformats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public final class GeoPackageGeometryColumns {
+    private static final String Z_QUERY = """
+            SELECT z
+              FROM gpkg_geometry_columns
+             WHERE lower(table_name) = lower(?)
+               AND lower(column_name) = lower(?)
+            """;
+
+    private static final String TABLE_QUERY = """
+            SELECT 1
+              FROM sqlite_master
+             WHERE type = 'table'
+               AND lower(name) = 'gpkg_geometry_columns'
+            """;
+
+    private GeoPackageGeometryColumns() {
+    }
+
+    // gpkg_geometry_columns.z is 0 (prohibited), 1 (mandatory) or 2 (optional); plain SQLite files without it are 2D.
+    public static boolean hasZ(Connection connection, TableDescriptor table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TABLE_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return false;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(Z_QUERY)) {
+            statement.setString(1, table.tableName());
+            statement.setString(2, table.geometryColumn());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        }
+    }
+}
@@ -8,14 +8,55 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKBReader;
 
-public class GeoPackageGeometryReader implements GeometryReader {
+public class GeoPackageGeometryReader implements GeometryReader, WkbSource {
     private static final byte MAGIC_1 = 0x47;
     private static final byte MAGIC_2 = 0x50;
 
-    private final WKBReader wkbReader = new WKBReader();
+    private final ThreadLocal<WKBReader> wkbReader = ThreadLocal.withInitial(WKBReader::new);
 
     @Override
     public Geometry readGeometry(ResultSet resultSet, String columnName) throws SQLException {
+        ByteBuffer buffer = readWkb(resultSet, columnName);
+        if (buffer == null) {
+            return null;
+        }
+        byte[] wkb = new byte[buffer.remaining()];
+        buffer.get(wkb);
+        try {
+            return wkbReader.get().read(wkb);
+        } catch (ParseException e) {
+            throw new SQLException("Unable to parse WKB from GeoPackage geometry blob.", e);
+        }
+    }
+
+    @Override
+    public ByteBuffer readWkb(ResultSet resultSet, String columnName) throws SQLException {
+        ByteBuffer buffer = readHeader(resultSet, columnName);
+        return buffer == null ? null : buffer.position(buffer.position() + envelopeSize(envelopeIndicator(buffer)));
+    }
+
+    @Override
+    public boolean readWkb(ResultSet resultSet, String columnName, WkbGeometry target) throws SQLException {
+        ByteBuffer buffer = readHeader(resultSet, columnName);
+        if (buffer == null) {
+            return false;
+        }
+        int envelopeIndicator = envelopeIndicator(buffer);
+        if (envelopeIndicator == 0) {
+            target.set(buffer);
+            return true;
+        }
+        int envelope = buffer.position();
+        // The envelope is stored as minx, maxx, miny, maxy.
+        double minX = buffer.getDouble(envelope);
+        double maxX = buffer.getDouble(envelope + Double.BYTES);
+        double minY = buffer.getDouble(envelope + 2 * Double.BYTES);
+        double maxY = buffer.getDouble(envelope + 3 * Double.BYTES);
+        target.set(buffer.position(envelope + envelopeSize(envelopeIndicator)), minX, minY, maxX, maxY);
+        return true;
+    }
+
+    private static ByteBuffer readHeader(ResultSet resultSet, String columnName) throws SQLException {
         byte[] bytes = resultSet.getBytes(columnName);
         if (bytes == null) {
             return null;
@@ -34,19 +75,14 @@ public class GeoPackageGeometryReader implements GeometryReader {
         boolean littleEndian = (flags & 0x01) == 1;
         buffer.order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
         buffer.getInt(); // srs_id
-        int envelopeIndicator = (flags >> 1) & 0x07;
-        int envelopeSize = envelopeSize(envelopeIndicator);
-        if (buffer.remaining() < envelopeSize) {
+        if (buffer.remaining() < envelopeSize((flags >> 1) & 0x07)) {
             throw new SQLException("Invalid GeoPackage geometry envelope size.");
         }
-        buffer.position(buffer.position() + envelopeSize);
-        byte[] wkb = new byte[buffer.remaining()];
-        buffer.get(wkb);
-        try {
-            return wkbReader.read(wkb);
-        } catch (ParseException e) {
-            throw new SQLException("Unable to parse WKB from GeoPackage geometry blob.", e);
-        }
+        return buffer;
+    }
+
+    private static int envelopeIndicator(ByteBuffer buffer) {
+        return (buffer.get(3) >> 1) & 0x07;
     }
 
     private static int envelopeSize(int envelopeIndicator) throws SQLException {
@@ -0,0 +1,84 @@
+package ch.so.agi.cloudformats;
+
+public final class HilbertCurve {
+    public static final int MAX = (1 << 16) - 1;
+
+    private final double minX;
+    private final double minY;
+    private final double width;
+    private final double height;
+
+    public HilbertCurve(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.width = maxX - minX;
+        this.height = maxY - minY;
+    }
+
+    public long index(double minX, double minY, double maxX, double maxY) {
+        long x = 0;
+        long y = 0;
+        if (width != 0.0) {
+            x = (long) Math.floor(MAX * ((minX + maxX) / 2 - this.minX) / width);
+        }
+        if (height != 0.0) {
+            y = (long) Math.floor(MAX * ((minY + maxY) / 2 - this.minY) / height);
+        }
+        return hilbert(x, y);
+    }
+
+    public static long hilbert(long x, long y) {
+        long a = x ^ y;
+        long b = 0xFFFF ^ a;
+        long c = 0xFFFF ^ (x | y);
+        long d = x & (y ^ 0xFFFF);
+
+        long aa = a | (b >> 1);
+        long bb = (a >> 1) ^ a;
+        long cc = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        long dd = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >> 2)) ^ (b & (b >> 2));
+        bb = (a & (b >> 2)) ^ (b & ((a ^ b) >> 2));
+        cc ^= (a & (c >> 2)) ^ (b & (d >> 2));
+        dd ^= (b & (c >> 2)) ^ ((a ^ b) & (d >> 2));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        aa = (a & (a >> 4)) ^ (b & (b >> 4));
+        bb = (a & (b >> 4)) ^ (b & ((a ^ b) >> 4));
+        cc ^= (a & (c >> 4)) ^ (b & (d >> 4));
+        dd ^= (b & (c >> 4)) ^ ((a ^ b) & (d >> 4));
+
+        a = aa;
+        b = bb;
+        c = cc;
+        d = dd;
+        cc ^= (a & (c >> 8)) ^ (b & (d >> 8));
+        dd ^= (b & (c >> 8)) ^ ((a ^ b) & (d >> 8));
+
+        a = cc ^ (cc >> 1);
+        b = dd ^ (dd >> 1);
+
+        long i0 = x ^ y;
+        long i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
@@ -0,0 +1,37 @@
+package ch.so.agi.cloudformats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.TreeSet;
+
+public final class Ili2dbColumns {
+    private static final String ENUM_COLUMNS_QUERY = """
+            SELECT columnname
+              FROM T_ILI2DB_COLUMN_PROP
+             WHERE lower(tablename) = lower(?)
+               AND tag = 'ch.ehi.ili2db.typeKind'
+               AND setting = 'ENUM'
+            """;
+
+    private Ili2dbColumns() {
+    }
+
+    // Columns holding INTERLIS enumeration values; their few distinct values make them good dictionary candidates.
+    public static Set<String> enumColumns(Connection connection, String tableName) {
+        Set<String> columns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        try (PreparedStatement statement = connection.prepareStatement(ENUM_COLUMNS_QUERY)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    columns.add(resultSet.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            // Plain GeoPackages have no ili2db meta tables.
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,99 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+// Parquet and GeoArrow geometry columns hold ISO WKB in the dimension of the column: XYZ when gpkg_geometry_columns
+// allows z, XY otherwise. ISO WKB slices of the batch in that dimension are passed through without a copy; EWKB,
+// other dimensions and JTS geometries go through the JTS writer, whose EWKB z flags are rewritten to ISO type codes.
+public final class IsoWkb {
+    private static final int EWKB_FLAGS = 0xe0000000;
+    private static final int EWKB_Z = 0x80000000;
+
+    private final boolean z;
+    private final WKBReader wkbReader = new WKBReader();
+    private final WKBWriter wkbWriter;
+
+    public IsoWkb(boolean z) {
+        this.z = z;
+        this.wkbWriter = new WKBWriter(z ? 3 : 2);
+    }
+
+    public ByteBuffer read(RowBatch batch, int row) throws SQLException {
+        Geometry geometry = batch.geometry(row);
+        if (geometry == null) {
+            if (!batch.hasGeometry(row)) {
+                return null;
+            }
+            ByteBuffer wkb = ByteBuffer.wrap(batch.wkbArray(row), batch.wkbOffset(row), batch.wkbLength(row));
+            if (passesThrough(wkb)) {
+                return wkb;
+            }
+            try {
+                geometry = wkbReader.read(Arrays.copyOfRange(wkb.array(), wkb.position(), wkb.limit()));
+            } catch (ParseException e) {
+                throw new SQLException("Unable to parse WKB geometry.", e);
+            }
+        }
+        byte[] wkb = wkbWriter.write(geometry);
+        if (z) {
+            toIso(ByteBuffer.wrap(wkb), 0);
+        }
+        return ByteBuffer.wrap(wkb);
+    }
+
+    // JTS writes XY geometries with a NaN z to a z column, so XY slices are re-encoded there as well; M is dropped.
+    private boolean passesThrough(ByteBuffer wkb) {
+        int position = wkb.position();
+        if (wkb.remaining() < 1 + Integer.BYTES) {
+            return false;
+        }
+        byte byteOrder = wkb.get(position);
+        if (byteOrder != 0 && byteOrder != 1) {
+            return false;
+        }
+        int type = wkb.duplicate().order(byteOrder == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN)
+                .getInt(position + 1);
+        if ((type & EWKB_FLAGS) != 0) {
+            return false;
+        }
+        int dimension = (type & 0xffff) / 1000;
+        return dimension == (z ? 1 : 0);
+    }
+
+    // JTS writes no SRID and one byte order, so only the type codes change; returns the end of the geometry.
+    private static int toIso(ByteBuffer wkb, int position) {
+        wkb.order(wkb.get(position) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int typeInt = wkb.getInt(position + 1);
+        boolean hasZ = (typeInt & EWKB_Z) != 0;
+        int type = typeInt & 0xffff;
+        wkb.putInt(position + 1, hasZ ? type + 1000 : type);
+        int coordinateBytes = (hasZ ? 3 : 2) * Double.BYTES;
+        int offset = position + 1 + Integer.BYTES;
+        switch (type) {
+            case 1 -> offset += coordinateBytes;
+            case 2 -> offset += Integer.BYTES + wkb.getInt(offset) * coordinateBytes;
+            case 3 -> {
+                int rings = wkb.getInt(offset);
+                offset += Integer.BYTES;
+                for (int i = 0; i < rings; i++) {
+                    offset += Integer.BYTES + wkb.getInt(offset) * coordinateBytes;
+                }
+            }
+            default -> {
+                int parts = wkb.getInt(offset);
+                offset += Integer.BYTES;
+                for (int i = 0; i < parts; i++) {
+                    offset = toIso(wkb, offset);
+                }
+            }
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,163 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MultiFormatTableWriter implements TableWriter<List<MultiFormatTableWriter.Format<?>>> {
+    private final GeometryReader geometryReader;
+    private final List<Format<?>> formats;
+
+    public MultiFormatTableWriter(GeometryReader geometryReader, List<Format<?>> formats) {
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("At least one format is required.");
+        }
+        this.geometryReader = geometryReader;
+        this.formats = List.copyOf(formats);
+    }
+
+    @Override
+    public String fileExtension() {
+        return formats.get(0).writer().fileExtension();
+    }
+
+    @Override
+    public List<Format<?>> defaultOptions() {
+        return formats;
+    }
+
+    // The output file names the first format; the other formats are written next to it with their own extension.
+    @Override
+    public void writeTable(Connection connection, TableDescriptor table, Path outputFile, List<Format<?>> options)
+            throws SQLException, IOException {
+        String fileName = outputFile.getFileName().toString();
+        String suffix = "." + fileExtension();
+        String baseName = fileName.endsWith(suffix) ? fileName.substring(0, fileName.length() - suffix.length()) : fileName;
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
+             ResultSet resultSet = statement.executeQuery()) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            List<RowBatchSink> sinks = new ArrayList<>();
+            try {
+                for (Format<?> format : options) {
+                    Path target = outputFile.resolveSibling(baseName + "." + format.writer().fileExtension());
+                    sinks.add(format.openSink(connection, table, metaData, target));
+                }
+                List<RowBatch.Column> columns = sinks.get(0).columns();
+                for (RowBatchSink sink : sinks) {
+                    if (!sink.columns().equals(columns)) {
+                        throw new IllegalStateException("Formats disagree on the columns of " + table.tableName());
+                    }
+                }
+                RowBatchReader reader = new RowBatchReader(resultSet, columns,
+                        table.hasGeometry() ? table.geometryColumn() : null, geometryReader);
+                fanOut(reader, sinks);
+                for (RowBatchSink sink : sinks) {
+                    sink.finish();
+                }
+            } finally {
+                closeAll(sinks);
+            }
+        }
+    }
+
+    // While the sinks encode one batch the calling thread reads the next, so two batches alternate.
+    private static void fanOut(RowBatchReader reader, List<RowBatchSink> sinks) throws SQLException, IOException {
+        RowBatch current = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+        RowBatch next = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+        boolean hasRows = reader.read(current);
+        try (ExecutorService executor = Executors.newFixedThreadPool(sinks.size())) {
+            while (hasRows) {
+                RowBatch batch = current;
+                List<Future<Void>> futures = new ArrayList<>(sinks.size());
+                for (RowBatchSink sink : sinks) {
+                    futures.add(executor.submit(() -> {
+                        sink.write(batch);
+                        return null;
+                    }));
+                }
+                SQLException readFailure = null;
+                try {
+                    hasRows = reader.read(next);
+                } catch (SQLException e) {
+                    readFailure = e;
+                }
+                await(futures);
+                if (readFailure != null) {
+                    throw readFailure;
+                }
+                current = next;
+                next = batch;
+            }
+        }
+    }
+
+    private static void await(List<Future<Void>> futures) throws SQLException, IOException {
+        Exception failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception cause ? cause : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing formats.", e);
+            }
+        }
+        if (failure instanceof SQLException sqlException) {
+            throw sqlException;
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private static void closeAll(List<RowBatchSink> sinks) throws IOException {
+        IOException failure = null;
+        for (RowBatchSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public record Format<O>(BatchTableWriter<O> writer, O options) {
+        public static <O> Format<O> of(BatchTableWriter<O> writer) {
+            return new Format<>(writer, writer.defaultOptions());
+        }
+
+        RowBatchSink openSink(Connection connection, TableDescriptor table, ResultSetMetaData metaData, Path outputFile)
+                throws SQLException, IOException {
+            return writer.openSink(connection, table, metaData, outputFile, options);
+        }
+
+        Format<O> withMemoryBudget(long memoryBudget) {
+            return new Format<>(writer, writer.withMemoryBudget(options, memoryBudget));
+        }
+    }
+}
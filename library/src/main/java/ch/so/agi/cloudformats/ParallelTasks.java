@@ -0,0 +1,54 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class ParallelTasks {
+    private ParallelTasks() {
+    }
+
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int threads) throws SQLException, IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        Exception failure = null;
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())))) {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    results.add(null);
+                    if (failure == null) {
+                        failure = e.getCause() instanceof Exception cause ? cause : new IOException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                    throw new IOException("Interrupted while waiting for parallel tasks.", e);
+                }
+            }
+        }
+        if (failure instanceof SQLException sqlException) {
+            throw sqlException;
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        }
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return results;
+    }
+}
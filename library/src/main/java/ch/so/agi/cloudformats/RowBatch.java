@@ -0,0 +1,303 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.locationtech.jts.geom.Geometry;
+
+public final class RowBatch {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int INITIAL_BYTES_PER_VALUE = 16;
+
+    private final Column[] columns;
+    private final int capacity;
+    private final long[][] nulls;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final int[][] ends;
+    private final byte[][] bytes;
+    private final Object[][] objects;
+    private final boolean hasGeometry;
+    private final byte[][] wkbArrays;
+    private final int[] wkbOffsets;
+    private final int[] wkbLengths;
+    private final Geometry[] geometries;
+    private final double[] envelopes;
+    private int size;
+
+    public RowBatch(List<Column> columns, boolean hasGeometry, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.columns = columns.toArray(Column[]::new);
+        this.capacity = capacity;
+        this.nulls = new long[this.columns.length][];
+        this.longs = new long[this.columns.length][];
+        this.doubles = new double[this.columns.length][];
+        this.ends = new int[this.columns.length][];
+        this.bytes = new byte[this.columns.length][];
+        this.objects = new Object[this.columns.length][];
+        for (int column = 0; column < this.columns.length; column++) {
+            nulls[column] = new long[(capacity + 63) >>> 6];
+            switch (this.columns[column].kind()) {
+                case LONG -> longs[column] = new long[capacity];
+                case DOUBLE -> doubles[column] = new double[capacity];
+                case TEXT, BLOB -> {
+                    ends[column] = new int[capacity];
+                    bytes[column] = new byte[capacity * INITIAL_BYTES_PER_VALUE];
+                }
+                case OBJECT -> objects[column] = new Object[capacity];
+            }
+        }
+        this.hasGeometry = hasGeometry;
+        this.wkbArrays = hasGeometry ? new byte[capacity][] : null;
+        this.wkbOffsets = hasGeometry ? new int[capacity] : null;
+        this.wkbLengths = hasGeometry ? new int[capacity] : null;
+        this.geometries = hasGeometry ? new Geometry[capacity] : null;
+        this.envelopes = hasGeometry ? new double[capacity * 4] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public Column column(int column) {
+        return columns[column];
+    }
+
+    public boolean hasGeometryColumn() {
+        return hasGeometry;
+    }
+
+    public void clear() {
+        for (int column = 0; column < columns.length; column++) {
+            Arrays.fill(nulls[column], 0);
+            if (objects[column] != null) {
+                Arrays.fill(objects[column], 0, size, null);
+            }
+        }
+        if (hasGeometry) {
+            Arrays.fill(wkbArrays, 0, size, null);
+            Arrays.fill(geometries, 0, size, null);
+        }
+        size = 0;
+    }
+
+    public int addRow() {
+        if (size == capacity) {
+            throw new IllegalStateException("RowBatch is full");
+        }
+        return size++;
+    }
+
+    // Appends a row of a batch with the same columns; WKB slices and objects are shared, not copied.
+    public int copyRow(RowBatch source, int sourceRow) {
+        int row = addRow();
+        for (int column = 0; column < columns.length; column++) {
+            if (source.isNull(column, sourceRow)) {
+                setNull(column, row);
+                continue;
+            }
+            switch (columns[column].kind()) {
+                case LONG -> longs[column][row] = source.longs[column][sourceRow];
+                case DOUBLE -> doubles[column][row] = source.doubles[column][sourceRow];
+                case TEXT, BLOB -> setBytes(column, row, source.bytes[column], source.offset(column, sourceRow),
+                        source.length(column, sourceRow));
+                case OBJECT -> objects[column][row] = source.objects[column][sourceRow];
+            }
+        }
+        if (hasGeometry) {
+            wkbArrays[row] = source.wkbArrays[sourceRow];
+            wkbOffsets[row] = source.wkbOffsets[sourceRow];
+            wkbLengths[row] = source.wkbLengths[sourceRow];
+            geometries[row] = source.geometries[sourceRow];
+            System.arraycopy(source.envelopes, sourceRow * 4, envelopes, row * 4, 4);
+        }
+        return row;
+    }
+
+    public boolean isNull(int column, int row) {
+        return (nulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    public void setNull(int column, int row) {
+        nulls[column][row >>> 6] |= 1L << row;
+        if (ends[column] != null) {
+            ends[column][row] = start(column, row);
+        }
+    }
+
+    public long getLong(int column, int row) {
+        return longs[column][row];
+    }
+
+    public void setLong(int column, int row, long value) {
+        longs[column][row] = value;
+    }
+
+    public double getDouble(int column, int row) {
+        return doubles[column][row];
+    }
+
+    public void setDouble(int column, int row, double value) {
+        doubles[column][row] = value;
+    }
+
+    public Object getObject(int column, int row) {
+        return objects[column][row];
+    }
+
+    public void setObject(int column, int row, Object value) {
+        if (value == null) {
+            setNull(column, row);
+        } else {
+            objects[column][row] = value;
+        }
+    }
+
+    // Text and blob values of a column share one buffer; a value spans [offset(row), offset(row) + length(row)).
+    public byte[] bytes(int column) {
+        return bytes[column];
+    }
+
+    public int offset(int column, int row) {
+        return start(column, row);
+    }
+
+    public int length(int column, int row) {
+        return ends[column][row] - start(column, row);
+    }
+
+    public void setBytes(int column, int row, byte[] value, int offset, int length) {
+        int start = start(column, row);
+        ensureBytes(column, start, length);
+        System.arraycopy(value, offset, bytes[column], start, length);
+        ends[column][row] = start + length;
+    }
+
+    public void setText(int column, int row, String text) {
+        int length = text.length();
+        int start = start(column, row);
+        // UTF-8 needs at most three bytes per UTF-16 char; encoding in place avoids a byte[] per value.
+        ensureBytes(column, start, Math.multiplyExact(length, 3));
+        byte[] buffer = bytes[column];
+        int position = start;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    buffer[position++] = (byte) '?';
+                }
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ends[column][row] = position;
+    }
+
+    public boolean hasGeometry(int row) {
+        return wkbArrays[row] != null || geometries[row] != null;
+    }
+
+    // The WKB slice references the blob read from the driver, it is not copied into the batch.
+    public void setWkb(int row, WkbGeometry wkbGeometry) {
+        ByteBuffer wkb = wkbGeometry.wkb();
+        wkbArrays[row] = wkb.array();
+        wkbOffsets[row] = wkb.arrayOffset() + wkb.position();
+        wkbLengths[row] = wkb.remaining();
+        int base = row * 4;
+        envelopes[base] = wkbGeometry.minX();
+        envelopes[base + 1] = wkbGeometry.minY();
+        envelopes[base + 2] = wkbGeometry.maxX();
+        envelopes[base + 3] = wkbGeometry.maxY();
+    }
+
+    public void setGeometry(int row, Geometry geometry) {
+        geometries[row] = geometry;
+    }
+
+    public byte[] wkbArray(int row) {
+        return wkbArrays[row];
+    }
+
+    public int wkbOffset(int row) {
+        return wkbOffsets[row];
+    }
+
+    public int wkbLength(int row) {
+        return wkbLengths[row];
+    }
+
+    public Geometry geometry(int row) {
+        return geometries[row];
+    }
+
+    public boolean hasEnvelope(int row) {
+        int base = row * 4;
+        return wkbArrays[row] != null && envelopes[base] <= envelopes[base + 2] && envelopes[base + 1] <= envelopes[base + 3];
+    }
+
+    public double minX(int row) {
+        return envelopes[row * 4];
+    }
+
+    public double minY(int row) {
+        return envelopes[row * 4 + 1];
+    }
+
+    public double maxX(int row) {
+        return envelopes[row * 4 + 2];
+    }
+
+    public double maxY(int row) {
+        return envelopes[row * 4 + 3];
+    }
+
+    private int start(int column, int row) {
+        return row == 0 ? 0 : ends[column][row - 1];
+    }
+
+    private void ensureBytes(int column, int start, int length) {
+        int required = Math.addExact(start, length);
+        if (required > bytes[column].length) {
+            bytes[column] = Arrays.copyOf(bytes[column], Math.max(bytes[column].length * 2, required));
+        }
+    }
+
+    public enum ColumnKind {
+        LONG,
+        DOUBLE,
+        TEXT,
+        BLOB,
+        OBJECT
+    }
+
+    public record Column(String name, int index, ColumnKind kind) {
+    }
+}
@@ -0,0 +1,107 @@
+package ch.so.agi.cloudformats;
+
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+public final class RowBatchReader {
+    private final ResultSet resultSet;
+    private final RowBatch.Column[] columns;
+    private final String geometryColumn;
+    private final GeometryReader geometryReader;
+    private final WkbSource wkbSource;
+    private final WkbGeometry wkbGeometry = new WkbGeometry();
+
+    public RowBatchReader(ResultSet resultSet,
+                          List<RowBatch.Column> columns,
+                          String geometryColumn,
+                          GeometryReader geometryReader) {
+        this.resultSet = resultSet;
+        this.columns = columns.toArray(RowBatch.Column[]::new);
+        this.geometryColumn = geometryColumn;
+        this.geometryReader = geometryReader;
+        this.wkbSource = geometryReader instanceof WkbSource source ? source : null;
+    }
+
+    public RowBatch newBatch(int capacity) {
+        return new RowBatch(List.of(columns), geometryColumn != null, capacity);
+    }
+
+    public boolean read(RowBatch batch) throws SQLException {
+        batch.clear();
+        while (!batch.isFull() && resultSet.next()) {
+            int row = batch.addRow();
+            for (int column = 0; column < columns.length; column++) {
+                readValue(batch, column, row);
+            }
+            if (geometryColumn != null) {
+                readGeometry(batch, row);
+            }
+        }
+        return batch.size() > 0;
+    }
+
+    private void readValue(RowBatch batch, int column, int row) throws SQLException {
+        int index = columns[column].index();
+        switch (columns[column].kind()) {
+            case LONG -> {
+                long value = resultSet.getLong(index);
+                if (resultSet.wasNull()) {
+                    batch.setNull(column, row);
+                } else {
+                    batch.setLong(column, row, value);
+                }
+            }
+            case DOUBLE -> {
+                double value = resultSet.getDouble(index);
+                if (resultSet.wasNull()) {
+                    batch.setNull(column, row);
+                } else {
+                    batch.setDouble(column, row, value);
+                }
+            }
+            case TEXT -> {
+                String value = resultSet.getString(index);
+                if (value == null) {
+                    batch.setNull(column, row);
+                } else {
+                    batch.setText(column, row, value);
+                }
+            }
+            case BLOB -> {
+                byte[] value = readBinary(index);
+                if (value == null) {
+                    batch.setNull(column, row);
+                } else {
+                    batch.setBytes(column, row, value, 0, value.length);
+                }
+            }
+            case OBJECT -> batch.setObject(column, row, resultSet.getObject(index));
+        }
+    }
+
+    private void readGeometry(RowBatch batch, int row) throws SQLException {
+        if (wkbSource != null) {
+            if (wkbSource.readWkb(resultSet, geometryColumn, wkbGeometry)) {
+                batch.setWkb(row, wkbGeometry);
+            }
+        } else {
+            batch.setGeometry(row, geometryReader.readGeometry(resultSet, geometryColumn));
+        }
+    }
+
+    private byte[] readBinary(int index) throws SQLException {
+        Object value = resultSet.getObject(index);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes;
+        }
+        if (value instanceof Blob blob) {
+            return blob.getBytes(1, (int) blob.length());
+        }
+        return resultSet.getBytes(index);
+    }
+}
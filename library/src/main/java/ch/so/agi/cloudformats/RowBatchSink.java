@@ -0,0 +1,14 @@
+package ch.so.agi.cloudformats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+public interface RowBatchSink extends Closeable {
+    List<RowBatch.Column> columns();
+
+    void write(RowBatch batch) throws SQLException, IOException;
+
+    void finish() throws SQLException, IOException;
+}
@@ -0,0 +1,47 @@
+package ch.so.agi.cloudformats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public record RowidRange(long first, long last) {
+    public String selectAll(String tableName) {
+        return "SELECT * FROM " + tableName + " WHERE rowid BETWEEN " + first + " AND " + last;
+    }
+
+    public static List<RowidRange> split(Connection connection, String tableName, int count) {
+        long min;
+        long max;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT MIN(rowid), MAX(rowid) FROM " + tableName);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return List.of();
+            }
+            min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return List.of();
+            }
+            max = resultSet.getLong(2);
+        } catch (SQLException e) {
+            // WITHOUT ROWID tables and views cannot be split by rowid.
+            return List.of();
+        }
+
+        long span = max - min + 1;
+        int parts = (int) Math.max(1, Math.min(count, span));
+        long step = span / parts;
+        long remainder = span % parts;
+        List<RowidRange> ranges = new ArrayList<>(parts);
+        long first = min;
+        for (int i = 0; i < parts; i++) {
+            long last = first + step - 1 + (i < remainder ? 1 : 0);
+            ranges.add(new RowidRange(first, last));
+            first = last + 1;
+        }
+        return ranges;
+    }
+}
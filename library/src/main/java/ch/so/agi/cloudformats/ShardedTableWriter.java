@@ -0,0 +1,479 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+// Splits a table into spatial shards, <table>.<shard>.<extension> per format, and lists them in <table>.shards.json.
+// A first pass over the geometry column finds the occupied grid cells, or the Hilbert ranges that stay within the
+// feature and byte limits. The rows are then read once more and copied into per-shard batches for the shard's sinks;
+// with more shards than maxOpenShards this pass runs once per group of shards.
+final class ShardedTableWriter {
+    private static final int HISTOGRAM_BITS = 20;
+    private static final int HILBERT_BITS = 32;
+    private static final String NO_GEOMETRY = "none";
+
+    private final GeometryReader geometryReader;
+    private final ShardingOptions sharding;
+
+    ShardedTableWriter(GeometryReader geometryReader, ShardingOptions sharding) {
+        this.geometryReader = geometryReader;
+        this.sharding = sharding;
+    }
+
+    void writeTable(Connection connection,
+                    TableDescriptor table,
+                    Path outputFile,
+                    List<MultiFormatTableWriter.Format<?>> formats) throws SQLException, IOException {
+        String fileName = outputFile.getFileName().toString();
+        String suffix = "." + formats.get(0).writer().fileExtension();
+        String baseName = fileName.endsWith(suffix) ? fileName.substring(0, fileName.length() - suffix.length()) : fileName;
+
+        Assignment assignment = sharding.mode() == ShardingOptions.Mode.GRID
+                ? gridAssignment(connection, table)
+                : hilbertAssignment(connection, table);
+        List<String> ids = assignment.ids();
+        long[] counts = new long[ids.size()];
+        double[] bounds = new double[ids.size() * 4];
+        Arrays.fill(bounds, Double.NaN);
+        for (int from = 0; from < ids.size(); from += sharding.maxOpenShards()) {
+            int to = Math.min(ids.size(), from + sharding.maxOpenShards());
+            writeShards(connection, table, outputFile, baseName, formats, assignment, from, to, counts, bounds);
+        }
+        Files.writeString(outputFile.resolveSibling(baseName + ".shards.json"),
+                manifest(table, baseName, formats, assignment, counts, bounds), StandardCharsets.UTF_8);
+    }
+
+    private void writeShards(Connection connection,
+                             TableDescriptor table,
+                             Path outputFile,
+                             String baseName,
+                             List<MultiFormatTableWriter.Format<?>> formats,
+                             Assignment assignment,
+                             int from,
+                             int to,
+                             long[] counts,
+                             double[] bounds) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
+             ResultSet resultSet = statement.executeQuery()) {
+            long pendingBudget = sharding.memoryBudget() / 2;
+            long sinkBudget = Math.max(1, (sharding.memoryBudget() - pendingBudget) / ((long) (to - from) * formats.size()));
+            List<MultiFormatTableWriter.Format<?>> shardFormats = new ArrayList<>();
+            for (MultiFormatTableWriter.Format<?> format : formats) {
+                shardFormats.add(format.withMemoryBudget(sinkBudget));
+            }
+            List<List<RowBatchSink>> sinks = new ArrayList<>();
+            try {
+                for (int shard = from; shard < to; shard++) {
+                    List<RowBatchSink> shardSinks = new ArrayList<>();
+                    sinks.add(shardSinks);
+                    for (MultiFormatTableWriter.Format<?> format : shardFormats) {
+                        Path target = outputFile.resolveSibling(baseName + "." + assignment.ids().get(shard) + "."
+                                + format.writer().fileExtension());
+                        shardSinks.add(format.openSink(connection, table, resultSet.getMetaData(), target));
+                    }
+                }
+                List<RowBatch.Column> columns = sinks.get(0).get(0).columns();
+                for (List<RowBatchSink> shardSinks : sinks) {
+                    for (RowBatchSink sink : shardSinks) {
+                        if (!sink.columns().equals(columns)) {
+                            throw new IllegalStateException("Formats disagree on the columns of " + table.tableName());
+                        }
+                    }
+                }
+                RowBatchReader reader = new RowBatchReader(resultSet, columns, table.geometryColumn(), geometryReader);
+                RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+                RowBatch[] pending = new RowBatch[to - from];
+                double[] envelope = new double[4];
+                long pendingBytes = 0;
+                while (reader.read(batch)) {
+                    for (int row = 0; row < batch.size(); row++) {
+                        boolean hasEnvelope = envelope(batch, row, envelope);
+                        int shard = assignment.shard(hasEnvelope ? envelope : null);
+                        if (shard < from || shard >= to) {
+                            continue;
+                        }
+                        RowBatch shardBatch = pending[shard - from];
+                        if (shardBatch == null) {
+                            shardBatch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+                            pending[shard - from] = shardBatch;
+                        }
+                        int shardRow = shardBatch.copyRow(batch, row);
+                        pendingBytes += rowBytes(shardBatch, shardRow);
+                        counts[shard]++;
+                        if (hasEnvelope) {
+                            expand(bounds, shard, envelope);
+                        }
+                        if (shardBatch.isFull()) {
+                            pendingBytes -= batchBytes(shardBatch);
+                            write(sinks.get(shard - from), shardBatch);
+                        }
+                    }
+                    // Many shards with a few rows each would otherwise hold up to a full batch per shard.
+                    if (pendingBytes > pendingBudget) {
+                        for (int shard = from; shard < to; shard++) {
+                            if (pending[shard - from] != null && pending[shard - from].size() > 0) {
+                                write(sinks.get(shard - from), pending[shard - from]);
+                            }
+                        }
+                        pendingBytes = 0;
+                    }
+                }
+                for (int shard = from; shard < to; shard++) {
+                    if (pending[shard - from] != null && pending[shard - from].size() > 0) {
+                        write(sinks.get(shard - from), pending[shard - from]);
+                    }
+                    for (RowBatchSink sink : sinks.get(shard - from)) {
+                        sink.finish();
+                    }
+                }
+            } finally {
+                closeAll(sinks);
+            }
+        }
+    }
+
+    private static void write(List<RowBatchSink> sinks, RowBatch batch) throws SQLException, IOException {
+        for (RowBatchSink sink : sinks) {
+            sink.write(batch);
+        }
+        batch.clear();
+    }
+
+    private Assignment gridAssignment(Connection connection, TableDescriptor table) throws SQLException {
+        Map<Long, int[]> cells = new HashMap<>();
+        boolean[] withoutGeometry = new boolean[1];
+        scanGeometries(connection, table, (envelope, bytes) -> {
+            if (envelope == null) {
+                withoutGeometry[0] = true;
+            } else {
+                long key = cellKey(envelope);
+                cells.computeIfAbsent(key, ignored -> new int[]{(int) (key >> 32), (int) key});
+            }
+        });
+        List<int[]> sorted = cells.values().stream()
+                .sorted(Comparator.<int[]>comparingInt(cell -> cell[1]).thenComparingInt(cell -> cell[0]))
+                .toList();
+        Map<Long, Integer> shards = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        for (int[] cell : sorted) {
+            shards.put((long) cell[0] << 32 | (cell[1] & 0xFFFFFFFFL), ids.size());
+            ids.add("x" + cell[0] + "_y" + cell[1]);
+        }
+        if (withoutGeometry[0]) {
+            ids.add(NO_GEOMETRY);
+        }
+        int noGeometry = withoutGeometry[0] ? ids.size() - 1 : -1;
+        return new Assignment() {
+            @Override
+            public List<String> ids() {
+                return ids;
+            }
+
+            @Override
+            public int shard(double[] envelope) {
+                return envelope == null ? noGeometry : shards.get(cellKey(envelope));
+            }
+
+            @Override
+            public void describe(int shard, StringBuilder json) {
+                if (shard != noGeometry) {
+                    int[] cell = sorted.get(shard);
+                    double cellSize = sharding.cellSize();
+                    json.append(",\"cell\":");
+                    bbox(json, cell[0] * cellSize, cell[1] * cellSize, (cell[0] + 1) * cellSize,
+                            (cell[1] + 1) * cellSize);
+                }
+            }
+        };
+    }
+
+    // The cell of the envelope centre; column in the upper, row in the lower half of the key.
+    private long cellKey(double[] envelope) {
+        int column = (int) Math.floor((envelope[0] + envelope[2]) / 2 / sharding.cellSize());
+        int row = (int) Math.floor((envelope[1] + envelope[3]) / 2 / sharding.cellSize());
+        return (long) column << 32 | (row & 0xFFFFFFFFL);
+    }
+
+    private Assignment hilbertAssignment(Connection connection, TableDescriptor table) throws SQLException {
+        Envelope extent = new Envelope();
+        boolean[] withoutGeometry = new boolean[1];
+        scanGeometries(connection, table, (envelope, bytes) -> {
+            if (envelope == null) {
+                withoutGeometry[0] = true;
+            } else {
+                extent.expandToInclude(envelope[0], envelope[1]);
+                extent.expandToInclude(envelope[2], envelope[3]);
+            }
+        });
+        HilbertCurve curve = new HilbertCurve(extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY());
+        int shift = HILBERT_BITS - HISTOGRAM_BITS;
+        long[] featureHistogram = new long[1 << HISTOGRAM_BITS];
+        long[] byteHistogram = new long[1 << HISTOGRAM_BITS];
+        if (!extent.isNull()) {
+            scanGeometries(connection, table, (envelope, bytes) -> {
+                if (envelope != null) {
+                    int bucket = (int) (curve.index(envelope[0], envelope[1], envelope[2], envelope[3]) >>> shift);
+                    featureHistogram[bucket]++;
+                    byteHistogram[bucket] += bytes;
+                }
+            });
+        }
+        // Shards are runs of histogram buckets that together cover the whole curve; a shard only exceeds the limits
+        // when a single bucket does.
+        List<Integer> starts = new ArrayList<>();
+        long features = 0;
+        long bytes = 0;
+        for (int bucket = 0; bucket < featureHistogram.length; bucket++) {
+            if (featureHistogram[bucket] == 0) {
+                continue;
+            }
+            if (starts.isEmpty() || features + featureHistogram[bucket] > sharding.maxFeatures()
+                    || bytes + byteHistogram[bucket] > sharding.maxBytes()) {
+                starts.add(starts.isEmpty() ? 0 : bucket);
+                features = 0;
+                bytes = 0;
+            }
+            features += featureHistogram[bucket];
+            bytes += byteHistogram[bucket];
+        }
+        int[] firstBuckets = starts.stream().mapToInt(Integer::intValue).toArray();
+        List<String> ids = new ArrayList<>();
+        int digits = Math.max(4, String.valueOf(firstBuckets.length).length());
+        for (int shard = 0; shard < firstBuckets.length; shard++) {
+            ids.add(String.format(Locale.ROOT, "h%0" + digits + "d", shard));
+        }
+        if (withoutGeometry[0]) {
+            ids.add(NO_GEOMETRY);
+        }
+        int noGeometry = withoutGeometry[0] ? ids.size() - 1 : -1;
+        return new Assignment() {
+            @Override
+            public List<String> ids() {
+                return ids;
+            }
+
+            @Override
+            public int shard(double[] envelope) {
+                if (envelope == null) {
+                    return noGeometry;
+                }
+                int bucket = (int) (curve.index(envelope[0], envelope[1], envelope[2], envelope[3]) >>> shift);
+                int position = Arrays.binarySearch(firstBuckets, bucket);
+                return position >= 0 ? position : -position - 2;
+            }
+
+            @Override
+            public void describe(int shard, StringBuilder json) {
+                if (shard != noGeometry) {
+                    long first = (long) firstBuckets[shard] << shift;
+                    long end = shard + 1 < firstBuckets.length ? (long) firstBuckets[shard + 1] << shift : 1L << HILBERT_BITS;
+                    json.append(",\"hilbert\":[").append(first).append(',').append(end).append(']');
+                }
+            }
+        };
+    }
+
+    private void scanGeometries(Connection connection, TableDescriptor table, GeometryConsumer consumer)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT " + table.geometryColumn() + " FROM " + table.tableName());
+             ResultSet resultSet = statement.executeQuery()) {
+            RowBatchReader reader = new RowBatchReader(resultSet, List.of(), table.geometryColumn(), geometryReader);
+            RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+            double[] envelope = new double[4];
+            while (reader.read(batch)) {
+                for (int row = 0; row < batch.size(); row++) {
+                    boolean hasEnvelope = envelope(batch, row, envelope);
+                    consumer.accept(hasEnvelope ? envelope : null, hasEnvelope ? geometryBytes(batch, row) : 0);
+                }
+            }
+        }
+    }
+
+    // Rows without a geometry, or with an empty one, have no envelope and go to the "none" shard.
+    private static boolean envelope(RowBatch batch, int row, double[] envelope) {
+        if (!batch.hasGeometry(row)) {
+            return false;
+        }
+        if (batch.hasEnvelope(row)) {
+            envelope[0] = batch.minX(row);
+            envelope[1] = batch.minY(row);
+            envelope[2] = batch.maxX(row);
+            envelope[3] = batch.maxY(row);
+            return true;
+        }
+        Geometry geometry = batch.geometry(row);
+        if (geometry == null || geometry.isEmpty()) {
+            return false;
+        }
+        Envelope internal = geometry.getEnvelopeInternal();
+        envelope[0] = internal.getMinX();
+        envelope[1] = internal.getMinY();
+        envelope[2] = internal.getMaxX();
+        envelope[3] = internal.getMaxY();
+        return true;
+    }
+
+    // Estimated heap size of a row: a slot per column, the text and blob bytes and the geometry.
+    private static long rowBytes(RowBatch batch, int row) {
+        long size = (long) Long.BYTES * batch.columnCount();
+        for (int column = 0; column < batch.columnCount(); column++) {
+            RowBatch.ColumnKind kind = batch.column(column).kind();
+            if ((kind == RowBatch.ColumnKind.TEXT || kind == RowBatch.ColumnKind.BLOB) && !batch.isNull(column, row)) {
+                size += batch.length(column, row);
+            }
+        }
+        return batch.hasGeometry(row) ? size + geometryBytes(batch, row) : size;
+    }
+
+    private static long batchBytes(RowBatch batch) {
+        long size = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            size += rowBytes(batch, row);
+        }
+        return size;
+    }
+
+    // JTS-only readers have no WKB at hand; their size is estimated from the XY coordinates.
+    private static long geometryBytes(RowBatch batch, int row) {
+        if (batch.wkbArray(row) != null) {
+            return batch.wkbLength(row);
+        }
+        return 9L + 2L * Double.BYTES * batch.geometry(row).getNumPoints();
+    }
+
+    private static void expand(double[] bounds, int shard, double[] envelope) {
+        int base = shard * 4;
+        if (Double.isNaN(bounds[base])) {
+            System.arraycopy(envelope, 0, bounds, base, 4);
+            return;
+        }
+        bounds[base] = Math.min(bounds[base], envelope[0]);
+        bounds[base + 1] = Math.min(bounds[base + 1], envelope[1]);
+        bounds[base + 2] = Math.max(bounds[base + 2], envelope[2]);
+        bounds[base + 3] = Math.max(bounds[base + 3], envelope[3]);
+    }
+
+    private String manifest(TableDescriptor table,
+                            String baseName,
+                            List<MultiFormatTableWriter.Format<?>> formats,
+                            Assignment assignment,
+                            long[] counts,
+                            double[] bounds) {
+        StringBuilder json = new StringBuilder("{\"table\":");
+        quote(json, table.tableName());
+        json.append(",\"srid\":").append(table.srid()).append(",\"sharding\":");
+        if (sharding.mode() == ShardingOptions.Mode.GRID) {
+            json.append("\"grid\",\"cellSize\":").append(sharding.cellSize());
+        } else {
+            json.append("\"hilbert\"");
+            if (sharding.maxFeatures() != Long.MAX_VALUE) {
+                json.append(",\"maxFeatures\":").append(sharding.maxFeatures());
+            }
+            if (sharding.maxBytes() != Long.MAX_VALUE) {
+                json.append(",\"maxBytes\":").append(sharding.maxBytes());
+            }
+        }
+        long total = Arrays.stream(counts).sum();
+        json.append(",\"featuresCount\":").append(total).append(",\"bbox\":");
+        Envelope extent = new Envelope();
+        for (int shard = 0; shard < counts.length; shard++) {
+            if (!Double.isNaN(bounds[shard * 4])) {
+                extent.expandToInclude(bounds[shard * 4], bounds[shard * 4 + 1]);
+                extent.expandToInclude(bounds[shard * 4 + 2], bounds[shard * 4 + 3]);
+            }
+        }
+        if (extent.isNull()) {
+            json.append("null");
+        } else {
+            bbox(json, extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY());
+        }
+        json.append(",\"shards\":[");
+        for (int shard = 0; shard < counts.length; shard++) {
+            json.append(shard == 0 ? "{\"id\":" : ",{\"id\":");
+            quote(json, assignment.ids().get(shard));
+            json.append(",\"files\":[");
+            for (int format = 0; format < formats.size(); format++) {
+                json.append(format == 0 ? "" : ",");
+                quote(json, baseName + "." + assignment.ids().get(shard) + "." + formats.get(format).writer().fileExtension());
+            }
+            json.append("],\"featuresCount\":").append(counts[shard]).append(",\"bbox\":");
+            int base = shard * 4;
+            if (Double.isNaN(bounds[base])) {
+                json.append("null");
+            } else {
+                bbox(json, bounds[base], bounds[base + 1], bounds[base + 2], bounds[base + 3]);
+            }
+            assignment.describe(shard, json);
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void bbox(StringBuilder json, double minX, double minY, double maxX, double maxY) {
+        json.append('[').append(minX).append(',').append(minY).append(',').append(maxX).append(',').append(maxY)
+                .append(']');
+    }
+
+    private static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void closeAll(List<List<RowBatchSink>> sinks) throws IOException {
+        IOException failure = null;
+        for (List<RowBatchSink> shardSinks : sinks) {
+            for (RowBatchSink sink : shardSinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private interface Assignment {
+        List<String> ids();
+
+        // The shard of a row, given its envelope or null without geometry.
+        int shard(double[] envelope);
+
+        // Adds the shard's cell or Hilbert range to its manifest entry.
+        void describe(int shard, StringBuilder json);
+    }
+
+    private interface GeometryConsumer {
+        void accept(double[] envelope, long bytes);
+    }
+}
@@ -0,0 +1,79 @@
+package ch.so.agi.cloudformats;
+
+public record ShardingOptions(Mode mode, double cellSize, long maxFeatures, long maxBytes, int maxOpenShards,
+                              long memoryBudget) {
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public enum Mode {
+        GRID,
+        HILBERT
+    }
+
+    public static final class Builder {
+        private double cellSize;
+        private long maxFeatures;
+        private long maxBytes;
+        private int maxOpenShards = 256;
+        private long memoryBudget = 512L << 20;
+
+        // Square cells of this size in units of the table SRID, anchored at the origin.
+        public Builder cellSize(double cellSize) {
+            if (!(cellSize > 0) || Double.isInfinite(cellSize)) {
+                throw new IllegalArgumentException("cellSize must be > 0");
+            }
+            this.cellSize = cellSize;
+            return this;
+        }
+
+        public Builder maxFeatures(long maxFeatures) {
+            if (maxFeatures < 1) {
+                throw new IllegalArgumentException("maxFeatures must be >= 1");
+            }
+            this.maxFeatures = maxFeatures;
+            return this;
+        }
+
+        // Measured as the WKB size of the geometries, attributes are not counted.
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("maxBytes must be >= 1");
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        // More shards than this are written in several passes over the table.
+        public Builder maxOpenShards(int maxOpenShards) {
+            if (maxOpenShards < 1) {
+                throw new IllegalArgumentException("maxOpenShards must be >= 1");
+            }
+            this.maxOpenShards = maxOpenShards;
+            return this;
+        }
+
+        // Heap for the open shards of a pass: half of it for rows waiting to be handed to a shard, the other half split
+        // across the sinks of the open shards, which cap their row groups and record batches accordingly.
+        public Builder memoryBudget(long memoryBudget) {
+            if (memoryBudget < 1) {
+                throw new IllegalArgumentException("memoryBudget must be >= 1");
+            }
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        public ShardingOptions build() {
+            boolean hilbert = maxFeatures > 0 || maxBytes > 0;
+            if (cellSize > 0 && hilbert) {
+                throw new IllegalArgumentException("Either cellSize or maxFeatures/maxBytes, not both");
+            }
+            if (cellSize == 0 && !hilbert) {
+                throw new IllegalArgumentException("cellSize or maxFeatures/maxBytes is required");
+            }
+            return new ShardingOptions(hilbert ? Mode.HILBERT : Mode.GRID, cellSize,
+                    maxFeatures > 0 ? maxFeatures : Long.MAX_VALUE, maxBytes > 0 ? maxBytes : Long.MAX_VALUE,
+                    maxOpenShards, memoryBudget);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ch.so.agi.cloudformats;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// JDBC drivers return booleans and temporal values as driver objects, numbers or text; SQLite mostly as text.
+// The to* methods return null when a value cannot be interpreted.
+public final class SqlValues {
+    private SqlValues() {
+    }
+
+    public static boolean toBoolean(Object raw) {
+        if (raw instanceof Boolean bool) {
+            return bool;
+        }
+        if (raw instanceof Number number) {
+            return number.intValue() != 0;
+        }
+        return Boolean.parseBoolean(raw.toString());
+    }
+
+    public static LocalDate toLocalDate(Object raw) {
+        if (raw instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (raw instanceof java.util.Date date) {
+            return Instant.ofEpochMilli(date.getTime()).atZone(ZoneOffset.UTC).toLocalDate();
+        }
+        if (raw instanceof Number number) {
+            return LocalDate.ofEpochDay(number.longValue());
+        }
+        String text = raw.toString();
+        try {
+            return LocalDate.parse(text, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static LocalTime toLocalTime(Object raw) {
+        if (raw instanceof java.sql.Time time) {
+            return time.toLocalTime();
+        }
+        if (raw instanceof Number number) {
+            return LocalTime.ofSecondOfDay(number.longValue());
+        }
+        String text = raw.toString();
+        try {
+            return LocalTime.parse(text, DateTimeFormatter.ISO_LOCAL_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static Instant toInstant(Object raw) {
+        if (raw instanceof java.sql.Timestamp ts) {
+            return ts.toInstant();
+        }
+        if (raw instanceof java.util.Date date) {
+            return Instant.ofEpochMilli(date.getTime());
+        }
+        if (raw instanceof Number number) {
+            return Instant.ofEpochMilli(number.longValue());
+        }
+        String text = raw.toString();
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException ignored) {
+            try {
+                return OffsetDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+            } catch (DateTimeParseException ignoredAgain) {
+                try {
+                    return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC);
+                } catch (DateTimeParseException ignoredThird) {
+                    return null;
+                }
+            }
+        }
+    }
+}
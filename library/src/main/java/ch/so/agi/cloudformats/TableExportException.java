@@ -0,0 +1,34 @@
+package ch.so.agi.cloudformats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class TableExportException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final LinkedHashMap<String, Exception> failures;
+
+    public TableExportException(Map<String, Exception> failures) {
+        super(buildMessage(failures));
+        this.failures = new LinkedHashMap<>(failures);
+        failures.values().forEach(this::addSuppressed);
+    }
+
+    public Map<String, Exception> failures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    private static String buildMessage(Map<String, Exception> failures) {
+        StringBuilder message = new StringBuilder("Export failed for ")
+                .append(failures.size())
+                .append(" table(s):");
+        failures.forEach((table, failure) -> message.append(System.lineSeparator())
+                .append("  ")
+                .append(table)
+                .append(": ")
+                .append(failure.getMessage()));
+        return message.toString();
+    }
+}
@@ -4,9 +4,28 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class TableExporter {
+    private final ShardedTableWriter shardedWriter;
+
+    public TableExporter() {
+        this.shardedWriter = null;
+    }
+
+    // Tables with a geometry are split into spatial shards with a manifest; the writer has to be a BatchTableWriter
+    // or a MultiFormatTableWriter.
+    public TableExporter(GeometryReader geometryReader, ShardingOptions sharding) {
+        this.shardedWriter = new ShardedTableWriter(geometryReader, sharding);
+    }
+
     public <O> void exportTables(Connection connection,
                                  TableDescriptorProvider tableDescriptorProvider,
                                  Path outputDirectory,
@@ -22,7 +41,74 @@ public class TableExporter {
         List<TableDescriptor> tables = tableDescriptorProvider.listTables(connection);
         for (TableDescriptor table : tables) {
             Path target = outputDirectory.resolve(table.tableName() + "." + tableWriter.fileExtension());
+            writeTable(connection, table, target, tableWriter, options);
+        }
+    }
+
+    public <O> void exportTables(ConnectionFactory connectionFactory,
+                                 TableDescriptorProvider tableDescriptorProvider,
+                                 Path outputDirectory,
+                                 TableWriter<O> tableWriter,
+                                 O options,
+                                 int threads) throws SQLException, IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1");
+        }
+        List<TableDescriptor> tables;
+        try (Connection connection = connectionFactory.open()) {
+            tables = tableDescriptorProvider.listTables(connection);
+        }
+
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(tables.size(), 1)))) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TableDescriptor table : tables) {
+                Path target = outputDirectory.resolve(table.tableName() + "." + tableWriter.fileExtension());
+                futures.add(executor.submit(() -> {
+                    if (shardedWriter != null && table.hasGeometry()) {
+                        try (Connection connection = connectionFactory.open()) {
+                            writeTable(connection, table, target, tableWriter, options);
+                        }
+                    } else {
+                        tableWriter.writeTable(connectionFactory, table, target, options);
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < tables.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    failures.put(tables.get(i).tableName(),
+                            cause instanceof Exception exception ? exception : new IOException(cause));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                    throw new IOException("Export interrupted.", e);
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new TableExportException(failures);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <O> void writeTable(Connection connection,
+                                TableDescriptor table,
+                                Path target,
+                                TableWriter<O> tableWriter,
+                                O options) throws SQLException, IOException {
+        if (shardedWriter == null || !table.hasGeometry()) {
             tableWriter.writeTable(connection, table, target, options);
+        } else if (tableWriter instanceof MultiFormatTableWriter) {
+            shardedWriter.writeTable(connection, table, target, (List<MultiFormatTableWriter.Format<?>>) options);
+        } else if (tableWriter instanceof BatchTableWriter<O> batchTableWriter) {
+            shardedWriter.writeTable(connection, table, target,
+                    List.of(new MultiFormatTableWriter.Format<>(batchTableWriter, options)));
+        } else {
+            throw new IllegalArgumentException("Sharding needs a BatchTableWriter or MultiFormatTableWriter.");
         }
     }
 }
@@ -0,0 +1,32 @@
+package ch.so.agi.cloudformats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public final class TableStatistics {
+    private static final String OGR_CONTENTS_QUERY = """
+            SELECT feature_count
+              FROM gpkg_ogr_contents
+             WHERE lower(table_name) = lower(?)
+            """;
+
+    private TableStatistics() {
+    }
+
+    public static long estimatedRowCount(Connection connection, String tableName) {
+        try (PreparedStatement statement = connection.prepareStatement(OGR_CONTENTS_QUERY)) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    long count = resultSet.getLong(1);
+                    return resultSet.wasNull() ? -1 : count;
+                }
+            }
+        } catch (SQLException e) {
+            // gpkg_ogr_contents is an optional GDAL extension.
+        }
+        return -1;
+    }
+}
@@ -12,4 +12,11 @@ public interface TableWriter<O> {
 
     void writeTable(Connection connection, TableDescriptor table, Path outputFile, O options)
             throws SQLException, IOException;
+
+    default void writeTable(ConnectionFactory connectionFactory, TableDescriptor table, Path outputFile, O options)
+            throws SQLException, IOException {
+        try (Connection connection = connectionFactory.open()) {
+            writeTable(connection, table, outputFile, options);
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+final class WkbEnvelopeScanner {
+    private static final int WKB_POINT = 1;
+    private static final int WKB_LINESTRING = 2;
+    private static final int WKB_POLYGON = 3;
+    private static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    private final ByteBuffer wkb;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    private WkbEnvelopeScanner(ByteBuffer wkb) {
+        this.wkb = wkb;
+    }
+
+    static void scan(ByteBuffer wkb, WkbGeometry target) {
+        WkbEnvelopeScanner scanner = new WkbEnvelopeScanner(wkb.duplicate());
+        try {
+            scanner.geometry(wkb.position());
+        } catch (IndexOutOfBoundsException e) {
+            // Malformed WKB is reported by the geometry reader; it just has no envelope here.
+            target.envelope(Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            return;
+        }
+        target.envelope(scanner.minX, scanner.minY, scanner.maxX, scanner.maxY);
+    }
+
+    private int geometry(int position) {
+        wkb.order(wkb.get(position) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int typeInt = wkb.getInt(position + 1);
+        int type = (typeInt & 0xffff) % 1000;
+        int isoDimension = (typeInt & 0xffff) / 1000;
+        boolean z = (typeInt & 0x80000000) != 0 || isoDimension == 1 || isoDimension == 3;
+        boolean m = (typeInt & 0x40000000) != 0 || isoDimension == 2 || isoDimension == 3;
+        int stride = (2 + (z ? 1 : 0) + (m ? 1 : 0)) * Double.BYTES;
+        position += 1 + Integer.BYTES + ((typeInt & 0x20000000) != 0 ? Integer.BYTES : 0);
+        switch (type) {
+            case WKB_POINT -> {
+                return coordinates(position, 1, stride);
+            }
+            case WKB_LINESTRING -> {
+                return coordinates(position + Integer.BYTES, wkb.getInt(position), stride);
+            }
+            case WKB_POLYGON -> {
+                int rings = wkb.getInt(position);
+                position += Integer.BYTES;
+                for (int ring = 0; ring < rings; ring++) {
+                    position = coordinates(position + Integer.BYTES, wkb.getInt(position), stride);
+                }
+                return position;
+            }
+            default -> {
+                if (type < WKB_POINT || type > WKB_GEOMETRYCOLLECTION) {
+                    throw new IndexOutOfBoundsException("Unknown WKB geometry type: " + type);
+                }
+                int parts = wkb.getInt(position);
+                position += Integer.BYTES;
+                for (int part = 0; part < parts; part++) {
+                    position = geometry(position);
+                }
+                return position;
+            }
+        }
+    }
+
+    private int coordinates(int position, int count, int stride) {
+        for (int i = 0; i < count; i++) {
+            double x = wkb.getDouble(position);
+            double y = wkb.getDouble(position + Double.BYTES);
+            // NaN coordinates encode empty points.
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+            position += stride;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,55 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.ByteBuffer;
+
+public final class WkbGeometry {
+    private ByteBuffer wkb;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+
+    public void set(ByteBuffer wkb, double minX, double minY, double maxX, double maxY) {
+        this.wkb = wkb;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public void set(ByteBuffer wkb) {
+        this.wkb = wkb;
+        WkbEnvelopeScanner.scan(wkb, this);
+    }
+
+    public ByteBuffer wkb() {
+        return wkb;
+    }
+
+    public boolean hasEnvelope() {
+        return minX <= maxX && minY <= maxY;
+    }
+
+    public double minX() {
+        return minX;
+    }
+
+    public double minY() {
+        return minY;
+    }
+
+    public double maxX() {
+        return maxX;
+    }
+
+    public double maxY() {
+        return maxY;
+    }
+
+    void envelope(double minX, double minY, double maxX, double maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+}
@@ -1,13 +1,14 @@
 package ch.so.agi.cloudformats;
 
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKBReader;
 
-public class WkbGeometryReader implements GeometryReader {
-    private final WKBReader wkbReader = new WKBReader();
+public class WkbGeometryReader implements GeometryReader, WkbSource {
+    private final ThreadLocal<WKBReader> wkbReader = ThreadLocal.withInitial(WKBReader::new);
 
     @Override
     public Geometry readGeometry(ResultSet resultSet, String columnName) throws SQLException {
@@ -16,9 +17,15 @@ public class WkbGeometryReader implements GeometryReader {
             return null;
         }
         try {
-            return wkbReader.read(bytes);
+            return wkbReader.get().read(bytes);
         } catch (ParseException e) {
             throw new SQLException("Unable to parse WKB geometry.", e);
         }
     }
+
+    @Override
+    public ByteBuffer readWkb(ResultSet resultSet, String columnName) throws SQLException {
+        byte[] bytes = resultSet.getBytes(columnName);
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
 }
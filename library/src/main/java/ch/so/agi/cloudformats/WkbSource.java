@@ -0,0 +1,18 @@
+package ch.so.agi.cloudformats;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public interface WkbSource {
+    ByteBuffer readWkb(ResultSet resultSet, String columnName) throws SQLException;
+
+    default boolean readWkb(ResultSet resultSet, String columnName, WkbGeometry target) throws SQLException {
+        ByteBuffer wkb = readWkb(resultSet, columnName);
+        if (wkb == null) {
+            return false;
+        }
+        target.set(wkb);
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.locationtech.jts.geom.Envelope;
+
+final class EncodedFeatures {
+    private byte[] data = new byte[1 << 16];
+    private int length;
+    private int count;
+    private int[] sizes = new int[64];
+    private double[] bounds = new double[64 * 4];
+
+    void clear() {
+        length = 0;
+        count = 0;
+    }
+
+    void add(byte[] feature, int offset, int size, double minX, double minY, double maxX, double maxY) {
+        if (length + size > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, Math.addExact(length, size)));
+        }
+        if (count == sizes.length) {
+            sizes = Arrays.copyOf(sizes, count * 2);
+            bounds = Arrays.copyOf(bounds, count * 8);
+        }
+        System.arraycopy(feature, offset, data, length, size);
+        length += size;
+        sizes[count] = size;
+        int base = count * 4;
+        bounds[base] = minX;
+        bounds[base + 1] = minY;
+        bounds[base + 2] = maxX;
+        bounds[base + 3] = maxY;
+        count++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Bounds are only tracked for tables with geometry; pass a null envelope otherwise.
+    void writeTo(OutputStream out, FeatureIndex features, Envelope envelope) throws IOException {
+        out.write(data, 0, length);
+        for (int i = 0; i < count; i++) {
+            int base = i * 4;
+            // Empty geometries carry the null envelope of JTS (min > max) and leave the dataset envelope alone.
+            if (envelope != null && bounds[base] <= bounds[base + 2]) {
+                envelope.expandToInclude(bounds[base], bounds[base + 1]);
+                envelope.expandToInclude(bounds[base + 2], bounds[base + 3]);
+            }
+            if (features == null) {
+                continue;
+            }
+            if (envelope != null) {
+                features.add(sizes[i], bounds[base], bounds[base + 1], bounds[base + 2], bounds[base + 3]);
+            } else {
+                features.add(sizes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.HilbertCurve;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.locationtech.jts.geom.Envelope;
+
+final class ExternalHilbertSort implements Closeable {
+    static final int RUN_ENTRY_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + 4 * Double.BYTES;
+
+    private static final int MIN_RUN_ENTRIES = 64;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final List<FeatureIndex> parts;
+    private final int runCapacity;
+    private final List<Path> tempFiles = new ArrayList<>();
+    private Path orderFile;
+    private Path leavesFile;
+    private final List<Path> levelFiles = new ArrayList<>();
+
+    ExternalHilbertSort(List<FeatureIndex> parts, long memoryBudget) {
+        this.parts = parts;
+        this.runCapacity = (int) Math.max(MIN_RUN_ENTRIES, Math.min(Integer.MAX_VALUE / 4 - 8, memoryBudget / RUN_ENTRY_BYTES));
+    }
+
+    void sort(Envelope extent, int nodeSize) throws IOException {
+        long count = 0;
+        for (FeatureIndex part : parts) {
+            count += part.count();
+        }
+        List<Path> runs = writeRuns(new HilbertCurve(extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY()));
+        try {
+            merge(runs, count, nodeSize);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+                tempFiles.remove(run);
+            }
+        }
+    }
+
+    void writeIndex(OutputStream out) throws IOException {
+        for (int level = levelFiles.size() - 1; level >= 0; level--) {
+            Files.copy(levelFiles.get(level), out);
+        }
+        Files.copy(leavesFile, out);
+    }
+
+    void forEachFeature(FeatureRangeConsumer consumer) throws IOException {
+        try (DataInputStream in = openInput(orderFile)) {
+            while (true) {
+                int part;
+                try {
+                    part = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                consumer.accept(part, in.readLong(), in.readInt());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path tempFile : tempFiles) {
+            Files.deleteIfExists(tempFile);
+        }
+        tempFiles.clear();
+    }
+
+    private List<Path> writeRuns(HilbertCurve curve) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        long[] keys = new long[runCapacity];
+        int[] partIds = new int[runCapacity];
+        long[] offsets = new long[runCapacity];
+        int[] sizes = new int[runCapacity];
+        double[] bounds = new double[runCapacity * 4];
+        int filled = 0;
+        for (int part = 0; part < parts.size(); part++) {
+            try (FeatureIndex.Cursor cursor = parts.get(part).cursor()) {
+                while (cursor.next()) {
+                    int slot = filled++;
+                    long hilbert = curve.index(cursor.minX(), cursor.minY(), cursor.maxX(), cursor.maxY());
+                    // Ties keep the slot (input) order, just like the in-memory sort.
+                    keys[slot] = ((hilbert << 32) | slot) ^ Long.MIN_VALUE;
+                    partIds[slot] = part;
+                    offsets[slot] = cursor.offset();
+                    sizes[slot] = cursor.size();
+                    bounds[slot * 4] = cursor.minX();
+                    bounds[slot * 4 + 1] = cursor.minY();
+                    bounds[slot * 4 + 2] = cursor.maxX();
+                    bounds[slot * 4 + 3] = cursor.maxY();
+                    if (filled == runCapacity) {
+                        runs.add(writeRun(keys, partIds, offsets, sizes, bounds, filled));
+                        filled = 0;
+                    }
+                }
+            }
+        }
+        if (filled > 0) {
+            runs.add(writeRun(keys, partIds, offsets, sizes, bounds, filled));
+        }
+        return runs;
+    }
+
+    private Path writeRun(long[] keys, int[] partIds, long[] offsets, int[] sizes, double[] bounds, int filled)
+            throws IOException {
+        Arrays.parallelSort(keys, 0, filled);
+        Path run = createTempFile(".run");
+        try (DataOutputStream out = openOutput(run)) {
+            for (int i = 0; i < filled; i++) {
+                long key = keys[i] ^ Long.MIN_VALUE;
+                int slot = (int) key;
+                out.writeLong(key >>> 32);
+                out.writeInt(partIds[slot]);
+                out.writeLong(offsets[slot]);
+                out.writeInt(sizes[slot]);
+                out.writeDouble(bounds[slot * 4]);
+                out.writeDouble(bounds[slot * 4 + 1]);
+                out.writeDouble(bounds[slot * 4 + 2]);
+                out.writeDouble(bounds[slot * 4 + 3]);
+            }
+        }
+        return run;
+    }
+
+    private void merge(List<Path> runs, long count, int nodeSize) throws IOException {
+        long[] levelNumNodes = PackedRTreeWriter.levelNumNodes(count, nodeSize);
+        long[] levelOffsets = PackedRTreeWriter.levelOffsets(levelNumNodes);
+        orderFile = createTempFile(".order");
+        leavesFile = createTempFile(".leaves");
+
+        List<RunReader> readers = new ArrayList<>();
+        List<LevelBuilder> levels = new ArrayList<>();
+        try (DataOutputStream order = openOutput(orderFile);
+             OutputStream leaves = new BufferedOutputStream(Files.newOutputStream(leavesFile), STREAM_BUFFER_SIZE)) {
+            LevelBuilder parent = null;
+            for (int level = levelNumNodes.length - 1; level >= 1; level--) {
+                Path levelFile = createTempFile(".level" + level);
+                levelFiles.add(0, levelFile);
+                parent = new LevelBuilder(levelFile, nodeSize, levelOffsets[level - 1], parent);
+                levels.add(0, parent);
+            }
+            LevelBuilder firstLevel = levels.get(0);
+
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    Comparator.comparingLong(RunReader::hilbert).thenComparingInt(RunReader::run));
+            for (int run = 0; run < runs.size(); run++) {
+                RunReader reader = new RunReader(run, openInput(runs.get(run)));
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+
+            PackedRTreeWriter.NodeWriter leafWriter = new PackedRTreeWriter.NodeWriter(leaves);
+            long featureOffset = 0;
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                leafWriter.write(reader.minX, reader.minY, reader.maxX, reader.maxY, featureOffset);
+                order.writeInt(reader.part);
+                order.writeLong(reader.offset);
+                order.writeInt(reader.size);
+                firstLevel.add(reader.minX, reader.minY, reader.maxX, reader.maxY);
+                featureOffset += reader.size;
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            leafWriter.flush();
+            firstLevel.finish();
+        } finally {
+            for (RunReader reader : readers) {
+                reader.input.close();
+            }
+            for (LevelBuilder level : levels) {
+                level.out.close();
+            }
+        }
+    }
+
+    private Path createTempFile(String suffix) throws IOException {
+        Path file = Files.createTempFile("flatgeobuf", suffix);
+        file.toFile().deleteOnExit();
+        tempFiles.add(file);
+        return file;
+    }
+
+    private static DataOutputStream openOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER_SIZE));
+    }
+
+    private static DataInputStream openInput(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE));
+    }
+
+    private static final class RunReader {
+        private final int run;
+        private final DataInputStream input;
+        private long hilbert;
+        private int part;
+        private long offset;
+        private int size;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+
+        private RunReader(int run, DataInputStream input) {
+            this.run = run;
+            this.input = input;
+        }
+
+        boolean next() throws IOException {
+            try {
+                hilbert = input.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            part = input.readInt();
+            offset = input.readLong();
+            size = input.readInt();
+            minX = input.readDouble();
+            minY = input.readDouble();
+            maxX = input.readDouble();
+            maxY = input.readDouble();
+            return true;
+        }
+
+        long hilbert() {
+            return hilbert;
+        }
+
+        int run() {
+            return run;
+        }
+    }
+
+    private static final class LevelBuilder {
+        private final OutputStream out;
+        private final PackedRTreeWriter.NodeWriter writer;
+        private final int nodeSize;
+        private final long childLevelOffset;
+        private final LevelBuilder parent;
+        private long node;
+        private int children;
+        private double minX = Double.POSITIVE_INFINITY;
+        private double minY = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.NEGATIVE_INFINITY;
+
+        private LevelBuilder(Path file, int nodeSize, long childLevelOffset, LevelBuilder parent) throws IOException {
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER_SIZE);
+            this.writer = new PackedRTreeWriter.NodeWriter(out);
+            this.nodeSize = nodeSize;
+            this.childLevelOffset = childLevelOffset;
+            this.parent = parent;
+        }
+
+        void add(double childMinX, double childMinY, double childMaxX, double childMaxY) throws IOException {
+            minX = Math.min(minX, childMinX);
+            minY = Math.min(minY, childMinY);
+            maxX = Math.max(maxX, childMaxX);
+            maxY = Math.max(maxY, childMaxY);
+            if (++children == nodeSize) {
+                emit();
+            }
+        }
+
+        void finish() throws IOException {
+            if (children > 0) {
+                emit();
+            }
+            writer.flush();
+            if (parent != null) {
+                parent.finish();
+            }
+        }
+
+        private void emit() throws IOException {
+            writer.write(minX, minY, maxX, maxY, childLevelOffset + node * nodeSize);
+            if (parent != null) {
+                parent.add(minX, minY, maxX, maxY);
+            }
+            node++;
+            children = 0;
+            minX = Double.POSITIVE_INFINITY;
+            minY = Double.POSITIVE_INFINITY;
+            maxX = Double.NEGATIVE_INFINITY;
+            maxY = Double.NEGATIVE_INFINITY;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.RowBatch;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.wololo.flatgeobuf.GeometryConversions;
+import org.wololo.flatgeobuf.generated.Feature;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+final class FeatureEncoder {
+    private final boolean hasGeometry;
+    private final byte geometryType;
+    private final double tolerance;
+    private final FlatGeobufPropertiesWriter propertiesWriter;
+    private final FlatBufferBuilder builder = new FlatBufferBuilder();
+    private final WkbGeometryTranscoder transcoder = new WkbGeometryTranscoder();
+    private final WKBReader wkbReader = new WKBReader();
+
+    FeatureEncoder(boolean hasGeometry, byte geometryType, List<FlatGeobufTableWriter.ColumnSpec> columnSpecs) {
+        this(hasGeometry, geometryType, 0, columnSpecs);
+    }
+
+    // A tolerance above 0 simplifies every geometry for an overview file.
+    FeatureEncoder(boolean hasGeometry,
+                   byte geometryType,
+                   double tolerance,
+                   List<FlatGeobufTableWriter.ColumnSpec> columnSpecs) {
+        this.hasGeometry = hasGeometry;
+        this.geometryType = geometryType;
+        this.tolerance = tolerance;
+        this.propertiesWriter = new FlatGeobufPropertiesWriter(columnSpecs);
+    }
+
+    void encode(RowBatch batch, EncodedFeatures out) throws SQLException {
+        out.clear();
+        double minX = Double.NaN;
+        double minY = Double.NaN;
+        double maxX = Double.NaN;
+        double maxY = Double.NaN;
+        for (int row = 0; row < batch.size(); row++) {
+            builder.clear();
+            int geometryOffset = 0;
+            if (hasGeometry) {
+                if (!batch.hasGeometry(row)) {
+                    continue;
+                }
+                if (tolerance == 0 && batch.hasEnvelope(row) && transcoder.read(
+                        ByteBuffer.wrap(batch.wkbArray(row), batch.wkbOffset(row), batch.wkbLength(row)), geometryType)) {
+                    geometryOffset = transcoder.write(builder);
+                    minX = batch.minX(row);
+                    minY = batch.minY(row);
+                    maxX = batch.maxX(row);
+                    maxY = batch.maxY(row);
+                } else {
+                    Geometry normalized = normalizeGeometry(simplify(readGeometry(batch, row)), geometryType);
+                    Envelope featureEnvelope = normalized.getEnvelopeInternal();
+                    minX = featureEnvelope.getMinX();
+                    minY = featureEnvelope.getMinY();
+                    maxX = featureEnvelope.getMaxX();
+                    maxY = featureEnvelope.getMaxY();
+                    geometryOffset = serializeGeometry(builder, normalized, geometryType);
+                }
+            }
+            ByteBuffer feature = encodeFeature(geometryOffset, batch, row);
+            out.add(feature.array(), feature.arrayOffset() + feature.position(), feature.remaining(),
+                    minX, minY, maxX, maxY);
+        }
+    }
+
+    private Geometry readGeometry(RowBatch batch, int row) throws SQLException {
+        if (batch.geometry(row) != null) {
+            return batch.geometry(row);
+        }
+        int offset = batch.wkbOffset(row);
+        try {
+            return wkbReader.read(Arrays.copyOfRange(batch.wkbArray(row), offset, offset + batch.wkbLength(row)));
+        } catch (ParseException e) {
+            throw new SQLException("Unable to parse WKB geometry.", e);
+        }
+    }
+
+    // Polygons keep valid rings and holes; points stay as they are.
+    private Geometry simplify(Geometry geometry) {
+        if (tolerance == 0 || geometry instanceof Puntal) {
+            return geometry;
+        }
+        if (geometry instanceof Polygonal) {
+            return TopologyPreservingSimplifier.simplify(geometry, tolerance);
+        }
+        return DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+    }
+
+    private ByteBuffer encodeFeature(int geometryOffset, RowBatch batch, int row) {
+        ByteBuffer properties = propertiesWriter.write(batch, row);
+        boolean hasProperties = properties.hasRemaining();
+        int propertiesOffset = hasProperties ? builder.createByteVector(properties) : 0;
+        Feature.startFeature(builder);
+        if (hasGeometry) {
+            Feature.addGeometry(builder, geometryOffset);
+        }
+        if (hasProperties) {
+            Feature.addProperties(builder, propertiesOffset);
+        }
+        int featureOffset = Feature.endFeature(builder);
+        Feature.finishSizePrefixedFeatureBuffer(builder, featureOffset);
+        return builder.dataBuffer();
+    }
+
+    private static Geometry normalizeGeometry(Geometry geometry, byte geometryType) throws SQLException {
+        return switch (geometryType) {
+            case GeometryType.Point -> ensureType(geometry, Point.class);
+            case GeometryType.LineString -> ensureType(geometry, LineString.class);
+            case GeometryType.Polygon -> ensureType(geometry, Polygon.class);
+            case GeometryType.MultiPoint -> promoteToMulti(geometry, MultiPoint.class);
+            case GeometryType.MultiLineString -> promoteToMulti(geometry, MultiLineString.class);
+            case GeometryType.MultiPolygon -> promoteToMulti(geometry, MultiPolygon.class);
+            default -> geometry;
+        };
+    }
+
+    private static Geometry ensureType(Geometry geometry, Class<? extends Geometry> expected) throws SQLException {
+        if (expected.isInstance(geometry)) {
+            return geometry;
+        }
+        throw new SQLException("Unexpected geometry type: " + geometry.getGeometryType());
+    }
+
+    private static Geometry promoteToMulti(Geometry geometry, Class<? extends Geometry> expected) throws SQLException {
+        if (expected.isInstance(geometry)) {
+            return geometry;
+        }
+        GeometryFactory factory = geometry.getFactory();
+        if (expected.equals(MultiPoint.class) && geometry instanceof Point point) {
+            return factory.createMultiPoint(new Point[] { point });
+        }
+        if (expected.equals(MultiLineString.class) && geometry instanceof LineString lineString) {
+            return factory.createMultiLineString(new LineString[] { lineString });
+        }
+        if (expected.equals(MultiPolygon.class) && geometry instanceof Polygon polygon) {
+            return factory.createMultiPolygon(new Polygon[] { polygon });
+        }
+        throw new SQLException("Unexpected geometry type: " + geometry.getGeometryType());
+    }
+
+    private static int serializeGeometry(FlatBufferBuilder builder, Geometry geometry, byte geometryType)
+            throws SQLException {
+        try {
+            return GeometryConversions.serialize(builder, geometry, geometryType);
+        } catch (IOException e) {
+            throw new SQLException("Unable to serialize geometry.", e);
+        }
+    }
+}
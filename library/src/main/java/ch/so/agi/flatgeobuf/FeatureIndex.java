@@ -0,0 +1,234 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+final class FeatureIndex implements Closeable {
+    static final int BYTES_PER_FEATURE = Long.BYTES + 4 * Double.BYTES;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / 4 - 8;
+    // The expected count comes from gpkg_ogr_contents and may be stale, larger tables grow from here.
+    private static final int MAX_INITIAL_CAPACITY = 1 << 22;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final boolean withBounds;
+    private final long maxInMemory;
+    private long[] offsets;
+    private double[] bounds;
+    private int count;
+    private long end;
+    private Path entriesFile;
+    private DataOutputStream entries;
+
+    FeatureIndex(boolean withBounds, long expectedCount) {
+        this(withBounds, expectedCount, MAX_CAPACITY);
+    }
+
+    FeatureIndex(boolean withBounds, long expectedCount, long maxInMemory) {
+        this.withBounds = withBounds;
+        this.maxInMemory = Math.max(1, Math.min(maxInMemory, MAX_CAPACITY));
+        int capacity = (int) Math.min(this.maxInMemory, Math.max(DEFAULT_CAPACITY, Math.min(expectedCount, MAX_INITIAL_CAPACITY)));
+        this.offsets = new long[capacity];
+        this.bounds = withBounds ? new double[capacity * 4] : new double[0];
+    }
+
+    void add(int size, double minX, double minY, double maxX, double maxY) throws IOException {
+        if (entries == null && count == maxInMemory) {
+            spill();
+        }
+        if (entries != null) {
+            writeEntry(entries, size, minX, minY, maxX, maxY);
+        } else {
+            ensureCapacity();
+            if (withBounds) {
+                int base = count * 4;
+                bounds[base] = minX;
+                bounds[base + 1] = minY;
+                bounds[base + 2] = maxX;
+                bounds[base + 3] = maxY;
+            }
+            offsets[count] = end;
+        }
+        count = Math.addExact(count, 1);
+        end += size;
+    }
+
+    void add(int size) throws IOException {
+        add(size, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    void finish() throws IOException {
+        if (entries != null) {
+            entries.close();
+        }
+    }
+
+    boolean spilled() {
+        return entriesFile != null;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long byteSize() {
+        return end;
+    }
+
+    long offset(int index) {
+        return offsets[index];
+    }
+
+    int size(int index) {
+        long next = index + 1 < count ? offsets[index + 1] : end;
+        return (int) (next - offsets[index]);
+    }
+
+    double minX(int index) {
+        return bounds[index * 4];
+    }
+
+    double minY(int index) {
+        return bounds[index * 4 + 1];
+    }
+
+    double maxX(int index) {
+        return bounds[index * 4 + 2];
+    }
+
+    double maxY(int index) {
+        return bounds[index * 4 + 3];
+    }
+
+    long retainedBytes() {
+        return (long) offsets.length * Long.BYTES + (long) bounds.length * Double.BYTES;
+    }
+
+    Cursor cursor() throws IOException {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (entries != null) {
+            entries.close();
+        }
+        if (entriesFile != null) {
+            Files.deleteIfExists(entriesFile);
+        }
+    }
+
+    private void spill() throws IOException {
+        entriesFile = Files.createTempFile("flatgeobuf", ".idx");
+        entriesFile.toFile().deleteOnExit();
+        entries = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entriesFile), STREAM_BUFFER_SIZE));
+        for (int index = 0; index < count; index++) {
+            if (withBounds) {
+                writeEntry(entries, size(index), minX(index), minY(index), maxX(index), maxY(index));
+            } else {
+                writeEntry(entries, size(index), Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            }
+        }
+        offsets = new long[0];
+        bounds = new double[0];
+    }
+
+    private static void writeEntry(DataOutputStream out, int size, double minX, double minY, double maxX, double maxY)
+            throws IOException {
+        out.writeInt(size);
+        out.writeDouble(minX);
+        out.writeDouble(minY);
+        out.writeDouble(maxX);
+        out.writeDouble(maxY);
+    }
+
+    private void ensureCapacity() {
+        if (count < offsets.length) {
+            return;
+        }
+        int capacity = (int) Math.min(maxInMemory, offsets.length + (offsets.length >> 1));
+        offsets = Arrays.copyOf(offsets, capacity);
+        if (withBounds) {
+            bounds = Arrays.copyOf(bounds, capacity * 4);
+        }
+    }
+
+    final class Cursor implements Closeable {
+        private final DataInputStream input;
+        private int index = -1;
+        private long offset;
+        private int size;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+
+        private Cursor() throws IOException {
+            this.input = entriesFile == null ? null
+                    : new DataInputStream(new BufferedInputStream(Files.newInputStream(entriesFile), STREAM_BUFFER_SIZE));
+        }
+
+        boolean next() throws IOException {
+            if (index + 1 >= count) {
+                return false;
+            }
+            offset += size;
+            index++;
+            if (input != null) {
+                size = input.readInt();
+                minX = input.readDouble();
+                minY = input.readDouble();
+                maxX = input.readDouble();
+                maxY = input.readDouble();
+            } else {
+                size = FeatureIndex.this.size(index);
+                if (withBounds) {
+                    minX = FeatureIndex.this.minX(index);
+                    minY = FeatureIndex.this.minY(index);
+                    maxX = FeatureIndex.this.maxX(index);
+                    maxY = FeatureIndex.this.maxY(index);
+                }
+            }
+            return true;
+        }
+
+        long offset() {
+            return offset;
+        }
+
+        int size() {
+            return size;
+        }
+
+        double minX() {
+            return minX;
+        }
+
+        double minY() {
+            return minY;
+        }
+
+        double maxX() {
+            return maxX;
+        }
+
+        double maxY() {
+            return maxY;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+}
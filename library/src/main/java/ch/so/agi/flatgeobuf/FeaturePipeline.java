@@ -0,0 +1,184 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// One thread steps the result set, the workers encode whole batches and the calling thread writes them in order.
+// With overview levels every batch is encoded once per level, each level being a task of its own.
+final class FeaturePipeline {
+    private static final Slot FAILED = new Slot(null, 0);
+    private static final Task STOP = new Task(null, -1);
+
+    private final RowBatchReader reader;
+    private final Supplier<List<FeatureEncoder>> encoders;
+    private final int threads;
+    private final int levels;
+    // Every batch in flight holds a slot, so the pool size bounds memory and blocks the reader when writing lags.
+    private final BlockingQueue<Slot> free;
+    private final BlockingQueue<Task> toEncode = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Slot> encoded = new LinkedBlockingQueue<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Every worker gets its own encoders from the supplier, one per level and in the order of the targets.
+    FeaturePipeline(RowBatchReader reader, Supplier<List<FeatureEncoder>> encoders, int levels, int threads) {
+        this.reader = reader;
+        this.encoders = encoders;
+        this.threads = threads;
+        this.levels = levels;
+        int slots = 2 * ((threads + levels - 1) / levels) + 1;
+        this.free = new ArrayBlockingQueue<>(slots);
+        for (int i = 0; i < slots; i++) {
+            free.add(new Slot(reader.newBatch(RowBatch.DEFAULT_CAPACITY), levels));
+        }
+    }
+
+    long run(List<SpillTarget> targets) throws SQLException, IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        boolean completed = false;
+        try {
+            executor.execute(this::read);
+            for (int i = 0; i < threads; i++) {
+                executor.execute(this::encode);
+            }
+            long count = write(targets);
+            completed = true;
+            return count;
+        } finally {
+            if (!completed) {
+                executor.shutdownNow();
+            }
+            executor.close();
+        }
+    }
+
+    private void read() {
+        try {
+            long sequence = 0;
+            while (true) {
+                Slot slot = free.take();
+                if (!reader.read(slot.batch)) {
+                    break;
+                }
+                slot.sequence = sequence++;
+                slot.remaining.set(levels);
+                for (int level = 0; level < levels; level++) {
+                    toEncode.put(new Task(slot, level));
+                }
+            }
+            for (int i = 0; i < threads; i++) {
+                toEncode.put(STOP);
+            }
+            Slot end = new Slot(null, 0);
+            end.sequence = sequence;
+            encoded.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            // Errors too, otherwise the writer waits forever for the batch of a dead worker.
+            fail(e);
+        }
+    }
+
+    private void encode() {
+        try {
+            List<FeatureEncoder> levelEncoders = encoders.get();
+            while (true) {
+                Task task = toEncode.take();
+                if (task == STOP) {
+                    return;
+                }
+                Slot slot = task.slot();
+                levelEncoders.get(task.level()).encode(slot.batch, slot.encoded[task.level()]);
+                if (slot.remaining.decrementAndGet() == 0) {
+                    encoded.put(slot);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    private long write(List<SpillTarget> targets) throws SQLException, IOException {
+        Map<Long, Slot> pending = new HashMap<>();
+        long next = 0;
+        long total = -1;
+        long count = 0;
+        try {
+            while (total < 0 || next < total) {
+                Slot slot = encoded.take();
+                if (slot == FAILED) {
+                    throw rethrow(failure.get());
+                }
+                if (slot.batch == null) {
+                    total = slot.sequence;
+                } else {
+                    pending.put(slot.sequence, slot);
+                }
+                for (Slot ready = pending.remove(next); ready != null; ready = pending.remove(next)) {
+                    for (int level = 0; level < levels; level++) {
+                        targets.get(level).write(ready.encoded[level]);
+                    }
+                    count += ready.encoded[0].count();
+                    next++;
+                    free.put(ready);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing features.", e);
+        }
+        return count;
+    }
+
+    private void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            encoded.add(FAILED);
+        }
+    }
+
+    private static IOException rethrow(Throwable e) throws SQLException {
+        if (e instanceof Error error) {
+            throw error;
+        }
+        if (e instanceof SQLException sqlException) {
+            throw sqlException;
+        }
+        if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        return e instanceof IOException ioException ? ioException : new IOException(e);
+    }
+
+    private static final class Slot {
+        private final RowBatch batch;
+        private final EncodedFeatures[] encoded;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private long sequence;
+
+        private Slot(RowBatch batch, int levels) {
+            this.batch = batch;
+            this.encoded = new EncodedFeatures[levels];
+            for (int level = 0; level < levels; level++) {
+                encoded[level] = new EncodedFeatures();
+            }
+        }
+    }
+
+    private record Task(Slot slot, int level) {
+    }
+}
@@ -0,0 +1,8 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.IOException;
+
+@FunctionalInterface
+interface FeatureRangeConsumer {
+    void accept(int part, long offset, long length) throws IOException;
+}
@@ -0,0 +1,61 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchSink;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+// One encoder and target per level: the full file first, then its overviews.
+final class FlatGeobufBatchSink implements RowBatchSink {
+    private final List<RowBatch.Column> columns;
+    private final List<FeatureEncoder> encoders;
+    private final List<SpillTarget> targets;
+    private final EncodedFeatures encoded = new EncodedFeatures();
+    private final Completion completion;
+    private final Closeable resources;
+    private long count;
+
+    FlatGeobufBatchSink(List<RowBatch.Column> columns,
+                        List<FeatureEncoder> encoders,
+                        List<SpillTarget> targets,
+                        Completion completion,
+                        Closeable resources) {
+        this.columns = columns;
+        this.encoders = encoders;
+        this.targets = targets;
+        this.completion = completion;
+        this.resources = resources;
+    }
+
+    @Override
+    public List<RowBatch.Column> columns() {
+        return columns;
+    }
+
+    @Override
+    public void write(RowBatch batch) throws SQLException, IOException {
+        for (int level = 0; level < encoders.size(); level++) {
+            encoders.get(level).encode(batch, encoded);
+            targets.get(level).write(encoded);
+            if (level == 0) {
+                count += encoded.count();
+            }
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        completion.complete(count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        resources.close();
+    }
+
+    interface Completion {
+        void complete(long featuresCount) throws IOException;
+    }
+}
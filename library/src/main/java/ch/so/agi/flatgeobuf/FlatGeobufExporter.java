@@ -1,5 +1,6 @@
 package ch.so.agi.flatgeobuf;
 
+import ch.so.agi.cloudformats.ConnectionFactory;
 import ch.so.agi.cloudformats.GeometryReader;
 import ch.so.agi.cloudformats.TableDescriptorProvider;
 import ch.so.agi.cloudformats.TableExporter;
@@ -29,4 +30,12 @@ public class FlatGeobufExporter {
             throws SQLException, IOException {
         tableExporter.exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter, options);
     }
+
+    public void exportTables(ConnectionFactory connectionFactory,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             FlatGeobufTableWriter.FlatGeobufWriteOptions options,
+                             int threads) throws SQLException, IOException {
+        tableExporter.exportTables(connectionFactory, tableDescriptorProvider, outputDirectory, tableWriter, options, threads);
+    }
 }
@@ -1,99 +1,106 @@
 package ch.so.agi.flatgeobuf;
 
+import ch.so.agi.cloudformats.RowBatch;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.sql.Blob;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Types;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.util.ArrayList;
 import java.util.List;
 import org.wololo.flatgeobuf.generated.ColumnType;
 
 class FlatGeobufPropertiesWriter {
-    private final List<FlatGeobufTableWriter.ColumnSpec> columns;
+    private static final int INITIAL_CAPACITY = 1024;
 
-    FlatGeobufPropertiesWriter(List<FlatGeobufTableWriter.ColumnSpec> columns) {
-        this.columns = columns;
-    }
+    private final ColumnEncoder[] encoders;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY).order(ByteOrder.LITTLE_ENDIAN);
 
-    byte[] write(ResultSet resultSet) throws SQLException {
-        List<PropertyBuffer> buffers = new ArrayList<>();
-        int totalSize = 0;
+    FlatGeobufPropertiesWriter(List<FlatGeobufTableWriter.ColumnSpec> columns) {
+        this.encoders = new ColumnEncoder[columns.size()];
         for (int i = 0; i < columns.size(); i++) {
-            FlatGeobufTableWriter.ColumnSpec column = columns.get(i);
-            Object value = readValue(resultSet, column);
-            if (value == null) {
-                continue;
-            }
-            PropertyBuffer buffer = encodeValue(i, column, value);
-            buffers.add(buffer);
-            totalSize += buffer.size();
-        }
-        if (totalSize == 0) {
-            return new byte[0];
+            encoders[i] = encoder(i, columns.get(i));
         }
-        ByteBuffer output = ByteBuffer.allocate(totalSize).order(ByteOrder.LITTLE_ENDIAN);
-        for (PropertyBuffer buffer : buffers) {
-            buffer.writeTo(output);
-        }
-        return output.array();
     }
 
-    private static Object readValue(ResultSet resultSet, FlatGeobufTableWriter.ColumnSpec column) throws SQLException {
-        int sqlType = column.sqlType();
-        Object value = resultSet.getObject(column.name());
-        if (resultSet.wasNull()) {
-            return null;
-        }
-        if (sqlType == Types.BLOB || sqlType == Types.BINARY || sqlType == Types.VARBINARY
-                || sqlType == Types.LONGVARBINARY) {
-            if (value instanceof Blob blob) {
-                return blob.getBytes(1, (int) blob.length());
+    static RowBatch.ColumnKind columnKind(FlatGeobufTableWriter.ColumnSpec column) {
+        return switch (column.columnType()) {
+            case ColumnType.Byte, ColumnType.UByte, ColumnType.Short, ColumnType.UShort, ColumnType.Int,
+                    ColumnType.UInt, ColumnType.Long, ColumnType.ULong -> RowBatch.ColumnKind.LONG;
+            case ColumnType.Float, ColumnType.Double -> RowBatch.ColumnKind.DOUBLE;
+            case ColumnType.Bool, ColumnType.DateTime -> RowBatch.ColumnKind.OBJECT;
+            case ColumnType.Binary -> RowBatch.ColumnKind.BLOB;
+            default -> column.dateOnly() ? RowBatch.ColumnKind.OBJECT : RowBatch.ColumnKind.TEXT;
+        };
+    }
+
+    ByteBuffer write(RowBatch batch, int row) {
+        buffer.clear();
+        for (int property = 0; property < encoders.length; property++) {
+            if (!batch.isNull(property, row)) {
+                encoders[property].encode(batch, row);
             }
-            return resultSet.getBytes(column.name());
         }
-        return value;
+        return buffer.flip();
     }
 
-    private static PropertyBuffer encodeValue(int columnIndex, FlatGeobufTableWriter.ColumnSpec column, Object value)
-            throws SQLException {
-        ByteBuffer buffer;
+    private ColumnEncoder encoder(int property, FlatGeobufTableWriter.ColumnSpec column) {
         int columnType = column.columnType();
         return switch (columnType) {
-            case ColumnType.Byte -> PropertyBuffer.fixed(columnIndex, 1, (bb) -> bb.put(((Number) value).byteValue()));
-            case ColumnType.UByte -> PropertyBuffer.fixed(columnIndex, 1, (bb) -> bb.put((byte) ((Number) value).intValue()));
-            case ColumnType.Bool -> PropertyBuffer.fixed(columnIndex, 1, (bb) -> bb.put(boolToByte(value)));
-            case ColumnType.Short -> PropertyBuffer.fixed(columnIndex, Short.BYTES, (bb) -> bb.putShort(((Number) value).shortValue()));
-            case ColumnType.UShort -> PropertyBuffer.fixed(columnIndex, Short.BYTES, (bb) -> bb.putShort((short) ((Number) value).intValue()));
-            case ColumnType.Int -> PropertyBuffer.fixed(columnIndex, Integer.BYTES, (bb) -> bb.putInt(((Number) value).intValue()));
-            case ColumnType.UInt -> PropertyBuffer.fixed(columnIndex, Integer.BYTES, (bb) -> bb.putInt((int) ((Number) value).longValue()));
-            case ColumnType.Long -> PropertyBuffer.fixed(columnIndex, Long.BYTES, (bb) -> bb.putLong(((Number) value).longValue()));
-            case ColumnType.ULong -> PropertyBuffer.fixed(columnIndex, Long.BYTES, (bb) -> bb.putLong(((Number) value).longValue()));
-            case ColumnType.Float -> PropertyBuffer.fixed(columnIndex, Float.BYTES, (bb) -> bb.putFloat(((Number) value).floatValue()));
-            case ColumnType.Double -> PropertyBuffer.fixed(columnIndex, Double.BYTES, (bb) -> bb.putDouble(((Number) value).doubleValue()));
+            case ColumnType.Byte, ColumnType.UByte ->
+                    (batch, row) -> startValue(property, 1).put((byte) batch.getLong(property, row));
+            case ColumnType.Bool ->
+                    (batch, row) -> startValue(property, 1).put(boolToByte(batch.getObject(property, row)));
+            case ColumnType.Short, ColumnType.UShort ->
+                    (batch, row) -> startValue(property, Short.BYTES).putShort((short) batch.getLong(property, row));
+            case ColumnType.Int, ColumnType.UInt ->
+                    (batch, row) -> startValue(property, Integer.BYTES).putInt((int) batch.getLong(property, row));
+            case ColumnType.Long, ColumnType.ULong ->
+                    (batch, row) -> startValue(property, Long.BYTES).putLong(batch.getLong(property, row));
+            case ColumnType.Float ->
+                    (batch, row) -> startValue(property, Float.BYTES).putFloat((float) batch.getDouble(property, row));
+            case ColumnType.Double ->
+                    (batch, row) -> startValue(property, Double.BYTES).putDouble(batch.getDouble(property, row));
             case ColumnType.String, ColumnType.Json, ColumnType.DateTime -> {
-                String text = normalizeString(value, columnType == ColumnType.DateTime, column.dateOnly());
-                byte[] bytes = text.getBytes(java.nio.charset.StandardCharsets.UTF_8);
-                buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
-                buffer.putInt(bytes.length);
-                buffer.put(bytes);
-                yield PropertyBuffer.variable(columnIndex, buffer.array());
-            }
-            case ColumnType.Binary -> {
-                byte[] bytes = asBinary(value);
-                buffer = ByteBuffer.allocate(Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
-                buffer.putInt(bytes.length);
-                buffer.put(bytes);
-                yield PropertyBuffer.variable(columnIndex, buffer.array());
+                if (column.dateOnly() || columnType == ColumnType.DateTime) {
+                    boolean dateTime = columnType == ColumnType.DateTime;
+                    yield (batch, row) -> putString(property,
+                            normalizeString(batch.getObject(property, row), dateTime, column.dateOnly()));
+                }
+                yield (batch, row) -> putBytes(property, batch, row);
             }
-            default -> throw new SQLException("Unsupported column type: " + columnType);
+            case ColumnType.Binary -> (batch, row) -> putBytes(property, batch, row);
+            default -> throw new IllegalArgumentException("Unsupported column type: " + columnType);
         };
     }
 
+    private void putBytes(int property, RowBatch batch, int row) {
+        int length = batch.length(property, row);
+        startValue(property, Integer.BYTES + length).putInt(length)
+                .put(batch.bytes(property), batch.offset(property, row), length);
+    }
+
+    private ByteBuffer startValue(int columnIndex, int maxValueSize) {
+        int required = Short.BYTES + maxValueSize;
+        if (buffer.remaining() < required) {
+            int capacity = Math.max(buffer.capacity() * 2, Math.addExact(buffer.position(), required));
+            ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            grown.put(buffer.flip());
+            buffer = grown;
+        }
+        return buffer.putShort((short) columnIndex);
+    }
+
+    // Only dates and timestamps still arrive as strings, text columns are encoded by RowBatch.setText.
+    private void putString(int columnIndex, String text) {
+        byte[] value = text.getBytes(StandardCharsets.UTF_8);
+        startValue(columnIndex, Integer.BYTES + value.length).putInt(value.length).put(value);
+    }
+
+    private interface ColumnEncoder {
+        void encode(RowBatch batch, int row);
+    }
+
     private static String normalizeString(Object value, boolean dateTime, boolean dateOnly) {
         if (dateOnly) {
             return normalizeDate(value);
@@ -138,37 +145,4 @@ class FlatGeobufPropertiesWriter {
         }
         return (byte) (!value.toString().equalsIgnoreCase("false") ? 1 : 0);
     }
-
-    private static byte[] asBinary(Object value) throws SQLException {
-        if (value instanceof byte[] bytes) {
-            return bytes;
-        }
-        if (value instanceof Blob blob) {
-            return blob.getBytes(1, (int) blob.length());
-        }
-        throw new SQLException("Unsupported binary value: " + value.getClass());
-    }
-
-    private record PropertyBuffer(int columnIndex, byte[] bytes, java.util.function.Consumer<ByteBuffer> writer) {
-        static PropertyBuffer variable(int columnIndex, byte[] bytes) {
-            return new PropertyBuffer(columnIndex, bytes, null);
-        }
-
-        static PropertyBuffer fixed(int columnIndex, int size, java.util.function.Consumer<ByteBuffer> writer) {
-            return new PropertyBuffer(columnIndex, new byte[size], writer);
-        }
-
-        int size() {
-            return Short.BYTES + bytes.length;
-        }
-
-        void writeTo(ByteBuffer output) {
-            output.putShort((short) columnIndex);
-            if (writer != null) {
-                writer.accept(output);
-            } else {
-                output.put(bytes);
-            }
-        }
-    }
 }
@@ -1,16 +1,29 @@
 package ch.so.agi.flatgeobuf;
 
+import ch.so.agi.cloudformats.BatchTableWriter;
+import ch.so.agi.cloudformats.ConnectionFactory;
 import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.ParallelTasks;
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchReader;
+import ch.so.agi.cloudformats.RowBatchSink;
+import ch.so.agi.cloudformats.RowidRange;
 import ch.so.agi.cloudformats.TableDescriptor;
-import ch.so.agi.cloudformats.TableWriter;
+import ch.so.agi.cloudformats.TableStatistics;
 import com.google.flatbuffers.FlatBufferBuilder;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,29 +31,18 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import org.locationtech.jts.geom.Envelope;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.LineString;
-import org.locationtech.jts.geom.MultiLineString;
-import org.locationtech.jts.geom.MultiPoint;
-import org.locationtech.jts.geom.MultiPolygon;
-import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.geom.Polygon;
 import org.wololo.flatgeobuf.ColumnMeta;
 import org.wololo.flatgeobuf.Constants;
-import org.wololo.flatgeobuf.GeometryConversions;
 import org.wololo.flatgeobuf.HeaderMeta;
-import org.wololo.flatgeobuf.NodeItem;
-import org.wololo.flatgeobuf.PackedRTree;
-import org.wololo.flatgeobuf.PackedRTree.FeatureItem;
 import org.wololo.flatgeobuf.generated.ColumnType;
-import org.wololo.flatgeobuf.generated.Feature;
-import org.wololo.flatgeobuf.generated.GeometryType;
 
-public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.FlatGeobufWriteOptions> {
+public class FlatGeobufTableWriter implements BatchTableWriter<FlatGeobufTableWriter.FlatGeobufWriteOptions> {
     private static final int DEFAULT_NODE_SIZE = 16;
+    private static final long UNLIMITED_SORT_MEMORY = Long.MAX_VALUE;
 
     private final GeometryReader geometryReader;
 
@@ -61,8 +63,23 @@ public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.
     @Override
     public void writeTable(Connection connection, TableDescriptor table, Path outputFile, FlatGeobufWriteOptions options)
             throws SQLException, IOException {
-        try (OutputStream out = Files.newOutputStream(outputFile)) {
-            writeTable(connection, table, out, options.indexNodeSize());
+        if (!table.hasGeometry() || options.indexNodeSize() == 0) {
+            try (FileChannel out = openTarget(outputFile)) {
+                streamFlatGeobuf(connection, table, out, options.encodingThreads());
+            }
+            return;
+        }
+        List<FileChannel> targets = new ArrayList<>();
+        try {
+            for (Path file : levelFiles(outputFile, options)) {
+                targets.add(openTarget(file));
+            }
+            writeTable(connection, table, targets, tolerances(options), options.indexNodeSize(),
+                    options.sortMemoryBudget(), options.encodingThreads());
+        } finally {
+            for (FileChannel target : targets) {
+                target.close();
+            }
         }
     }
 
@@ -73,65 +90,406 @@ public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.
 
     public void writeTable(Connection connection, TableDescriptor table, OutputStream outputStream, int indexNodeSize)
             throws SQLException, IOException {
+        writeTable(connection, table, List.of(Channels.newChannel(outputStream)), new double[]{0}, indexNodeSize,
+                UNLIMITED_SORT_MEMORY, 1);
+    }
+
+    private void writeTable(Connection connection,
+                            TableDescriptor table,
+                            List<? extends WritableByteChannel> targets,
+                            double[] tolerances,
+                            int indexNodeSize,
+                            long sortMemoryBudget,
+                            int encodingThreads) throws SQLException, IOException {
+        List<File> tempFiles = createSpillFiles(tolerances.length);
+        List<SpillPart> parts = List.of();
+        try {
+            long expectedCount = TableStatistics.estimatedRowCount(connection, table.tableName());
+            parts = readPart(connection, table, "SELECT * FROM " + table.tableName(), tempFiles, tolerances,
+                    expectedCount, inMemoryFeatures(sortMemoryBudget, tolerances.length), encodingThreads);
+            writeLevels(table, indexNodeSize, sortMemoryBudget, parts.stream().map(List::of).toList(), targets,
+                    encodingThreads);
+        } finally {
+            for (SpillPart part : parts) {
+                part.features().close();
+            }
+            tempFiles.forEach(File::delete);
+        }
+    }
+
+    @Override
+    public void writeTable(ConnectionFactory connectionFactory,
+                           TableDescriptor table,
+                           Path outputFile,
+                           FlatGeobufWriteOptions options) throws SQLException, IOException {
+        List<RowidRange> ranges = List.of();
+        long expectedCount = -1;
+        if (options.parallelism() > 1) {
+            try (Connection connection = connectionFactory.open()) {
+                ranges = RowidRange.split(connection, table.tableName(), options.parallelism());
+                expectedCount = TableStatistics.estimatedRowCount(connection, table.tableName());
+            }
+        }
+        if (ranges.size() <= 1) {
+            BatchTableWriter.super.writeTable(connectionFactory, table, outputFile, options);
+            return;
+        }
+
+        double[] tolerances = table.hasGeometry() ? tolerances(options) : new double[]{0};
+        List<File> tempFiles = new ArrayList<>();
+        List<List<SpillPart>> rangeParts = List.of();
+        List<FileChannel> targets = new ArrayList<>();
+        try {
+            List<Callable<List<SpillPart>>> tasks = new ArrayList<>();
+            long expectedPartCount = expectedCount < 0 ? -1 : expectedCount / ranges.size();
+            long maxInMemory = inMemoryFeatures(options.sortMemoryBudget(), ranges.size() * tolerances.length);
+            for (RowidRange range : ranges) {
+                List<File> rangeFiles = createSpillFiles(tolerances.length);
+                tempFiles.addAll(rangeFiles);
+                tasks.add(() -> {
+                    try (Connection connection = connectionFactory.open()) {
+                        return readPart(connection, table, range.selectAll(table.tableName()), rangeFiles, tolerances,
+                                expectedPartCount, maxInMemory, 1);
+                    }
+                });
+            }
+            rangeParts = ParallelTasks.invokeAll(tasks, options.parallelism());
+            List<List<SpillPart>> levelParts = new ArrayList<>();
+            for (int level = 0; level < tolerances.length; level++) {
+                int index = level;
+                levelParts.add(rangeParts.stream().map(parts -> parts.get(index)).toList());
+            }
+            List<Path> files = levelFiles(outputFile, options);
+            for (int level = 0; level < tolerances.length; level++) {
+                targets.add(openTarget(files.get(level)));
+            }
+            writeLevels(table, options.indexNodeSize(), options.sortMemoryBudget(), levelParts, targets,
+                    options.parallelism());
+        } finally {
+            for (FileChannel target : targets) {
+                target.close();
+            }
+            for (List<SpillPart> parts : rangeParts) {
+                if (parts != null) {
+                    for (SpillPart part : parts) {
+                        part.features().close();
+                    }
+                }
+            }
+            tempFiles.forEach(File::delete);
+        }
+    }
+
+    // One spill part per level, read in a single pass over the query.
+    private List<SpillPart> readPart(Connection connection,
+                                     TableDescriptor table,
+                                     String query,
+                                     List<File> tempFiles,
+                                     double[] tolerances,
+                                     long expectedCount,
+                                     long maxInMemory,
+                                     int encodingThreads) throws SQLException, IOException {
         boolean hasGeometry = table.hasGeometry();
-        List<ColumnSpec> columnSpecs = new ArrayList<>();
-        List<FeatureItem> items = new ArrayList<>();
-        List<FeatureOffset> featureOffsets = new ArrayList<>();
-        Envelope datasetEnvelope = new Envelope();
-        File tempFile = File.createTempFile("flatgeobuf", ".tmp");
-        tempFile.deleteOnExit();
+        List<ColumnSpec> columnSpecs;
+        List<FeatureIndex> indexes = new ArrayList<>();
+        List<OutputStream> outputs = new ArrayList<>();
+        List<SpillTarget> targets = new ArrayList<>();
+
+        try {
+            for (File tempFile : tempFiles) {
+                FeatureIndex features = new FeatureIndex(hasGeometry, expectedCount, maxInMemory);
+                indexes.add(features);
+                OutputStream tmpOut = new BufferedOutputStream(new FileOutputStream(tempFile));
+                outputs.add(tmpOut);
+                targets.add(new SpillTarget(tmpOut, features, hasGeometry ? new Envelope() : null));
+            }
+            try (PreparedStatement statement = connection.prepareStatement(query);
+                 ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                columnSpecs = buildColumns(metaData, table.geometryColumn());
+                writeFeatures(newReader(resultSet, table, columnSpecs), table, columnSpecs, tolerances, targets,
+                        encodingThreads);
+            }
+            for (int level = 0; level < targets.size(); level++) {
+                outputs.get(level).close();
+                indexes.get(level).finish();
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            for (OutputStream output : outputs) {
+                try {
+                    output.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            for (FeatureIndex features : indexes) {
+                try {
+                    features.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw e;
+        }
+        List<SpillPart> parts = new ArrayList<>();
+        for (int level = 0; level < targets.size(); level++) {
+            Envelope envelope = targets.get(level).envelope();
+            parts.add(new SpillPart(columnSpecs, tempFiles.get(level), indexes.get(level),
+                    envelope == null ? new Envelope() : envelope));
+        }
+        return parts;
+    }
+
+    private long writeFeatures(RowBatchReader reader,
+                               TableDescriptor table,
+                               List<ColumnSpec> columnSpecs,
+                               double[] tolerances,
+                               List<SpillTarget> targets,
+                               int encodingThreads) throws SQLException, IOException {
+        if (encodingThreads > 1) {
+            return new FeaturePipeline(reader, () -> newEncoders(table, columnSpecs, tolerances), tolerances.length,
+                    encodingThreads).run(targets);
+        }
+        List<FeatureEncoder> encoders = newEncoders(table, columnSpecs, tolerances);
+        RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+        EncodedFeatures encoded = new EncodedFeatures();
+        long count = 0;
+        while (reader.read(batch)) {
+            for (int level = 0; level < encoders.size(); level++) {
+                encoders.get(level).encode(batch, encoded);
+                targets.get(level).write(encoded);
+                if (level == 0) {
+                    count += encoded.count();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static List<FeatureEncoder> newEncoders(TableDescriptor table,
+                                                    List<ColumnSpec> columnSpecs,
+                                                    double[] tolerances) {
+        List<FeatureEncoder> encoders = new ArrayList<>();
+        for (double tolerance : tolerances) {
+            encoders.add(new FeatureEncoder(table.hasGeometry(), table.geometryType(), tolerance, columnSpecs));
+        }
+        return encoders;
+    }
 
+    private RowBatchReader newReader(ResultSet resultSet, TableDescriptor table, List<ColumnSpec> columnSpecs) {
+        return new RowBatchReader(resultSet, batchColumns(columnSpecs),
+                table.hasGeometry() ? table.geometryColumn() : null, geometryReader);
+    }
+
+    private static List<RowBatch.Column> batchColumns(List<ColumnSpec> columnSpecs) {
+        return columnSpecs.stream()
+                .map(spec -> new RowBatch.Column(spec.name(), spec.index(), FlatGeobufPropertiesWriter.columnKind(spec)))
+                .toList();
+    }
+
+    private void streamFlatGeobuf(Connection connection, TableDescriptor table, FileChannel target, int encodingThreads)
+            throws SQLException, IOException {
         try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
-             ResultSet resultSet = statement.executeQuery();
-             FileOutputStream tmpOut = new FileOutputStream(tempFile)) {
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            columnSpecs = buildColumns(metaData, table.geometryColumn());
-            FlatGeobufPropertiesWriter propertiesWriter = new FlatGeobufPropertiesWriter(columnSpecs);
-            int rowIndex = 0;
-            while (resultSet.next()) {
-                Geometry geometry = null;
-                Geometry normalized = null;
-                Envelope envelope = null;
-                if (hasGeometry) {
-                    geometry = geometryReader.readGeometry(resultSet, table.geometryColumn());
-                    if (geometry == null) {
-                        continue;
+             ResultSet resultSet = statement.executeQuery()) {
+            List<ColumnSpec> columnSpecs = buildColumns(resultSet.getMetaData(), table.geometryColumn());
+            StreamedFile file = new StreamedFile(table, columnSpecs, target);
+            long featuresCount = writeFeatures(newReader(resultSet, table, columnSpecs), table, columnSpecs,
+                    new double[]{0}, List.of(file.target()), encodingThreads);
+            file.finish(featuresCount);
+        }
+    }
+
+    // Only the feature index grows with the table; the features themselves are spilled to disk.
+    @Override
+    public FlatGeobufWriteOptions withMemoryBudget(FlatGeobufWriteOptions options, long memoryBudget) {
+        return new FlatGeobufWriteOptions(options.indexNodeSize(), options.parallelism(),
+                Math.min(options.sortMemoryBudget(), memoryBudget), options.encodingThreads(), options.overviews());
+    }
+
+    @Override
+    public RowBatchSink openSink(Connection connection,
+                                 TableDescriptor table,
+                                 ResultSetMetaData metaData,
+                                 Path outputFile,
+                                 FlatGeobufWriteOptions options) throws SQLException, IOException {
+        List<ColumnSpec> columnSpecs = buildColumns(metaData, table.geometryColumn());
+        List<RowBatch.Column> columns = batchColumns(columnSpecs);
+        if (!table.hasGeometry() || options.indexNodeSize() == 0) {
+            FileChannel target = openTarget(outputFile);
+            StreamedFile file;
+            try {
+                file = new StreamedFile(table, columnSpecs, target);
+            } catch (IOException | RuntimeException e) {
+                target.close();
+                throw e;
+            }
+            return new FlatGeobufBatchSink(columns, newEncoders(table, columnSpecs, new double[]{0}),
+                    List.of(file.target()), file::finish, target);
+        }
+
+        double[] tolerances = tolerances(options);
+        List<Path> files = levelFiles(outputFile, options);
+        List<File> tempFiles = createSpillFiles(tolerances.length);
+        List<Closeable> resources = new ArrayList<>();
+        List<SpillTarget> targets = new ArrayList<>();
+        try {
+            long expectedCount = TableStatistics.estimatedRowCount(connection, table.tableName());
+            long maxInMemory = inMemoryFeatures(options.sortMemoryBudget(), tolerances.length);
+            for (File tempFile : tempFiles) {
+                FeatureIndex features = new FeatureIndex(true, expectedCount, maxInMemory);
+                resources.add(features);
+                OutputStream tmpOut = new BufferedOutputStream(new FileOutputStream(tempFile));
+                resources.add(tmpOut);
+                targets.add(new SpillTarget(tmpOut, features, new Envelope()));
+            }
+            return new FlatGeobufBatchSink(columns, newEncoders(table, columnSpecs, tolerances), targets, featuresCount -> {
+                List<List<SpillPart>> levelParts = new ArrayList<>();
+                for (int level = 0; level < targets.size(); level++) {
+                    SpillTarget target = targets.get(level);
+                    target.out().close();
+                    target.features().finish();
+                    levelParts.add(List.of(new SpillPart(columnSpecs, tempFiles.get(level), target.features(),
+                            target.envelope())));
+                }
+                List<FileChannel> channels = new ArrayList<>();
+                try {
+                    for (Path file : files) {
+                        channels.add(openTarget(file));
                     }
-                    normalized = normalizeGeometry(geometry, table.geometryType());
-                    envelope = normalized.getEnvelopeInternal();
-                    if (rowIndex == 0) {
-                        datasetEnvelope.init(envelope);
-                    } else {
-                        datasetEnvelope.expandToInclude(envelope);
+                    writeLevels(table, options.indexNodeSize(), options.sortMemoryBudget(), levelParts, channels,
+                            options.encodingThreads());
+                } finally {
+                    for (FileChannel channel : channels) {
+                        channel.close();
+                    }
+                }
+            }, () -> {
+                IOException failure = null;
+                for (Closeable resource : resources) {
+                    try {
+                        resource.close();
+                    } catch (IOException e) {
+                        failure = failure == null ? e : failure;
                     }
                 }
-                byte[] featureBytes = encodeFeature(normalized, table.geometryType(), propertiesWriter, resultSet, hasGeometry);
-                long previousOffset = rowIndex == 0 ? 0 : featureOffsets.get(rowIndex - 1).offset + featureOffsets.get(rowIndex - 1).size;
-                FeatureOffset offset = new FeatureOffset(previousOffset, featureBytes.length);
-                featureOffsets.add(offset);
-                tmpOut.write(featureBytes);
-
-                if (hasGeometry) {
-                    FeatureItem item = new FeatureItem();
-                    item.nodeItem = new NodeItem(envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY());
-                    item.offset = rowIndex;
-                    item.size = featureBytes.length;
-                    items.add(item);
+                tempFiles.forEach(File::delete);
+                if (failure != null) {
+                    throw failure;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            for (Closeable resource : resources) {
+                try {
+                    resource.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
                 }
-                rowIndex++;
             }
+            tempFiles.forEach(File::delete);
+            throw e;
+        }
+    }
+
+    // The full file and its overviews are independent once the table is read, so they are written in parallel.
+    private static void writeLevels(TableDescriptor table,
+                                    int indexNodeSize,
+                                    long sortMemoryBudget,
+                                    List<List<SpillPart>> levelParts,
+                                    List<? extends WritableByteChannel> targets,
+                                    int threads) throws IOException {
+        if (levelParts.size() == 1) {
+            writeFlatGeobuf(table, indexNodeSize, sortMemoryBudget, levelParts.get(0), targets.get(0));
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int level = 0; level < levelParts.size(); level++) {
+            List<SpillPart> parts = levelParts.get(level);
+            WritableByteChannel target = targets.get(level);
+            tasks.add(() -> {
+                writeFlatGeobuf(table, indexNodeSize, sortMemoryBudget / levelParts.size(), parts, target);
+                return null;
+            });
         }
+        try {
+            ParallelTasks.invokeAll(tasks, threads);
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
 
-        writeFlatGeobuf(table, hasGeometry, indexNodeSize, columnSpecs, items, featureOffsets, datasetEnvelope, tempFile, outputStream);
+    private static double[] tolerances(FlatGeobufWriteOptions options) {
+        double[] tolerances = new double[options.overviews().size() + 1];
+        for (int i = 0; i < options.overviews().size(); i++) {
+            tolerances[i + 1] = options.overviews().get(i).tolerance();
+        }
+        return tolerances;
     }
 
-    public record FlatGeobufWriteOptions(int indexNodeSize) {
+    // The output file followed by one <table>.z<zoom>.fgb per overview.
+    private static List<Path> levelFiles(Path outputFile, FlatGeobufWriteOptions options) {
+        List<Path> files = new ArrayList<>();
+        files.add(outputFile);
+        String name = outputFile.getFileName().toString();
+        String baseName = name.endsWith(".fgb") ? name.substring(0, name.length() - ".fgb".length()) : name;
+        for (Overview overview : options.overviews()) {
+            files.add(outputFile.resolveSibling(baseName + ".z" + overview.zoom() + ".fgb"));
+        }
+        return files;
+    }
+
+    private static ByteBuffer encodeHeader(HeaderMeta header) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Constants.MAGIC_BYTES);
+        HeaderMeta.write(header, out, new FlatBufferBuilder());
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    private static long inMemoryFeatures(long sortMemoryBudget, int parts) {
+        // The in-memory Hilbert sort needs one extra long key per feature on top of the feature index.
+        return Math.max(1, sortMemoryBudget / parts / (FeatureIndex.BYTES_PER_FEATURE + Long.BYTES));
+    }
+
+    private static FileChannel openTarget(Path outputFile) throws IOException {
+        return FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    private static List<File> createSpillFiles(int count) throws IOException {
+        List<File> tempFiles = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                File tempFile = File.createTempFile("flatgeobuf", ".tmp");
+                tempFile.deleteOnExit();
+                tempFiles.add(tempFile);
+            }
+        } catch (IOException e) {
+            tempFiles.forEach(File::delete);
+            throw e;
+        }
+        return tempFiles;
+    }
+
+    public record FlatGeobufWriteOptions(int indexNodeSize,
+                                         int parallelism,
+                                         long sortMemoryBudget,
+                                         int encodingThreads,
+                                         List<Overview> overviews) {
         public static Builder builder() {
             return new Builder();
         }
 
         public static final class Builder {
             private Integer indexNodeSize;
+            private int parallelism = 1;
+            private long sortMemoryBudget = UNLIMITED_SORT_MEMORY;
+            private int encodingThreads = 1;
+            private final List<Overview> overviews = new ArrayList<>();
 
             public Builder indexNodeSize(int indexNodeSize) {
                 if (indexNodeSize < 0) {
@@ -141,9 +499,52 @@ public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.
                 return this;
             }
 
+            public Builder parallelism(int parallelism) {
+                if (parallelism < 1) {
+                    throw new IllegalArgumentException("parallelism must be >= 1");
+                }
+                this.parallelism = parallelism;
+                return this;
+            }
+
+            public Builder sortMemoryBudget(long sortMemoryBudget) {
+                if (sortMemoryBudget < 1) {
+                    throw new IllegalArgumentException("sortMemoryBudget must be >= 1");
+                }
+                this.sortMemoryBudget = sortMemoryBudget;
+                return this;
+            }
+
+            public Builder encodingThreads(int encodingThreads) {
+                if (encodingThreads < 1) {
+                    throw new IllegalArgumentException("encodingThreads must be >= 1");
+                }
+                this.encodingThreads = encodingThreads;
+                return this;
+            }
+
+            // An overview <table>.z<zoom>.fgb with every geometry simplified by the tolerance, in units of the SRID.
+            public Builder overview(int zoom, double tolerance) {
+                if (zoom < 0) {
+                    throw new IllegalArgumentException("overview zoom must be >= 0");
+                }
+                if (!(tolerance > 0) || Double.isInfinite(tolerance)) {
+                    throw new IllegalArgumentException("overview tolerance must be > 0");
+                }
+                if (overviews.stream().anyMatch(overview -> overview.zoom() == zoom)) {
+                    throw new IllegalArgumentException("overview zoom " + zoom + " provided multiple times");
+                }
+                overviews.add(new Overview(zoom, tolerance));
+                return this;
+            }
+
             public FlatGeobufWriteOptions build() {
                 int resolved = indexNodeSize == null ? DEFAULT_NODE_SIZE : indexNodeSize;
-                return new FlatGeobufWriteOptions(resolved);
+                if (resolved == 0 && !overviews.isEmpty()) {
+                    throw new IllegalArgumentException("overviews need a spatial index (indexNodeSize > 0)");
+                }
+                List<Overview> sorted = overviews.stream().sorted(Comparator.comparingInt(Overview::zoom)).toList();
+                return new FlatGeobufWriteOptions(resolved, parallelism, sortMemoryBudget, encodingThreads, sorted);
             }
         }
     }
@@ -165,7 +566,7 @@ public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.
             columnMeta.width = metaData.getColumnDisplaySize(i);
             columnMeta.precision = metaData.getPrecision(i);
             columnMeta.scale = metaData.getScale(i);
-            columns.add(new ColumnSpec(name, sqlType, columnType, dateOnly, columnMeta));
+            columns.add(new ColumnSpec(name, i, sqlType, columnType, dateOnly, columnMeta));
         }
         return columns;
     }
@@ -186,128 +587,116 @@ public class FlatGeobufTableWriter implements TableWriter<FlatGeobufTableWriter.
         };
     }
 
-    private static Geometry normalizeGeometry(Geometry geometry, byte geometryType) throws SQLException {
-        return switch (geometryType) {
-            case GeometryType.Point -> ensureType(geometry, Point.class);
-            case GeometryType.LineString -> ensureType(geometry, LineString.class);
-            case GeometryType.Polygon -> ensureType(geometry, Polygon.class);
-            case GeometryType.MultiPoint -> promoteToMulti(geometry, MultiPoint.class);
-            case GeometryType.MultiLineString -> promoteToMulti(geometry, MultiLineString.class);
-            case GeometryType.MultiPolygon -> promoteToMulti(geometry, MultiPolygon.class);
-            default -> geometry;
-        };
-    }
-
-    private static Geometry ensureType(Geometry geometry, Class<? extends Geometry> expected) throws SQLException {
-        if (expected.isInstance(geometry)) {
-            return geometry;
-        }
-        throw new SQLException("Unexpected geometry type: " + geometry.getGeometryType());
-    }
-
-    private static Geometry promoteToMulti(Geometry geometry, Class<? extends Geometry> expected) throws SQLException {
-        if (expected.isInstance(geometry)) {
-            return geometry;
-        }
-        GeometryFactory factory = geometry.getFactory();
-        if (expected.equals(MultiPoint.class) && geometry instanceof Point point) {
-            return factory.createMultiPoint(new Point[] { point });
-        }
-        if (expected.equals(MultiLineString.class) && geometry instanceof LineString lineString) {
-            return factory.createMultiLineString(new LineString[] { lineString });
-        }
-        if (expected.equals(MultiPolygon.class) && geometry instanceof Polygon polygon) {
-            return factory.createMultiPolygon(new Polygon[] { polygon });
-        }
-        throw new SQLException("Unexpected geometry type: " + geometry.getGeometryType());
-    }
-
-    private static byte[] encodeFeature(Geometry geometry,
-                                        byte geometryType,
-                                        FlatGeobufPropertiesWriter propertiesWriter,
-                                        ResultSet resultSet,
-                                        boolean hasGeometry) throws SQLException {
-        FlatBufferBuilder builder = new FlatBufferBuilder();
-        int geometryOffset = 0;
-        if (hasGeometry) {
-            try {
-                geometryOffset = GeometryConversions.serialize(builder, geometry, geometryType);
-            } catch (IOException e) {
-                throw new SQLException("Unable to serialize geometry.", e);
-            }
-        }
-        byte[] properties = propertiesWriter.write(resultSet);
-        int propertiesOffset = properties.length == 0 ? 0 : Feature.createPropertiesVector(builder, properties);
-        Feature.startFeature(builder);
-        if (hasGeometry) {
-            Feature.addGeometry(builder, geometryOffset);
-        }
-        if (properties.length > 0) {
-            Feature.addProperties(builder, propertiesOffset);
-        }
-        int featureOffset = Feature.endFeature(builder);
-        Feature.finishSizePrefixedFeatureBuffer(builder, featureOffset);
-        return builder.sizedByteArray();
-    }
-
     private static void writeFlatGeobuf(TableDescriptor table,
-                                        boolean hasGeometry,
                                         int indexNodeSize,
-                                        List<ColumnSpec> columnSpecs,
-                                        List<FeatureItem> items,
-                                        List<FeatureOffset> featureOffsets,
-                                        Envelope datasetEnvelope,
-                                        File tempFile,
-                                        OutputStream outputStream) throws IOException {
-        try (BufferedOutputStream bufferedOut = new BufferedOutputStream(outputStream)) {
+                                        long sortMemoryBudget,
+                                        List<SpillPart> parts,
+                                        WritableByteChannel target) throws IOException {
+        boolean hasGeometry = table.hasGeometry();
+        List<FeatureIndex> indexes = parts.stream().map(SpillPart::features).toList();
+        Envelope datasetEnvelope = new Envelope();
+        parts.forEach(part -> datasetEnvelope.expandToInclude(part.envelope()));
+        long featuresCount = 0;
+        for (FeatureIndex index : indexes) {
+            featuresCount += index.count();
+        }
+
+        try (BufferedOutputStream bufferedOut = new BufferedOutputStream(Channels.newOutputStream(target));
+             SpillFileCopier copier = new SpillFileCopier(parts.stream().map(SpillPart::tempFile).toList(), target)) {
             bufferedOut.write(Constants.MAGIC_BYTES);
 
             HeaderMeta header = new HeaderMeta();
             header.name = table.tableName();
             header.geometryType = table.geometryType();
             header.srid = table.srid();
-            header.envelope = hasGeometry && !items.isEmpty() ? datasetEnvelope : null;
-            header.featuresCount = featureOffsets.size();
-            header.indexNodeSize = hasGeometry && !items.isEmpty() ? indexNodeSize : 0;
-            header.columns = columnSpecs.stream().map(ColumnSpec::columnMeta).toList();
+            header.envelope = hasGeometry && featuresCount > 0 ? datasetEnvelope : null;
+            header.featuresCount = featuresCount;
+            header.indexNodeSize = hasGeometry && featuresCount > 0 ? indexNodeSize : 0;
+            header.columns = parts.get(0).columnSpecs().stream().map(ColumnSpec::columnMeta).toList();
             FlatBufferBuilder builder = new FlatBufferBuilder();
             HeaderMeta.write(header, bufferedOut, builder);
 
-            List<FeatureOffset> offsetsToWrite = featureOffsets;
-            if (header.indexNodeSize > 0) {
-                List<FeatureItem> sortedItems = items;
-                NodeItem extent = PackedRTree.calcExtent(sortedItems);
-                PackedRTree.hilbertSort(sortedItems, extent);
-                long offset = 0;
-                for (FeatureItem item : sortedItems) {
-                    FeatureOffset featureOffset = featureOffsets.get((int) item.offset);
-                    item.nodeItem.offset = offset;
-                    offset += featureOffset.size;
-                }
-                PackedRTree tree = new PackedRTree(sortedItems, (short) header.indexNodeSize);
-                tree.write(bufferedOut);
-                offsetsToWrite = sortedItems.stream()
-                        .map(item -> featureOffsets.get((int) item.offset))
-                        .toList();
-            }
-
+            // Everything after the header goes straight from the spill files to the target channel.
             bufferedOut.flush();
-            try (var randomAccessFile = new java.io.RandomAccessFile(tempFile, "r")) {
-                for (FeatureOffset featureOffset : offsetsToWrite) {
-                    byte[] buffer = new byte[featureOffset.size];
-                    randomAccessFile.seek(featureOffset.offset);
-                    randomAccessFile.readFully(buffer);
-                    bufferedOut.write(buffer);
+            if (header.indexNodeSize == 0) {
+                for (int part = 0; part < parts.size(); part++) {
+                    copier.copyAll(part);
+                }
+            } else if (indexes.stream().anyMatch(FeatureIndex::spilled)) {
+                try (ExternalHilbertSort sort = new ExternalHilbertSort(indexes, sortMemoryBudget)) {
+                    sort.sort(datasetEnvelope, header.indexNodeSize);
+                    sort.writeIndex(bufferedOut);
+                    bufferedOut.flush();
+                    sort.forEachFeature(copier);
+                }
+            } else {
+                SpilledFeatures features = new SpilledFeatures(indexes);
+                features.sortByHilbert(datasetEnvelope);
+                PackedRTreeWriter.write(features, header.indexNodeSize, bufferedOut);
+                bufferedOut.flush();
+                for (int position = 0; position < features.count(); position++) {
+                    copier.accept(features.partOf(position), features.offset(position), features.featureSize(position));
                 }
             }
-        } finally {
-            tempFile.delete();
+            copier.flush();
         }
     }
 
-    record ColumnSpec(String name, int sqlType, int columnType, boolean dateOnly, ColumnMeta columnMeta) {
+    public record Overview(int zoom, double tolerance) {
+    }
+
+    record ColumnSpec(String name, int index, int sqlType, int columnType, boolean dateOnly, ColumnMeta columnMeta) {
+    }
+
+    // The header goes first with placeholders, the feature count and envelope are patched in by finish().
+    private static final class StreamedFile {
+        private final TableDescriptor table;
+        private final FileChannel target;
+        private final HeaderMeta header = new HeaderMeta();
+        private final int headerSize;
+        private final Envelope envelope = new Envelope();
+        private final BufferedOutputStream out;
+
+        private StreamedFile(TableDescriptor table, List<ColumnSpec> columnSpecs, FileChannel target) throws IOException {
+            this.table = table;
+            this.target = target;
+            header.name = table.tableName();
+            header.geometryType = table.geometryType();
+            header.srid = table.srid();
+            // Placeholders for values only known after the scan; they take the same space as the real ones.
+            header.envelope = table.hasGeometry() ? new Envelope(0, 0, 0, 0) : null;
+            header.featuresCount = Long.MAX_VALUE;
+            header.indexNodeSize = 0;
+            header.columns = columnSpecs.stream().map(ColumnSpec::columnMeta).toList();
+            ByteBuffer placeholder = encodeHeader(header);
+            headerSize = placeholder.remaining();
+            while (placeholder.hasRemaining()) {
+                target.write(placeholder);
+            }
+            out = new BufferedOutputStream(Channels.newOutputStream(target));
+        }
+
+        private SpillTarget target() {
+            return new SpillTarget(out, null, table.hasGeometry() ? envelope : null);
+        }
+
+        private void finish(long featuresCount) throws IOException {
+            out.flush();
+            header.featuresCount = featuresCount;
+            header.envelope = table.hasGeometry() && featuresCount > 0 ? envelope : null;
+            ByteBuffer patched = encodeHeader(header);
+            if (featuresCount == 0) {
+                // A zero count is a default value that flatbuffers omits, so the header shrinks.
+                target.truncate(0);
+                writeFully(target, patched, 0);
+            } else if (patched.remaining() == headerSize) {
+                writeFully(target, patched, 0);
+            } else {
+                throw new IOException("Header size changed while patching " + table.tableName());
+            }
+        }
     }
 
-    record FeatureOffset(long offset, int size) {
+    record SpillPart(List<ColumnSpec> columnSpecs, File tempFile, FeatureIndex features, Envelope envelope) {
     }
 }
@@ -0,0 +1,161 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+final class PackedRTreeWriter {
+    static final int NODE_ITEM_BYTES = 4 * Double.BYTES + Long.BYTES;
+
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static final int WRITE_BUFFER_NODES = 1024;
+
+    private PackedRTreeWriter() {
+    }
+
+    interface Leaves {
+        int count();
+
+        double minX(int position);
+
+        double minY(int position);
+
+        double maxX(int position);
+
+        double maxY(int position);
+
+        int featureSize(int position);
+    }
+
+    static void write(Leaves leaves, int nodeSize, OutputStream out) throws IOException {
+        int numItems = leaves.count();
+        long[] levelNumNodes = levelNumNodes(numItems, nodeSize);
+        long[] levelOffsets = levelOffsets(levelNumNodes);
+
+        // Internal nodes are stored per level, leaves are streamed from the caller's feature index.
+        double[][] levelBounds = new double[levelNumNodes.length][];
+        for (int level = 1; level < levelNumNodes.length; level++) {
+            levelBounds[level] = levelBounds(leaves, levelBounds[level - 1], (int) levelNumNodes[level - 1],
+                    (int) levelNumNodes[level], nodeSize);
+        }
+
+        NodeWriter nodeWriter = new NodeWriter(out);
+        for (int level = levelNumNodes.length - 1; level >= 1; level--) {
+            double[] bounds = levelBounds[level];
+            for (int node = 0; node < levelNumNodes[level]; node++) {
+                long firstChild = levelOffsets[level - 1] + (long) node * nodeSize;
+                nodeWriter.write(bounds[node * 4], bounds[node * 4 + 1], bounds[node * 4 + 2], bounds[node * 4 + 3],
+                        firstChild);
+            }
+        }
+        long featureOffset = 0;
+        for (int position = 0; position < numItems; position++) {
+            nodeWriter.write(leaves.minX(position), leaves.minY(position), leaves.maxX(position), leaves.maxY(position),
+                    featureOffset);
+            featureOffset += leaves.featureSize(position);
+        }
+        nodeWriter.flush();
+    }
+
+    private static double[] levelBounds(Leaves leaves,
+                                        double[] childBounds,
+                                        int numChildren,
+                                        int numNodes,
+                                        int nodeSize) {
+        double[] bounds = new double[numNodes * 4];
+        IntStream nodes = IntStream.range(0, numNodes);
+        if (numChildren >= PARALLEL_THRESHOLD) {
+            nodes = nodes.parallel();
+        }
+        // Every node owns its own slots in the bounds array, so the nodes of a level can be computed concurrently.
+        nodes.forEach(node -> {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int last = (int) Math.min((long) (node + 1) * nodeSize, numChildren);
+            for (int child = node * nodeSize; child < last; child++) {
+                if (childBounds == null) {
+                    minX = Math.min(minX, leaves.minX(child));
+                    minY = Math.min(minY, leaves.minY(child));
+                    maxX = Math.max(maxX, leaves.maxX(child));
+                    maxY = Math.max(maxY, leaves.maxY(child));
+                } else {
+                    minX = Math.min(minX, childBounds[child * 4]);
+                    minY = Math.min(minY, childBounds[child * 4 + 1]);
+                    maxX = Math.max(maxX, childBounds[child * 4 + 2]);
+                    maxY = Math.max(maxY, childBounds[child * 4 + 3]);
+                }
+            }
+            bounds[node * 4] = minX;
+            bounds[node * 4 + 1] = minY;
+            bounds[node * 4 + 2] = maxX;
+            bounds[node * 4 + 3] = maxY;
+        });
+        return bounds;
+    }
+
+    static long[] levelNumNodes(long numItems, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("nodeSize must be >= 2");
+        }
+        if (numItems == 0) {
+            throw new IllegalArgumentException("Cannot build an index without items.");
+        }
+        long[] levels = new long[64];
+        int count = 0;
+        long n = numItems;
+        levels[count++] = n;
+        do {
+            n = (n + nodeSize - 1) / nodeSize;
+            levels[count++] = n;
+        } while (n != 1);
+        return Arrays.copyOf(levels, count);
+    }
+
+    static long[] levelOffsets(long[] levelNumNodes) {
+        long numNodes = 0;
+        for (long levelNodes : levelNumNodes) {
+            numNodes += levelNodes;
+        }
+        long[] offsets = new long[levelNumNodes.length];
+        long n = numNodes;
+        for (int level = 0; level < levelNumNodes.length; level++) {
+            offsets[level] = n - levelNumNodes[level];
+            n -= levelNumNodes[level];
+        }
+        return offsets;
+    }
+
+    static final class NodeWriter implements Flushable {
+        private final OutputStream out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(NODE_ITEM_BYTES * WRITE_BUFFER_NODES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        NodeWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void write(double minX, double minY, double maxX, double maxY, long offset) throws IOException {
+            if (buffer.remaining() < NODE_ITEM_BYTES) {
+                flush();
+            }
+            buffer.putDouble(minX);
+            buffer.putDouble(minY);
+            buffer.putDouble(maxX);
+            buffer.putDouble(maxY);
+            buffer.putLong(offset);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+final class SpillFileCopier implements FeatureRangeConsumer, Closeable {
+    // A transferTo per range costs a system call, which for single features is slower than a positional read into
+    // a shared buffer; short ranges are therefore gathered in the buffer and only long ranges are transferred.
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final List<FileChannel> spillChannels = new ArrayList<>();
+    private final WritableByteChannel target;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private int pendingPart = -1;
+    private long pendingStart;
+    private long pendingEnd;
+
+    SpillFileCopier(List<File> spillFiles, WritableByteChannel target) throws IOException {
+        this.target = target;
+        try {
+            for (File spillFile : spillFiles) {
+                spillChannels.add(FileChannel.open(spillFile.toPath(), StandardOpenOption.READ));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void accept(int part, long offset, long length) throws IOException {
+        // Neighbours in the spill file often stay neighbours after sorting; coalesce them into one transfer.
+        if (part == pendingPart && offset == pendingEnd) {
+            pendingEnd += length;
+            return;
+        }
+        copyPending();
+        pendingPart = part;
+        pendingStart = offset;
+        pendingEnd = offset + length;
+    }
+
+    void copyAll(int part) throws IOException {
+        accept(part, 0, spillChannels.get(part).size());
+    }
+
+    void flush() throws IOException {
+        copyPending();
+        drain();
+    }
+
+    private void copyPending() throws IOException {
+        if (pendingPart < 0) {
+            return;
+        }
+        FileChannel source = spillChannels.get(pendingPart);
+        long position = pendingStart;
+        if (pendingEnd - pendingStart >= BUFFER_SIZE) {
+            drain();
+            while (position < pendingEnd) {
+                long transferred = source.transferTo(position, pendingEnd - position, target);
+                if (transferred <= 0) {
+                    throw endOfFile();
+                }
+                position += transferred;
+            }
+        } else {
+            if (pendingEnd - pendingStart > buffer.remaining()) {
+                drain();
+            }
+            buffer.limit(buffer.position() + (int) (pendingEnd - pendingStart));
+            while (buffer.hasRemaining()) {
+                int read = source.read(buffer, position);
+                if (read < 0) {
+                    throw endOfFile();
+                }
+                position += read;
+            }
+            buffer.limit(buffer.capacity());
+        }
+        pendingPart = -1;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private EOFException endOfFile() {
+        return new EOFException("Spill file ended before feature range " + pendingStart + "-" + pendingEnd);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : spillChannels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ch.so.agi.flatgeobuf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.locationtech.jts.geom.Envelope;
+
+// Where the encoded features of one output file go; features and envelope are null when not tracked.
+record SpillTarget(OutputStream out, FeatureIndex features, Envelope envelope) {
+    void write(EncodedFeatures encoded) throws IOException {
+        encoded.writeTo(out, features, envelope);
+    }
+}
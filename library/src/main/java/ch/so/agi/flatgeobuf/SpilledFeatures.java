@@ -0,0 +1,119 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.HilbertCurve;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.locationtech.jts.geom.Envelope;
+
+final class SpilledFeatures implements PackedRTreeWriter.Leaves {
+    private final List<FeatureIndex> parts;
+    private final int[] partStarts;
+    private long[] sortKeys;
+
+    SpilledFeatures(List<FeatureIndex> parts) {
+        this.parts = parts;
+        this.partStarts = new int[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            partStarts[i + 1] = Math.addExact(partStarts[i], parts.get(i).count());
+        }
+    }
+
+    void sortByHilbert(Envelope extent) {
+        HilbertCurve curve = new HilbertCurve(extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY());
+        int count = count();
+        long[] keys = new long[count];
+        IntStream indexes = IntStream.range(0, count);
+        if (count >= PackedRTreeWriter.PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(index -> {
+            int part = part(index);
+            FeatureIndex features = parts.get(part);
+            int local = index - partStarts[part];
+            long hilbert = curve.index(features.minX(local), features.minY(local), features.maxX(local), features.maxY(local));
+            // Unsigned (hilbert, index) key; flipping the sign bit makes the signed sort order match.
+            keys[index] = ((hilbert << 32) | index) ^ Long.MIN_VALUE;
+        });
+        // The index in the low bits makes every key unique, so the parallel sort is deterministic.
+        Arrays.parallelSort(keys);
+        this.sortKeys = keys;
+    }
+
+    long retainedBytes() {
+        long bytes = sortKeys == null ? 0 : (long) sortKeys.length * Long.BYTES;
+        for (FeatureIndex part : parts) {
+            bytes += part.retainedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int count() {
+        return partStarts[parts.size()];
+    }
+
+    int partOf(int position) {
+        return part(indexAt(position));
+    }
+
+    long offset(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).offset(index - partStarts[part]);
+    }
+
+    @Override
+    public int featureSize(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).size(index - partStarts[part]);
+    }
+
+    @Override
+    public double minX(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).minX(index - partStarts[part]);
+    }
+
+    @Override
+    public double minY(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).minY(index - partStarts[part]);
+    }
+
+    @Override
+    public double maxX(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).maxX(index - partStarts[part]);
+    }
+
+    @Override
+    public double maxY(int position) {
+        int index = indexAt(position);
+        int part = part(index);
+        return parts.get(part).maxY(index - partStarts[part]);
+    }
+
+    private int indexAt(int position) {
+        return sortKeys == null ? position : (int) sortKeys[position];
+    }
+
+    private int part(int index) {
+        if (parts.size() == 1) {
+            return 0;
+        }
+        int found = Arrays.binarySearch(partStarts, index);
+        if (found < 0) {
+            return -found - 2;
+        }
+        // Skip empty parts that share the same start.
+        while (found + 1 < parts.size() && partStarts[found + 1] == index) {
+            found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,277 @@
+package ch.so.agi.flatgeobuf;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.wololo.flatgeobuf.generated.Geometry;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+final class WkbGeometryTranscoder {
+    private static final int WKB_POINT = 1;
+    private static final int WKB_LINESTRING = 2;
+    private static final int WKB_POLYGON = 3;
+    private static final int WKB_MULTIPOINT = 4;
+    private static final int WKB_MULTILINESTRING = 5;
+    private static final int WKB_MULTIPOLYGON = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ByteBuffer wkb;
+    private int geometryType;
+    private boolean hasZ;
+    private boolean hasM;
+    private int sequenceCount;
+    private int[] sequenceOffsets = new int[INITIAL_CAPACITY];
+    private int[] sequenceSizes = new int[INITIAL_CAPACITY];
+    private boolean[] sequenceLittleEndian = new boolean[INITIAL_CAPACITY];
+    private int partCount;
+    private int[] partStarts = new int[INITIAL_CAPACITY + 1];
+    private int[] partOffsets = new int[INITIAL_CAPACITY * 4];
+    private int[] partGeometries = new int[INITIAL_CAPACITY];
+
+    // Rejects everything the JTS reader would repair, reject or read as empty; callers then use the JTS path.
+    boolean read(ByteBuffer wkb, byte geometryType) {
+        this.wkb = wkb;
+        this.geometryType = geometryType;
+        sequenceCount = 0;
+        partCount = 0;
+        try {
+            int end = switch (geometryType) {
+                case GeometryType.Point -> readPoint(wkb.position(), WKB_POINT, true);
+                case GeometryType.LineString -> readLineString(wkb.position(), WKB_LINESTRING, true);
+                case GeometryType.Polygon -> readPolygon(wkb.position(), WKB_POLYGON, true);
+                case GeometryType.MultiPoint -> readMulti(wkb.position(), WKB_MULTIPOINT, WKB_POINT);
+                case GeometryType.MultiLineString -> readMulti(wkb.position(), WKB_MULTILINESTRING, WKB_LINESTRING);
+                case GeometryType.MultiPolygon -> readMulti(wkb.position(), WKB_MULTIPOLYGON, WKB_POLYGON);
+                default -> -1;
+            };
+            return end > 0 && sequenceCount > 0;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    int write(FlatBufferBuilder builder) {
+        if (geometryType != GeometryType.MultiPolygon) {
+            boolean ends = geometryType == GeometryType.Polygon
+                    || geometryType == GeometryType.MultiLineString && sequenceCount > 1;
+            writePart(builder, 0, sequenceCount, ends, 0);
+            return Geometry.createGeometry(builder, partOffsets[0], partOffsets[1], partOffsets[2], partOffsets[3],
+                    0, 0, 0, 0);
+        }
+        for (int part = 0; part < partCount; part++) {
+            writePart(builder, partStarts[part], partStarts[part + 1], true, part * 4);
+        }
+        for (int part = 0; part < partCount; part++) {
+            int base = part * 4;
+            partGeometries[part] = Geometry.createGeometry(builder, partOffsets[base], partOffsets[base + 1],
+                    partOffsets[base + 2], partOffsets[base + 3], 0, 0, GeometryType.Polygon, 0);
+        }
+        Geometry.startPartsVector(builder, partCount);
+        for (int part = partCount - 1; part >= 0; part--) {
+            builder.addOffset(partGeometries[part]);
+        }
+        int parts = builder.endVector();
+        return Geometry.createGeometry(builder, 0, 0, 0, 0, 0, 0, 0, parts);
+    }
+
+    private void writePart(FlatBufferBuilder builder, int firstSequence, int lastSequence, boolean ends, int slot) {
+        int numPoints = 0;
+        for (int sequence = firstSequence; sequence < lastSequence; sequence++) {
+            numPoints += sequenceSizes[sequence];
+        }
+        int stride = 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+
+        // Flatbuffers vectors are built back to front.
+        Geometry.startXyVector(builder, 2 * numPoints);
+        for (int sequence = lastSequence - 1; sequence >= firstSequence; sequence--) {
+            wkb.order(sequenceLittleEndian[sequence] ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            for (int i = sequenceSizes[sequence] - 1; i >= 0; i--) {
+                int offset = sequenceOffsets[sequence] + i * stride * Double.BYTES;
+                builder.addDouble(wkb.getDouble(offset + Double.BYTES));
+                builder.addDouble(wkb.getDouble(offset));
+            }
+        }
+        partOffsets[slot + 1] = builder.endVector();
+        partOffsets[slot + 2] = hasZ ? writeOrdinates(builder, firstSequence, lastSequence, numPoints, stride, 2) : 0;
+        partOffsets[slot + 3] = hasM
+                ? writeOrdinates(builder, firstSequence, lastSequence, numPoints, stride, hasZ ? 3 : 2)
+                : 0;
+        partOffsets[slot] = 0;
+        if (ends) {
+            Geometry.startEndsVector(builder, lastSequence - firstSequence);
+            int end = numPoints;
+            for (int sequence = lastSequence - 1; sequence >= firstSequence; sequence--) {
+                builder.addInt(end);
+                end -= sequenceSizes[sequence];
+            }
+            partOffsets[slot] = builder.endVector();
+        }
+    }
+
+    private int writeOrdinates(FlatBufferBuilder builder,
+                               int firstSequence,
+                               int lastSequence,
+                               int numPoints,
+                               int stride,
+                               int ordinate) {
+        builder.startVector(Double.BYTES, numPoints, Double.BYTES);
+        for (int sequence = lastSequence - 1; sequence >= firstSequence; sequence--) {
+            wkb.order(sequenceLittleEndian[sequence] ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            for (int i = sequenceSizes[sequence] - 1; i >= 0; i--) {
+                builder.addDouble(wkb.getDouble(sequenceOffsets[sequence] + (i * stride + ordinate) * Double.BYTES));
+            }
+        }
+        return builder.endVector();
+    }
+
+    private int readMulti(int position, int multiType, int partType) {
+        int type = readHeader(position, multiType, true);
+        boolean promoted = type == partType;
+        if (type != multiType && !promoted) {
+            return -1;
+        }
+        if (promoted) {
+            // Single geometries are promoted to a multi geometry with one part, as promoteToMulti does.
+            return readPart(position, partType, true);
+        }
+        position = headerEnd(position);
+        int count = wkb.getInt(position);
+        position += Integer.BYTES;
+        if (count <= 0) {
+            return -1;
+        }
+        for (int i = 0; i < count && position > 0; i++) {
+            position = readPart(position, partType, false);
+        }
+        return position;
+    }
+
+    private int readPart(int position, int partType, boolean topLevel) {
+        return switch (partType) {
+            case WKB_POINT -> readPoint(position, partType, topLevel);
+            case WKB_LINESTRING -> readLineString(position, partType, topLevel);
+            default -> readPolygon(position, partType, topLevel);
+        };
+    }
+
+    private int readPoint(int position, int type, boolean topLevel) {
+        if (readHeader(position, type, topLevel) != type) {
+            return -1;
+        }
+        int coordinates = headerEnd(position);
+        int end = addSequence(coordinates, 1);
+        if (Double.isNaN(wkb.getDouble(coordinates)) || Double.isNaN(wkb.getDouble(coordinates + Double.BYTES))) {
+            return -1;
+        }
+        return end;
+    }
+
+    private int readLineString(int position, int type, boolean topLevel) {
+        if (readHeader(position, type, topLevel) != type) {
+            return -1;
+        }
+        position = headerEnd(position);
+        int size = wkb.getInt(position);
+        if (size < 2) {
+            return -1;
+        }
+        return addSequence(position + Integer.BYTES, size);
+    }
+
+    private int readPolygon(int position, int type, boolean topLevel) {
+        if (readHeader(position, type, topLevel) != type) {
+            return -1;
+        }
+        position = headerEnd(position);
+        int rings = wkb.getInt(position);
+        position += Integer.BYTES;
+        if (rings <= 0) {
+            return -1;
+        }
+        ensurePartCapacity(partCount + 1);
+        partStarts[partCount] = sequenceCount;
+        for (int ring = 0; ring < rings; ring++) {
+            int size = wkb.getInt(position);
+            int coordinates = position + Integer.BYTES;
+            // JTS closes open rings and pads short ones; leave those to the JTS path.
+            if (size < 4 || !sameXY(coordinates, coordinates + (size - 1) * stride() * Double.BYTES)) {
+                return -1;
+            }
+            position = addSequence(coordinates, size);
+        }
+        partCount++;
+        partStarts[partCount] = sequenceCount;
+        return position;
+    }
+
+    private int readHeader(int position, int expectedType, boolean topLevel) {
+        byte byteOrder = wkb.get(position);
+        if (byteOrder != 0 && byteOrder != 1) {
+            return -1;
+        }
+        wkb.order(byteOrder == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int typeInt = wkb.getInt(position + 1);
+        int type = (typeInt & 0xffff) % 1000;
+        int isoDimension = (typeInt & 0xffff) / 1000;
+        boolean z = (typeInt & 0x80000000) != 0 || isoDimension == 1 || isoDimension == 3;
+        boolean m = (typeInt & 0x40000000) != 0 || isoDimension == 2 || isoDimension == 3;
+        if (topLevel) {
+            // GeometryConversions cannot serialize XYM sequences; keep whatever the JTS path does for them.
+            if (m && !z) {
+                return -1;
+            }
+            hasZ = z;
+            hasM = m;
+        } else if (z != hasZ || m != hasM) {
+            return -1;
+        }
+        return type == expectedType || topLevel ? type : -1;
+    }
+
+    private int headerEnd(int position) {
+        boolean hasSrid = (wkb.getInt(position + 1) & 0x20000000) != 0;
+        return position + 1 + Integer.BYTES + (hasSrid ? Integer.BYTES : 0);
+    }
+
+    private int addSequence(int offset, int size) {
+        int stride = stride();
+        int end = offset + size * stride * Double.BYTES;
+        if (size < 0 || end > wkb.limit() || end < offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (sequenceCount == sequenceOffsets.length) {
+            int capacity = sequenceOffsets.length * 2;
+            sequenceOffsets = Arrays.copyOf(sequenceOffsets, capacity);
+            sequenceSizes = Arrays.copyOf(sequenceSizes, capacity);
+            sequenceLittleEndian = Arrays.copyOf(sequenceLittleEndian, capacity);
+        }
+        sequenceOffsets[sequenceCount] = offset;
+        sequenceSizes[sequenceCount] = size;
+        sequenceLittleEndian[sequenceCount] = wkb.order() == ByteOrder.LITTLE_ENDIAN;
+        sequenceCount++;
+        return end;
+    }
+
+    private boolean sameXY(int first, int last) {
+        return wkb.getDouble(first) == wkb.getDouble(last)
+                && wkb.getDouble(first + Double.BYTES) == wkb.getDouble(last + Double.BYTES);
+    }
+
+    private int stride() {
+        return 2 + (hasZ ? 1 : 0) + (hasM ? 1 : 0);
+    }
+
+    private void ensurePartCapacity(int parts) {
+        if (parts + 1 > partStarts.length) {
+            partStarts = Arrays.copyOf(partStarts, Math.max(partStarts.length * 2, parts + 1));
+        }
+        if (parts * 4 > partOffsets.length) {
+            partOffsets = Arrays.copyOf(partOffsets, Math.max(partOffsets.length * 2, parts * 4));
+        }
+        if (parts > partGeometries.length) {
+            partGeometries = Arrays.copyOf(partGeometries, Math.max(partGeometries.length * 2, parts));
+        }
+    }
+}
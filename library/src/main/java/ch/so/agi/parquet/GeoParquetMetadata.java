@@ -0,0 +1,141 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.CrsDefinitions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.TreeSet;
+
+// Collects the geometry types and dataset bbox while rows are written and renders the GeoParquet 1.1 'geo' footer key.
+final class GeoParquetMetadata {
+    static final String KEY = "geo";
+    private static final String VERSION = "1.1.0";
+    private static final String[] TYPE_NAMES = {
+            null, "Point", "LineString", "Polygon", "MultiPoint", "MultiLineString", "MultiPolygon", "GeometryCollection"
+    };
+
+    private final String geometryColumn;
+    private final int srid;
+    private final boolean spherical;
+    private final String bboxColumn;
+    private final NativeGeometryWriter nativeGeometry;
+    private final TreeSet<String> types = new TreeSet<>();
+    private boolean unknownTypes;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    // Native encodings hold one geometry type by construction, so the type is not taken from the rows.
+    GeoParquetMetadata(String geometryColumn, int srid, boolean spherical, String bboxColumn,
+                       NativeGeometryWriter nativeGeometry) {
+        this.geometryColumn = geometryColumn;
+        this.srid = srid;
+        this.spherical = spherical;
+        this.bboxColumn = bboxColumn;
+        this.nativeGeometry = nativeGeometry;
+        if (nativeGeometry != null) {
+            types.add(nativeGeometry.geometryTypeName());
+        }
+    }
+
+    GeoParquetMetadata copyEmpty() {
+        return new GeoParquetMetadata(geometryColumn, srid, spherical, bboxColumn, nativeGeometry);
+    }
+
+    void add(ByteBuffer wkb, double minX, double minY, double maxX, double maxY) {
+        if (nativeGeometry == null) {
+            addType(wkb);
+        }
+        if (minX <= maxX && minY <= maxY) {
+            this.minX = Math.min(this.minX, minX);
+            this.minY = Math.min(this.minY, minY);
+            this.maxX = Math.max(this.maxX, maxX);
+            this.maxY = Math.max(this.maxY, maxY);
+        }
+    }
+
+    void merge(GeoParquetMetadata other) {
+        types.addAll(other.types);
+        unknownTypes |= other.unknownTypes;
+        minX = Math.min(minX, other.minX);
+        minY = Math.min(minY, other.minY);
+        maxX = Math.max(maxX, other.maxX);
+        maxY = Math.max(maxY, other.maxY);
+    }
+
+    // GeoParquet only names XY and XYZ types; anything else leaves the list empty, which means "unknown".
+    private void addType(ByteBuffer wkb) {
+        int position = wkb.position();
+        if (wkb.remaining() < 1 + Integer.BYTES) {
+            unknownTypes = true;
+            return;
+        }
+        ByteOrder order = wkb.get(position) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        int typeInt = wkb.duplicate().order(order).getInt(position + 1);
+        int type = (typeInt & 0xffff) % 1000;
+        int isoDimension = (typeInt & 0xffff) / 1000;
+        boolean z = (typeInt & 0x80000000) != 0 || isoDimension == 1;
+        boolean m = (typeInt & 0x40000000) != 0 || isoDimension == 2 || isoDimension == 3;
+        if (m || type < 1 || type >= TYPE_NAMES.length) {
+            unknownTypes = true;
+            return;
+        }
+        types.add(z ? TYPE_NAMES[type] + " Z" : TYPE_NAMES[type]);
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"version\":\"").append(VERSION).append("\",\"primary_column\":");
+        quote(json, geometryColumn);
+        json.append(",\"columns\":{");
+        quote(json, geometryColumn);
+        json.append(":{\"encoding\":");
+        quote(json, nativeGeometry == null ? "WKB" : nativeGeometry.encoding());
+        json.append(",\"geometry_types\":[");
+        if (!unknownTypes) {
+            String separator = "";
+            for (String type : types) {
+                json.append(separator);
+                quote(json, type);
+                separator = ",";
+            }
+        }
+        // GeoParquet allows only PROJJSON or null (unknown); a missing crs would mean OGC:CRS84.
+        String crs = srid > 0 ? CrsDefinitions.projJson(srid) : null;
+        json.append("],\"crs\":").append(crs != null ? crs : "null");
+        if (spherical) {
+            json.append(",\"edges\":\"spherical\"");
+        }
+        if (minX <= maxX && minY <= maxY) {
+            json.append(",\"bbox\":[").append(minX).append(',').append(minY).append(',')
+                    .append(maxX).append(',').append(maxY).append(']');
+        }
+        if (bboxColumn != null) {
+            json.append(",\"covering\":{\"bbox\":{");
+            String[] names = {"xmin", "ymin", "xmax", "ymax"};
+            for (int i = 0; i < names.length; i++) {
+                json.append(i == 0 ? "" : ",").append('"').append(names[i]).append("\":[");
+                quote(json, bboxColumn);
+                json.append(",\"").append(names[i]).append("\"]");
+            }
+            json.append("}}");
+        }
+        return json.append("}}}").toString();
+    }
+
+    private static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
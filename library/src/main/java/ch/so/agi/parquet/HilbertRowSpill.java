@@ -0,0 +1,264 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.HilbertCurve;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// External merge sort of the rows by the Hilbert value of their envelope centre. Rows are spilled to a temporary
+// file as they arrive, together with their centre; nothing is kept in memory per row. The spill is then read back
+// sequentially in runs of at most sortMemoryBudget record bytes, each run is sorted in memory and, unless it is the
+// only one, written to a run file. The run files are merged with a k-way merge, so every file is read sequentially.
+final class HilbertRowSpill implements Closeable {
+    // Record offsets within a run are ints.
+    private static final long MAX_RUN_BYTES = 1L << 30;
+    private static final int MIN_RUN_BYTES = 1 << 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final long runBytes;
+    private final List<Path> tempFiles = new ArrayList<>();
+    private final Path spillFile;
+    private final DataOutputStream out;
+    private int count;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    HilbertRowSpill(long sortMemoryBudget) throws IOException {
+        this.runBytes = Math.max(MIN_RUN_BYTES, Math.min(sortMemoryBudget, MAX_RUN_BYTES));
+        this.spillFile = createTempFile(".rows");
+        this.out = openOutput(spillFile);
+    }
+
+    // Rows without an envelope (null or empty geometries) get NaN centres and are written last.
+    void add(ParquetTableWriter.ParquetRow row) throws IOException {
+        boolean hasEnvelope = row.hasEnvelope();
+        double centerX = hasEnvelope ? (row.envelope(0) + row.envelope(2)) / 2 : Double.NaN;
+        double centerY = hasEnvelope ? (row.envelope(1) + row.envelope(3)) / 2 : Double.NaN;
+        out.writeDouble(centerX);
+        out.writeDouble(centerY);
+        out.writeInt(row.recordSize());
+        row.writeRecord(out);
+        if (hasEnvelope) {
+            this.minX = Math.min(this.minX, centerX);
+            this.minY = Math.min(this.minY, centerY);
+            this.maxX = Math.max(this.maxX, centerX);
+            this.maxY = Math.max(this.maxY, centerY);
+        }
+        count = Math.addExact(count, 1);
+    }
+
+    int count() {
+        return count;
+    }
+
+    void writeSorted(ParquetTableWriter.RowWriter writer, ParquetTableWriter.ParquetRow row) throws IOException {
+        writeSorted(List.of(this), writer, row);
+    }
+
+    // Sorts the rows of several spills on one curve over their joint extent; equal values keep the spill order.
+    static void writeSorted(List<HilbertRowSpill> spills,
+                            ParquetTableWriter.RowWriter writer,
+                            ParquetTableWriter.ParquetRow row) throws IOException {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (HilbertRowSpill spill : spills) {
+            spill.out.close();
+            minX = Math.min(minX, spill.minX);
+            minY = Math.min(minY, spill.minY);
+            maxX = Math.max(maxX, spill.maxX);
+            maxY = Math.max(maxY, spill.maxY);
+        }
+        // Run files belong to the first spill and are deleted when it is closed.
+        HilbertRowSpill first = spills.get(0);
+        HilbertCurve curve = new HilbertCurve(minX, minY, maxX, maxY);
+        Run run = new Run();
+        List<Path> runFiles = new ArrayList<>();
+        for (HilbertRowSpill spill : spills) {
+            try (DataInputStream in = openInput(spill.spillFile)) {
+                for (int i = 0; i < spill.count; i++) {
+                    double centerX = in.readDouble();
+                    double centerY = in.readDouble();
+                    int size = in.readInt();
+                    if (run.count > 0 && (long) run.end + size > first.runBytes) {
+                        runFiles.add(run.write(first.createTempFile(".run")));
+                    }
+                    // Rows without envelope get a 33rd hilbert bit and sort after all others.
+                    long hilbert = Double.isNaN(centerX) ? 1L << 32 : curve.index(centerX, centerY, centerX, centerY);
+                    run.add(hilbert, in, size);
+                }
+            }
+            Files.deleteIfExists(spill.spillFile);
+        }
+        if (runFiles.isEmpty()) {
+            run.writeTo(writer, row);
+            return;
+        }
+        if (run.count > 0) {
+            runFiles.add(run.write(first.createTempFile(".run")));
+        }
+        // Frees the run buffer before the merge.
+        run = null;
+        merge(runFiles, writer, row);
+    }
+
+    private static void merge(List<Path> runFiles, ParquetTableWriter.RowWriter writer, ParquetTableWriter.ParquetRow row)
+            throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            // Runs hold consecutive rows, so ties are broken by the run to keep the input order.
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    Comparator.comparingLong(RunReader::hilbert).thenComparingInt(RunReader::run));
+            for (int i = 0; i < runFiles.size(); i++) {
+                RunReader reader = new RunReader(i, openInput(runFiles.get(i)));
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                row.readRecord(reader.record, 0, reader.size);
+                writer.write(row);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.input.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        for (Path tempFile : tempFiles) {
+            Files.deleteIfExists(tempFile);
+        }
+        tempFiles.clear();
+    }
+
+    private Path createTempFile(String suffix) throws IOException {
+        Path file = Files.createTempFile("parquet", suffix);
+        file.toFile().deleteOnExit();
+        tempFiles.add(file);
+        return file;
+    }
+
+    private static DataOutputStream openOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER_SIZE));
+    }
+
+    private static DataInputStream openInput(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE));
+    }
+
+    private static final class Run {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] offsets = new int[INITIAL_CAPACITY + 1];
+        private byte[] records = new byte[INITIAL_CAPACITY * 64];
+        private int count;
+        private int end;
+
+        void add(long hilbert, DataInputStream in, int size) throws IOException {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, Math.multiplyExact(count, 2));
+                offsets = Arrays.copyOf(offsets, keys.length + 1);
+            }
+            int required = Math.addExact(end, size);
+            if (required > records.length) {
+                records = Arrays.copyOf(records, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max((long) records.length * 2, required)));
+            }
+            in.readFully(records, end, size);
+            // Unsigned (hilbert, index) key; the index keeps ties in input order, the sign flip keeps the order.
+            keys[count] = ((hilbert << 31) | count) ^ Long.MIN_VALUE;
+            end = required;
+            offsets[++count] = end;
+        }
+
+        void writeTo(ParquetTableWriter.RowWriter writer, ParquetTableWriter.ParquetRow row) throws IOException {
+            Arrays.parallelSort(keys, 0, count);
+            for (int i = 0; i < count; i++) {
+                int index = index(keys[i]);
+                row.readRecord(records, offsets[index], offsets[index + 1] - offsets[index]);
+                writer.write(row);
+            }
+            count = 0;
+            end = 0;
+        }
+
+        Path write(Path file) throws IOException {
+            Arrays.parallelSort(keys, 0, count);
+            try (DataOutputStream run = openOutput(file)) {
+                for (int i = 0; i < count; i++) {
+                    long key = keys[i] ^ Long.MIN_VALUE;
+                    int index = index(keys[i]);
+                    int size = offsets[index + 1] - offsets[index];
+                    run.writeLong(key >>> 31);
+                    run.writeInt(size);
+                    run.write(records, offsets[index], size);
+                }
+            }
+            count = 0;
+            end = 0;
+            return file;
+        }
+
+        private static int index(long key) {
+            return (int) ((key ^ Long.MIN_VALUE) & Integer.MAX_VALUE);
+        }
+    }
+
+    private static final class RunReader {
+        private final int run;
+        private final DataInputStream input;
+        private long hilbert;
+        private int size;
+        private byte[] record = new byte[INITIAL_CAPACITY];
+
+        private RunReader(int run, DataInputStream input) {
+            this.run = run;
+            this.input = input;
+        }
+
+        boolean next() throws IOException {
+            try {
+                hilbert = input.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            size = input.readInt();
+            if (size > record.length) {
+                record = new byte[Math.max(size, record.length * 2)];
+            }
+            input.readFully(record, 0, size);
+            return true;
+        }
+
+        long hilbert() {
+            return hilbert;
+        }
+
+        int run() {
+            return run;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ch.so.agi.parquet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.Type;
+import org.apache.parquet.schema.Types;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+// GeoParquet native encodings: a struct of x, y[, z] doubles per coordinate, wrapped in one Parquet LIST per nesting
+// level of the geometry type. The WKB (ISO or EWKB) of a row is walked straight into the record consumer.
+// Single geometries in multi columns become one part; M values are dropped.
+final class NativeGeometryWriter {
+    private static final String[] AXES = {"x", "y", "z"};
+    private static final String[] ENCODINGS = {
+            null, "point", "linestring", "polygon", "multipoint", "multilinestring", "multipolygon"
+    };
+    private static final String[] TYPE_NAMES = {
+            null, "Point", "LineString", "Polygon", "MultiPoint", "MultiLineString", "MultiPolygon"
+    };
+
+    private final int geometryType;
+    private final boolean z;
+
+    NativeGeometryWriter(int geometryType, boolean z) {
+        if (!supports(geometryType)) {
+            throw new IllegalArgumentException("Native geometry encoding needs a single geometry type.");
+        }
+        this.geometryType = geometryType;
+        this.z = z;
+    }
+
+    static boolean supports(int geometryType) {
+        return geometryType >= GeometryType.Point && geometryType <= GeometryType.MultiPolygon;
+    }
+
+    boolean z() {
+        return z;
+    }
+
+    String encoding() {
+        return ENCODINGS[geometryType];
+    }
+
+    String geometryTypeName() {
+        return z ? TYPE_NAMES[geometryType] + " Z" : TYPE_NAMES[geometryType];
+    }
+
+    GroupType type(String name) {
+        List<Type> axes = new ArrayList<>();
+        for (int i = 0; i < (z ? 3 : 2); i++) {
+            axes.add(Types.required(PrimitiveTypeName.DOUBLE).named(AXES[i]));
+        }
+        int levels = switch (geometryType) {
+            case GeometryType.Point -> 0;
+            case GeometryType.LineString, GeometryType.MultiPoint -> 1;
+            case GeometryType.Polygon, GeometryType.MultiLineString -> 2;
+            default -> 3;
+        };
+        if (levels == 0) {
+            return new GroupType(Type.Repetition.OPTIONAL, name, axes);
+        }
+        GroupType element = new GroupType(Type.Repetition.REQUIRED, "element", axes);
+        for (int level = 1; level < levels; level++) {
+            element = Types.requiredList().element(element).named("element");
+        }
+        return Types.optionalList().element(element).named(name);
+    }
+
+    // Rejects rows the column cannot hold before they are buffered, spilled or encoded.
+    void check(ByteBuffer wkb) throws IOException {
+        Cursor cursor = new Cursor(wkb);
+        int type = cursor.header(wkb.position());
+        boolean matches = type == geometryType
+                || geometryType >= GeometryType.MultiPoint && type == geometryType - 3;
+        if (!matches) {
+            throw new IOException("Geometry type " + (type < TYPE_NAMES.length ? TYPE_NAMES[type] : type)
+                    + " does not match the column type " + TYPE_NAMES[geometryType] + ".");
+        }
+        if (cursor.z && !z) {
+            throw new IOException("Geometry has z coordinates, but the geometry column is declared as 2D.");
+        }
+    }
+
+    void write(RecordConsumer consumer, ByteBuffer wkb) {
+        Cursor cursor = new Cursor(wkb);
+        int type = cursor.header(wkb.position());
+        switch (geometryType) {
+            case GeometryType.Point -> point(consumer, cursor);
+            case GeometryType.LineString -> vertices(consumer, cursor);
+            case GeometryType.Polygon -> rings(consumer, cursor);
+            default -> {
+                int parts = type == geometryType ? cursor.nextInt() : 1;
+                startList(consumer, parts);
+                for (int part = 0; part < parts; part++) {
+                    if (type == geometryType) {
+                        cursor.header(cursor.position);
+                    }
+                    startElement(consumer);
+                    switch (geometryType) {
+                        case GeometryType.MultiPoint -> point(consumer, cursor);
+                        case GeometryType.MultiLineString -> vertices(consumer, cursor);
+                        default -> rings(consumer, cursor);
+                    }
+                    endElement(consumer);
+                }
+                endList(consumer, parts);
+            }
+        }
+    }
+
+    private void rings(RecordConsumer consumer, Cursor cursor) {
+        int rings = cursor.nextInt();
+        startList(consumer, rings);
+        for (int ring = 0; ring < rings; ring++) {
+            startElement(consumer);
+            vertices(consumer, cursor);
+            endElement(consumer);
+        }
+        endList(consumer, rings);
+    }
+
+    private void vertices(RecordConsumer consumer, Cursor cursor) {
+        int vertices = cursor.nextInt();
+        startList(consumer, vertices);
+        for (int vertex = 0; vertex < vertices; vertex++) {
+            startElement(consumer);
+            point(consumer, cursor);
+            endElement(consumer);
+        }
+        endList(consumer, vertices);
+    }
+
+    // Empty points are NaN coordinates in WKB and stay so here, as in GeoArrow.
+    private void point(RecordConsumer consumer, Cursor cursor) {
+        consumer.startGroup();
+        int position = cursor.position;
+        for (int axis = 0; axis < (z ? 3 : 2); axis++) {
+            double value = axis < 2 || cursor.z ? cursor.wkb.getDouble(position + axis * Double.BYTES) : Double.NaN;
+            consumer.startField(AXES[axis], axis);
+            consumer.addDouble(value);
+            consumer.endField(AXES[axis], axis);
+        }
+        cursor.position += cursor.stride;
+        consumer.endGroup();
+    }
+
+    // An empty list is a group without the repeated field.
+    private static void startList(RecordConsumer consumer, int size) {
+        consumer.startGroup();
+        if (size > 0) {
+            consumer.startField("list", 0);
+        }
+    }
+
+    private static void endList(RecordConsumer consumer, int size) {
+        if (size > 0) {
+            consumer.endField("list", 0);
+        }
+        consumer.endGroup();
+    }
+
+    private static void startElement(RecordConsumer consumer) {
+        consumer.startGroup();
+        consumer.startField("element", 0);
+    }
+
+    private static void endElement(RecordConsumer consumer) {
+        consumer.endField("element", 0);
+        consumer.endGroup();
+    }
+
+    private static final class Cursor {
+        private final ByteBuffer wkb;
+        private int position;
+        private boolean z;
+        private int stride;
+
+        private Cursor(ByteBuffer wkb) {
+            this.wkb = wkb.duplicate();
+        }
+
+        // Reads the byte order and type of the (sub-)geometry at position and moves past the header.
+        private int header(int position) {
+            wkb.order(wkb.get(position) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int typeInt = wkb.getInt(position + 1);
+            int isoDimension = (typeInt & 0xffff) / 1000;
+            z = (typeInt & 0x80000000) != 0 || isoDimension == 1 || isoDimension == 3;
+            boolean m = (typeInt & 0x40000000) != 0 || isoDimension == 2 || isoDimension == 3;
+            stride = (2 + (z ? 1 : 0) + (m ? 1 : 0)) * Double.BYTES;
+            this.position = position + 1 + Integer.BYTES + ((typeInt & 0x20000000) != 0 ? Integer.BYTES : 0);
+            return (typeInt & 0xffff) % 1000;
+        }
+
+        private int nextInt() {
+            int value = wkb.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+    }
+}
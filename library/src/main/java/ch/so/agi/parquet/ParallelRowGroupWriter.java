@@ -0,0 +1,246 @@
+package ch.so.agi.parquet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.io.DelegatingPositionOutputStream;
+import org.apache.parquet.io.DelegatingSeekableInputStream;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.MessageType;
+
+// The calling thread buffers rows as records, workers encode and compress whole row groups in memory
+// and the calling thread appends the finished column chunks in order.
+final class ParallelRowGroupWriter implements ParquetTableWriter.RowWriter {
+    // Record offsets are ints, so a buffered row group stays well below 2 GB.
+    private static final long MAX_BUFFER_SIZE = 1L << 30;
+
+    private final MessageType schema;
+    private final List<ParquetTableWriter.ParquetField> fields;
+    private final ParquetTableWriter.ParquetWriteOptions options;
+    private final GeoParquetMetadata geo;
+    private final String bboxColumn;
+    private final long bufferLimit;
+    private final int maxInFlight;
+    private final ParquetFileWriter fileWriter;
+    private final ExecutorService executor;
+    private final Deque<Future<EncodedRowGroup>> pending = new ArrayDeque<>();
+    private final Deque<RecordBuffer> free = new ArrayDeque<>();
+    private RecordBuffer current = new RecordBuffer();
+    private boolean finished;
+
+    ParallelRowGroupWriter(Path outputFile,
+                           MessageType schema,
+                           List<ParquetTableWriter.ParquetField> fields,
+                           ParquetTableWriter.ParquetWriteOptions options,
+                           ParquetFileWriter.Mode mode,
+                           GeoParquetMetadata geo,
+                           String bboxColumn) throws IOException {
+        this.schema = schema;
+        this.fields = fields;
+        this.options = options;
+        this.geo = geo;
+        this.bboxColumn = bboxColumn;
+        this.bufferLimit = Math.min(options.rowGroupSize(), MAX_BUFFER_SIZE);
+        this.maxInFlight = options.maxRowGroupsInFlight();
+        this.fileWriter = ParquetTableWriter.fileWriter(outputFile, schema, mode, options);
+        fileWriter.start();
+        this.executor = Executors.newFixedThreadPool(options.encodingThreads());
+    }
+
+    @Override
+    public void write(ParquetTableWriter.ParquetRow row) throws IOException {
+        current.add(row);
+        if (current.size() >= bufferLimit) {
+            submit();
+        }
+    }
+
+    private void submit() throws IOException {
+        while (pending.size() >= maxInFlight) {
+            appendNext();
+        }
+        RecordBuffer buffer = current;
+        pending.add(executor.submit(() -> encode(buffer)));
+        current = free.isEmpty() ? new RecordBuffer() : free.poll();
+    }
+
+    // Each row group is a complete Parquet file in memory, encoded with the same settings as the sequential writer.
+    private EncodedRowGroup encode(RecordBuffer buffer) throws IOException {
+        ParquetTableWriter.ParquetRow row = new ParquetTableWriter.ParquetRow(fields);
+        GeoParquetMetadata rowGroupGeo = geo == null ? null : geo.copyEmpty();
+        InMemoryFile file = new InMemoryFile();
+        try (ParquetWriter<ParquetTableWriter.ParquetRow> writer = ParquetTableWriter.configure(
+                        new ParquetTableWriter.RowParquetWriterBuilder(file,
+                                new ParquetTableWriter.ParquetTableWriteSupport(schema, fields, rowGroupGeo, bboxColumn)),
+                        fields, options)
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .build()) {
+            for (int i = 0; i < buffer.records; i++) {
+                row.readRecord(buffer.array(), buffer.offsets[i], buffer.length(i));
+                writer.write(row);
+            }
+        }
+        return new EncodedRowGroup(file, rowGroupGeo, buffer);
+    }
+
+    private void appendNext() throws IOException {
+        EncodedRowGroup encoded;
+        try {
+            encoded = pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding row groups.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+        ParquetTableWriter.appendRowGroups(fileWriter, schema, encoded.file());
+        if (geo != null) {
+            geo.merge(encoded.geo());
+        }
+        encoded.buffer().clear();
+        free.add(encoded.buffer());
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (current.records > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            appendNext();
+        }
+        fileWriter.end(geo == null ? Map.of() : Map.of(GeoParquetMetadata.KEY, geo.toJson()));
+        finished = true;
+        executor.shutdown();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        executor.shutdownNow();
+        executor.close();
+        fileWriter.close();
+    }
+
+    private record EncodedRowGroup(InMemoryFile file, GeoParquetMetadata geo, RecordBuffer buffer) {
+    }
+
+    private static class Bytes extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static final class RecordBuffer extends Bytes {
+        private final DataOutputStream out = new DataOutputStream(this);
+        private int[] offsets = new int[1024];
+        private int records;
+
+        private void add(ParquetTableWriter.ParquetRow row) throws IOException {
+            if (records == offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.multiplyExact(offsets.length, 2));
+            }
+            offsets[records++] = size();
+            row.writeRecord(out);
+        }
+
+        private int length(int record) {
+            return (record + 1 < records ? offsets[record + 1] : size()) - offsets[record];
+        }
+
+        private void clear() {
+            reset();
+            records = 0;
+        }
+    }
+
+    private static final class InMemoryFile implements OutputFile, InputFile {
+        private final Bytes bytes = new Bytes();
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) {
+            return createOrOverwrite(blockSizeHint);
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) {
+            bytes.reset();
+            return new DelegatingPositionOutputStream(bytes) {
+                @Override
+                public long getPos() {
+                    return bytes.size();
+                }
+            };
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+
+        @Override
+        public long getLength() {
+            return bytes.size();
+        }
+
+        @Override
+        public SeekableInputStream newStream() {
+            SeekableBytes in = new SeekableBytes(bytes.array(), bytes.size());
+            return new DelegatingSeekableInputStream(in) {
+                @Override
+                public long getPos() {
+                    return in.position();
+                }
+
+                @Override
+                public void seek(long newPos) {
+                    in.seek(newPos);
+                }
+            };
+        }
+    }
+
+    private static final class SeekableBytes extends ByteArrayInputStream {
+        private SeekableBytes(byte[] bytes, int length) {
+            super(bytes, 0, length);
+        }
+
+        private long position() {
+            return pos;
+        }
+
+        private void seek(long position) {
+            pos = (int) Math.min(position, count);
+        }
+    }
+}
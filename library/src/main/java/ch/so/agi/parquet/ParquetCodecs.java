@@ -0,0 +1,107 @@
+package ch.so.agi.parquet;
+
+import com.github.luben.zstd.Zstd;
+import io.airlift.compress.lz4.Lz4Compressor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import org.apache.parquet.bytes.BytesInput;
+import org.apache.parquet.compression.CompressionCodecFactory;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.xerial.snappy.Snappy;
+
+// Compresses pages with the codec libraries directly, Parquet's own CodecFactory goes through the Hadoop codec classes.
+final class ParquetCodecs implements CompressionCodecFactory {
+    // Same level as parquet.compression.codec.zstd.level defaults to.
+    private static final int ZSTD_LEVEL = 3;
+
+    @Override
+    public BytesInputCompressor getCompressor(CompressionCodecName codec) {
+        return switch (codec) {
+            case UNCOMPRESSED -> new Compressor(codec) {
+                @Override
+                public BytesInput compress(BytesInput bytes) {
+                    return bytes;
+                }
+            };
+            case SNAPPY -> new Compressor(codec) {
+                @Override
+                public BytesInput compress(BytesInput bytes) throws IOException {
+                    return BytesInput.from(Snappy.compress(toByteArray(bytes)));
+                }
+            };
+            case GZIP -> new Compressor(codec) {
+                @Override
+                public BytesInput compress(BytesInput bytes) throws IOException {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                        bytes.writeAllTo(gzip);
+                    }
+                    return BytesInput.from(out);
+                }
+            };
+            case LZ4_RAW -> new Compressor(codec) {
+                private final Lz4Compressor lz4 = new Lz4Compressor();
+
+                @Override
+                public BytesInput compress(BytesInput bytes) throws IOException {
+                    byte[] input = toByteArray(bytes);
+                    byte[] output = new byte[lz4.maxCompressedLength(input.length)];
+                    int length = lz4.compress(input, 0, input.length, output, 0, output.length);
+                    return BytesInput.from(Arrays.copyOf(output, length));
+                }
+            };
+            case ZSTD -> new Compressor(codec) {
+                @Override
+                public BytesInput compress(BytesInput bytes) throws IOException {
+                    return BytesInput.from(Zstd.compress(toByteArray(bytes), ZSTD_LEVEL));
+                }
+            };
+            default -> throw new IllegalArgumentException("Unsupported Parquet compression: " + codec);
+        };
+    }
+
+    @Override
+    public BytesInputDecompressor getDecompressor(CompressionCodecName codec) {
+        throw new UnsupportedOperationException("Parquet files are only written, not read.");
+    }
+
+    @Override
+    public void release() {
+    }
+
+    // BytesInput.toByteArray is deprecated; writing into an array of the page size avoids a second copy.
+    private static byte[] toByteArray(BytesInput bytes) throws IOException {
+        PageBuffer buffer = new PageBuffer(Math.toIntExact(bytes.size()));
+        bytes.writeAllTo(buffer);
+        return buffer.array();
+    }
+
+    private static final class PageBuffer extends ByteArrayOutputStream {
+        private PageBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return count == buf.length ? buf : toByteArray();
+        }
+    }
+
+    private abstract static class Compressor implements BytesInputCompressor {
+        private final CompressionCodecName codec;
+
+        private Compressor(CompressionCodecName codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public CompressionCodecName getCodecName() {
+            return codec;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ch.so.agi.parquet;
 
+import ch.so.agi.cloudformats.ConnectionFactory;
 import ch.so.agi.cloudformats.GeometryReader;
 import ch.so.agi.cloudformats.TableDescriptorProvider;
 import ch.so.agi.cloudformats.TableExporter;
@@ -28,4 +29,12 @@ public class ParquetExporter {
                              ParquetTableWriter.ParquetWriteOptions options) throws SQLException, IOException {
         tableExporter.exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter, options);
     }
+
+    public void exportTables(ConnectionFactory connectionFactory,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             ParquetTableWriter.ParquetWriteOptions options,
+                             int threads) throws SQLException, IOException {
+        tableExporter.exportTables(connectionFactory, tableDescriptorProvider, outputDirectory, tableWriter, options, threads);
+    }
 }
@@ -0,0 +1,107 @@
+package ch.so.agi.parquet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.format.BloomFilterHeader;
+import org.apache.parquet.format.Util;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.internal.column.columnindex.ColumnIndex;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.apache.parquet.internal.hadoop.metadata.IndexReference;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.SeekableInputStream;
+
+// Reads the footer, page indexes and bloom filters of the files we wrote ourselves. ParquetFileReader would work too,
+// but its read options need the Hadoop mapreduce classes even for local files.
+final class ParquetFooterReader implements Closeable {
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    private final SeekableInputStream in;
+    private final ParquetMetadata footer;
+
+    ParquetFooterReader(InputFile file) throws IOException {
+        this.in = file.newStream();
+        try {
+            this.footer = readFooter(file.getLength());
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private ParquetMetadata readFooter(long fileLength) throws IOException {
+        byte[] tail = new byte[Integer.BYTES + MAGIC.length];
+        if (fileLength < MAGIC.length + tail.length) {
+            throw new IOException("Not a Parquet file, it is too short.");
+        }
+        in.seek(fileLength - tail.length);
+        in.readFully(tail);
+        if (!Arrays.equals(tail, Integer.BYTES, tail.length, MAGIC, 0, MAGIC.length)) {
+            throw new IOException("Not a Parquet file, the footer magic is missing.");
+        }
+        int footerLength = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        in.seek(fileLength - tail.length - footerLength);
+        return new ParquetMetadataConverter().fromParquetMetadata(Util.readFileMetaData(in));
+    }
+
+    List<BlockMetaData> getRowGroups() {
+        return footer.getBlocks();
+    }
+
+    Map<String, String> keyValueMetaData() {
+        return footer.getFileMetaData().getKeyValueMetaData();
+    }
+
+    SeekableInputStream stream() {
+        return in;
+    }
+
+    BloomFilter readBloomFilter(ColumnChunkMetaData chunk) throws IOException {
+        if (chunk.getBloomFilterOffset() < 0) {
+            return null;
+        }
+        in.seek(chunk.getBloomFilterOffset());
+        BloomFilterHeader header = Util.readBloomFilterHeader(in);
+        if (!header.getAlgorithm().isSetBLOCK() || !header.getHash().isSetXXHASH()
+                || !header.getCompression().isSetUNCOMPRESSED()) {
+            return null;
+        }
+        byte[] bitset = new byte[header.getNumBytes()];
+        in.readFully(bitset);
+        return new BlockSplitBloomFilter(bitset);
+    }
+
+    ColumnIndex readColumnIndex(ColumnChunkMetaData chunk) throws IOException {
+        IndexReference reference = chunk.getColumnIndexReference();
+        if (reference == null) {
+            return null;
+        }
+        in.seek(reference.getOffset());
+        return ParquetMetadataConverter.fromParquetColumnIndex(chunk.getPrimitiveType(), Util.readColumnIndex(in));
+    }
+
+    OffsetIndex readOffsetIndex(ColumnChunkMetaData chunk) throws IOException {
+        IndexReference reference = chunk.getOffsetIndexReference();
+        if (reference == null) {
+            return null;
+        }
+        in.seek(reference.getOffset());
+        return ParquetMetadataConverter.fromParquetOffsetIndex(Util.readOffsetIndex(in));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -1,10 +1,23 @@
 package ch.so.agi.parquet;
 
+import ch.so.agi.cloudformats.BatchTableWriter;
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.GeoPackageGeometryColumns;
 import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.IsoWkb;
+import ch.so.agi.cloudformats.ParallelTasks;
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchReader;
+import ch.so.agi.cloudformats.RowBatchSink;
+import ch.so.agi.cloudformats.RowidRange;
+import ch.so.agi.cloudformats.SqlValues;
 import ch.so.agi.cloudformats.TableDescriptor;
-import ch.so.agi.cloudformats.TableWriter;
 
+import java.io.Closeable;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -14,18 +27,27 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
 import org.apache.parquet.column.ParquetProperties;
 import org.apache.parquet.column.schema.EdgeInterpolationAlgorithm;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileWriter;
 import org.apache.parquet.hadoop.ParquetWriter;
 import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.LocalInputFile;
 import org.apache.parquet.io.LocalOutputFile;
 import org.apache.parquet.io.api.Binary;
 import org.apache.parquet.io.api.RecordConsumer;
@@ -33,14 +55,17 @@ import org.apache.parquet.schema.LogicalTypeAnnotation;
 import org.apache.parquet.schema.MessageType;
 import org.apache.parquet.schema.PrimitiveType;
 import org.apache.parquet.schema.Types.PrimitiveBuilder;
-import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.io.WKBWriter;
 
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 
-public class ParquetTableWriter implements TableWriter<ParquetTableWriter.ParquetWriteOptions> {
+public class ParquetTableWriter implements BatchTableWriter<ParquetTableWriter.ParquetWriteOptions> {
+    private static final String[] BBOX_FIELDS = {"xmin", "ymin", "xmax", "ymax"};
+    private static final int BLOOM_FILTER_CANDIDATES = 16;
+    private static final long DEFAULT_SORT_MEMORY_BUDGET = 256L << 20;
+
     private final GeometryReader geometryReader;
-    private final WKBWriter wkbWriter = new WKBWriter();
 
     public ParquetTableWriter(GeometryReader geometryReader) {
         this.geometryReader = geometryReader;
@@ -59,39 +84,266 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
     @Override
     public void writeTable(Connection connection, TableDescriptor table, Path outputFile, ParquetWriteOptions options)
             throws SQLException, IOException {
-        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
-             ResultSet resultSet = statement.executeQuery()) {
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            List<ParquetField> fields = buildFields(metaData, table, options);
-            MessageType schema = buildSchema(table.tableName(), fields);
-            ParquetTableWriteSupport writeSupport = new ParquetTableWriteSupport(schema, fields);
-            try (ParquetWriter<ParquetRow> writer = new RowParquetWriterBuilder(new LocalOutputFile(outputFile), writeSupport)
-                    .withRowGroupSize(options.rowGroupSize())
-                    .withWriterVersion(ParquetProperties.WriterVersion.PARQUET_2_0)
-                    .build()) {
-                while (resultSet.next()) {
-                    writer.write(readRow(resultSet, fields, table));
+        writePart(connection, table, "SELECT * FROM " + table.tableName(), outputFile, options,
+                ParquetFileWriter.Mode.CREATE);
+    }
+
+    @Override
+    public void writeTable(ConnectionFactory connectionFactory,
+                           TableDescriptor table,
+                           Path outputFile,
+                           ParquetWriteOptions options) throws SQLException, IOException {
+        List<RowidRange> ranges = List.of();
+        if (options.parallelism() > 1) {
+            try (Connection connection = connectionFactory.open()) {
+                ranges = RowidRange.split(connection, table.tableName(), options.parallelism());
+            }
+        }
+        if (ranges.size() <= 1) {
+            BatchTableWriter.super.writeTable(connectionFactory, table, outputFile, options);
+            return;
+        }
+        if (options.hilbertOrder() && table.hasGeometry()) {
+            writeSortedParts(connectionFactory, table, outputFile, options, ranges);
+            return;
+        }
+
+        List<Path> partFiles = new ArrayList<>();
+        try {
+            List<Callable<WrittenPart>> tasks = new ArrayList<>();
+            for (RowidRange range : ranges) {
+                Path partFile = Files.createTempFile("parquet", ".part");
+                partFiles.add(partFile);
+                tasks.add(() -> {
+                    try (Connection connection = connectionFactory.open()) {
+                        return writePart(connection, table, range.selectAll(table.tableName()), partFile, options,
+                                ParquetFileWriter.Mode.OVERWRITE);
+                    }
+                });
+            }
+            List<WrittenPart> parts = ParallelTasks.invokeAll(tasks, options.parallelism());
+            mergeParts(parts, partFiles, outputFile, options);
+        } finally {
+            for (Path partFile : partFiles) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    // Sorting each part on its own would leave row groups of different parts overlapping, so the parts only convert
+    // and spill their rows in parallel and one sort over all spills writes the file, in rowid order for equal values.
+    private void writeSortedParts(ConnectionFactory connectionFactory,
+                                  TableDescriptor table,
+                                  Path outputFile,
+                                  ParquetWriteOptions options,
+                                  List<RowidRange> ranges) throws SQLException, IOException {
+        ParquetBatchSink[] parts = new ParquetBatchSink[ranges.size()];
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                int part = i;
+                tasks.add(() -> {
+                    try (Connection connection = connectionFactory.open();
+                         PreparedStatement statement = connection.prepareStatement(
+                                 ranges.get(part).selectAll(table.tableName()));
+                         ResultSet resultSet = statement.executeQuery()) {
+                        parts[part] = new ParquetBatchSink(table,
+                                buildFields(connection, resultSet.getMetaData(), table, options),
+                                hasZ(connection, table), options);
+                        RowBatchReader reader = new RowBatchReader(resultSet, parts[part].columns(),
+                                table.geometryColumn(), geometryReader);
+                        RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+                        while (reader.read(batch)) {
+                            parts[part].write(batch);
+                        }
+                    }
+                    return null;
+                });
+            }
+            ParallelTasks.invokeAll(tasks, options.parallelism());
+            try (ParquetBatchSink sink = new ParquetBatchSink(table, parts[0].fields, parts[0].z, outputFile,
+                    options, ParquetFileWriter.Mode.CREATE)) {
+                sink.finish(Arrays.asList(parts));
+            }
+        } finally {
+            for (ParquetBatchSink part : parts) {
+                if (part != null) {
+                    part.close();
                 }
             }
         }
     }
 
-    private ParquetRow readRow(ResultSet resultSet, List<ParquetField> fields, TableDescriptor table) throws SQLException {
-        Object[] values = new Object[fields.size()];
-        for (int i = 0; i < fields.size(); i++) {
-            ParquetField field = fields.get(i);
-            if (field.geometry()) {
-                Geometry geometry = geometryReader.readGeometry(resultSet, table.geometryColumn());
-                values[i] = geometry == null ? null : wkbWriter.write(geometry);
-            } else {
-                values[i] = field.extractor().extract(resultSet);
+    private WrittenPart writePart(Connection connection,
+                                  TableDescriptor table,
+                                  String query,
+                                  Path outputFile,
+                                  ParquetWriteOptions options,
+                                  ParquetFileWriter.Mode mode) throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery();
+             ParquetBatchSink sink = new ParquetBatchSink(table,
+                     buildFields(connection, resultSet.getMetaData(), table, options),
+                     hasZ(connection, table), outputFile, options, mode)) {
+            RowBatchReader reader = new RowBatchReader(resultSet, sink.columns(),
+                    table.hasGeometry() ? table.geometryColumn() : null, geometryReader);
+            RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+            while (reader.read(batch)) {
+                sink.write(batch);
+            }
+            sink.finish();
+            return new WrittenPart(sink.schema, sink.geo);
+        }
+    }
+
+    // A row group is buffered until rowGroupSize is reached, with parallel encoding once per row group in flight.
+    @Override
+    public ParquetWriteOptions withMemoryBudget(ParquetWriteOptions options, long memoryBudget) {
+        long rowGroups = options.encodingThreads() > 1 ? options.maxRowGroupsInFlight() + 1 : 1;
+        return new ParquetWriteOptions(Math.max(1, Math.min(options.rowGroupSize(), memoryBudget / rowGroups)),
+                options.geometryLogicalType(), options.geometryEncoding(), options.geometryCrs(),
+                options.edgeInterpolationAlgorithm(), options.parallelism(), options.hilbertOrder(),
+                Math.min(options.sortMemoryBudget(), memoryBudget), options.bboxColumn(), options.compression(),
+                options.pageSize(), options.dictionaryEncoding(), options.dictionaryPageSize(), options.statistics(),
+                options.pageRowCountLimit(), options.columnIndexTruncateLength(), options.byteStreamSplit(),
+                options.bloomFilter(), options.columnOptions(), options.encodingThreads(),
+                options.maxRowGroupsInFlight());
+    }
+
+    @Override
+    public RowBatchSink openSink(Connection connection,
+                                 TableDescriptor table,
+                                 ResultSetMetaData metaData,
+                                 Path outputFile,
+                                 ParquetWriteOptions options) throws SQLException, IOException {
+        return new ParquetBatchSink(table, buildFields(connection, metaData, table, options), hasZ(connection, table),
+                outputFile, options, ParquetFileWriter.Mode.CREATE);
+    }
+
+    private static boolean hasZ(Connection connection, TableDescriptor table) throws SQLException {
+        return table.hasGeometry() && GeoPackageGeometryColumns.hasZ(connection, table);
+    }
+
+    private static void mergeParts(List<WrittenPart> parts, List<Path> partFiles, Path outputFile,
+                                   ParquetWriteOptions options) throws IOException {
+        Map<String, String> keyValueMetaData;
+        try (ParquetFooterReader reader = new ParquetFooterReader(new LocalInputFile(partFiles.get(0)))) {
+            keyValueMetaData = new HashMap<>(reader.keyValueMetaData());
+        }
+        GeoParquetMetadata geo = parts.get(0).geo();
+        if (geo != null) {
+            for (WrittenPart part : parts.subList(1, parts.size())) {
+                geo.merge(part.geo());
+            }
+            keyValueMetaData.put(GeoParquetMetadata.KEY, geo.toJson());
+        }
+        MessageType schema = parts.get(0).schema();
+        ParquetFileWriter fileWriter = fileWriter(outputFile, schema, ParquetFileWriter.Mode.CREATE, options);
+        try {
+            fileWriter.start();
+            for (Path partFile : partFiles) {
+                appendRowGroups(fileWriter, schema, new LocalInputFile(partFile));
+            }
+            fileWriter.end(keyValueMetaData);
+        } catch (IOException | RuntimeException e) {
+            // A file without footer is unreadable, so it is removed like the part files.
+            try {
+                fileWriter.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
             }
+            Files.deleteIfExists(outputFile);
+            throw e;
         }
-        return new ParquetRow(values);
     }
 
-    private List<ParquetField> buildFields(ResultSetMetaData metaData, TableDescriptor table, ParquetWriteOptions options)
-            throws SQLException {
+    // For row groups that are already encoded; the file writer only uses the truncate lengths and checksum settings.
+    static ParquetFileWriter fileWriter(Path outputFile, MessageType schema, ParquetFileWriter.Mode mode,
+                                        ParquetWriteOptions options) throws IOException {
+        ParquetProperties properties = ParquetProperties.builder()
+                .withWriterVersion(ParquetProperties.WriterVersion.PARQUET_2_0)
+                .withPageSize(options.pageSize())
+                .withDictionaryEncoding(options.dictionaryEncoding())
+                .withDictionaryPageSize(options.dictionaryPageSize())
+                .withStatisticsEnabled(options.statistics())
+                .withPageRowCountLimit(options.pageRowCountLimit())
+                .withColumnIndexTruncateLength(options.columnIndexTruncateLength())
+                .withByteStreamSplitEncoding(options.byteStreamSplit())
+                .withBloomFilterEnabled(options.bloomFilter())
+                .build();
+        return new ParquetFileWriter(new LocalOutputFile(outputFile), schema, mode, options.rowGroupSize(), 0, null,
+                properties);
+    }
+
+    // Copied chunk by chunk, because appending whole row groups drops the page indexes and bloom filters.
+    static void appendRowGroups(ParquetFileWriter fileWriter, MessageType schema, InputFile partFile)
+            throws IOException {
+        try (ParquetFooterReader reader = new ParquetFooterReader(partFile)) {
+            for (BlockMetaData block : reader.getRowGroups()) {
+                fileWriter.startBlock(block.getRowCount());
+                for (ColumnChunkMetaData chunk : block.getColumns()) {
+                    fileWriter.appendColumnChunk(schema.getColumnDescription(chunk.getPath().toArray()),
+                            reader.stream(), chunk, reader.readBloomFilter(chunk), reader.readColumnIndex(chunk),
+                            reader.readOffsetIndex(chunk));
+                }
+                fileWriter.endBlock();
+            }
+        }
+    }
+
+    static RowParquetWriterBuilder configure(RowParquetWriterBuilder builder,
+                                             List<ParquetField> fields,
+                                             ParquetWriteOptions options) {
+        // Plain configuration and our own codecs keep Hadoop off the runtime classpath.
+        builder.withConf(new PlainParquetConfiguration())
+                .withCodecFactory(new ParquetCodecs())
+                .withRowGroupSize(options.rowGroupSize())
+                .withWriterVersion(ParquetProperties.WriterVersion.PARQUET_2_0)
+                .withCompressionCodec(options.compression().codec)
+                .withPageSize(options.pageSize())
+                .withDictionaryEncoding(options.dictionaryEncoding())
+                .withDictionaryPageSize(options.dictionaryPageSize())
+                .withStatisticsEnabled(options.statistics())
+                .withPageRowCountLimit(options.pageRowCountLimit())
+                .withColumnIndexTruncateLength(options.columnIndexTruncateLength())
+                .withByteStreamSplitEncoding(options.byteStreamSplit())
+                .withBloomFilterEnabled(options.bloomFilter());
+        // Without an expected number of distinct values Parquet sizes every bloom filter to its 1 MB maximum,
+        // the adaptive filter picks the smallest of the halved candidate sizes (down to 32 bytes) that fits the values.
+        boolean adaptiveBloomFilter = true;
+        for (ParquetField field : fields) {
+            builder.withBloomFilterCandidateNumber(field.name(), BLOOM_FILTER_CANDIDATES);
+            ColumnOptions column = options.columnOptions(field.name());
+            if (column == null) {
+                continue;
+            }
+            if (column.dictionaryEncoding() != null) {
+                builder.withDictionaryEncoding(field.name(), column.dictionaryEncoding());
+            }
+            if (column.byteStreamSplit() != null) {
+                builder.withByteStreamSplitEncoding(field.name(), column.byteStreamSplit());
+            }
+            if (column.statistics() != null) {
+                builder.withStatisticsEnabled(field.name(), column.statistics());
+            }
+            if (column.bloomFilter() != null) {
+                builder.withBloomFilterEnabled(field.name(), column.bloomFilter());
+            }
+            if (column.bloomFilterNdv() != null) {
+                builder.withBloomFilterNDV(field.name(), column.bloomFilterNdv());
+                adaptiveBloomFilter = false;
+            }
+            if (column.bloomFilterFpp() != null) {
+                builder.withBloomFilterFPP(field.name(), column.bloomFilterFpp());
+            }
+        }
+        return builder.withAdaptiveBloomFilterEnabled(adaptiveBloomFilter);
+    }
+
+    private List<ParquetField> buildFields(Connection connection,
+                                           ResultSetMetaData metaData,
+                                           TableDescriptor table,
+                                           ParquetWriteOptions options) throws SQLException {
         List<ParquetField> fields = new ArrayList<>();
         for (int i = 1; i <= metaData.getColumnCount(); i++) {
             String name = metaData.getColumnName(i);
@@ -100,109 +352,107 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
             }
             int sqlType = metaData.getColumnType(i);
             boolean required = metaData.isNullable(i) == ResultSetMetaData.columnNoNulls;
-            fields.add(buildField(name, sqlType, required));
+            fields.add(buildField(name, i, sqlType, required));
         }
         if (table.hasGeometry()) {
-            fields.add(buildGeometryField(table, options));
+            fields.add(buildGeometryField(connection, table, options));
         }
         return fields;
     }
 
-    private static MessageType buildSchema(String tableName, List<ParquetField> fields) {
+    private static MessageType buildSchema(String tableName, List<ParquetField> fields, String bboxColumn) {
         List<org.apache.parquet.schema.Type> types = new ArrayList<>();
         for (ParquetField field : fields) {
+            if (field.nativeGeometry() != null) {
+                types.add(field.nativeGeometry().type(field.name()));
+                continue;
+            }
             PrimitiveBuilder<PrimitiveType> builder = org.apache.parquet.schema.Types.primitive(field.primitiveType(), field.repetition());
             if (field.logicalType() != null) {
                 builder = builder.as(field.logicalType());
             }
             types.add(builder.named(field.name()));
         }
+        if (bboxColumn != null) {
+            types.add(org.apache.parquet.schema.Types.optionalGroup()
+                    .required(PrimitiveTypeName.DOUBLE).named(BBOX_FIELDS[0])
+                    .required(PrimitiveTypeName.DOUBLE).named(BBOX_FIELDS[1])
+                    .required(PrimitiveTypeName.DOUBLE).named(BBOX_FIELDS[2])
+                    .required(PrimitiveTypeName.DOUBLE).named(BBOX_FIELDS[3])
+                    .named(bboxColumn));
+        }
         return new MessageType(tableName, types);
     }
 
-    private static ParquetField buildField(String name, int sqlType, boolean required) {
+    // The covering column is called bbox as in the GeoParquet examples unless the table already has such a column.
+    private static String bboxColumn(TableDescriptor table, List<ParquetField> fields) {
+        boolean taken = fields.stream().anyMatch(field -> field.name().equalsIgnoreCase("bbox"));
+        return taken ? table.geometryColumn() + "_bbox" : "bbox";
+    }
+
+    private static ParquetField buildField(String name, int index, int sqlType, boolean required) {
         return switch (sqlType) {
-            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> new ParquetField(name, required,
-                    PrimitiveTypeName.INT32, null, false, rs -> {
-                        Number value = (Number) rs.getObject(name);
-                        return value == null ? null : value.intValue();
-                    }, (consumer, value) -> consumer.addInteger((Integer) value));
-            case Types.BIGINT -> new ParquetField(name, required,
-                    PrimitiveTypeName.INT64, null, false, rs -> {
-                        Number value = (Number) rs.getObject(name);
-                        return value == null ? null : value.longValue();
-                    }, (consumer, value) -> consumer.addLong((Long) value));
-            case Types.FLOAT, Types.REAL -> new ParquetField(name, required,
-                    PrimitiveTypeName.FLOAT, null, false, rs -> {
-                        Number value = (Number) rs.getObject(name);
-                        return value == null ? null : value.floatValue();
-                    }, (consumer, value) -> consumer.addFloat((Float) value));
-            case Types.DOUBLE, Types.NUMERIC, Types.DECIMAL -> new ParquetField(name, required,
-                    PrimitiveTypeName.DOUBLE, null, false, rs -> {
-                        Number value = (Number) rs.getObject(name);
-                        return value == null ? null : value.doubleValue();
-                    }, (consumer, value) -> consumer.addDouble((Double) value));
-            case Types.BOOLEAN, Types.BIT -> new ParquetField(name, required,
-                    PrimitiveTypeName.BOOLEAN, null, false, rs -> {
-                        Object value = rs.getObject(name);
-                        if (value == null) {
-                            return null;
-                        }
-                        if (value instanceof Boolean bool) {
-                            return bool;
-                        }
-                        if (value instanceof Number number) {
-                            return number.intValue() != 0;
-                        }
-                        return Boolean.parseBoolean(value.toString());
-                    }, (consumer, value) -> consumer.addBoolean((Boolean) value));
-            case Types.DATE -> new ParquetField(name, required,
-                    PrimitiveTypeName.INT32, LogicalTypeAnnotation.dateType(), false, rs -> {
-                        Object raw = rs.getObject(name);
-                        if (raw == null) {
-                            return null;
-                        }
-                        LocalDate date = coerceDate(raw);
-                        return date == null ? null : (int) date.toEpochDay();
-                    }, (consumer, value) -> consumer.addInteger((Integer) value));
-            case Types.TIME -> new ParquetField(name, required,
-                    PrimitiveTypeName.INT32, LogicalTypeAnnotation.timeType(true, LogicalTypeAnnotation.TimeUnit.MILLIS), false, rs -> {
-                        Object raw = rs.getObject(name);
-                        if (raw == null) {
-                            return null;
-                        }
-                        LocalTime localTime = coerceTime(raw);
-                        if (localTime == null) {
-                            return null;
-                        }
-                        return localTime.toSecondOfDay() * 1000 + localTime.getNano() / 1_000_000;
-                    }, (consumer, value) -> consumer.addInteger((Integer) value));
-            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new ParquetField(name, required,
-                    PrimitiveTypeName.INT64, LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS), false, rs -> {
-                        Object raw = rs.getObject(name);
-                        if (raw == null) {
-                            return null;
-                        }
-                        Instant instant = coerceTimestamp(raw);
-                        return instant == null ? null : instant.toEpochMilli();
-                    }, (consumer, value) -> consumer.addLong((Long) value));
-            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> new ParquetField(name, required,
-                    PrimitiveTypeName.BINARY, null, false, rs -> rs.getBytes(name),
-                    (consumer, value) -> consumer.addBinary(Binary.fromConstantByteArray((byte[]) value)));
-            default -> new ParquetField(name, required,
-                    PrimitiveTypeName.BINARY, LogicalTypeAnnotation.stringType(), false, rs -> rs.getString(name),
-                    (consumer, value) -> consumer.addBinary(Binary.fromString((String) value)));
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.INT32, null, RowBatch.ColumnKind.LONG, null,
+                    (consumer, row, field) -> consumer.addInteger((int) row.getLong(field)));
+            case Types.BIGINT -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.INT64, null, RowBatch.ColumnKind.LONG, null,
+                    (consumer, row, field) -> consumer.addLong(row.getLong(field)));
+            case Types.FLOAT, Types.REAL -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.FLOAT, null, RowBatch.ColumnKind.DOUBLE, null,
+                    (consumer, row, field) -> consumer.addFloat((float) row.getDouble(field)));
+            case Types.DOUBLE, Types.NUMERIC, Types.DECIMAL -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.DOUBLE, null, RowBatch.ColumnKind.DOUBLE, null,
+                    (consumer, row, field) -> consumer.addDouble(row.getDouble(field)));
+            case Types.BOOLEAN, Types.BIT -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.BOOLEAN, null, RowBatch.ColumnKind.OBJECT, raw -> SqlValues.toBoolean(raw) ? 1 : 0,
+                    (consumer, row, field) -> consumer.addBoolean(row.getLong(field) != 0));
+            case Types.DATE -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.INT32, LogicalTypeAnnotation.dateType(), RowBatch.ColumnKind.OBJECT, raw -> {
+                        LocalDate date = SqlValues.toLocalDate(raw);
+                        return date == null ? ValueConverter.INVALID : date.toEpochDay();
+                    }, (consumer, row, field) -> consumer.addInteger((int) row.getLong(field)));
+            case Types.TIME -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.INT32, LogicalTypeAnnotation.timeType(true, LogicalTypeAnnotation.TimeUnit.MILLIS),
+                    RowBatch.ColumnKind.OBJECT, raw -> {
+                        LocalTime localTime = SqlValues.toLocalTime(raw);
+                        return localTime == null ? ValueConverter.INVALID
+                                : localTime.toSecondOfDay() * 1000 + localTime.getNano() / 1_000_000;
+                    }, (consumer, row, field) -> consumer.addInteger((int) row.getLong(field)));
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.INT64, LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MILLIS),
+                    RowBatch.ColumnKind.OBJECT, raw -> {
+                        Instant instant = SqlValues.toInstant(raw);
+                        return instant == null ? ValueConverter.INVALID : instant.toEpochMilli();
+                    }, (consumer, row, field) -> consumer.addLong(row.getLong(field)));
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.BINARY, null, RowBatch.ColumnKind.BLOB, null,
+                    (consumer, row, field) -> consumer.addBinary(row.getBinary(field)));
+            default -> new ParquetField(name, index, required,
+                    PrimitiveTypeName.BINARY, LogicalTypeAnnotation.stringType(), RowBatch.ColumnKind.TEXT, null,
+                    (consumer, row, field) -> consumer.addBinary(row.getBinary(field)));
         };
     }
 
-    private static ParquetField buildGeometryField(TableDescriptor table, ParquetWriteOptions options) {
+    private static ParquetField buildGeometryField(Connection connection, TableDescriptor table,
+                                                   ParquetWriteOptions options) throws SQLException {
+        if (options.geometryEncoding() == GeometryEncoding.NATIVE) {
+            if (!NativeGeometryWriter.supports(table.geometryType())) {
+                throw new IllegalArgumentException("Native geometry encoding needs a single geometry type, "
+                        + table.tableName() + " has mixed or unknown geometry types.");
+            }
+            NativeGeometryWriter nativeGeometry = new NativeGeometryWriter(table.geometryType(),
+                    GeoPackageGeometryColumns.hasZ(connection, table));
+            return new ParquetField(table.geometryColumn(), -1, false, null, null, null, null,
+                    (consumer, row, field) -> nativeGeometry.write(consumer, row.geometry()), nativeGeometry);
+        }
         String crs = resolveCrs(table, options);
         LogicalTypeAnnotation logicalType = options.geometryLogicalType() == GeometryLogicalType.GEOGRAPHY
                 ? LogicalTypeAnnotation.geographyType(crs, options.edgeInterpolationAlgorithm())
                 : LogicalTypeAnnotation.geometryType(crs);
-        return new ParquetField(table.geometryColumn(), false,
-                PrimitiveTypeName.BINARY, logicalType, true, rs -> null,
-                (consumer, value) -> consumer.addBinary(Binary.fromConstantByteArray((byte[]) value)));
+        return new ParquetField(table.geometryColumn(), -1, false,
+                PrimitiveTypeName.BINARY, logicalType, null, null,
+                (consumer, row, field) -> consumer.addBinary(row.geometryBinary()));
     }
 
     private static String resolveCrs(TableDescriptor table, ParquetWriteOptions options) {
@@ -215,83 +465,155 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
         return LogicalTypeAnnotation.DEFAULT_CRS;
     }
 
-    private static LocalDate coerceDate(Object raw) {
-        if (raw instanceof java.sql.Date date) {
-            return date.toLocalDate();
-        }
-        if (raw instanceof java.util.Date date) {
-            return Instant.ofEpochMilli(date.getTime()).atZone(ZoneOffset.UTC).toLocalDate();
-        }
-        if (raw instanceof Number number) {
-            return LocalDate.ofEpochDay(number.longValue());
-        }
-        String text = raw.toString();
-        try {
-            return LocalDate.parse(text, DateTimeFormatter.ISO_LOCAL_DATE);
-        } catch (DateTimeParseException e) {
-            return null;
-        }
+    public enum GeometryLogicalType {
+        GEOMETRY,
+        GEOGRAPHY
     }
 
-    private static LocalTime coerceTime(Object raw) {
-        if (raw instanceof java.sql.Time time) {
-            return time.toLocalTime();
-        }
-        if (raw instanceof Number number) {
-            return LocalTime.ofSecondOfDay(number.longValue());
-        }
-        String text = raw.toString();
-        try {
-            return LocalTime.parse(text, DateTimeFormatter.ISO_LOCAL_TIME);
-        } catch (DateTimeParseException e) {
-            return null;
-        }
+    // WKB is a BINARY column with a Geometry/Geography logical type; NATIVE writes the coordinates as nested
+    // x/y[/z] DOUBLE columns (GeoParquet native encodings), which get their own statistics.
+    public enum GeometryEncoding {
+        WKB,
+        NATIVE
     }
 
-    private static Instant coerceTimestamp(Object raw) {
-        if (raw instanceof java.sql.Timestamp ts) {
-            return ts.toInstant();
-        }
-        if (raw instanceof java.util.Date date) {
-            return Instant.ofEpochMilli(date.getTime());
+    public enum Compression {
+        UNCOMPRESSED(CompressionCodecName.UNCOMPRESSED),
+        SNAPPY(CompressionCodecName.SNAPPY),
+        GZIP(CompressionCodecName.GZIP),
+        LZ4_RAW(CompressionCodecName.LZ4_RAW),
+        ZSTD(CompressionCodecName.ZSTD);
+
+        private final CompressionCodecName codec;
+
+        Compression(CompressionCodecName codec) {
+            this.codec = codec;
         }
-        if (raw instanceof Number number) {
-            return Instant.ofEpochMilli(number.longValue());
+    }
+
+    // Unset values fall back to the table wide setting in ParquetWriteOptions.
+    public record ColumnOptions(Boolean dictionaryEncoding,
+                                Boolean byteStreamSplit,
+                                Boolean statistics,
+                                Boolean bloomFilter,
+                                Long bloomFilterNdv,
+                                Double bloomFilterFpp) {
+        public static Builder builder() {
+            return new Builder();
         }
-        String text = raw.toString();
-        try {
-            return Instant.parse(text);
-        } catch (DateTimeParseException ignored) {
-            try {
-                return OffsetDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
-            } catch (DateTimeParseException ignoredAgain) {
-                try {
-                    return LocalDateTime.parse(text, DateTimeFormatter.ISO_LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC);
-                } catch (DateTimeParseException ignoredThird) {
-                    return null;
+
+        public static final class Builder {
+            private Boolean dictionaryEncoding;
+            private Boolean byteStreamSplit;
+            private Boolean statistics;
+            private Boolean bloomFilter;
+            private Long bloomFilterNdv;
+            private Double bloomFilterFpp;
+
+            public Builder dictionaryEncoding(boolean dictionaryEncoding) {
+                this.dictionaryEncoding = dictionaryEncoding;
+                return this;
+            }
+
+            public Builder byteStreamSplit(boolean byteStreamSplit) {
+                this.byteStreamSplit = byteStreamSplit;
+                return this;
+            }
+
+            public Builder statistics(boolean statistics) {
+                this.statistics = statistics;
+                return this;
+            }
+
+            public Builder bloomFilter(boolean bloomFilter) {
+                this.bloomFilter = bloomFilter;
+                return this;
+            }
+
+            public Builder bloomFilterNdv(long bloomFilterNdv) {
+                if (bloomFilterNdv <= 0) {
+                    throw new IllegalArgumentException("bloomFilterNdv must be > 0");
                 }
+                this.bloomFilterNdv = bloomFilterNdv;
+                return this;
             }
-        }
-    }
 
-    public enum GeometryLogicalType {
-        GEOMETRY,
-        GEOGRAPHY
+            public Builder bloomFilterFpp(double bloomFilterFpp) {
+                if (!(bloomFilterFpp > 0 && bloomFilterFpp < 1)) {
+                    throw new IllegalArgumentException("bloomFilterFpp must be > 0 and < 1");
+                }
+                this.bloomFilterFpp = bloomFilterFpp;
+                return this;
+            }
+
+            public ColumnOptions build() {
+                return new ColumnOptions(dictionaryEncoding, byteStreamSplit, statistics, bloomFilter, bloomFilterNdv,
+                        bloomFilterFpp);
+            }
+        }
     }
 
     public record ParquetWriteOptions(long rowGroupSize,
                                       GeometryLogicalType geometryLogicalType,
+                                      GeometryEncoding geometryEncoding,
                                       String geometryCrs,
-                                      EdgeInterpolationAlgorithm edgeInterpolationAlgorithm) {
+                                      EdgeInterpolationAlgorithm edgeInterpolationAlgorithm,
+                                      int parallelism,
+                                      boolean hilbertOrder,
+                                      long sortMemoryBudget,
+                                      boolean bboxColumn,
+                                      Compression compression,
+                                      int pageSize,
+                                      boolean dictionaryEncoding,
+                                      int dictionaryPageSize,
+                                      boolean statistics,
+                                      int pageRowCountLimit,
+                                      int columnIndexTruncateLength,
+                                      boolean byteStreamSplit,
+                                      boolean bloomFilter,
+                                      Map<String, ColumnOptions> columnOptions,
+                                      int encodingThreads,
+                                      int maxRowGroupsInFlight) {
+        public ParquetWriteOptions {
+            columnOptions = Map.copyOf(columnOptions);
+        }
+
         public static Builder builder() {
             return new Builder();
         }
 
+        // Column names are matched case-insensitively, since GeoPackage and ili2db spell them differently.
+        ColumnOptions columnOptions(String column) {
+            for (Map.Entry<String, ColumnOptions> entry : columnOptions.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(column)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+
         public static final class Builder {
             private Long rowGroupSize;
             private GeometryLogicalType geometryLogicalType = GeometryLogicalType.GEOMETRY;
+            private GeometryEncoding geometryEncoding = GeometryEncoding.WKB;
             private String geometryCrs;
             private EdgeInterpolationAlgorithm edgeInterpolationAlgorithm = LogicalTypeAnnotation.DEFAULT_ALGO;
+            private int parallelism = 1;
+            private boolean hilbertOrder;
+            private long sortMemoryBudget = DEFAULT_SORT_MEMORY_BUDGET;
+            private boolean bboxColumn;
+            private Compression compression = Compression.UNCOMPRESSED;
+            private int pageSize = ParquetProperties.DEFAULT_PAGE_SIZE;
+            private boolean dictionaryEncoding = ParquetProperties.DEFAULT_IS_DICTIONARY_ENABLED;
+            private int dictionaryPageSize = ParquetProperties.DEFAULT_DICTIONARY_PAGE_SIZE;
+            private boolean statistics = ParquetProperties.DEFAULT_STATISTICS_ENABLED;
+            private int pageRowCountLimit = ParquetProperties.DEFAULT_PAGE_ROW_COUNT_LIMIT;
+            private int columnIndexTruncateLength = ParquetProperties.DEFAULT_COLUMN_INDEX_TRUNCATE_LENGTH;
+            private boolean byteStreamSplit;
+            private boolean bloomFilter;
+            private final Map<String, ColumnOptions> columnOptions = new LinkedHashMap<>();
+            private int encodingThreads = 1;
+            private Integer maxRowGroupsInFlight;
 
             public Builder rowGroupSize(long rowGroupSize) {
                 if (rowGroupSize <= 0) {
@@ -306,6 +628,12 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
                 return this;
             }
 
+            // NATIVE needs a single geometry type per table; the logical type and CRS only apply to WKB columns.
+            public Builder geometryEncoding(GeometryEncoding geometryEncoding) {
+                this.geometryEncoding = geometryEncoding;
+                return this;
+            }
+
             public Builder geometryCrs(String geometryCrs) {
                 this.geometryCrs = geometryCrs;
                 return this;
@@ -316,53 +644,532 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
                 return this;
             }
 
+            public Builder parallelism(int parallelism) {
+                if (parallelism < 1) {
+                    throw new IllegalArgumentException("parallelism must be >= 1");
+                }
+                this.parallelism = parallelism;
+                return this;
+            }
+
+            // Writes the rows in Hilbert order of their geometry envelope so row groups cover compact areas.
+            public Builder hilbertOrder(boolean hilbertOrder) {
+                this.hilbertOrder = hilbertOrder;
+                return this;
+            }
+
+            // Record bytes sorted in memory at once for hilbertOrder; larger tables are sorted in runs and merged.
+            public Builder sortMemoryBudget(long sortMemoryBudget) {
+                if (sortMemoryBudget < 1) {
+                    throw new IllegalArgumentException("sortMemoryBudget must be >= 1");
+                }
+                this.sortMemoryBudget = sortMemoryBudget;
+                return this;
+            }
+
+            // Adds a GeoParquet bbox covering column whose row group statistics let readers skip row groups spatially.
+            public Builder bboxColumn(boolean bboxColumn) {
+                this.bboxColumn = bboxColumn;
+                return this;
+            }
+
+            public Builder compression(Compression compression) {
+                this.compression = compression;
+                return this;
+            }
+
+            public Builder pageSize(int pageSize) {
+                if (pageSize <= 0) {
+                    throw new IllegalArgumentException("pageSize must be > 0");
+                }
+                this.pageSize = pageSize;
+                return this;
+            }
+
+            public Builder dictionaryEncoding(boolean dictionaryEncoding) {
+                this.dictionaryEncoding = dictionaryEncoding;
+                return this;
+            }
+
+            public Builder dictionaryPageSize(int dictionaryPageSize) {
+                if (dictionaryPageSize <= 0) {
+                    throw new IllegalArgumentException("dictionaryPageSize must be > 0");
+                }
+                this.dictionaryPageSize = dictionaryPageSize;
+                return this;
+            }
+
+            // Min/max statistics of the column chunks and pages (column index).
+            public Builder statistics(boolean statistics) {
+                this.statistics = statistics;
+                return this;
+            }
+
+            // Bounds the rows per page and thereby the granularity of the page index.
+            public Builder pageRowCountLimit(int pageRowCountLimit) {
+                if (pageRowCountLimit <= 0) {
+                    throw new IllegalArgumentException("pageRowCountLimit must be > 0");
+                }
+                this.pageRowCountLimit = pageRowCountLimit;
+                return this;
+            }
+
+            public Builder columnIndexTruncateLength(int columnIndexTruncateLength) {
+                if (columnIndexTruncateLength <= 0) {
+                    throw new IllegalArgumentException("columnIndexTruncateLength must be > 0");
+                }
+                this.columnIndexTruncateLength = columnIndexTruncateLength;
+                return this;
+            }
+
+            // BYTE_STREAM_SPLIT encoding for FLOAT and DOUBLE columns, usually compresses coordinates and measures better.
+            public Builder byteStreamSplit(boolean byteStreamSplit) {
+                this.byteStreamSplit = byteStreamSplit;
+                return this;
+            }
+
+            public Builder bloomFilter(boolean bloomFilter) {
+                this.bloomFilter = bloomFilter;
+                return this;
+            }
+
+            public Builder column(String column, ColumnOptions options) {
+                columnOptions.put(column, options);
+                return this;
+            }
+
+            // With more than one thread, row groups are encoded and compressed concurrently and appended in order.
+            public Builder encodingThreads(int encodingThreads) {
+                if (encodingThreads < 1) {
+                    throw new IllegalArgumentException("encodingThreads must be >= 1");
+                }
+                this.encodingThreads = encodingThreads;
+                return this;
+            }
+
+            // Every row group in flight is buffered in memory, so this bounds the heap used by parallel encoding.
+            public Builder maxRowGroupsInFlight(int maxRowGroupsInFlight) {
+                if (maxRowGroupsInFlight < 1) {
+                    throw new IllegalArgumentException("maxRowGroupsInFlight must be >= 1");
+                }
+                this.maxRowGroupsInFlight = maxRowGroupsInFlight;
+                return this;
+            }
+
             public ParquetWriteOptions build() {
                 long resolvedRowGroupSize = rowGroupSize == null
                         ? ParquetWriter.DEFAULT_BLOCK_SIZE
                         : rowGroupSize;
-                return new ParquetWriteOptions(resolvedRowGroupSize, geometryLogicalType, geometryCrs,
-                        edgeInterpolationAlgorithm);
+                return new ParquetWriteOptions(resolvedRowGroupSize, geometryLogicalType, geometryEncoding, geometryCrs,
+                        edgeInterpolationAlgorithm, parallelism, hilbertOrder, sortMemoryBudget, bboxColumn, compression,
+                        pageSize, dictionaryEncoding, dictionaryPageSize, statistics, pageRowCountLimit,
+                        columnIndexTruncateLength, byteStreamSplit, bloomFilter, columnOptions, encodingThreads,
+                        maxRowGroupsInFlight == null ? 2 * encodingThreads : maxRowGroupsInFlight);
             }
         }
     }
 
-    record ParquetRow(Object[] values) {
+    private static final class ParquetBatchSink implements RowBatchSink {
+        private final boolean hasGeometry;
+        private final List<ParquetField> fields;
+        private final boolean z;
+        private final MessageType schema;
+        private final GeoParquetMetadata geo;
+        private final List<RowBatch.Column> columns;
+        private final RowWriter writer;
+        // Rows are written or copied synchronously, so one row instance is reused.
+        private final ParquetRow row;
+        private final WKBWriter wkbWriter;
+        private final IsoWkb isoWkb;
+        private final HilbertRowSpill spill;
+        private final NativeGeometryWriter nativeGeometry;
+
+        private ParquetBatchSink(TableDescriptor table,
+                                 List<ParquetField> fields,
+                                 boolean z,
+                                 Path outputFile,
+                                 ParquetWriteOptions options,
+                                 ParquetFileWriter.Mode mode) throws IOException {
+            this.hasGeometry = table.hasGeometry();
+            this.fields = fields;
+            this.z = z;
+            String bboxColumn = hasGeometry && options.bboxColumn() ? bboxColumn(table, fields) : null;
+            this.schema = buildSchema(table.tableName(), fields, bboxColumn);
+            this.nativeGeometry = fields.stream()
+                    .map(ParquetField::nativeGeometry)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse(null);
+            this.wkbWriter = new WKBWriter(z ? 3 : 2);
+            this.isoWkb = new IsoWkb(z);
+            this.geo = hasGeometry ? new GeoParquetMetadata(table.geometryColumn(), table.srid(),
+                    options.geometryLogicalType() == GeometryLogicalType.GEOGRAPHY, bboxColumn, nativeGeometry) : null;
+            this.columns = fields.stream()
+                    .filter(field -> !field.geometry())
+                    .map(field -> new RowBatch.Column(field.name(), field.index(), field.kind()))
+                    .toList();
+            this.row = new ParquetRow(fields);
+            this.writer = outputFile == null ? null : options.encodingThreads() > 1
+                    ? new ParallelRowGroupWriter(outputFile, schema, fields, options, mode, geo, bboxColumn)
+                    : new SequentialRowWriter(configure(new RowParquetWriterBuilder(new LocalOutputFile(outputFile),
+                            new ParquetTableWriteSupport(schema, fields, geo, bboxColumn)), fields, options)
+                            .withWriteMode(mode)
+                            .build());
+            this.spill = hasGeometry && options.hilbertOrder() ? new HilbertRowSpill(options.sortMemoryBudget()) : null;
+        }
+
+        // A part of a parallel Hilbert-ordered write: the rows are only spilled and sorted by the sink of the file.
+        private ParquetBatchSink(TableDescriptor table, List<ParquetField> fields, boolean z,
+                                 ParquetWriteOptions options) throws IOException {
+            this(table, fields, z, null, options, null);
+        }
+
+        @Override
+        public List<RowBatch.Column> columns() {
+            return columns;
+        }
+
+        @Override
+        public void write(RowBatch batch) throws SQLException, IOException {
+            for (int i = 0; i < batch.size(); i++) {
+                ByteBuffer geometry = hasGeometry ? geometry(batch, i) : null;
+                if (nativeGeometry != null && geometry != null) {
+                    nativeGeometry.check(geometry);
+                }
+                row.load(batch, i, geometry);
+                if (spill == null) {
+                    writer.write(row);
+                } else {
+                    spill.add(row);
+                }
+            }
+        }
+
+        // Native columns read EWKB as well, so only JTS geometries need encoding; JTS only writes EWKB for Z.
+        private ByteBuffer geometry(RowBatch batch, int row) throws SQLException {
+            if (nativeGeometry == null) {
+                return isoWkb.read(batch, row);
+            }
+            if (batch.geometry(row) != null) {
+                return ByteBuffer.wrap(wkbWriter.write(batch.geometry(row)));
+            }
+            return batch.hasGeometry(row)
+                    ? ByteBuffer.wrap(batch.wkbArray(row), batch.wkbOffset(row), batch.wkbLength(row))
+                    : null;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            finish(List.of());
+        }
+
+        // The rows spilled by the parts are sorted together with, and before, the rows written to this sink.
+        private void finish(List<ParquetBatchSink> parts) throws IOException {
+            if (spill != null) {
+                List<HilbertRowSpill> spills = new ArrayList<>();
+                for (ParquetBatchSink part : parts) {
+                    spills.add(part.spill);
+                }
+                spills.add(spill);
+                HilbertRowSpill.writeSorted(spills, writer, row);
+            }
+            writer.finish();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } finally {
+                if (spill != null) {
+                    spill.close();
+                }
+            }
+        }
+    }
+
+    interface RowWriter extends Closeable {
+        void write(ParquetRow row) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class SequentialRowWriter implements RowWriter {
+        private final ParquetWriter<ParquetRow> writer;
+
+        private SequentialRowWriter(ParquetWriter<ParquetRow> writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(ParquetRow row) throws IOException {
+            writer.write(row);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    static final class ParquetRow {
+        private final ParquetField[] fields;
+        private final boolean[] nulls;
+        private final long[] converted;
+        private final double[] doubles;
+        private final int[] offsets;
+        private final int[] lengths;
+        private RowBatch batch;
+        private int row;
+        private ByteBuffer geometry;
+        private final double[] envelope = new double[4];
+        private byte[] record;
+
+        ParquetRow(List<ParquetField> fields) {
+            this.fields = fields.toArray(ParquetField[]::new);
+            this.nulls = new boolean[this.fields.length];
+            this.converted = new long[this.fields.length];
+            this.doubles = new double[this.fields.length];
+            this.offsets = new int[this.fields.length];
+            this.lengths = new int[this.fields.length];
+        }
+
+        void load(RowBatch batch, int row, ByteBuffer geometry) {
+            this.record = null;
+            this.batch = batch;
+            this.row = row;
+            this.geometry = geometry;
+            loadEnvelope(batch, row);
+            for (int field = 0; field < fields.length; field++) {
+                if (fields[field].geometry()) {
+                    nulls[field] = geometry == null;
+                } else if (batch.isNull(field, row)) {
+                    nulls[field] = true;
+                } else if (fields[field].converter() != null) {
+                    converted[field] = fields[field].converter().convert(batch.getObject(field, row));
+                    nulls[field] = converted[field] == ValueConverter.INVALID;
+                } else {
+                    nulls[field] = false;
+                }
+            }
+        }
+
+        // Null and empty geometries have a NaN envelope.
+        private void loadEnvelope(RowBatch batch, int row) {
+            if (geometry != null && batch.hasEnvelope(row)) {
+                envelope[0] = batch.minX(row);
+                envelope[1] = batch.minY(row);
+                envelope[2] = batch.maxX(row);
+                envelope[3] = batch.maxY(row);
+            } else if (geometry != null && batch.geometry(row) != null && !batch.geometry(row).isEmpty()) {
+                Envelope geometryEnvelope = batch.geometry(row).getEnvelopeInternal();
+                envelope[0] = geometryEnvelope.getMinX();
+                envelope[1] = geometryEnvelope.getMinY();
+                envelope[2] = geometryEnvelope.getMaxX();
+                envelope[3] = geometryEnvelope.getMaxY();
+            } else {
+                Arrays.fill(envelope, Double.NaN);
+            }
+        }
+
+        boolean hasEnvelope() {
+            return envelope[0] <= envelope[2] && envelope[1] <= envelope[3];
+        }
+
+        double envelope(int coordinate) {
+            return envelope[coordinate];
+        }
+
+        boolean isNull(int field) {
+            return nulls[field];
+        }
+
+        long getLong(int field) {
+            return fields[field].converter() != null || record != null ? converted[field] : batch.getLong(field, row);
+        }
+
+        double getDouble(int field) {
+            return record != null ? doubles[field] : batch.getDouble(field, row);
+        }
+
+        // The batch buffers are reused, so Parquet has to copy values it keeps (dictionary, statistics).
+        Binary getBinary(int field) {
+            if (record != null) {
+                return Binary.fromReusedByteArray(record, offsets[field], lengths[field]);
+            }
+            return Binary.fromReusedByteArray(batch.bytes(field), batch.offset(field, row), batch.length(field, row));
+        }
+
+        // Spilled records hold the converted values, so reading them back needs neither the batch nor the converters.
+        int recordSize() {
+            int size = 0;
+            for (int field = 0; field < fields.length; field++) {
+                size += 1;
+                if (nulls[field]) {
+                    continue;
+                }
+                if (fields[field].geometry()) {
+                    size += Integer.BYTES + geometry.remaining() + envelope.length * Double.BYTES;
+                } else if (fields[field].kind() == RowBatch.ColumnKind.TEXT || fields[field].kind() == RowBatch.ColumnKind.BLOB) {
+                    size += Integer.BYTES + bytesLength(field);
+                } else {
+                    size += Long.BYTES;
+                }
+            }
+            return size;
+        }
+
+        void writeRecord(DataOutput out) throws IOException {
+            for (int field = 0; field < fields.length; field++) {
+                out.writeBoolean(nulls[field]);
+                if (nulls[field]) {
+                    continue;
+                }
+                ParquetField parquetField = fields[field];
+                if (parquetField.geometry()) {
+                    out.writeInt(geometry.remaining());
+                    out.write(geometry.array(), geometry.arrayOffset() + geometry.position(), geometry.remaining());
+                    for (double value : envelope) {
+                        out.writeDouble(value);
+                    }
+                } else if (parquetField.kind() == RowBatch.ColumnKind.TEXT || parquetField.kind() == RowBatch.ColumnKind.BLOB) {
+                    out.writeInt(bytesLength(field));
+                    out.write(record != null ? record : batch.bytes(field),
+                            record != null ? offsets[field] : batch.offset(field, row), bytesLength(field));
+                } else if (parquetField.kind() == RowBatch.ColumnKind.DOUBLE) {
+                    out.writeDouble(getDouble(field));
+                } else {
+                    out.writeLong(getLong(field));
+                }
+            }
+        }
+
+        private int bytesLength(int field) {
+            return record != null ? lengths[field] : batch.length(field, row);
+        }
+
+        void readRecord(byte[] record, int offset, int length) {
+            this.record = record;
+            this.batch = null;
+            this.geometry = null;
+            Arrays.fill(envelope, Double.NaN);
+            ByteBuffer buffer = ByteBuffer.wrap(record, offset, length);
+            for (int field = 0; field < fields.length; field++) {
+                nulls[field] = buffer.get() != 0;
+                if (nulls[field]) {
+                    continue;
+                }
+                ParquetField parquetField = fields[field];
+                if (parquetField.geometry() || parquetField.kind() == RowBatch.ColumnKind.TEXT
+                        || parquetField.kind() == RowBatch.ColumnKind.BLOB) {
+                    lengths[field] = buffer.getInt();
+                    offsets[field] = buffer.position();
+                    buffer.position(offsets[field] + lengths[field]);
+                    if (parquetField.geometry()) {
+                        geometry = ByteBuffer.wrap(record, offsets[field], lengths[field]);
+                        for (int i = 0; i < envelope.length; i++) {
+                            envelope[i] = buffer.getDouble();
+                        }
+                    }
+                } else if (parquetField.kind() == RowBatch.ColumnKind.DOUBLE) {
+                    doubles[field] = buffer.getDouble();
+                } else {
+                    converted[field] = buffer.getLong();
+                }
+            }
+        }
+
+        ByteBuffer geometry() {
+            return geometry;
+        }
+
+        // Blobs read from the driver belong to the row, spilled records share one reused buffer.
+        Binary geometryBinary() {
+            int offset = geometry.arrayOffset() + geometry.position();
+            return record != null
+                    ? Binary.fromReusedByteArray(geometry.array(), offset, geometry.remaining())
+                    : Binary.fromConstantByteArray(geometry.array(), offset, geometry.remaining());
+        }
     }
 
     record ParquetField(String name,
+                        int index,
                         boolean required,
                         PrimitiveTypeName primitiveType,
                         LogicalTypeAnnotation logicalType,
-                        boolean geometry,
-                        ValueExtractor extractor,
-                        ValueWriter writer) {
+                        RowBatch.ColumnKind kind,
+                        ValueConverter converter,
+                        ValueWriter writer,
+                        NativeGeometryWriter nativeGeometry) {
+        ParquetField(String name,
+                     int index,
+                     boolean required,
+                     PrimitiveTypeName primitiveType,
+                     LogicalTypeAnnotation logicalType,
+                     RowBatch.ColumnKind kind,
+                     ValueConverter converter,
+                     ValueWriter writer) {
+            this(name, index, required, primitiveType, logicalType, kind, converter, writer, null);
+        }
+
+        boolean geometry() {
+            return kind == null;
+        }
+
         org.apache.parquet.schema.Type.Repetition repetition() {
             return required ? org.apache.parquet.schema.Type.Repetition.REQUIRED
                     : org.apache.parquet.schema.Type.Repetition.OPTIONAL;
         }
     }
 
-    interface ValueExtractor {
-        Object extract(ResultSet resultSet) throws SQLException;
+    private record WrittenPart(MessageType schema, GeoParquetMetadata geo) {
+    }
+
+    interface ValueConverter {
+        long INVALID = Long.MIN_VALUE;
+
+        long convert(Object raw);
     }
 
     interface ValueWriter {
-        void write(RecordConsumer consumer, Object value);
+        void write(RecordConsumer consumer, ParquetRow row, int field);
     }
 
     static class ParquetTableWriteSupport extends WriteSupport<ParquetRow> {
         private final MessageType schema;
         private final List<ParquetField> fields;
+        private final GeoParquetMetadata geo;
+        private final String bboxColumn;
         private RecordConsumer recordConsumer;
 
-        ParquetTableWriteSupport(MessageType schema, List<ParquetField> fields) {
+        ParquetTableWriteSupport(MessageType schema, List<ParquetField> fields, GeoParquetMetadata geo, String bboxColumn) {
             this.schema = schema;
             this.fields = fields;
+            this.geo = geo;
+            this.bboxColumn = bboxColumn;
+        }
+
+        @Override
+        public WriteContext init(ParquetConfiguration configuration) {
+            return new WriteContext(schema, Map.of());
         }
 
         @Override
         public WriteContext init(org.apache.hadoop.conf.Configuration configuration) {
-            return new WriteContext(schema, java.util.Map.of());
+            return new WriteContext(schema, Map.of());
+        }
+
+        // The dataset bbox is only known once all rows went through write, so 'geo' is added when the footer is written.
+        @Override
+        public FinalizedWriteContext finalizeWrite() {
+            return new FinalizedWriteContext(geo == null ? Map.of() : Map.of(GeoParquetMetadata.KEY, geo.toJson()));
         }
 
         @Override
@@ -373,17 +1180,30 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
         @Override
         public void write(ParquetRow record) {
             recordConsumer.startMessage();
-            Object[] values = record.values();
             for (int i = 0; i < fields.size(); i++) {
-                Object value = values[i];
-                if (value == null) {
+                if (record.isNull(i)) {
                     continue;
                 }
                 ParquetField field = fields.get(i);
                 recordConsumer.startField(field.name(), i);
-                field.writer().write(recordConsumer, value);
+                field.writer().write(recordConsumer, record, i);
                 recordConsumer.endField(field.name(), i);
             }
+            if (geo != null && record.geometry() != null) {
+                geo.add(record.geometry(), record.envelope(0), record.envelope(1), record.envelope(2), record.envelope(3));
+            }
+            if (bboxColumn != null && record.hasEnvelope()) {
+                int index = fields.size();
+                recordConsumer.startField(bboxColumn, index);
+                recordConsumer.startGroup();
+                for (int i = 0; i < BBOX_FIELDS.length; i++) {
+                    recordConsumer.startField(BBOX_FIELDS[i], i);
+                    recordConsumer.addDouble(record.envelope(i));
+                    recordConsumer.endField(BBOX_FIELDS[i], i);
+                }
+                recordConsumer.endGroup();
+                recordConsumer.endField(bboxColumn, index);
+            }
             recordConsumer.endMessage();
         }
     }
@@ -401,6 +1221,11 @@ public class ParquetTableWriter implements TableWriter<ParquetTableWriter.Parque
             return this;
         }
 
+        @Override
+        protected WriteSupport<ParquetRow> getWriteSupport(ParquetConfiguration configuration) {
+            return writeSupport;
+        }
+
         @Override
         protected WriteSupport<ParquetRow> getWriteSupport(org.apache.hadoop.conf.Configuration configuration) {
             return writeSupport;
@@ -0,0 +1,139 @@
+package ch.so.agi.pmtiles;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Features are spilled to a temporary file as they arrive: the encoded properties followed by the WKB of the projected
+// geometry. Only the record offsets, the MVT geometry types and float envelopes (rounded outwards) stay in memory.
+final class FeatureSpill implements Closeable {
+    static final int BYTES_PER_FEATURE = Long.BYTES + 1 + 4 * Float.BYTES;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final Path spillFile;
+    private final DataOutputStream out;
+    private FileChannel channel;
+    private long[] offsets = new long[INITIAL_CAPACITY + 1];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private float[] envelopes = new float[INITIAL_CAPACITY * 4];
+    private int count;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    FeatureSpill() throws IOException {
+        this.spillFile = Files.createTempFile("pmtiles", ".features");
+        spillFile.toFile().deleteOnExit();
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile), STREAM_BUFFER_SIZE));
+    }
+
+    void add(int type, ProtobufOutput properties, byte[] wkb,
+             double minX, double minY, double maxX, double maxY) throws IOException {
+        if (count == types.length) {
+            offsets = Arrays.copyOf(offsets, Math.multiplyExact(count, 2) + 1);
+            types = Arrays.copyOf(types, Math.multiplyExact(count, 2));
+            envelopes = Arrays.copyOf(envelopes, Math.multiplyExact(count, 8));
+        }
+        ProtobufOutput header = new ProtobufOutput();
+        header.varint(properties.size());
+        out.write(header.array(), 0, header.size());
+        out.write(properties.array(), 0, properties.size());
+        out.write(wkb);
+        types[count] = (byte) type;
+        envelopes[count * 4] = Math.nextDown((float) minX);
+        envelopes[count * 4 + 1] = Math.nextDown((float) minY);
+        envelopes[count * 4 + 2] = Math.nextUp((float) maxX);
+        envelopes[count * 4 + 3] = Math.nextUp((float) maxY);
+        offsets[count + 1] = offsets[count] + header.size() + properties.size() + wkb.length;
+        count = Math.addExact(count, 1);
+        this.minX = Math.min(this.minX, minX);
+        this.minY = Math.min(this.minY, minY);
+        this.maxX = Math.max(this.maxX, maxX);
+        this.maxY = Math.max(this.maxY, maxY);
+    }
+
+    // Ends the write phase; read() may then be called from several threads.
+    void finishWriting() throws IOException {
+        out.close();
+        channel = FileChannel.open(spillFile, StandardOpenOption.READ);
+    }
+
+    ByteBuffer read(int feature) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate((int) (offsets[feature + 1] - offsets[feature]));
+        long position = offsets[feature];
+        while (record.hasRemaining()) {
+            int read = channel.read(record, position + record.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the feature spill file.");
+            }
+        }
+        return record.flip();
+    }
+
+    int count() {
+        return count;
+    }
+
+    int type(int feature) {
+        return types[feature];
+    }
+
+    double minX(int feature) {
+        return envelopes[feature * 4];
+    }
+
+    double minY(int feature) {
+        return envelopes[feature * 4 + 1];
+    }
+
+    double maxX(int feature) {
+        return envelopes[feature * 4 + 2];
+    }
+
+    double maxY(int feature) {
+        return envelopes[feature * 4 + 3];
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    double minX() {
+        return minX;
+    }
+
+    double minY() {
+        return minY;
+    }
+
+    double maxX() {
+        return maxX;
+    }
+
+    double maxY() {
+        return maxY;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ch.so.agi.pmtiles;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+// PMTiles v3: header, root directory, metadata, leaf directories and tile data. Tiles must arrive in tile id order;
+// their data goes to a temporary file, and finish() writes the archive with the directories in front of it.
+final class PmTilesArchive implements Closeable {
+    static final int HEADER_SIZE = 127;
+
+    private static final int ROOT_LIMIT = 16384;
+    private static final int COMPRESSION_GZIP = 2;
+    private static final int TILE_TYPE_MVT = 1;
+    private static final int INITIAL_LEAF_SIZE = 4096;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final Path dataFile;
+    private final OutputStream data;
+    private long[] tileIds = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] runLengths = new int[INITIAL_CAPACITY];
+    private int entries;
+    private long dataLength;
+    private long addressedTiles;
+    private long tileContents;
+    private byte[] lastTile;
+
+    PmTilesArchive() throws IOException {
+        this.dataFile = Files.createTempFile("pmtiles", ".tiles");
+        dataFile.toFile().deleteOnExit();
+        this.data = new BufferedOutputStream(Files.newOutputStream(dataFile), STREAM_BUFFER_SIZE);
+    }
+
+    // Identical neighbours (e.g. the inside of a large polygon) share their data, consecutive ones share one entry.
+    void addTile(long tileId, byte[] tile) throws IOException {
+        addressedTiles++;
+        if (entries > 0 && Arrays.equals(tile, lastTile)) {
+            int last = entries - 1;
+            if (tileIds[last] + runLengths[last] == tileId) {
+                runLengths[last]++;
+                return;
+            }
+            addEntry(tileId, offsets[last], lengths[last]);
+            return;
+        }
+        data.write(tile);
+        addEntry(tileId, dataLength, tile.length);
+        dataLength += tile.length;
+        tileContents++;
+        lastTile = tile;
+    }
+
+    private void addEntry(long tileId, long offset, int length) {
+        if (entries == tileIds.length) {
+            int capacity = Math.multiplyExact(entries, 2);
+            tileIds = Arrays.copyOf(tileIds, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            runLengths = Arrays.copyOf(runLengths, capacity);
+        }
+        tileIds[entries] = tileId;
+        offsets[entries] = offset;
+        lengths[entries] = length;
+        runLengths[entries] = 1;
+        entries++;
+    }
+
+    void finish(Path outputFile, String metadataJson, int minZoom, int maxZoom,
+                double minLon, double minLat, double maxLon, double maxLat) throws IOException {
+        data.close();
+        byte[] root = directory(0, entries, null);
+        ByteArrayOutputStream leaves = new ByteArrayOutputStream();
+        // The root directory has to fit into the first 16 KB together with the header; otherwise entries move into
+        // leaf directories and the root points to those, with larger leaves until it fits.
+        for (int leafSize = INITIAL_LEAF_SIZE; HEADER_SIZE + root.length > ROOT_LIMIT; leafSize += leafSize / 5) {
+            leaves.reset();
+            int leafCount = (entries + leafSize - 1) / leafSize;
+            long[] leafIds = new long[leafCount];
+            long[] leafOffsets = new long[leafCount];
+            int[] leafLengths = new int[leafCount];
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                int from = leaf * leafSize;
+                byte[] directory = directory(from, Math.min(entries, from + leafSize), null);
+                leafIds[leaf] = tileIds[from];
+                leafOffsets[leaf] = leaves.size();
+                leafLengths[leaf] = directory.length;
+                leaves.write(directory);
+            }
+            root = directory(0, leafCount, new long[][]{leafIds, leafOffsets, toLongs(leafLengths)});
+        }
+        byte[] metadata = gzip(metadataJson.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("PMTiles".getBytes(StandardCharsets.US_ASCII)).put((byte) 3);
+        long rootOffset = HEADER_SIZE;
+        long metadataOffset = rootOffset + root.length;
+        long leavesOffset = metadataOffset + metadata.length;
+        long dataOffset = leavesOffset + leaves.size();
+        header.putLong(rootOffset).putLong(root.length);
+        header.putLong(metadataOffset).putLong(metadata.length);
+        header.putLong(leavesOffset).putLong(leaves.size());
+        header.putLong(dataOffset).putLong(dataLength);
+        header.putLong(addressedTiles).putLong(entries).putLong(tileContents);
+        header.put((byte) 1).put((byte) COMPRESSION_GZIP).put((byte) COMPRESSION_GZIP).put((byte) TILE_TYPE_MVT);
+        header.put((byte) minZoom).put((byte) maxZoom);
+        header.putInt(e7(minLon)).putInt(e7(minLat)).putInt(e7(maxLon)).putInt(e7(maxLat));
+        header.put((byte) minZoom).putInt(e7((minLon + maxLon) / 2)).putInt(e7((minLat + maxLat) / 2));
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile), STREAM_BUFFER_SIZE)) {
+            out.write(header.array());
+            out.write(root);
+            out.write(metadata);
+            leaves.writeTo(out);
+            Files.copy(dataFile, out);
+        }
+    }
+
+    // Entries from..to of the tile directory, or the given leaf entries (ids, offsets, lengths; run length 0).
+    private byte[] directory(int from, int to, long[][] leafEntries) throws IOException {
+        ProtobufOutput out = new ProtobufOutput();
+        out.varint(to - from);
+        long lastId = 0;
+        for (int i = from; i < to; i++) {
+            long id = leafEntries == null ? tileIds[i] : leafEntries[0][i];
+            out.varint(id - lastId);
+            lastId = id;
+        }
+        for (int i = from; i < to; i++) {
+            out.varint(leafEntries == null ? runLengths[i] : 0);
+        }
+        for (int i = from; i < to; i++) {
+            out.varint(leafEntries == null ? lengths[i] : leafEntries[2][i]);
+        }
+        for (int i = from; i < to; i++) {
+            long offset = leafEntries == null ? offsets[i] : leafEntries[1][i];
+            long previousEnd = i == from ? -1 : leafEntries == null
+                    ? offsets[i - 1] + lengths[i - 1]
+                    : leafEntries[1][i - 1] + leafEntries[2][i - 1];
+            out.varint(offset == previousEnd ? 0 : offset + 1);
+        }
+        return gzip(out.toByteArray());
+    }
+
+    private static long[] toLongs(int[] values) {
+        return Arrays.stream(values).asLongStream().toArray();
+    }
+
+    private static int e7(double degrees) {
+        return (int) Math.round(degrees * 10_000_000);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    long addressedTiles() {
+        return addressedTiles;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            Files.deleteIfExists(dataFile);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ch.so.agi.pmtiles;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.TableDescriptorProvider;
+import ch.so.agi.cloudformats.TableExporter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class PmTilesExporter {
+    private final PmTilesTableWriter tableWriter;
+    private final TableExporter tableExporter;
+
+    public PmTilesExporter(GeometryReader geometryReader) {
+        this.tableWriter = new PmTilesTableWriter(geometryReader);
+        this.tableExporter = new TableExporter();
+    }
+
+    public void exportTables(Connection connection, TableDescriptorProvider tableDescriptorProvider, Path outputDirectory)
+            throws SQLException, IOException {
+        exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter.defaultOptions());
+    }
+
+    public void exportTables(Connection connection,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             PmTilesTableWriter.PmTilesWriteOptions options) throws SQLException, IOException {
+        tableExporter.exportTables(connection, tableDescriptorProvider, outputDirectory, tableWriter, options);
+    }
+
+    public void exportTables(ConnectionFactory connectionFactory,
+                             TableDescriptorProvider tableDescriptorProvider,
+                             Path outputDirectory,
+                             PmTilesTableWriter.PmTilesWriteOptions options,
+                             int threads) throws SQLException, IOException {
+        tableExporter.exportTables(connectionFactory, tableDescriptorProvider, outputDirectory, tableWriter, options, threads);
+    }
+}
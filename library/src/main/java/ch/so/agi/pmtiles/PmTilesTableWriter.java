@@ -0,0 +1,423 @@
+package ch.so.agi.pmtiles;
+
+import ch.so.agi.cloudformats.BatchTableWriter;
+import ch.so.agi.cloudformats.GeometryReader;
+import ch.so.agi.cloudformats.RowBatch;
+import ch.so.agi.cloudformats.RowBatchReader;
+import ch.so.agi.cloudformats.RowBatchSink;
+import ch.so.agi.cloudformats.SqlValues;
+import ch.so.agi.cloudformats.TableDescriptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+// Writes a PMTiles v3 archive of gzipped Mapbox Vector Tiles with one layer per table, named after the table.
+// The read pass projects and spills the features; finish() cuts the tiles of every zoom level and writes the archive.
+public class PmTilesTableWriter implements BatchTableWriter<PmTilesTableWriter.PmTilesWriteOptions> {
+    private final GeometryReader geometryReader;
+
+    public PmTilesTableWriter(GeometryReader geometryReader) {
+        this.geometryReader = geometryReader;
+    }
+
+    @Override
+    public String fileExtension() {
+        return "pmtiles";
+    }
+
+    @Override
+    public PmTilesWriteOptions defaultOptions() {
+        return PmTilesWriteOptions.builder().build();
+    }
+
+    @Override
+    public void writeTable(Connection connection, TableDescriptor table, Path outputFile, PmTilesWriteOptions options)
+            throws SQLException, IOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM " + table.tableName());
+             ResultSet resultSet = statement.executeQuery();
+             RowBatchSink sink = openSink(connection, table, resultSet.getMetaData(), outputFile, options)) {
+            RowBatchReader reader = new RowBatchReader(resultSet, sink.columns(),
+                    table.hasGeometry() ? table.geometryColumn() : null, geometryReader);
+            RowBatch batch = reader.newBatch(RowBatch.DEFAULT_CAPACITY);
+            while (reader.read(batch)) {
+                sink.write(batch);
+            }
+            sink.finish();
+        }
+    }
+
+    // Tables without a geometry column become an archive without tiles.
+    @Override
+    public RowBatchSink openSink(Connection connection,
+                                 TableDescriptor table,
+                                 ResultSetMetaData metaData,
+                                 Path outputFile,
+                                 PmTilesWriteOptions options) throws SQLException, IOException {
+        if (table.hasGeometry() && !WebMercator.supports(table.srid())) {
+            throw new IllegalArgumentException("PMTiles output needs EPSG:2056, 21781, 4326 or 3857, "
+                    + table.tableName() + " uses EPSG:" + table.srid() + ".");
+        }
+        List<PropertyColumn> columns = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String name = metaData.getColumnName(i);
+            if (table.hasGeometry() && name.equalsIgnoreCase(table.geometryColumn())) {
+                continue;
+            }
+            columns.add(buildColumn(name, i, metaData.getColumnType(i)));
+        }
+        return new PmTilesBatchSink(table, columns, outputFile, options);
+    }
+
+    // MVT values: string (1), double (3), sint (6) and bool (7). Blobs have no MVT type and are left out.
+    private static PropertyColumn buildColumn(String name, int index, int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.LONG, "Number",
+                    (value, batch, column, row) -> value.varint(6, ProtobufOutput.zigZag(batch.getLong(column, row))));
+            case Types.FLOAT, Types.REAL, Types.DOUBLE, Types.NUMERIC, Types.DECIMAL -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.DOUBLE, "Number",
+                    (value, batch, column, row) -> value.fixed64(3, batch.getDouble(column, row)));
+            case Types.BOOLEAN, Types.BIT -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.OBJECT, "Boolean",
+                    (value, batch, column, row) -> value.varint(7, SqlValues.toBoolean(batch.getObject(column, row))
+                            ? 1 : 0));
+            case Types.DATE -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.OBJECT, "String",
+                    (value, batch, column, row) -> {
+                        LocalDate date = SqlValues.toLocalDate(batch.getObject(column, row));
+                        if (date != null) {
+                            string(value, date.toString());
+                        }
+                    });
+            case Types.TIME -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.OBJECT, "String",
+                    (value, batch, column, row) -> {
+                        LocalTime time = SqlValues.toLocalTime(batch.getObject(column, row));
+                        if (time != null) {
+                            string(value, time.toString());
+                        }
+                    });
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.OBJECT, "String",
+                    (value, batch, column, row) -> {
+                        Instant instant = SqlValues.toInstant(batch.getObject(column, row));
+                        if (instant != null) {
+                            string(value, instant.toString());
+                        }
+                    });
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.BLOB, null, null);
+            default -> new PropertyColumn(
+                    name, index, RowBatch.ColumnKind.TEXT, "String",
+                    (value, batch, column, row) -> value.bytes(1, batch.bytes(column), batch.offset(column, row),
+                            batch.length(column, row)));
+        };
+    }
+
+    private static void string(ProtobufOutput value, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        value.bytes(1, bytes, 0, bytes.length);
+    }
+
+    public record PmTilesWriteOptions(int minZoom,
+                                      int maxZoom,
+                                      int extent,
+                                      int buffer,
+                                      double simplification,
+                                      int maxFeaturesPerTile,
+                                      int maxTileBytes,
+                                      int encodingThreads,
+                                      long memoryBudget) {
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        public static final class Builder {
+            private int minZoom = 0;
+            private int maxZoom = 14;
+            private int extent = 4096;
+            private int buffer = 64;
+            private double simplification = 1.0;
+            private int maxFeaturesPerTile = 200_000;
+            private int maxTileBytes = 500_000;
+            private int encodingThreads = 1;
+            private long memoryBudget = 256L << 20;
+
+            // Zoom levels up to 15; the tile id of a feature pair is kept in 32 bits.
+            public Builder minZoom(int minZoom) {
+                this.minZoom = checkZoom(minZoom, "minZoom");
+                return this;
+            }
+
+            public Builder maxZoom(int maxZoom) {
+                this.maxZoom = checkZoom(maxZoom, "maxZoom");
+                return this;
+            }
+
+            // Size of the integer grid of a tile.
+            public Builder extent(int extent) {
+                if (extent < 1) {
+                    throw new IllegalArgumentException("extent must be >= 1");
+                }
+                this.extent = extent;
+                return this;
+            }
+
+            // Features are clipped to the tile plus this margin, in tile units (extent).
+            public Builder buffer(int buffer) {
+                if (buffer < 0) {
+                    throw new IllegalArgumentException("buffer must be >= 0");
+                }
+                this.buffer = buffer;
+                return this;
+            }
+
+            // Douglas-Peucker tolerance in pixels of a 256 pixel tile; lines and polygons smaller than that are
+            // dropped below maxZoom. 0 switches both off.
+            public Builder simplification(double simplification) {
+                if (!(simplification >= 0)) {
+                    throw new IllegalArgumentException("simplification must be >= 0");
+                }
+                this.simplification = simplification;
+                return this;
+            }
+
+            // Over these limits the smallest features of a tile are dropped (points evenly thinned out).
+            public Builder maxFeaturesPerTile(int maxFeaturesPerTile) {
+                if (maxFeaturesPerTile < 1) {
+                    throw new IllegalArgumentException("maxFeaturesPerTile must be >= 1");
+                }
+                this.maxFeaturesPerTile = maxFeaturesPerTile;
+                return this;
+            }
+
+            public Builder maxTileBytes(int maxTileBytes) {
+                if (maxTileBytes < 1) {
+                    throw new IllegalArgumentException("maxTileBytes must be >= 1");
+                }
+                this.maxTileBytes = maxTileBytes;
+                return this;
+            }
+
+            public Builder encodingThreads(int encodingThreads) {
+                if (encodingThreads < 1) {
+                    throw new IllegalArgumentException("encodingThreads must be >= 1");
+                }
+                this.encodingThreads = encodingThreads;
+                return this;
+            }
+
+            // Bytes for the feature-to-tile assignments of one pass; larger zoom levels take several passes.
+            public Builder memoryBudget(long memoryBudget) {
+                if (memoryBudget < 1) {
+                    throw new IllegalArgumentException("memoryBudget must be >= 1");
+                }
+                this.memoryBudget = memoryBudget;
+                return this;
+            }
+
+            public PmTilesWriteOptions build() {
+                if (minZoom > maxZoom) {
+                    throw new IllegalArgumentException("minZoom must be <= maxZoom");
+                }
+                return new PmTilesWriteOptions(minZoom, maxZoom, extent, buffer, simplification, maxFeaturesPerTile,
+                        maxTileBytes, encodingThreads, memoryBudget);
+            }
+
+            private static int checkZoom(int zoom, String name) {
+                if (zoom < 0 || zoom > TileId.MAX_ZOOM) {
+                    throw new IllegalArgumentException(name + " must be between 0 and " + TileId.MAX_ZOOM);
+                }
+                return zoom;
+            }
+        }
+    }
+
+    private static final class PmTilesBatchSink implements RowBatchSink {
+        private final TableDescriptor table;
+        private final List<PropertyColumn> propertyColumns;
+        private final List<RowBatch.Column> columns;
+        private final Path outputFile;
+        private final PmTilesWriteOptions options;
+        private final CoordinateSequenceFilter toWorld;
+        private final FeatureSpill spill;
+        private final PmTilesArchive archive;
+        private final WKBReader wkbReader = new WKBReader();
+        private final WKBWriter wkbWriter = new WKBWriter();
+        private final ProtobufOutput properties = new ProtobufOutput();
+        private final ProtobufOutput value = new ProtobufOutput();
+
+        private PmTilesBatchSink(TableDescriptor table,
+                                 List<PropertyColumn> propertyColumns,
+                                 Path outputFile,
+                                 PmTilesWriteOptions options) throws IOException {
+            this.table = table;
+            this.propertyColumns = List.copyOf(propertyColumns);
+            this.columns = propertyColumns.stream()
+                    .map(column -> new RowBatch.Column(column.name(), column.index(), column.kind()))
+                    .toList();
+            this.outputFile = outputFile;
+            this.options = options;
+            this.toWorld = table.hasGeometry() ? WebMercator.toWorld(table.srid()) : null;
+            this.spill = new FeatureSpill();
+            this.archive = new PmTilesArchive();
+        }
+
+        @Override
+        public List<RowBatch.Column> columns() {
+            return columns;
+        }
+
+        @Override
+        public void write(RowBatch batch) throws SQLException, IOException {
+            if (toWorld == null) {
+                return;
+            }
+            for (int row = 0; row < batch.size(); row++) {
+                Geometry geometry = geometry(batch, row);
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                geometry.apply(toWorld);
+                geometry.geometryChanged();
+                properties.reset();
+                for (int column = 0; column < propertyColumns.size(); column++) {
+                    PropertyEncoder encoder = propertyColumns.get(column).encoder();
+                    if (encoder == null || batch.isNull(column, row)) {
+                        continue;
+                    }
+                    value.reset();
+                    encoder.encode(value, batch, column, row);
+                    if (value.size() > 0) {
+                        properties.varint(column);
+                        properties.varint(value.size());
+                        properties.write(value.array(), 0, value.size());
+                    }
+                }
+                Envelope envelope = geometry.getEnvelopeInternal();
+                spill.add(type(geometry), properties, wkbWriter.write(geometry),
+                        envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY());
+            }
+        }
+
+        // A private copy, because the geometry is projected in place and other formats may share the batch.
+        private Geometry geometry(RowBatch batch, int row) throws SQLException {
+            if (batch.geometry(row) != null) {
+                return batch.geometry(row).copy();
+            }
+            if (!batch.hasGeometry(row)) {
+                return null;
+            }
+            int offset = batch.wkbOffset(row);
+            try {
+                return wkbReader.read(Arrays.copyOfRange(batch.wkbArray(row), offset, offset + batch.wkbLength(row)));
+            } catch (ParseException e) {
+                throw new SQLException("Unable to parse WKB geometry.", e);
+            }
+        }
+
+        // Collections take the type of their highest dimension; the other parts are dropped when the tile is cut.
+        private static int type(Geometry geometry) {
+            return switch (geometry.getDimension()) {
+                case 0 -> VectorTileEncoder.POINT;
+                case 1 -> VectorTileEncoder.LINESTRING;
+                default -> VectorTileEncoder.POLYGON;
+            };
+        }
+
+        @Override
+        public void finish() throws IOException {
+            spill.finishWriting();
+            List<String> keys = propertyColumns.stream().map(PropertyColumn::name).toList();
+            new TileGenerator(spill, new VectorTileEncoder(spill, table.tableName(), keys, options), options)
+                    .generate(archive);
+            double minLon = -180;
+            double minLat = -85.0511287798;
+            double maxLon = 180;
+            double maxLat = 85.0511287798;
+            if (!spill.isEmpty()) {
+                minLon = WebMercator.lon(spill.minX());
+                maxLon = WebMercator.lon(spill.maxX());
+                minLat = WebMercator.lat(spill.maxY());
+                maxLat = WebMercator.lat(spill.minY());
+            }
+            archive.finish(outputFile, metadata(), options.minZoom(), options.maxZoom(), minLon, minLat, maxLon, maxLat);
+        }
+
+        private String metadata() {
+            StringBuilder json = new StringBuilder("{\"name\":");
+            quote(json, table.tableName());
+            json.append(",\"format\":\"pbf\",\"type\":\"overlay\",\"vector_layers\":[{\"id\":");
+            quote(json, table.tableName());
+            json.append(",\"fields\":{");
+            boolean first = true;
+            for (PropertyColumn column : propertyColumns) {
+                if (column.fieldType() == null) {
+                    continue;
+                }
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                quote(json, column.name());
+                json.append(':');
+                quote(json, column.fieldType());
+            }
+            json.append("},\"minzoom\":").append(options.minZoom())
+                    .append(",\"maxzoom\":").append(options.maxZoom()).append("}]}");
+            return json.toString();
+        }
+
+        private static void quote(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                spill.close();
+            } finally {
+                archive.close();
+            }
+        }
+    }
+
+    private record PropertyColumn(String name, int index, RowBatch.ColumnKind kind, String fieldType,
+                                  PropertyEncoder encoder) {
+    }
+
+    private interface PropertyEncoder {
+        void encode(ProtobufOutput value, RowBatch batch, int column, int row);
+    }
+}
@@ -0,0 +1,106 @@
+package ch.so.agi.pmtiles;
+
+import java.util.Arrays;
+
+// Just enough of the protobuf wire format for vector tiles; messages are written into a growable byte array.
+final class ProtobufOutput {
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+
+    private byte[] buffer = new byte[256];
+    private int size;
+
+    void tag(int field, int wireType) {
+        varint((long) field << 3 | wireType);
+    }
+
+    void varint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    void varint(int field, long value) {
+        tag(field, VARINT);
+        varint(value);
+    }
+
+    void fixed64(int field, double value) {
+        tag(field, FIXED64);
+        ensure(Long.BYTES);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < Long.BYTES; i++) {
+            buffer[size++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    void bytes(int field, byte[] bytes, int offset, int length) {
+        tag(field, LENGTH_DELIMITED);
+        varint(length);
+        write(bytes, offset, length);
+    }
+
+    void message(int field, ProtobufOutput message) {
+        bytes(field, message.buffer, 0, message.size);
+    }
+
+    void packed(int field, int[] values, int count) {
+        if (count == 0) {
+            return;
+        }
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += varintSize(values[i] & 0xFFFFFFFFL);
+        }
+        tag(field, LENGTH_DELIMITED);
+        varint(length);
+        for (int i = 0; i < count; i++) {
+            varint(values[i] & 0xFFFFFFFFL);
+        }
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int varintSize(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    byte[] array() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size + extra, Math.multiplyExact(buffer.length, 2)));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ch.so.agi.pmtiles;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Assigns the spilled features to the tiles they touch, one zoom level at a time, as sorted (tile, feature) pairs.
+// A level whose pairs exceed the memory budget is cut into several Hilbert ranges of tiles, each assigned in its own
+// pass over the feature envelopes. Workers encode the tiles, the calling thread adds them to the archive in tile id
+// order, with at most a few tiles per worker in flight.
+final class TileGenerator {
+    private static final int HISTOGRAM_BITS = 12;
+    private static final int TILES_IN_FLIGHT_PER_THREAD = 4;
+
+    private final FeatureSpill features;
+    private final VectorTileEncoder encoder;
+    private final PmTilesTableWriter.PmTilesWriteOptions options;
+    private final long maxPairs;
+
+    TileGenerator(FeatureSpill features, VectorTileEncoder encoder, PmTilesTableWriter.PmTilesWriteOptions options) {
+        this.features = features;
+        this.encoder = encoder;
+        this.options = options;
+        this.maxPairs = Math.max(1, Math.min(Integer.MAX_VALUE - 8, options.memoryBudget() / Long.BYTES));
+    }
+
+    void generate(PmTilesArchive archive) throws IOException {
+        ExecutorService executor = options.encodingThreads() > 1
+                ? Executors.newFixedThreadPool(options.encodingThreads())
+                : null;
+        Deque<Future<EncodedTile>> pending = new ArrayDeque<>();
+        try {
+            for (int z = options.minZoom(); z <= options.maxZoom(); z++) {
+                for (long[] range : ranges(z)) {
+                    long[] pairs = pairs(z, range[0], range[1], range[2]);
+                    int start = 0;
+                    while (start < pairs.length) {
+                        long d = pairs[start] >>> 32;
+                        int end = start;
+                        while (end < pairs.length && pairs[end] >>> 32 == d) {
+                            end++;
+                        }
+                        int[] tileFeatures = new int[end - start];
+                        for (int i = start; i < end; i++) {
+                            tileFeatures[i - start] = (int) pairs[i];
+                        }
+                        int zoom = z;
+                        if (executor == null) {
+                            add(archive, encode(zoom, d, tileFeatures));
+                        } else {
+                            while (pending.size() >= TILES_IN_FLIGHT_PER_THREAD * options.encodingThreads()) {
+                                add(archive, next(pending));
+                            }
+                            pending.add(executor.submit(() -> encode(zoom, d, tileFeatures)));
+                        }
+                        start = end;
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                add(archive, next(pending));
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor.close();
+            }
+        }
+    }
+
+    private EncodedTile encode(int z, long d, int[] tileFeatures) throws IOException {
+        int[] xy = TileId.position(z, d);
+        return new EncodedTile(TileId.base(z) + d, encoder.encode(z, xy[0], xy[1], tileFeatures));
+    }
+
+    private static void add(PmTilesArchive archive, EncodedTile tile) throws IOException {
+        if (tile.data() != null) {
+            archive.addTile(tile.tileId(), tile.data());
+        }
+    }
+
+    private static EncodedTile next(Deque<Future<EncodedTile>> pending) throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding tiles.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Hilbert ranges [from, to) of level z with their pair counts; a single range when the level fits the budget.
+    private List<long[]> ranges(int z) {
+        long total = 0;
+        for (int feature = 0; feature < features.count(); feature++) {
+            int[] tiles = tiles(z, feature);
+            if (tiles != null) {
+                total += (long) (tiles[2] - tiles[0] + 1) * (tiles[3] - tiles[1] + 1);
+            }
+        }
+        long levelSize = 1L << (2 * z);
+        if (total <= maxPairs) {
+            return List.of(new long[]{0, levelSize, total});
+        }
+        int shift = Math.max(0, 2 * z - HISTOGRAM_BITS);
+        long[] histogram = new long[(int) (levelSize >>> shift)];
+        for (int feature = 0; feature < features.count(); feature++) {
+            int[] tiles = tiles(z, feature);
+            if (tiles != null) {
+                for (int x = tiles[0]; x <= tiles[2]; x++) {
+                    for (int y = tiles[1]; y <= tiles[3]; y++) {
+                        histogram[(int) (TileId.hilbert(z, x, y) >>> shift)]++;
+                    }
+                }
+            }
+        }
+        List<long[]> ranges = new ArrayList<>();
+        long from = 0;
+        long count = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            if (count > 0 && count + histogram[bucket] > maxPairs) {
+                long to = (long) bucket << shift;
+                ranges.add(new long[]{from, to, count});
+                from = to;
+                count = 0;
+            }
+            count += histogram[bucket];
+        }
+        ranges.add(new long[]{from, levelSize, count});
+        return ranges;
+    }
+
+    // (Hilbert position << 32 | feature) for every tile of the range a feature touches, sorted.
+    private long[] pairs(int z, long from, long to, long count) {
+        long[] pairs = new long[Math.toIntExact(count)];
+        int size = 0;
+        boolean wholeLevel = from == 0 && to == 1L << (2 * z);
+        for (int feature = 0; feature < features.count(); feature++) {
+            int[] tiles = tiles(z, feature);
+            if (tiles == null) {
+                continue;
+            }
+            for (int x = tiles[0]; x <= tiles[2]; x++) {
+                for (int y = tiles[1]; y <= tiles[3]; y++) {
+                    long d = TileId.hilbert(z, x, y);
+                    if (wholeLevel || d >= from && d < to) {
+                        pairs[size++] = d << 32 | feature;
+                    }
+                }
+            }
+        }
+        Arrays.parallelSort(pairs, 0, size);
+        return size == pairs.length ? pairs : Arrays.copyOf(pairs, size);
+    }
+
+    // The tile range (minX, minY, maxX, maxY) a feature touches at level z, including the tile buffer. Lines and
+    // polygons smaller than the simplification tolerance are left out below the maximum zoom.
+    private int[] tiles(int z, int feature) {
+        int n = 1 << z;
+        double minX = features.minX(feature) * n;
+        double minY = features.minY(feature) * n;
+        double maxX = features.maxX(feature) * n;
+        double maxY = features.maxY(feature) * n;
+        if (z < options.maxZoom() && features.type(feature) != VectorTileEncoder.POINT
+                && (maxX - minX) * 256 < options.simplification() && (maxY - minY) * 256 < options.simplification()) {
+            return null;
+        }
+        double buffer = (double) options.buffer() / options.extent();
+        return new int[]{
+                clamp(minX - buffer, n), clamp(minY - buffer, n), clamp(maxX + buffer, n), clamp(maxY + buffer, n)
+        };
+    }
+
+    private static int clamp(double tile, int n) {
+        return (int) Math.max(0, Math.min(n - 1, Math.floor(tile)));
+    }
+
+    private record EncodedTile(long tileId, byte[] data) {
+    }
+}
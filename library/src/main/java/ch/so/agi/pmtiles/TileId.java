@@ -0,0 +1,56 @@
+package ch.so.agi.pmtiles;
+
+// PMTiles v3 tile ids: all tiles of lower zoom levels come first, tiles of one level follow a Hilbert curve.
+final class TileId {
+    static final int MAX_ZOOM = 15;
+
+    private TileId() {
+    }
+
+    static long base(int z) {
+        return ((1L << (2 * z)) - 1) / 3;
+    }
+
+    static long of(int z, int x, int y) {
+        return base(z) + hilbert(z, x, y);
+    }
+
+    static long hilbert(int z, int x, int y) {
+        long d = 0;
+        int[] xy = {x, y};
+        for (int s = 1 << z >>> 1; s > 0; s >>= 1) {
+            int rx = (xy[0] & s) > 0 ? 1 : 0;
+            int ry = (xy[1] & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            rotate(s, xy, rx, ry);
+        }
+        return d;
+    }
+
+    // Inverse of hilbert(): the x and y of position d on level z.
+    static int[] position(int z, long d) {
+        int[] xy = {0, 0};
+        long t = d;
+        for (int s = 1; s < 1 << z; s <<= 1) {
+            int rx = (int) (1 & (t / 2));
+            int ry = (int) (1 & (t ^ rx));
+            rotate(s, xy, rx, ry);
+            xy[0] += s * rx;
+            xy[1] += s * ry;
+            t /= 4;
+        }
+        return xy;
+    }
+
+    private static void rotate(int n, int[] xy, int rx, int ry) {
+        if (ry == 0) {
+            if (rx == 1) {
+                xy[0] = n - 1 - xy[0];
+                xy[1] = n - 1 - xy[1];
+            }
+            int x = xy[0];
+            xy[0] = xy[1];
+            xy[1] = x;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package ch.so.agi.pmtiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.LineStringExtracter;
+import org.locationtech.jts.geom.util.PolygonExtracter;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.operation.overlayng.OverlayNG;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+
+// Builds one gzipped Mapbox Vector Tile (v2, a single layer) from spilled features: transform into tile units, clip to
+// the buffered tile, simplify, quantize to the integer grid and drop features until the tile fits the limits.
+final class VectorTileEncoder {
+    static final int POINT = 1;
+    static final int LINESTRING = 2;
+    static final int POLYGON = 3;
+
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private final FeatureSpill features;
+    private final byte[] layerName;
+    private final byte[][] keys;
+    private final PmTilesTableWriter.PmTilesWriteOptions options;
+
+    VectorTileEncoder(FeatureSpill features, String layerName, List<String> keys,
+                      PmTilesTableWriter.PmTilesWriteOptions options) {
+        this.features = features;
+        this.layerName = layerName.getBytes(StandardCharsets.UTF_8);
+        this.keys = keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        this.options = options;
+    }
+
+    // Returns null when no feature is left in the tile.
+    byte[] encode(int z, int x, int y, int[] tileFeatures) throws IOException {
+        int extent = options.extent();
+        double scale = (double) (1L << z) * extent;
+        double offsetX = (double) x * extent;
+        double offsetY = (double) y * extent;
+        Envelope clip = new Envelope(-options.buffer(), extent + options.buffer(), -options.buffer(),
+                extent + options.buffer());
+        double tolerance = options.simplification() * extent / 256;
+        WKBReader wkbReader = new WKBReader(GEOMETRY_FACTORY);
+        List<Candidate> candidates = new ArrayList<>();
+        for (int feature : tileFeatures) {
+            ByteBuffer record = features.read(feature);
+            int propertiesLength = (int) readVarint(record);
+            int propertiesOffset = record.position();
+            Geometry geometry;
+            try {
+                geometry = wkbReader.read(Arrays.copyOfRange(record.array(), propertiesOffset + propertiesLength,
+                        record.limit()));
+            } catch (ParseException e) {
+                throw new IOException("Unable to parse spilled geometry.", e);
+            }
+            geometry.apply(toTile(scale, offsetX, offsetY));
+            geometry.geometryChanged();
+            int type = features.type(feature);
+            geometry = clip(geometry, type, clip);
+            if (geometry == null || geometry.isEmpty()) {
+                continue;
+            }
+            if (tolerance > 0 && type != POINT) {
+                geometry = DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+            }
+            Commands commands = new Commands();
+            switch (type) {
+                case POINT -> commands.points(geometry);
+                case LINESTRING -> {
+                    // The JTS extracters return raw lists.
+                    for (Object line : LineStringExtracter.getLines(geometry)) {
+                        commands.line((LineString) line);
+                    }
+                }
+                default -> {
+                    for (Object polygon : PolygonExtracter.getPolygons(geometry)) {
+                        commands.polygon((Polygon) polygon);
+                    }
+                }
+            }
+            if (commands.size == 0) {
+                continue;
+            }
+            Envelope envelope = geometry.getEnvelopeInternal();
+            candidates.add(new Candidate(candidates.size(), type, Arrays.copyOf(commands.values, commands.size),
+                    record, propertiesOffset, propertiesLength, Math.max(envelope.getWidth(), envelope.getHeight())));
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        List<Candidate> kept = select(candidates, options.maxFeaturesPerTile());
+        byte[] tile = gzip(tile(kept));
+        while (tile.length > options.maxTileBytes() && kept.size() > 1) {
+            long limit = (long) (kept.size() * 0.9 * options.maxTileBytes() / tile.length);
+            kept = select(candidates, (int) Math.max(1, Math.min(kept.size() - 1, limit)));
+            tile = gzip(tile(kept));
+        }
+        return tile;
+    }
+
+    private static CoordinateSequenceFilter toTile(double scale, double offsetX, double offsetY) {
+        return new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence sequence, int i) {
+                sequence.setOrdinate(i, 0, sequence.getX(i) * scale - offsetX);
+                sequence.setOrdinate(i, 1, sequence.getY(i) * scale - offsetY);
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        };
+    }
+
+    private static Geometry clip(Geometry geometry, int type, Envelope clip) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        if (clip.covers(envelope)) {
+            return geometry;
+        }
+        if (!clip.intersects(envelope)) {
+            return null;
+        }
+        if (type == POINT) {
+            List<Coordinate> inside = new ArrayList<>();
+            for (Coordinate coordinate : geometry.getCoordinates()) {
+                if (clip.covers(coordinate)) {
+                    inside.add(coordinate);
+                }
+            }
+            return GEOMETRY_FACTORY.createMultiPointFromCoords(inside.toArray(Coordinate[]::new));
+        }
+        Geometry box = GEOMETRY_FACTORY.toGeometry(clip);
+        try {
+            return OverlayNGRobust.overlay(geometry, box, OverlayNG.INTERSECTION);
+        } catch (RuntimeException e) {
+            // Invalid polygons (self-intersections) get one repair attempt; anything else is left out of the tile.
+            if (type != POLYGON) {
+                return null;
+            }
+            try {
+                return OverlayNGRobust.overlay(geometry.buffer(0), box, OverlayNG.INTERSECTION);
+            } catch (RuntimeException repairFailure) {
+                return null;
+            }
+        }
+    }
+
+    // Keeps the largest features; among equally sized ones (points) a bit-reversed order thins evenly across the tile.
+    private static List<Candidate> select(List<Candidate> candidates, int limit) {
+        if (candidates.size() <= limit) {
+            return candidates;
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(Candidate::size).reversed()
+                        .thenComparing((a, b) -> Integer.compareUnsigned(Integer.reverse(a.ordinal()),
+                                Integer.reverse(b.ordinal()))))
+                .limit(limit)
+                .sorted(Comparator.comparingInt(Candidate::ordinal))
+                .toList();
+    }
+
+    private ProtobufOutput tile(List<Candidate> kept) {
+        ProtobufOutput layer = new ProtobufOutput();
+        layer.bytes(1, layerName, 0, layerName.length);
+        Map<Integer, Integer> keyIndexes = new HashMap<>();
+        List<Integer> tileKeys = new ArrayList<>();
+        Map<ByteBuffer, Integer> valueIndexes = new HashMap<>();
+        List<ByteBuffer> tileValues = new ArrayList<>();
+        ProtobufOutput feature = new ProtobufOutput();
+        int[] tags = new int[2 * keys.length];
+        for (Candidate candidate : kept) {
+            ByteBuffer properties = candidate.record().duplicate();
+            properties.position(candidate.propertiesOffset());
+            int end = candidate.propertiesOffset() + candidate.propertiesLength();
+            int tagCount = 0;
+            while (properties.position() < end) {
+                int key = (int) readVarint(properties);
+                int length = (int) readVarint(properties);
+                ByteBuffer value = properties.slice(properties.position(), length);
+                properties.position(properties.position() + length);
+                tags[tagCount++] = keyIndexes.computeIfAbsent(key, k -> {
+                    tileKeys.add(k);
+                    return tileKeys.size() - 1;
+                });
+                tags[tagCount++] = valueIndexes.computeIfAbsent(value, v -> {
+                    tileValues.add(v);
+                    return tileValues.size() - 1;
+                });
+            }
+            feature.reset();
+            feature.packed(2, tags, tagCount);
+            feature.varint(3, candidate.type());
+            feature.packed(4, candidate.geometry(), candidate.geometry().length);
+            layer.message(2, feature);
+        }
+        for (int key : tileKeys) {
+            layer.bytes(3, keys[key], 0, keys[key].length);
+        }
+        for (ByteBuffer value : tileValues) {
+            layer.bytes(4, value.array(), value.arrayOffset() + value.position(), value.remaining());
+        }
+        layer.varint(5, options.extent());
+        layer.varint(15, 2);
+        ProtobufOutput tile = new ProtobufOutput();
+        tile.message(3, layer);
+        return tile;
+    }
+
+    private static byte[] gzip(ProtobufOutput tile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(tile.size() / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(tile.array(), 0, tile.size());
+        }
+        return bytes.toByteArray();
+    }
+
+    static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private record Candidate(int ordinal, int type, int[] geometry, ByteBuffer record, int propertiesOffset,
+                             int propertiesLength, double size) {
+    }
+
+    // MVT geometry commands; the cursor carries over between the parts of a feature.
+    private static final class Commands {
+        private int[] values = new int[32];
+        private int size;
+        private long cursorX;
+        private long cursorY;
+        private long[] xs = new long[16];
+        private long[] ys = new long[16];
+        private int vertices;
+
+        void points(Geometry geometry) {
+            int header = size;
+            add(0);
+            int count = 0;
+            for (Coordinate coordinate : geometry.getCoordinates()) {
+                moveCursor(Math.round(coordinate.x), Math.round(coordinate.y));
+                count++;
+            }
+            if (count == 0) {
+                size = header;
+            } else {
+                values[header] = command(MOVE_TO, count);
+            }
+        }
+
+        void line(LineString line) {
+            quantize(line.getCoordinateSequence());
+            if (vertices < 2) {
+                return;
+            }
+            path(false);
+        }
+
+        void polygon(Polygon polygon) {
+            quantize(polygon.getExteriorRing().getCoordinateSequence());
+            if (!closeRing(true)) {
+                return;
+            }
+            path(true);
+            for (int hole = 0; hole < polygon.getNumInteriorRing(); hole++) {
+                quantize(polygon.getInteriorRingN(hole).getCoordinateSequence());
+                if (closeRing(false)) {
+                    path(true);
+                }
+            }
+        }
+
+        // Drops the closing vertex and orients the ring: exterior rings have a positive area in tile coordinates
+        // (y down), holes a negative one. Rings that collapsed on the integer grid are left out.
+        private boolean closeRing(boolean exterior) {
+            if (vertices > 1 && xs[0] == xs[vertices - 1] && ys[0] == ys[vertices - 1]) {
+                vertices--;
+            }
+            if (vertices < 3) {
+                return false;
+            }
+            long area = 0;
+            for (int i = 0; i < vertices; i++) {
+                int next = (i + 1) % vertices;
+                area += xs[i] * ys[next] - xs[next] * ys[i];
+            }
+            if (area == 0) {
+                return false;
+            }
+            if (area > 0 != exterior) {
+                for (int i = 0, j = vertices - 1; i < j; i++, j--) {
+                    long x = xs[i];
+                    xs[i] = xs[j];
+                    xs[j] = x;
+                    long y = ys[i];
+                    ys[i] = ys[j];
+                    ys[j] = y;
+                }
+            }
+            return true;
+        }
+
+        private void path(boolean close) {
+            add(command(MOVE_TO, 1));
+            moveCursor(xs[0], ys[0]);
+            add(command(LINE_TO, vertices - 1));
+            for (int i = 1; i < vertices; i++) {
+                moveCursor(xs[i], ys[i]);
+            }
+            if (close) {
+                add(command(CLOSE_PATH, 1));
+            }
+        }
+
+        private void quantize(CoordinateSequence sequence) {
+            vertices = 0;
+            if (xs.length < sequence.size()) {
+                xs = new long[sequence.size()];
+                ys = new long[sequence.size()];
+            }
+            for (int i = 0; i < sequence.size(); i++) {
+                long x = Math.round(sequence.getX(i));
+                long y = Math.round(sequence.getY(i));
+                if (vertices == 0 || x != xs[vertices - 1] || y != ys[vertices - 1]) {
+                    xs[vertices] = x;
+                    ys[vertices] = y;
+                    vertices++;
+                }
+            }
+        }
+
+        private void moveCursor(long x, long y) {
+            add((int) ProtobufOutput.zigZag(x - cursorX));
+            add((int) ProtobufOutput.zigZag(y - cursorY));
+            cursorX = x;
+            cursorY = y;
+        }
+
+        private static int command(int id, int count) {
+            return (id & 0x7) | (count << 3);
+        }
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ch.so.agi.pmtiles;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+
+// Projects source coordinates into the Web Mercator unit square: x grows east, y grows south, the world is [0, 1].
+// Swiss coordinates use swisstopo's approximate formulas (about 1 m), which is well below a pixel up to zoom 15.
+final class WebMercator {
+    private static final double MAX_LATITUDE = 85.0511287798;
+    private static final double EARTH_CIRCUMFERENCE = 2 * Math.PI * 6378137.0;
+
+    private WebMercator() {
+    }
+
+    static boolean supports(int srid) {
+        return srid == 2056 || srid == 21781 || srid == 4326 || srid == 3857;
+    }
+
+    static CoordinateSequenceFilter toWorld(int srid) {
+        if (!supports(srid)) {
+            throw new IllegalArgumentException("Unsupported SRID " + srid);
+        }
+        return new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence sequence, int i) {
+                double x = sequence.getX(i);
+                double y = sequence.getY(i);
+                switch (srid) {
+                    case 3857 -> {
+                        sequence.setOrdinate(i, 0, 0.5 + x / EARTH_CIRCUMFERENCE);
+                        sequence.setOrdinate(i, 1, 0.5 - y / EARTH_CIRCUMFERENCE);
+                    }
+                    case 4326 -> {
+                        sequence.setOrdinate(i, 0, worldX(x));
+                        sequence.setOrdinate(i, 1, worldY(y));
+                    }
+                    default -> {
+                        double e = (x - (srid == 2056 ? 2_600_000 : 600_000)) / 1_000_000;
+                        double n = (y - (srid == 2056 ? 1_200_000 : 200_000)) / 1_000_000;
+                        double lon = 2.6779094 + 4.728982 * e + 0.791484 * e * n + 0.1306 * e * n * n
+                                - 0.0436 * e * e * e;
+                        double lat = 16.9023892 + 3.238272 * n - 0.270978 * e * e - 0.002528 * n * n
+                                - 0.0447 * e * e * n - 0.0140 * n * n * n;
+                        sequence.setOrdinate(i, 0, worldX(lon * 100 / 36));
+                        sequence.setOrdinate(i, 1, worldY(lat * 100 / 36));
+                    }
+                }
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        };
+    }
+
+    static double worldX(double lon) {
+        return (lon + 180) / 360;
+    }
+
+    static double worldY(double lat) {
+        double phi = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        return (1 - Math.log(Math.tan(phi) + 1 / Math.cos(phi)) / Math.PI) / 2;
+    }
+
+    static double lon(double worldX) {
+        return worldX * 360 - 180;
+    }
+
+    static double lat(double worldY) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * worldY))));
+    }
+}
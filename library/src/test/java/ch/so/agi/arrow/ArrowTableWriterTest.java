@@ -0,0 +1,226 @@
+package ch.so.agi.arrow;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArrowTableWriterTest {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesRecordBatchesDictionariesAndWkbReadableByArrowJava() throws Exception {
+        Path outputFile = tempDir.resolve("features.arrow");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, "MULTIPOLYGON");
+            ArrowTableWriter writer = new ArrowTableWriter(new WkbGeometryReader());
+            writer.writeTable(connection, TableDescriptor.of("features", "geom", 2056, 6), outputFile,
+                    ArrowTableWriter.ArrowWriteOptions.builder().recordBatchSize(2).build());
+        }
+
+        try (BufferAllocator allocator = new RootAllocator();
+             FileChannel channel = FileChannel.open(outputFile);
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Field art = root.getSchema().findField("art");
+            assertThat(art.getDictionary()).isNotNull();
+            assertThat(root.getSchema().findField("name").getDictionary()).isNull();
+            assertThat(root.getSchema().findField("id").isNullable()).isFalse();
+            Field geom = root.getSchema().findField("geom");
+            assertThat(geom.getType()).isEqualTo(ArrowType.Binary.INSTANCE);
+            assertThat(geom.getMetadata()).containsEntry("ARROW:extension:name", "geoarrow.wkb");
+            assertThat(geom.getMetadata().get("ARROW:extension:metadata")).contains("\"crs\"").contains("2056");
+            assertThat(reader.getRecordBlocks()).hasSize(3);
+
+            Dictionary dictionary = reader.getDictionaryVectors().get(art.getDictionary().getId());
+            assertThat(dictionary.getVector().getValueCount()).isEqualTo(2);
+
+            List<Long> ids = new ArrayList<>();
+            List<String> arts = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<Double> values = new ArrayList<>();
+            List<LocalDate> days = new ArrayList<>();
+            List<Boolean> flags = new ArrayList<>();
+            List<Object> geometries = new ArrayList<>();
+            WKBReader wkbReader = new WKBReader();
+            while (reader.loadNextBatch()) {
+                try (ValueVector decoded = DictionaryEncoder.decode(root.getVector("art"), dictionary)) {
+                    VarCharVector artValues = (VarCharVector) decoded;
+                    for (int i = 0; i < root.getRowCount(); i++) {
+                        ids.add(((BigIntVector) root.getVector("id")).get(i));
+                        arts.add(artValues.isNull(i) ? null : new String(artValues.get(i)));
+                        VarCharVector name = (VarCharVector) root.getVector("name");
+                        names.add(name.isNull(i) ? null : new String(name.get(i)));
+                        values.add(((Float8Vector) root.getVector("value")).getObject(i));
+                        DateDayVector day = (DateDayVector) root.getVector("day");
+                        days.add(day.isNull(i) ? null : LocalDate.ofEpochDay(day.get(i)));
+                        BitVector flag = (BitVector) root.getVector("flag");
+                        flags.add(flag.isNull(i) ? null : flag.get(i) == 1);
+                        VarBinaryVector wkb = (VarBinaryVector) root.getVector("geom");
+                        geometries.add(wkb.isNull(i) ? null : wkbReader.read(wkb.get(i)).toText());
+                    }
+                }
+            }
+            assertThat(ids).containsExactly(0L, 1L, 2L, 3L, 4L);
+            assertThat(arts).containsExactly("Kies", "Lehm", "Kies", null, "Kies");
+            assertThat(names).containsExactly("a0", "a1", null, "a3", "a4");
+            assertThat(values).containsExactly(0.5, 1.5, null, 3.5, 4.5);
+            assertThat(days).containsExactly(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2), null,
+                    LocalDate.of(2024, 1, 4), LocalDate.of(2024, 1, 5));
+            assertThat(flags).containsExactly(false, true, null, true, false);
+            assertThat(geometries).containsExactly(
+                    "POLYGON ((0 0, 1 0, 1 1, 0 0))",
+                    "MULTIPOLYGON (((1 1, 2 1, 2 2, 1 1)), ((5 5, 6 5, 6 6, 5 5)))",
+                    null,
+                    "POLYGON ((3 3, 4 3, 4 4, 3 3))",
+                    "POLYGON ((4 4, 5 4, 5 5, 4 4))");
+        }
+    }
+
+    @Test
+    void writesNativeGeoArrowMultiPolygons() throws Exception {
+        Path outputFile = tempDir.resolve("features.arrow");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, "MULTIPOLYGON");
+            ArrowTableWriter writer = new ArrowTableWriter(new WkbGeometryReader());
+            writer.writeTable(connection, TableDescriptor.of("features", "geom", 2056, 6), outputFile,
+                    ArrowTableWriter.ArrowWriteOptions.builder()
+                            .geometryEncoding(ArrowTableWriter.GeometryEncoding.NATIVE)
+                            .ili2dbEnumDictionaries(false)
+                            .build());
+        }
+
+        try (BufferAllocator allocator = new RootAllocator();
+             FileChannel channel = FileChannel.open(outputFile);
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertThat(root.getSchema().findField("art").getDictionary()).isNull();
+            Field geom = root.getSchema().findField("geom");
+            assertThat(geom.getMetadata()).containsEntry("ARROW:extension:name", "geoarrow.multipolygon");
+            assertThat(geom.getChildren().get(0).getName()).isEqualTo("polygons");
+            assertThat(geom.getChildren().get(0).getChildren().get(0).getName()).isEqualTo("rings");
+
+            assertThat(reader.loadNextBatch()).isTrue();
+            assertThat(root.getRowCount()).isEqualTo(5);
+            ListVector polygons = (ListVector) root.getVector("geom");
+            assertThat(polygons.isNull(2)).isTrue();
+            assertThat(polygons.getElementEndIndex(0) - polygons.getElementStartIndex(0)).isEqualTo(1);
+            assertThat(polygons.getElementEndIndex(1) - polygons.getElementStartIndex(1)).isEqualTo(2);
+            ListVector rings = (ListVector) polygons.getDataVector();
+            ListVector vertices = (ListVector) rings.getDataVector();
+            StructVector coordinates = (StructVector) vertices.getDataVector();
+            Float8Vector x = (Float8Vector) coordinates.getChild("x");
+            Float8Vector y = (Float8Vector) coordinates.getChild("y");
+            int secondPolygonOfRow1 = polygons.getElementStartIndex(1) + 1;
+            int ring = rings.getElementStartIndex(secondPolygonOfRow1);
+            int vertex = vertices.getElementStartIndex(ring);
+            assertThat(vertices.getElementEndIndex(ring) - vertex).isEqualTo(4);
+            assertThat(x.get(vertex + 1)).isEqualTo(6.0);
+            assertThat(y.get(vertex + 1)).isEqualTo(5.0);
+            assertThat(reader.loadNextBatch()).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsNativeEncodingForMixedGeometryTypes() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, "GEOMETRY");
+            ArrowTableWriter writer = new ArrowTableWriter(new WkbGeometryReader());
+            ArrowTableWriter.ArrowWriteOptions options = ArrowTableWriter.ArrowWriteOptions.builder()
+                    .geometryEncoding(ArrowTableWriter.GeometryEncoding.NATIVE)
+                    .build();
+
+            assertThatThrownBy(() -> writer.writeTable(connection, TableDescriptor.of("features", "geom", 2056, 0),
+                    tempDir.resolve("features.arrow"), options))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("features");
+        }
+    }
+
+    private static void createTable(Connection connection, String geometryType) throws Exception {
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("""
+                    CREATE TABLE features (id BIGINT NOT NULL, art TEXT, name TEXT, value DOUBLE, day DATE,
+                                           flag BOOLEAN, geom BLOB)
+                    """);
+            statement.executeUpdate("""
+                    CREATE TABLE T_ILI2DB_COLUMN_PROP (tablename TEXT, subtype TEXT, columnname TEXT, tag TEXT,
+                                                       setting TEXT)
+                    """);
+            statement.executeUpdate("""
+                    INSERT INTO T_ILI2DB_COLUMN_PROP VALUES ('features', NULL, 'art', 'ch.ehi.ili2db.typeKind', 'ENUM')
+                    """);
+            statement.executeUpdate("""
+                    CREATE TABLE gpkg_geometry_columns (table_name TEXT, column_name TEXT, geometry_type_name TEXT,
+                                                        srs_id INTEGER, z INTEGER, m INTEGER)
+                    """);
+            statement.executeUpdate("INSERT INTO gpkg_geometry_columns VALUES ('features', 'geom', '"
+                    + geometryType + "', 2056, 0, 0)");
+        }
+        String[] arts = {"Kies", "Lehm", "Kies", null, "Kies"};
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO features (id, art, name, value, day, flag, geom) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < 5; i++) {
+                insert.setLong(1, i);
+                insert.setString(2, arts[i]);
+                insert.setString(3, i == 2 ? null : "a" + i);
+                insert.setObject(4, i == 2 ? null : i + 0.5);
+                insert.setString(5, i == 2 ? null : LocalDate.of(2024, 1, 1 + i).toString());
+                insert.setObject(6, i == 2 ? null : i % 2 == 1 || i == 3);
+                if (i == 1) {
+                    insert.setBytes(7, wkbWriter.write(GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{
+                            triangle(1), triangle(5)})));
+                } else {
+                    insert.setBytes(7, i == 2 ? null : wkbWriter.write(triangle(i)));
+                }
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static Polygon triangle(double origin) {
+        return GEOMETRY_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(origin, origin),
+                new Coordinate(origin + 1, origin),
+                new Coordinate(origin + 1, origin + 1),
+                new Coordinate(origin, origin)});
+    }
+}
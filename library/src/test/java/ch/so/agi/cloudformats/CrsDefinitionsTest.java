@@ -0,0 +1,28 @@
+package ch.so.agi.cloudformats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class CrsDefinitionsTest {
+    @ParameterizedTest
+    @ValueSource(ints = {2056, 21781, 4326, 3857})
+    void shipsProjJsonForTheSupportedSrids(int srid) throws Exception {
+        JsonNode crs = new ObjectMapper().readTree(CrsDefinitions.projJson(srid));
+
+        assertThat(crs.get("type").asText()).isIn("ProjectedCRS", "GeographicCRS");
+        assertThat(crs.get("name").asText()).isNotEmpty();
+        assertThat(crs.get("coordinate_system").get("axis")).hasSize(2);
+        assertThat(crs.get("id").get("authority").asText()).isEqualTo("EPSG");
+        assertThat(crs.get("id").get("code").asInt()).isEqualTo(srid);
+    }
+
+    @Test
+    void hasNoDefinitionForOtherSrids() {
+        assertThat(CrsDefinitions.projJson(31467)).isNull();
+    }
+}
@@ -0,0 +1,40 @@
+package ch.so.agi.cloudformats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+
+class GeoPackageGeometryColumnsTest {
+    private static final TableDescriptor TABLE = TableDescriptor.of("points", "geom", 2056, 1);
+
+    @Test
+    void readsZFromGeometryColumns() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement statement = connection.createStatement()) {
+            assertThat(GeoPackageGeometryColumns.hasZ(connection, TABLE)).isFalse();
+
+            statement.executeUpdate("""
+                    CREATE TABLE gpkg_geometry_columns (table_name TEXT, column_name TEXT, geometry_type_name TEXT,
+                                                        srs_id INTEGER, z INTEGER, m INTEGER)
+                    """);
+            statement.executeUpdate("INSERT INTO gpkg_geometry_columns VALUES ('Points', 'GEOM', 'POINT', 2056, 2, 0)");
+            assertThat(GeoPackageGeometryColumns.hasZ(connection, TABLE)).isTrue();
+        }
+    }
+
+    @Test
+    void reportsDatabaseErrors() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE gpkg_geometry_columns (table_name TEXT, column_name TEXT)");
+
+            assertThatThrownBy(() -> GeoPackageGeometryColumns.hasZ(connection, TABLE))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+}
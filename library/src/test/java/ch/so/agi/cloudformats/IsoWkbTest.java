@@ -0,0 +1,88 @@
+package ch.so.agi.cloudformats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+class IsoWkbTest {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @Test
+    void writesEwkbZAsIsoZInAZColumn() throws Exception {
+        byte[] isoZ = isoPoint(1001, 1, 2, 3);
+        byte[] ewkbZ = new WKBWriter(3).write(GEOMETRY_FACTORY.createPoint(new Coordinate(1, 2, 3)));
+        IsoWkb isoWkb = new IsoWkb(true);
+
+        ByteBuffer passedThrough = isoWkb.read(batch(isoZ), 0);
+        ByteBuffer rewritten = isoWkb.read(batch(ewkbZ), 0);
+
+        assertThat(passedThrough.array()).isSameAs(isoZ);
+        assertThat(type(rewritten, 0)).isEqualTo(type(passedThrough, 0)).isEqualTo(1001);
+        assertThat(read(rewritten).getCoordinate().getZ()).isEqualTo(3.0);
+    }
+
+    @Test
+    void rewritesNestedTypesOfJtsGeometries() throws Exception {
+        Polygon triangle = GEOMETRY_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(0, 0, 1), new Coordinate(1, 0, 2), new Coordinate(1, 1, 3), new Coordinate(0, 0, 1)});
+        RowBatch batch = new RowBatch(List.of(), true, 1);
+        batch.setGeometry(batch.addRow(), GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{triangle, triangle}));
+
+        ByteBuffer wkb = new IsoWkb(true).read(batch, 0);
+
+        assertThat(type(wkb, 0)).isEqualTo(1006);
+        assertThat(type(wkb, 9)).isEqualTo(1003);
+        assertThat(type(wkb, 9 + 1 + 4 + 4 + 4 + 4 * 3 * Double.BYTES)).isEqualTo(1003);
+        assertThat(read(wkb).getCoordinates()).extracting(Coordinate::getZ).containsOnly(1.0, 2.0, 3.0);
+    }
+
+    @Test
+    void keepsOneDimensionPerColumn() throws Exception {
+        ByteBuffer flat = new IsoWkb(false).read(batch(isoPoint(1001, 1, 2, 3)), 0);
+        assertThat(type(flat, 0)).isEqualTo(1);
+        assertThat(flat.remaining()).isEqualTo(1 + Integer.BYTES + 2 * Double.BYTES);
+
+        ByteBuffer lifted = new IsoWkb(true).read(batch(isoPoint(1, 1, 2)), 0);
+        assertThat(type(lifted, 0)).isEqualTo(1001);
+        assertThat(read(lifted).getCoordinate().getZ()).isNaN();
+    }
+
+    private static byte[] isoPoint(int type, double... coordinates) {
+        ByteBuffer wkb = ByteBuffer.allocate(1 + Integer.BYTES + coordinates.length * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(type);
+        for (double coordinate : coordinates) {
+            wkb.putDouble(coordinate);
+        }
+        return wkb.array();
+    }
+
+    private static RowBatch batch(byte[] wkb) {
+        RowBatch batch = new RowBatch(List.of(), true, 1);
+        WkbGeometry geometry = new WkbGeometry();
+        geometry.set(ByteBuffer.wrap(wkb));
+        batch.setWkb(batch.addRow(), geometry);
+        return batch;
+    }
+
+    private static int type(ByteBuffer wkb, int offset) {
+        int position = wkb.position() + offset;
+        return wkb.duplicate().order(wkb.get(position) == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN)
+                .getInt(position + 1);
+    }
+
+    private static Geometry read(ByteBuffer wkb) throws Exception {
+        byte[] bytes = new byte[wkb.remaining()];
+        wkb.duplicate().get(bytes);
+        return new WKBReader().read(bytes);
+    }
+}
@@ -0,0 +1,50 @@
+package ch.so.agi.cloudformats;
+
+import ch.so.agi.flatgeobuf.FlatGeobufTableWriter;
+import ch.so.agi.parquet.ParquetTableWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MultiFormatTableWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesSameFilesAsSingleFormatWriters() throws Exception {
+        Path geopackage = Path.of(getClass().getResource("/data/ch.so.afu.abbaustellen.gpkg").toURI());
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(geopackage);
+        TableDescriptorProvider provider = new GeoPackageTableDescriptorProvider(List.of());
+        GeoPackageGeometryReader geometryReader = new GeoPackageGeometryReader();
+        FlatGeobufTableWriter flatGeobuf = new FlatGeobufTableWriter(geometryReader);
+        ParquetTableWriter parquet = new ParquetTableWriter(geometryReader);
+        Path single = Files.createDirectory(tempDir.resolve("single"));
+        Path combined = Files.createDirectory(tempDir.resolve("combined"));
+
+        TableExporter exporter = new TableExporter();
+        exporter.exportTables(connectionFactory, provider, single, flatGeobuf, flatGeobuf.defaultOptions(), 1);
+        exporter.exportTables(connectionFactory, provider, single, parquet, parquet.defaultOptions(), 1);
+        MultiFormatTableWriter writer = new MultiFormatTableWriter(geometryReader,
+                List.of(MultiFormatTableWriter.Format.of(flatGeobuf), MultiFormatTableWriter.Format.of(parquet)));
+        exporter.exportTables(connectionFactory, provider, combined, writer, writer.defaultOptions(), 2);
+
+        List<String> files;
+        try (Stream<Path> paths = Files.list(single)) {
+            files = paths.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+        assertThat(files).contains("abbaustelle.fgb", "abbaustelle.parquet");
+        try (Stream<Path> paths = Files.list(combined)) {
+            assertThat(paths.map(path -> path.getFileName().toString()).sorted().toList()).isEqualTo(files);
+        }
+        for (String file : files) {
+            assertThat(Files.readAllBytes(combined.resolve(file))).as(file)
+                    .isEqualTo(Files.readAllBytes(single.resolve(file)));
+        }
+    }
+}
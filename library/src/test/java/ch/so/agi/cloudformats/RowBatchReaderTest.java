@@ -0,0 +1,97 @@
+package ch.so.agi.cloudformats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+class RowBatchReaderTest {
+    @Test
+    void readsColumnsIntoReusedBatches() throws Exception {
+        byte[] wkb = new WKBWriter().write(new GeometryFactory().createPoint(new Coordinate(7, 47)));
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE features (id INTEGER, area DOUBLE, name TEXT, data BLOB, geom BLOB)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO features VALUES (?, ?, ?, ?, ?)")) {
+                insert.setInt(1, 1);
+                insert.setDouble(2, 1.5);
+                insert.setString(3, "Zürich");
+                insert.setBytes(4, new byte[] {1, 2});
+                insert.setBytes(5, wkb);
+                insert.executeUpdate();
+                insert.setNull(1, java.sql.Types.INTEGER);
+                insert.setNull(2, java.sql.Types.DOUBLE);
+                insert.setNull(3, java.sql.Types.VARCHAR);
+                insert.setNull(4, java.sql.Types.BLOB);
+                insert.setNull(5, java.sql.Types.BLOB);
+                insert.executeUpdate();
+                insert.setInt(1, 3);
+                insert.setDouble(2, -2);
+                insert.setString(3, "Bern");
+                insert.setBytes(4, new byte[0]);
+                insert.setBytes(5, wkb);
+                insert.executeUpdate();
+            }
+
+            List<RowBatch.Column> columns = List.of(
+                    new RowBatch.Column("id", 1, RowBatch.ColumnKind.LONG),
+                    new RowBatch.Column("area", 2, RowBatch.ColumnKind.DOUBLE),
+                    new RowBatch.Column("name", 3, RowBatch.ColumnKind.TEXT),
+                    new RowBatch.Column("data", 4, RowBatch.ColumnKind.BLOB));
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT * FROM features ORDER BY rowid")) {
+                RowBatchReader reader = new RowBatchReader(resultSet, columns, "geom", new WkbGeometryReader());
+                RowBatch batch = reader.newBatch(2);
+
+                assertThat(reader.read(batch)).isTrue();
+                assertThat(batch.size()).isEqualTo(2);
+                assertThat(batch.getLong(0, 0)).isEqualTo(1);
+                assertThat(batch.getDouble(1, 0)).isEqualTo(1.5);
+                assertThat(text(batch, 2, 0)).isEqualTo("Zürich");
+                assertThat(bytes(batch, 3, 0)).containsExactly(1, 2);
+                assertThat(batch.hasGeometry(0)).isTrue();
+                assertThat(Arrays.copyOfRange(batch.wkbArray(0), batch.wkbOffset(0),
+                        batch.wkbOffset(0) + batch.wkbLength(0))).isEqualTo(wkb);
+                assertThat(batch.hasEnvelope(0)).isTrue();
+                assertThat(batch.minX(0)).isEqualTo(7);
+                assertThat(batch.maxY(0)).isEqualTo(47);
+                for (int column = 0; column < columns.size(); column++) {
+                    assertThat(batch.isNull(column, 1)).isTrue();
+                }
+                assertThat(batch.hasGeometry(1)).isFalse();
+
+                assertThat(reader.read(batch)).isTrue();
+                assertThat(batch.size()).isEqualTo(1);
+                assertThat(batch.isNull(0, 0)).isFalse();
+                assertThat(batch.getLong(0, 0)).isEqualTo(3);
+                assertThat(text(batch, 2, 0)).isEqualTo("Bern");
+                assertThat(batch.isNull(3, 0)).isFalse();
+                assertThat(batch.length(3, 0)).isZero();
+
+                assertThat(reader.read(batch)).isFalse();
+                assertThat(batch.size()).isZero();
+            }
+        }
+    }
+
+    private static String text(RowBatch batch, int column, int row) {
+        return new String(batch.bytes(column), batch.offset(column, row), batch.length(column, row),
+                StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(RowBatch batch, int column, int row) {
+        int offset = batch.offset(column, row);
+        return Arrays.copyOfRange(batch.bytes(column), offset, offset + batch.length(column, row));
+    }
+}
@@ -0,0 +1,187 @@
+package ch.so.agi.cloudformats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.so.agi.flatgeobuf.FlatGeobufTableWriter;
+import ch.so.agi.parquet.ParquetTableWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.io.LocalInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.flatgeobuf.HeaderMeta;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class ShardedExportTest {
+    private static final int ROWS = 1000;
+    private static final int WITHOUT_GEOMETRY = 10;
+    private static final TableDescriptor TABLE = new TableDescriptor("points", "geom", 2056, (byte) GeometryType.Point);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shardsByGridCell() throws Exception {
+        Path database = createPointsDatabase();
+        Path output = Files.createDirectory(tempDir.resolve("grid"));
+        WkbGeometryReader geometryReader = new WkbGeometryReader();
+        MultiFormatTableWriter writer = new MultiFormatTableWriter(geometryReader, List.of(
+                MultiFormatTableWriter.Format.of(new FlatGeobufTableWriter(geometryReader)),
+                MultiFormatTableWriter.Format.of(new ParquetTableWriter(geometryReader))));
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            new TableExporter(geometryReader, ShardingOptions.builder().cellSize(250).build())
+                    .exportTables(connection, ignored -> List.of(TABLE), output, writer, writer.defaultOptions());
+        }
+
+        JsonNode manifest = new ObjectMapper().readTree(output.resolve("points.shards.json").toFile());
+        assertThat(manifest.get("sharding").asText()).isEqualTo("grid");
+        assertThat(manifest.get("featuresCount").asLong()).isEqualTo(ROWS);
+        JsonNode shards = manifest.get("shards");
+        assertThat(shards).hasSize(4 * 2 + 1);
+        assertThat(shards.get(0).get("id").asText()).isEqualTo("x0_y0");
+        assertThat(shards.get(1).get("id").asText()).isEqualTo("x1_y0");
+        for (JsonNode shard : shards) {
+            String id = shard.get("id").asText();
+            assertThat(shard.get("files").get(0).asText()).isEqualTo("points." + id + ".fgb");
+            assertThat(output.resolve("points." + id + ".parquet")).exists();
+            assertThat(featuresCount(output.resolve("points." + id + ".fgb")))
+                    .isEqualTo(id.equals("none") ? 0 : shard.get("featuresCount").asLong());
+            if (id.equals("none")) {
+                assertThat(shard.get("featuresCount").asLong()).isEqualTo(WITHOUT_GEOMETRY);
+                assertThat(shard.get("bbox").isNull()).isTrue();
+                continue;
+            }
+            JsonNode bbox = shard.get("bbox");
+            JsonNode cell = shard.get("cell");
+            assertThat(bbox.get(0).asDouble()).isGreaterThanOrEqualTo(cell.get(0).asDouble());
+            assertThat(bbox.get(1).asDouble()).isGreaterThanOrEqualTo(cell.get(1).asDouble());
+            assertThat(bbox.get(2).asDouble()).isLessThan(cell.get(2).asDouble());
+            assertThat(bbox.get(3).asDouble()).isLessThan(cell.get(3).asDouble());
+        }
+        assertThat(output.resolve("points.fgb")).doesNotExist();
+    }
+
+    @Test
+    void shardsByHilbertRangeWithinTheFeatureLimit() throws Exception {
+        Path database = createPointsDatabase();
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        WkbGeometryReader geometryReader = new WkbGeometryReader();
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(geometryReader);
+        Path onePass = Files.createDirectory(tempDir.resolve("one-pass"));
+        Path grouped = Files.createDirectory(tempDir.resolve("grouped"));
+
+        new TableExporter(geometryReader, ShardingOptions.builder().maxFeatures(150).build())
+                .exportTables(connectionFactory, ignored -> List.of(TABLE), onePass, writer, writer.defaultOptions(), 2);
+        new TableExporter(geometryReader, ShardingOptions.builder().maxFeatures(150).maxOpenShards(2).build())
+                .exportTables(connectionFactory, ignored -> List.of(TABLE), grouped, writer, writer.defaultOptions(), 2);
+
+        JsonNode shards = new ObjectMapper().readTree(onePass.resolve("points.shards.json").toFile()).get("shards");
+        long total = 0;
+        long previousEnd = 0;
+        for (JsonNode shard : shards) {
+            long count = shard.get("featuresCount").asLong();
+            total += count;
+            if (shard.get("id").asText().equals("none")) {
+                continue;
+            }
+            assertThat(count).isBetween(1L, 150L);
+            assertThat(shard.get("hilbert").get(0).asLong()).isEqualTo(previousEnd);
+            previousEnd = shard.get("hilbert").get(1).asLong();
+        }
+        assertThat(total).isEqualTo(ROWS);
+        assertThat(shards.size()).isGreaterThanOrEqualTo((ROWS - WITHOUT_GEOMETRY + 149) / 150 + 1);
+
+        List<String> files;
+        try (Stream<Path> paths = Files.list(onePass)) {
+            files = paths.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+        try (Stream<Path> paths = Files.list(grouped)) {
+            assertThat(paths.map(path -> path.getFileName().toString()).sorted().toList()).isEqualTo(files);
+        }
+        for (String file : files) {
+            assertThat(Files.readAllBytes(grouped.resolve(file))).as(file)
+                    .isEqualTo(Files.readAllBytes(onePass.resolve(file)));
+        }
+    }
+
+    @Test
+    void splitsTheMemoryBudgetAcrossOpenShards() throws Exception {
+        Path database = createPointsDatabase();
+        Path output = Files.createDirectory(tempDir.resolve("budget"));
+        WkbGeometryReader geometryReader = new WkbGeometryReader();
+        MultiFormatTableWriter writer = new MultiFormatTableWriter(geometryReader, List.of(
+                MultiFormatTableWriter.Format.of(new ParquetTableWriter(geometryReader)),
+                MultiFormatTableWriter.Format.of(new FlatGeobufTableWriter(geometryReader))));
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            new TableExporter(geometryReader, ShardingOptions.builder().maxFeatures(300).memoryBudget(16 << 10).build())
+                    .exportTables(connection, ignored -> List.of(TABLE), output, writer, writer.defaultOptions());
+        }
+
+        JsonNode shards = new ObjectMapper().readTree(output.resolve("points.shards.json").toFile()).get("shards");
+        assertThat(shards.size()).isGreaterThan(4);
+        long total = 0;
+        for (JsonNode shard : shards) {
+            String id = shard.get("id").asText();
+            long count = shard.get("featuresCount").asLong();
+            total += count;
+            try (ParquetFileReader reader = ParquetFileReader.open(
+                    new LocalInputFile(output.resolve("points." + id + ".parquet")))) {
+                List<BlockMetaData> blocks = reader.getFooter().getBlocks();
+                assertThat(blocks.stream().mapToLong(BlockMetaData::getRowCount).sum()).isEqualTo(count);
+                if (count > 200) {
+                    assertThat(blocks).as(id).hasSizeGreaterThan(1);
+                }
+            }
+            if (!id.equals("none")) {
+                assertThat(featuresCount(output.resolve("points." + id + ".fgb"))).isEqualTo(count);
+            }
+        }
+        assertThat(total).isEqualTo(ROWS);
+    }
+
+    private static long featuresCount(Path file) throws Exception {
+        try (InputStream input = Files.newInputStream(file)) {
+            return HeaderMeta.read(input).featuresCount;
+        }
+    }
+
+    // Points on a 1000 x 500 area, the first rows without geometry.
+    private Path createPointsDatabase() throws Exception {
+        Path database = tempDir.resolve("points.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE points (id INTEGER, name TEXT, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO points (id, name, geom) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "point-" + i);
+                    insert.setBytes(3, i < WITHOUT_GEOMETRY ? null : wkbWriter.write(geometryFactory.createPoint(
+                            new Coordinate((i * 37) % 1000 + 0.5, (i * 53) % 500 + 0.5))));
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+        return database;
+    }
+}
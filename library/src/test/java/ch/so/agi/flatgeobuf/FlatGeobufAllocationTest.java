@@ -0,0 +1,75 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class FlatGeobufAllocationTest {
+    private static final long BYTES_PER_FEATURE_BUDGET = 1536;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsPerFeatureAllocationWithinBudget() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("points.sqlite"))) {
+            createTable(connection, "small", 1_000);
+            createTable(connection, "large", 21_000);
+            TableDescriptor small = new TableDescriptor("small", "geom", 2056, (byte) GeometryType.Point);
+            TableDescriptor large = new TableDescriptor("large", "geom", 2056, (byte) GeometryType.Point);
+            writer.writeTable(connection, large, OutputStream.nullOutputStream());
+
+            // The difference between both runs cancels out per-table setup such as statements and metadata.
+            long threadId = Thread.currentThread().threadId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            writer.writeTable(connection, small, OutputStream.nullOutputStream());
+            long afterSmall = threads.getThreadAllocatedBytes(threadId);
+            writer.writeTable(connection, large, OutputStream.nullOutputStream());
+            long afterLarge = threads.getThreadAllocatedBytes(threadId);
+
+            long perFeature = ((afterLarge - afterSmall) - (afterSmall - before)) / 20_000;
+            assertThat(perFeature).isLessThan(BYTES_PER_FEATURE_BUDGET);
+        }
+    }
+
+    private static void createTable(Connection connection, String tableName, int rows) throws Exception {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE " + tableName + " (id INTEGER, name TEXT, height REAL, code INTEGER, geom BLOB)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + tableName + " (id, name, height, code, geom) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "Gebäude " + i);
+                insert.setDouble(3, i * 0.5);
+                insert.setLong(4, 1000L + i % 7);
+                insert.setBytes(5, wkbWriter.write(geometryFactory.createPoint(new Coordinate(2600000 + i, 1200000 + i))));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+}
@@ -0,0 +1,165 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.MultiFormatTableWriter;
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.flatgeobuf.HeaderMeta;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class FlatGeobufOverviewTest {
+    private static final int ROWS = 300;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesSimplifiedOverviewsWithTheirOwnIndex() throws Exception {
+        Path database = createParcelsDatabase();
+        Path output = Files.createDirectory(tempDir.resolve("out"));
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            writer.writeTable(connection, table(), output.resolve("parcels.fgb"),
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder()
+                            .overview(12, 0.5)
+                            .overview(8, 5.0)
+                            .build());
+        }
+
+        byte[] full = Files.readAllBytes(output.resolve("parcels.fgb"));
+        byte[] z12 = Files.readAllBytes(output.resolve("parcels.z12.fgb"));
+        byte[] z8 = Files.readAllBytes(output.resolve("parcels.z8.fgb"));
+        for (byte[] file : List.of(full, z12, z8)) {
+            HeaderMeta header = FlatGeobufTestSupport.readHeader(file);
+            assertThat(header.featuresCount).isEqualTo(ROWS);
+            assertThat(header.indexNodeSize).isEqualTo(16);
+            assertThat(header.envelope).isNotNull();
+            assertThat(FlatGeobufTestSupport.readGeometries(file)).allMatch(Geometry::isValid);
+            assertThat(sortedById(FlatGeobufTestSupport.readProperties(file)))
+                    .isEqualTo(sortedById(FlatGeobufTestSupport.readProperties(full)));
+        }
+        assertThat(vertices(z8)).isLessThan(vertices(z12));
+        assertThat(vertices(z12)).isLessThan(vertices(full));
+        assertThat(FlatGeobufTestSupport.readGeometries(z8))
+                .anyMatch(geometry -> ((Polygon) geometry).getNumInteriorRing() == 1);
+    }
+
+    @Test
+    void writesSameOverviewsOnEveryPath() throws Exception {
+        Path database = createParcelsDatabase();
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        FlatGeobufTableWriter.FlatGeobufWriteOptions.Builder options = FlatGeobufTableWriter.FlatGeobufWriteOptions
+                .builder()
+                .overview(8, 5.0)
+                .overview(12, 0.5);
+        Path sequential = Files.createDirectory(tempDir.resolve("sequential"));
+        Path pipelined = Files.createDirectory(tempDir.resolve("pipelined"));
+        Path split = Files.createDirectory(tempDir.resolve("split"));
+        Path sink = Files.createDirectory(tempDir.resolve("sink"));
+
+        writer.writeTable(connectionFactory, table(), sequential.resolve("parcels.fgb"), options.build());
+        writer.writeTable(connectionFactory, table(), pipelined.resolve("parcels.fgb"),
+                options.encodingThreads(3).build());
+        writer.writeTable(connectionFactory, table(), split.resolve("parcels.fgb"),
+                options.encodingThreads(1).parallelism(4).sortMemoryBudget(1).build());
+        MultiFormatTableWriter multiFormat = new MultiFormatTableWriter(new WkbGeometryReader(),
+                List.of(new MultiFormatTableWriter.Format<>(writer, options.parallelism(1).build())));
+        multiFormat.writeTable(connectionFactory, table(), sink.resolve("parcels.fgb"), multiFormat.defaultOptions());
+
+        for (String file : List.of("parcels.fgb", "parcels.z8.fgb", "parcels.z12.fgb")) {
+            byte[] expected = Files.readAllBytes(sequential.resolve(file));
+            assertThat(Files.readAllBytes(pipelined.resolve(file))).as(file).isEqualTo(expected);
+            assertThat(Files.readAllBytes(split.resolve(file))).as(file).isEqualTo(expected);
+            assertThat(Files.readAllBytes(sink.resolve(file))).as(file).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void rejectsOverviewsWithoutIndex() {
+        assertThatThrownBy(() -> FlatGeobufTableWriter.FlatGeobufWriteOptions.builder()
+                .indexNodeSize(0)
+                .overview(8, 5.0)
+                .build())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FlatGeobufTableWriter.FlatGeobufWriteOptions.builder()
+                .overview(8, 5.0)
+                .overview(8, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TableDescriptor table() {
+        return new TableDescriptor("parcels", "geom", 2056, (byte) GeometryType.Polygon);
+    }
+
+    private static long vertices(byte[] file) throws Exception {
+        return FlatGeobufTestSupport.readGeometries(file).stream().mapToLong(Geometry::getNumPoints).sum();
+    }
+
+    private static List<Map<String, Object>> sortedById(List<Map<String, Object>> properties) {
+        return properties.stream().sorted(Comparator.comparingInt(row -> ((Number) row.get("id")).intValue())).toList();
+    }
+
+    // Wobbly rings of 120 vertices on a grid, every tenth with a hole.
+    private Path createParcelsDatabase() throws Exception {
+        Path database = tempDir.resolve("parcels.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE parcels (id INTEGER, name TEXT, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO parcels (id, name, geom) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    double centerX = 2_600_000 + (i % 20) * 100;
+                    double centerY = 1_200_000 + (i / 20) * 100;
+                    LinearRing shell = ring(geometryFactory, centerX, centerY, 40, i);
+                    LinearRing[] holes = i % 10 == 0
+                            ? new LinearRing[] {ring(geometryFactory, centerX, centerY, 10, i + 1)}
+                            : new LinearRing[0];
+                    insert.setInt(1, i);
+                    insert.setString(2, "parcel-" + i);
+                    insert.setBytes(3, wkbWriter.write(geometryFactory.createPolygon(shell, holes)));
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+        return database;
+    }
+
+    private static LinearRing ring(GeometryFactory geometryFactory, double centerX, double centerY, double radius,
+                                   int seed) {
+        Coordinate[] coordinates = new Coordinate[121];
+        for (int i = 0; i < 120; i++) {
+            double angle = 2 * Math.PI * i / 120;
+            double r = radius + ((i * 7 + seed) % 5) * 0.2;
+            coordinates[i] = new Coordinate(centerX + r * Math.cos(angle), centerY + r * Math.sin(angle));
+        }
+        coordinates[120] = coordinates[0];
+        return geometryFactory.createLinearRing(coordinates);
+    }
+}
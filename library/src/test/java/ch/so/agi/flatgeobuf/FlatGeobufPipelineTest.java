@@ -0,0 +1,104 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.flatgeobuf.HeaderMeta;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class FlatGeobufPipelineTest {
+    private static final int ROWS = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 16})
+    void writesSameBytesAsSequentialEncoding(int indexNodeSize) throws Exception {
+        Path database = createLinesDatabase();
+        TableDescriptor table = new TableDescriptor("lines", "geom", 2056, (byte) GeometryType.LineString);
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        Path sequential = tempDir.resolve("sequential.fgb");
+        Path pipelined = tempDir.resolve("pipelined.fgb");
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            writer.writeTable(connection, table, sequential,
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().indexNodeSize(indexNodeSize).build());
+            writer.writeTable(connection, table, pipelined,
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder()
+                            .indexNodeSize(indexNodeSize)
+                            .encodingThreads(4)
+                            .build());
+        }
+
+        byte[] expected = Files.readAllBytes(sequential);
+        HeaderMeta header = FlatGeobufTestSupport.readHeader(expected);
+        assertThat(header.featuresCount).isEqualTo(ROWS - (ROWS + 96) / 97);
+        assertThat(Files.readAllBytes(pipelined)).isEqualTo(expected);
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    void failsInsteadOfHangingWhenAThreadDiesWithAnError() throws Exception {
+        Path database = createLinesDatabase();
+        TableDescriptor table = new TableDescriptor("lines", "geom", 2056, (byte) GeometryType.LineString);
+        WkbGeometryReader wkbReader = new WkbGeometryReader();
+        int[] rows = new int[1];
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter((resultSet, column) -> {
+            if (++rows[0] == ROWS / 2) {
+                throw new StackOverflowError("pathological geometry");
+            }
+            return wkbReader.readGeometry(resultSet, column);
+        });
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            assertThatThrownBy(() -> writer.writeTable(connection, table, tempDir.resolve("failed.fgb"),
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().encodingThreads(4).build()))
+                    .isInstanceOf(StackOverflowError.class)
+                    .hasMessage("pathological geometry");
+        }
+    }
+
+    private Path createLinesDatabase() throws Exception {
+        Path database = tempDir.resolve("lines.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE lines (id INTEGER, name TEXT, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO lines (id, name, geom) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    double x = (i * 37) % 1009;
+                    double y = (i * 53) % 887;
+                    insert.setInt(1, i);
+                    insert.setString(2, i % 5 == 0 ? null : "line-" + i);
+                    insert.setBytes(3, i % 97 == 0 ? null : wkbWriter.write(geometryFactory.createLineString(
+                            new Coordinate[] {new Coordinate(x, y), new Coordinate(x + 1, y + i % 7)})));
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+        return database;
+    }
+}
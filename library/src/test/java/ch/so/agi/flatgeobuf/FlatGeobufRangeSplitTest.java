@@ -0,0 +1,90 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.wololo.flatgeobuf.HeaderMeta;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class FlatGeobufRangeSplitTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesSameBytesAsSequentialExport() throws Exception {
+        Path database = createPointsDatabase();
+        TableDescriptor table = new TableDescriptor("points", "geom", 2056, (byte) GeometryType.Point);
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        Path sequential = tempDir.resolve("sequential.fgb");
+        Path split = tempDir.resolve("split.fgb");
+
+        writer.writeTable(connectionFactory, table, sequential, writer.defaultOptions());
+        writer.writeTable(connectionFactory, table, split,
+                FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().parallelism(4).build());
+
+        byte[] expected = Files.readAllBytes(sequential);
+        HeaderMeta header = FlatGeobufTestSupport.readHeader(expected);
+        assertThat(header.featuresCount).isEqualTo(1000 - 151 - 10);
+        assertThat(Files.readAllBytes(split)).isEqualTo(expected);
+    }
+
+    @Test
+    void writesSameBytesWithSmallSortMemoryBudget() throws Exception {
+        Path database = createPointsDatabase();
+        TableDescriptor table = new TableDescriptor("points", "geom", 2056, (byte) GeometryType.Point);
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        Path inMemory = tempDir.resolve("in-memory.fgb");
+        Path external = tempDir.resolve("external.fgb");
+        Path externalSplit = tempDir.resolve("external-split.fgb");
+
+        writer.writeTable(connectionFactory, table, inMemory, writer.defaultOptions());
+        writer.writeTable(connectionFactory, table, external,
+                FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().sortMemoryBudget(1).build());
+        writer.writeTable(connectionFactory, table, externalSplit,
+                FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().parallelism(4).sortMemoryBudget(1).build());
+
+        byte[] expected = Files.readAllBytes(inMemory);
+        assertThat(Files.readAllBytes(external)).isEqualTo(expected);
+        assertThat(Files.readAllBytes(externalSplit)).isEqualTo(expected);
+    }
+
+    private Path createPointsDatabase() throws Exception {
+        Path database = tempDir.resolve("points.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE points (id INTEGER, name TEXT, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO points (id, name, geom) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < 1000; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "point-" + i);
+                    insert.setBytes(3, i % 97 == 0 ? null
+                            : wkbWriter.write(geometryFactory.createPoint(new Coordinate((i * 37) % 101, (i * 53) % 89))));
+                    insert.executeUpdate();
+                }
+            }
+            statement.executeUpdate("DELETE FROM points WHERE id BETWEEN 300 AND 450");
+            connection.commit();
+        }
+        return database;
+    }
+}
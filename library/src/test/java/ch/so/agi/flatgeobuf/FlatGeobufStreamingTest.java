@@ -90,4 +90,64 @@ class FlatGeobufStreamingTest {
         Feature feature = Feature.getRootAsFeature(featureBuffer);
         assertThat(feature.geometry()).isNotNull();
     }
+
+    @Test
+    void searchesLargeIndexWithRangeRequests() throws Exception {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        int side = 150;
+        File tempFile = File.createTempFile("flatgeobuf", ".fgb");
+        tempFile.deleteOnExit();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             PreparedStatement create = connection.prepareStatement(
+                     "CREATE TABLE points (id INTEGER, geom BLOB)")) {
+            create.execute();
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO points (id, geom) VALUES (?, ?)")) {
+                for (int i = 0; i < side * side; i++) {
+                    insert.setInt(1, i);
+                    insert.setBytes(2, wkbWriter.write(geometryFactory.createPoint(
+                            new org.locationtech.jts.geom.Coordinate(i % side, i / side))));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+            try (var out = new java.io.FileOutputStream(tempFile)) {
+                writer.writeTable(connection, new TableDescriptor("points", "geom", 2056, (byte) GeometryType.Point), out);
+            }
+        }
+
+        HeaderMeta header;
+        try (FileInputStream in = new FileInputStream(tempFile)) {
+            header = HeaderMeta.read(in);
+        }
+        assertThat(header.featuresCount).isEqualTo(side * side);
+
+        int indexSize = (int) PackedRTree.calcSize((int) header.featuresCount, header.indexNodeSize);
+        ByteBuffer indexBuffer = ByteBuffer.allocate(indexSize).order(ByteOrder.LITTLE_ENDIAN);
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            channel.read(indexBuffer, header.offset);
+        }
+        indexBuffer.flip();
+
+        var hits = PackedRTree.search(indexBuffer, 0, (int) header.featuresCount, header.indexNodeSize,
+                new org.locationtech.jts.geom.Envelope(10, 12, 20, 21));
+        assertThat(hits).hasSize(6);
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "r")) {
+            for (SearchHit hit : hits) {
+                raf.seek(header.offset + indexSize + hit.offset);
+                byte[] sizeBytes = new byte[Integer.BYTES];
+                raf.readFully(sizeBytes);
+                byte[] featureBytes = new byte[ByteBuffer.wrap(sizeBytes).order(ByteOrder.LITTLE_ENDIAN).getInt()];
+                raf.readFully(featureBytes);
+                Feature feature = Feature.getRootAsFeature(ByteBuffer.wrap(featureBytes).order(ByteOrder.LITTLE_ENDIAN));
+                assertThat(feature.geometry().xy(0)).isBetween(10.0, 12.0);
+                assertThat(feature.geometry().xy(1)).isBetween(20.0, 21.0);
+            }
+        }
+    }
 }
@@ -6,6 +6,8 @@ import ch.so.agi.cloudformats.WkbGeometryReader;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -18,6 +20,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
@@ -35,6 +39,9 @@ class FlatGeobufTableWriterTest {
     private final WKBWriter wkbWriter = new WKBWriter();
     private Connection connection;
 
+    @TempDir
+    Path tempDir;
+
     @BeforeEach
     void setUp() throws Exception {
         connection = DriverManager.getConnection("jdbc:sqlite::memory:");
@@ -92,6 +99,95 @@ class FlatGeobufTableWriterTest {
         assertThat(props.get(1)).containsEntry("id", 2).containsEntry("name", "beta");
     }
 
+    @Test
+    void encodesTypedAttributesAndSkipsNulls() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE typed (id INTEGER, code BIGINT, height DOUBLE, label TEXT, data BLOB)");
+            statement.executeUpdate("INSERT INTO typed VALUES (1, 9000000000, 1.5, 'Zürich', X'0102')");
+            statement.executeUpdate("INSERT INTO typed VALUES (2, NULL, NULL, NULL, NULL)");
+        }
+
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTable(connection, new TableDescriptor("typed", null, 0, (byte) GeometryType.Unknown), out);
+
+        List<java.util.Map<String, Object>> props = FlatGeobufTestSupport.readProperties(out.toByteArray());
+        assertThat(props.get(0)).containsEntry("id", 1).containsEntry("code", 9_000_000_000L)
+                .containsEntry("height", 1.5).containsEntry("label", "Zürich");
+        assertThat((byte[]) props.get(0).get("data")).containsExactly(1, 2);
+        assertThat(props.get(1)).containsOnlyKeys("id");
+    }
+
+    @Test
+    void streamsFlatGeobufWithoutIndexToFile() throws Exception {
+        createTable("points");
+        insertFeature("points", 1, "one", geometryFactory.createPoint(new org.locationtech.jts.geom.Coordinate(1, 2)));
+        insertFeature("points", 2, "two", geometryFactory.createPoint(new org.locationtech.jts.geom.Coordinate(5, -3)));
+
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        Path target = tempDir.resolve("points.fgb");
+        writer.writeTable(connection, new TableDescriptor("points", "geom", 4326, (byte) GeometryType.Point), target,
+                FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().indexNodeSize(0).build());
+
+        byte[] bytes = Files.readAllBytes(target);
+        HeaderMeta header = FlatGeobufTestSupport.readHeader(bytes);
+        assertThat(header.featuresCount).isEqualTo(2);
+        assertThat(header.indexNodeSize).isZero();
+        assertThat(header.envelope).isEqualTo(new Envelope(1, 5, -3, 2));
+        assertThat(FlatGeobufTestSupport.readGeometries(bytes)).hasSize(2);
+        assertThat(FlatGeobufTestSupport.readProperties(bytes).get(1)).containsEntry("name", "two");
+    }
+
+    @Test
+    void ignoresEmptyGeometriesInHeaderEnvelope() throws Exception {
+        createTable("parcels");
+        insertFeature("parcels", 1, "one", geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[] {
+                new org.locationtech.jts.geom.Coordinate(2600000, 1200000),
+                new org.locationtech.jts.geom.Coordinate(2600000, 1200100),
+                new org.locationtech.jts.geom.Coordinate(2600100, 1200100),
+                new org.locationtech.jts.geom.Coordinate(2600000, 1200000)
+        }));
+        insertFeature("parcels", 2, "empty", geometryFactory.createPolygon());
+
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        TableDescriptor table = new TableDescriptor("parcels", "geom", 2056, (byte) GeometryType.Polygon);
+        for (int indexNodeSize : new int[] {0, 16}) {
+            Path target = tempDir.resolve("parcels-" + indexNodeSize + ".fgb");
+            writer.writeTable(connection, table, target,
+                    FlatGeobufTableWriter.FlatGeobufWriteOptions.builder().indexNodeSize(indexNodeSize).build());
+
+            HeaderMeta header = FlatGeobufTestSupport.readHeader(Files.readAllBytes(target));
+            assertThat(header.featuresCount).isEqualTo(2);
+            assertThat(header.envelope).isEqualTo(new Envelope(2600000, 2600100, 1200000, 1200100));
+        }
+    }
+
+    @Test
+    void streamsTablesWithoutGeometryToFile() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE attributes (id INTEGER, name TEXT)");
+            statement.executeUpdate("INSERT INTO attributes (id, name) VALUES (1, 'alpha')");
+            statement.executeUpdate("INSERT INTO attributes (id, name) VALUES (2, 'beta')");
+            statement.executeUpdate("INSERT INTO attributes (id, name) VALUES (3, 'gamma')");
+        }
+
+        FlatGeobufTableWriter writer = new FlatGeobufTableWriter(new WkbGeometryReader());
+        Path target = tempDir.resolve("attributes.fgb");
+        writer.writeTable(connection, new TableDescriptor("attributes", null, 0, (byte) GeometryType.Unknown), target,
+                writer.defaultOptions());
+
+        byte[] bytes = Files.readAllBytes(target);
+        HeaderMeta header = FlatGeobufTestSupport.readHeader(bytes);
+        assertThat(header.featuresCount).isEqualTo(3);
+        assertThat(header.envelope).isNull();
+        assertThat(FlatGeobufTestSupport.readProperties(bytes).stream().map(props -> props.get("name")).toList())
+                .containsExactly("alpha", "beta", "gamma");
+
+        ByteArrayOutputStream spilled = new ByteArrayOutputStream();
+        writer.writeTable(connection, new TableDescriptor("attributes", null, 0, (byte) GeometryType.Unknown), spilled);
+        assertThat(bytes).isEqualTo(spilled.toByteArray());
+    }
+
     private void createTable(String tableName) throws Exception {
         try (PreparedStatement statement = connection.prepareStatement(
                 "CREATE TABLE " + tableName + " (id INTEGER, name TEXT, geom BLOB)")) {
@@ -1,6 +1,7 @@
 package ch.so.agi.flatgeobuf;
 
 import ch.so.agi.cloudformats.GeoPackageGeometryReader;
+import ch.so.agi.cloudformats.WkbGeometry;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -9,6 +10,7 @@ import java.nio.ByteOrder;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
@@ -74,6 +76,70 @@ class GeoPackageGeometryReaderTest {
         assertThat(readGeometry(multiPolygon)).isInstanceOf(MultiPolygon.class);
     }
 
+    @Test
+    void readsEnvelopeFromBlobHeader() throws Exception {
+        Polygon polygon = geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[] {
+                new org.locationtech.jts.geom.Coordinate(0, 0),
+                new org.locationtech.jts.geom.Coordinate(0, 2),
+                new org.locationtech.jts.geom.Coordinate(2, 2),
+                new org.locationtech.jts.geom.Coordinate(0, 0)
+        });
+        byte[] wkb = wkbWriter.write(polygon);
+        ByteBuffer blob = ByteBuffer.allocate(8 + 4 * Double.BYTES + wkb.length).order(ByteOrder.BIG_ENDIAN);
+        blob.put((byte) 0x47).put((byte) 0x50).put((byte) 0);
+        blob.put((byte) 0x02); // flags: big endian, xy envelope
+        blob.putInt(2056);
+        blob.putDouble(-1).putDouble(3).putDouble(-2).putDouble(4);
+        blob.put(wkb);
+
+        WkbGeometry wkbGeometry = readWkbGeometry(blob.array());
+
+        assertThat(wkbGeometry.hasEnvelope()).isTrue();
+        assertThat(new double[] {wkbGeometry.minX(), wkbGeometry.minY(), wkbGeometry.maxX(), wkbGeometry.maxY()})
+                .containsExactly(-1, -2, 3, 4);
+        assertThat(wkbGeometry.wkb().remaining()).isEqualTo(wkb.length);
+        assertThat(wkbGeometry.wkb().get(wkbGeometry.wkb().position())).isEqualTo(wkb[0]);
+    }
+
+    @Test
+    void scansWkbWhenBlobHasNoEnvelope() throws Exception {
+        MultiPolygon multiPolygon = geometryFactory.createMultiPolygon(new Polygon[] {
+                geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[] {
+                        new org.locationtech.jts.geom.Coordinate(0, 0),
+                        new org.locationtech.jts.geom.Coordinate(0, 2),
+                        new org.locationtech.jts.geom.Coordinate(2, 2),
+                        new org.locationtech.jts.geom.Coordinate(0, 0)
+                }),
+                geometryFactory.createPolygon(new org.locationtech.jts.geom.Coordinate[] {
+                        new org.locationtech.jts.geom.Coordinate(5, -3),
+                        new org.locationtech.jts.geom.Coordinate(6, -3),
+                        new org.locationtech.jts.geom.Coordinate(6, -1),
+                        new org.locationtech.jts.geom.Coordinate(5, -3)
+                })
+        });
+
+        WkbGeometry wkbGeometry = readWkbGeometry(toGeoPackageBlob(multiPolygon));
+
+        Envelope envelope = multiPolygon.getEnvelopeInternal();
+        assertThat(new Envelope(wkbGeometry.minX(), wkbGeometry.maxX(), wkbGeometry.minY(), wkbGeometry.maxY()))
+                .isEqualTo(envelope);
+    }
+
+    @Test
+    void reportsNoEnvelopeForEmptyGeometries() throws Exception {
+        WkbGeometry wkbGeometry = readWkbGeometry(toGeoPackageBlob(geometryFactory.createPoint()));
+
+        assertThat(wkbGeometry.hasEnvelope()).isFalse();
+    }
+
+    private WkbGeometry readWkbGeometry(byte[] blob) throws SQLException {
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(resultSet.getBytes("geom")).thenReturn(blob);
+        WkbGeometry wkbGeometry = new WkbGeometry();
+        assertThat(new GeoPackageGeometryReader().readWkb(resultSet, "geom", wkbGeometry)).isTrue();
+        return wkbGeometry;
+    }
+
     private Geometry readGeometry(Geometry geometry) throws SQLException {
         byte[] gpkg = toGeoPackageBlob(geometry);
         ResultSet resultSet = Mockito.mock(ResultSet.class);
@@ -0,0 +1,87 @@
+package ch.so.agi.flatgeobuf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.locationtech.jts.geom.Envelope;
+import org.wololo.flatgeobuf.NodeItem;
+import org.wololo.flatgeobuf.PackedRTree;
+import org.wololo.flatgeobuf.PackedRTree.FeatureItem;
+
+class PackedRTreeWriterTest {
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 15, 16, 17, 256, 1000, 100_000 })
+    void writesSameIndexAsPackedRTree(int count) throws Exception {
+        Random random = new Random(count);
+        FeatureIndex index = new FeatureIndex(true, count);
+        List<FeatureItem> items = new ArrayList<>();
+        Envelope extent = new Envelope();
+        for (int i = 0; i < count; i++) {
+            double minX = random.nextDouble() * 1000;
+            double minY = random.nextDouble() * 1000;
+            double maxX = minX + random.nextDouble() * 10;
+            double maxY = minY + random.nextDouble() * 10;
+            int size = 10 + random.nextInt(100);
+            index.add(size, minX, minY, maxX, maxY);
+            extent.expandToInclude(new Envelope(minX, maxX, minY, maxY));
+
+            FeatureItem item = new FeatureItem();
+            item.nodeItem = new NodeItem(minX, minY, maxX, maxY);
+            item.offset = i;
+            item.size = size;
+            items.add(item);
+        }
+
+        PackedRTree.hilbertSort(items, PackedRTree.calcExtent(items));
+        long offset = 0;
+        for (FeatureItem item : items) {
+            item.nodeItem.offset = offset;
+            offset += item.size;
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new PackedRTree(items, (short) 16).write(expected);
+
+        SpilledFeatures features = new SpilledFeatures(List.of(index));
+        features.sortByHilbert(extent);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        PackedRTreeWriter.write(features, 16, actual);
+
+        assertThat(actual.toByteArray()).isEqualTo(expected.toByteArray());
+        assertThat((long) actual.size()).isEqualTo(PackedRTree.calcSize(count, 16));
+    }
+
+    @Test
+    void keepsFeatureBookkeepingAtFortyEightBytesPerFeature() throws Exception {
+        int count = 1_000_000;
+        FeatureIndex index = new FeatureIndex(true, count);
+        for (int i = 0; i < count; i++) {
+            index.add(100, i, i, i + 1, i + 1);
+        }
+        SpilledFeatures features = new SpilledFeatures(List.of(index));
+        features.sortByHilbert(new Envelope(0, count + 1, 0, count + 1));
+
+        // 8 bytes offset + 32 bytes bounds while reading, plus an 8 byte sort key while indexing:
+        // 48 MB of heap per million features.
+        assertThat(index.retainedBytes()).isEqualTo(40L * count);
+        assertThat(features.retainedBytes()).isEqualTo(48L * count);
+        assertThat(features.featureSize(count - 1)).isEqualTo(100);
+    }
+
+    @Test
+    void growsFromACappedInitialCapacityWhenTheExpectedCountIsTooLarge() throws Exception {
+        FeatureIndex index = new FeatureIndex(true, Integer.MAX_VALUE);
+        assertThat(index.retainedBytes()).isEqualTo(40L * (1 << 22));
+
+        for (int i = 0; i < 10; i++) {
+            index.add(100, i, i, i + 1, i + 1);
+        }
+        assertThat(index.count()).isEqualTo(10);
+        assertThat(index.offset(9)).isEqualTo(900);
+    }
+}
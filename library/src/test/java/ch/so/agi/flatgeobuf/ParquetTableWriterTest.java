@@ -1,23 +1,40 @@
 package ch.so.agi.flatgeobuf;
 
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.GeoPackageGeometryReader;
 import ch.so.agi.cloudformats.TableDescriptor;
 import ch.so.agi.cloudformats.WkbGeometryReader;
 import ch.so.agi.parquet.ParquetTableWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
 import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.io.ColumnIOFactory;
 import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.RecordReader;
 import org.apache.parquet.schema.LogicalTypeAnnotation;
 import org.apache.parquet.schema.MessageType;
 import org.apache.parquet.schema.PrimitiveType;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBReader;
 import org.locationtech.jts.io.WKBWriter;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -62,6 +79,205 @@ class ParquetTableWriterTest {
         }
     }
 
+    @Test
+    void writesGeoPackageWkbWithoutReencoding() throws Exception {
+        Path geopackage = Path.of(getClass().getResource("/data/ch.so.afu.abbaustellen.gpkg").toURI());
+        Path outputFile = tempDir.resolve("abbaustelle.parquet");
+        List<byte[]> expected = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + geopackage)) {
+            GeoPackageGeometryReader geometryReader = new GeoPackageGeometryReader();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT mpoly FROM abbaustelle")) {
+                while (resultSet.next()) {
+                    ByteBuffer wkb = geometryReader.readWkb(resultSet, "mpoly");
+                    expected.add(Arrays.copyOfRange(wkb.array(), wkb.position(), wkb.limit()));
+                }
+            }
+            ParquetTableWriter writer = new ParquetTableWriter(geometryReader);
+            writer.writeTable(connection, TableDescriptor.of("abbaustelle", "mpoly", 2056, 6), outputFile,
+                    writer.defaultOptions());
+        }
+
+        List<byte[]> actual = new ArrayList<>();
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(outputFile))) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                RecordReader<Group> recordReader = new ColumnIOFactory().getColumnIO(schema)
+                        .getRecordReader(pages, new GroupRecordConverter(schema));
+                for (long i = 0; i < pages.getRowCount(); i++) {
+                    actual.add(recordReader.read().getBinary("mpoly", 0).getBytes());
+                }
+            }
+        }
+        assertThat(actual).isNotEmpty().hasSameSizeAs(expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i)).isEqualTo(expected.get(i));
+        }
+    }
+
+    @Test
+    void reducesRowGroupOverlapWithHilbertOrder() throws Exception {
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        Random random = new Random(42);
+        Path unsorted = tempDir.resolve("unsorted.parquet");
+        Path sorted = tempDir.resolve("sorted.parquet");
+        Path merged = tempDir.resolve("merged.parquet");
+        Path parallel = tempDir.resolve("parallel.parquet");
+        Path database = tempDir.resolve("features.sqlite");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, name TEXT, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO features (id, name, geom) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < 20_000; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, i % 3 == 0 ? null : "name-" + i);
+                    insert.setBytes(3, i % 101 == 0 ? null : wkbWriter.write(geometryFactory.createPoint(
+                            new Coordinate(random.nextDouble() * 1000, random.nextDouble() * 1000))));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+            TableDescriptor descriptor = TableDescriptor.of("features", "geom", 2056, 1);
+            ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+            writer.writeTable(connection, descriptor, unsorted, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .rowGroupSize(32 * 1024)
+                    .build());
+            writer.writeTable(connection, descriptor, sorted, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .rowGroupSize(32 * 1024)
+                    .hilbertOrder(true)
+                    .build());
+            // Sorted in runs of the minimal 64 KB and merged from disk.
+            writer.writeTable(connection, descriptor, merged, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .rowGroupSize(32 * 1024)
+                    .hilbertOrder(true)
+                    .sortMemoryBudget(1)
+                    .build());
+            // The rowid ranges are sorted together, not one by one.
+            writer.writeTable(ConnectionFactory.sqliteReadOnly(database), descriptor, parallel,
+                    ParquetTableWriter.ParquetWriteOptions.builder()
+                            .rowGroupSize(32 * 1024)
+                            .hilbertOrder(true)
+                            .sortMemoryBudget(1)
+                            .parallelism(4)
+                            .build());
+        }
+        assertThat(Files.readAllBytes(merged)).isEqualTo(Files.readAllBytes(sorted));
+        assertThat(Files.readAllBytes(parallel)).isEqualTo(Files.readAllBytes(sorted));
+
+        List<Integer> unsortedIds = new ArrayList<>();
+        List<Envelope> unsortedGroups = readRowGroups(unsorted, unsortedIds);
+        List<Integer> sortedIds = new ArrayList<>();
+        List<Envelope> sortedGroups = readRowGroups(sorted, sortedIds);
+        assertThat(unsortedGroups).hasSizeGreaterThan(4);
+        assertThat(pairwiseOverlap(sortedGroups)).isLessThan(pairwiseOverlap(unsortedGroups) / 10);
+        assertThat(sortedIds).containsExactlyInAnyOrderElementsOf(unsortedIds);
+        // Rows without geometry are written after all others.
+        assertThat(sortedIds.subList(sortedIds.size() - unsortedIds.size() / 101 - 1, sortedIds.size()))
+                .allMatch(id -> id % 101 == 0);
+    }
+
+    @Test
+    void writesGeoParquetMetadataAndBboxColumn() throws Exception {
+        Path geopackage = Path.of(getClass().getResource("/data/ch.so.afu.abbaustellen.gpkg").toURI());
+        Path unsorted = tempDir.resolve("unsorted.parquet");
+        Path sorted = tempDir.resolve("sorted.parquet");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + geopackage)) {
+            ParquetTableWriter writer = new ParquetTableWriter(new GeoPackageGeometryReader());
+            TableDescriptor descriptor = TableDescriptor.of("abbaustelle", "mpoly", 2056, 6);
+            writer.writeTable(connection, descriptor, unsorted, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .bboxColumn(true)
+                    .build());
+            writer.writeTable(connection, descriptor, sorted, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .bboxColumn(true)
+                    .hilbertOrder(true)
+                    .build());
+        }
+
+        WKBReader wkbReader = new WKBReader();
+        for (Path file : List.of(unsorted, sorted)) {
+            Envelope dataset = new Envelope();
+            try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+                MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+                assertThat(schema.getType("bbox").asGroupType().getFieldCount()).isEqualTo(4);
+                List<BlockMetaData> blocks = reader.getFooter().getBlocks();
+                assertThat(blocks).isNotEmpty();
+                PageReadStore pages;
+                int block = 0;
+                while ((pages = reader.readNextRowGroup()) != null) {
+                    RecordReader<Group> recordReader = new ColumnIOFactory().getColumnIO(schema)
+                            .getRecordReader(pages, new GroupRecordConverter(schema));
+                    Envelope rowGroup = new Envelope();
+                    for (long i = 0; i < pages.getRowCount(); i++) {
+                        Group group = recordReader.read();
+                        Envelope envelope = wkbReader.read(group.getBinary("mpoly", 0).getBytes()).getEnvelopeInternal();
+                        Group bbox = group.getGroup("bbox", 0);
+                        assertThat(new Envelope(bbox.getDouble("xmin", 0), bbox.getDouble("xmax", 0),
+                                bbox.getDouble("ymin", 0), bbox.getDouble("ymax", 0))).isEqualTo(envelope);
+                        rowGroup.expandToInclude(envelope);
+                    }
+                    ColumnChunkMetaData xmin = blocks.get(block++).getColumns().stream()
+                            .filter(column -> column.getPath().toDotString().equals("bbox.xmin"))
+                            .findFirst().orElseThrow();
+                    assertThat(xmin.getStatistics().genericGetMin()).isEqualTo(rowGroup.getMinX());
+                    dataset.expandToInclude(rowGroup);
+                }
+
+                String geo = reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo");
+                assertThat(geo).startsWith("{\"version\":\"1.1.0\",\"primary_column\":\"mpoly\"")
+                        .contains("\"encoding\":\"WKB\"", "\"geometry_types\":[\"MultiPolygon\"]",
+                                "\"name\":\"CH1903+ / LV95\"", "\"xmin\":[\"bbox\",\"xmin\"]")
+                        .contains("\"bbox\":[" + dataset.getMinX() + "," + dataset.getMinY() + ","
+                                + dataset.getMaxX() + "," + dataset.getMaxY() + "]");
+            }
+        }
+    }
+
+    private static List<Envelope> readRowGroups(Path file, List<Integer> ids) throws Exception {
+        List<Envelope> envelopes = new ArrayList<>();
+        WKBReader wkbReader = new WKBReader();
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                RecordReader<Group> recordReader = new ColumnIOFactory().getColumnIO(schema)
+                        .getRecordReader(pages, new GroupRecordConverter(schema));
+                Envelope envelope = new Envelope();
+                for (long i = 0; i < pages.getRowCount(); i++) {
+                    Group group = recordReader.read();
+                    int id = group.getInteger("id", 0);
+                    assertThat(group.getFieldRepetitionCount("name")).isEqualTo(id % 3 == 0 ? 0 : 1);
+                    if (id % 3 != 0) {
+                        assertThat(group.getString("name", 0)).isEqualTo("name-" + id);
+                    }
+                    if (id % 101 == 0) {
+                        assertThat(group.getFieldRepetitionCount("geom")).isZero();
+                    } else {
+                        envelope.expandToInclude(
+                                wkbReader.read(group.getBinary("geom", 0).getBytes()).getEnvelopeInternal());
+                    }
+                    ids.add(id);
+                }
+                envelopes.add(envelope);
+            }
+        }
+        return envelopes;
+    }
+
+    private static double pairwiseOverlap(List<Envelope> envelopes) {
+        double overlap = 0;
+        for (int i = 0; i < envelopes.size(); i++) {
+            for (int j = i + 1; j < envelopes.size(); j++) {
+                overlap += envelopes.get(i).intersection(envelopes.get(j)).getArea();
+            }
+        }
+        return overlap;
+    }
+
     @Test
     void allowsSettingRowGroupSize() {
         ParquetTableWriter.ParquetWriteOptions options = ParquetTableWriter.ParquetWriteOptions.builder()
@@ -0,0 +1,76 @@
+package ch.so.agi.flatgeobuf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillFileCopierTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void copiesRangesInRequestedOrder() throws Exception {
+        Path first = Files.writeString(tempDir.resolve("first.tmp"), "aabbbc");
+        Path second = Files.writeString(tempDir.resolve("second.tmp"), "xyyz");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (SpillFileCopier copier = new SpillFileCopier(List.of(first.toFile(), second.toFile()),
+                Channels.newChannel(out))) {
+            copier.accept(0, 2, 3);
+            copier.accept(0, 5, 1);
+            copier.accept(1, 1, 2);
+            copier.accept(0, 0, 2);
+            copier.accept(1, 3, 1);
+            copier.copyAll(1);
+            copier.flush();
+        }
+
+        assertThat(out.toString(StandardCharsets.US_ASCII)).isEqualTo("bbbcyyaazxyyz");
+    }
+
+    @Test
+    void keepsOrderBetweenBufferedAndTransferredRanges() throws Exception {
+        byte[] spill = new byte[300_000];
+        new Random(7).nextBytes(spill);
+        Path file = Files.write(tempDir.resolve("large.tmp"), spill);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (SpillFileCopier copier = new SpillFileCopier(List.of(file.toFile()), Channels.newChannel(out))) {
+            copier.accept(0, 10, 100);
+            copier.accept(0, 200_000, 100_000);
+            copier.accept(0, 0, 10);
+            copier.accept(0, 1_000, 70_000);
+            copier.accept(0, 150, 50);
+            copier.flush();
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(spill, 10, 100);
+        expected.write(spill, 200_000, 100_000);
+        expected.write(spill, 0, 10);
+        expected.write(spill, 1_000, 70_000);
+        expected.write(spill, 150, 50);
+        assertThat(out.toByteArray()).isEqualTo(expected.toByteArray());
+    }
+
+    @Test
+    void failsWhenRangeExceedsSpillFile() throws Exception {
+        Path spill = Files.writeString(tempDir.resolve("spill.tmp"), "abc");
+
+        try (SpillFileCopier copier = new SpillFileCopier(List.of(spill.toFile()),
+                Channels.newChannel(new ByteArrayOutputStream()))) {
+            copier.accept(0, 2, 5);
+            assertThatThrownBy(copier::flush).isInstanceOf(EOFException.class);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ch.so.agi.flatgeobuf;
 
 import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.TableExportException;
 import ch.so.agi.cloudformats.TableDescriptorProvider;
 import ch.so.agi.cloudformats.TableExporter;
 import ch.so.agi.cloudformats.TableWriter;
@@ -9,10 +10,13 @@ import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 class TableExporterTest {
     @TempDir
@@ -29,7 +33,33 @@ class TableExporterTest {
         assertThat(writer.paths).containsExactly(tempDir.resolve("roads.test"));
     }
 
-    private static final class RecordingWriter implements TableWriter<String> {
+    @Test
+    void exportsTablesInParallelAndAggregatesFailures() {
+        TableDescriptorProvider provider = connection -> List.of(
+                TableDescriptor.of("roads", "geom", 2056, 2),
+                TableDescriptor.of("broken", "geom", 2056, 2),
+                TableDescriptor.of("rivers", "geom", 2056, 2));
+        Set<Path> written = ConcurrentHashMap.newKeySet();
+        TableWriter<String> writer = new RecordingWriter() {
+            @Override
+            public void writeTable(Connection connection, TableDescriptor table, Path outputFile, String options)
+                    throws SQLException {
+                if (table.tableName().equals("broken")) {
+                    throw new SQLException("no such table: broken");
+                }
+                written.add(outputFile);
+            }
+        };
+
+        TableExportException exception = catchThrowableOfType(TableExportException.class,
+                () -> new TableExporter().exportTables(() -> null, provider, tempDir, writer, "options", 3));
+
+        assertThat(exception.failures()).containsOnlyKeys("broken");
+        assertThat(exception.getMessage()).contains("broken: no such table: broken");
+        assertThat(written).containsExactlyInAnyOrder(tempDir.resolve("roads.test"), tempDir.resolve("rivers.test"));
+    }
+
+    private static class RecordingWriter implements TableWriter<String> {
         private final List<Path> paths = new java.util.ArrayList<>();
 
         @Override
@@ -43,7 +73,8 @@ class TableExporterTest {
         }
 
         @Override
-        public void writeTable(Connection connection, TableDescriptor table, Path outputFile, String options) {
+        public void writeTable(Connection connection, TableDescriptor table, Path outputFile, String options)
+                throws SQLException {
             paths.add(outputFile);
         }
     }
@@ -0,0 +1,156 @@
+package ch.so.agi.flatgeobuf;
+
+import ch.so.agi.cloudformats.GeoPackageGeometryReader;
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.Ordinate;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+import org.wololo.flatgeobuf.GeometryConversions;
+import org.wololo.flatgeobuf.generated.GeometryType;
+
+class WkbGeometryTranscoderTest {
+    @ParameterizedTest
+    @MethodSource("geometryCases")
+    void writesSameBytesAsJtsPath(String wkt, String expectedWkt, int geometryType, int byteOrder) throws Exception {
+        byte[] wkb = toWkb(new WKTReader().read(wkt), byteOrder);
+        Geometry expected = new WKBReader().read(toWkb(new WKTReader().read(expectedWkt), byteOrder));
+
+        WkbGeometryTranscoder transcoder = new WkbGeometryTranscoder();
+        assertThat(transcoder.read(ByteBuffer.wrap(wkb), (byte) geometryType)).isTrue();
+
+        FlatBufferBuilder actualBuilder = new FlatBufferBuilder();
+        actualBuilder.finish(transcoder.write(actualBuilder));
+        FlatBufferBuilder expectedBuilder = new FlatBufferBuilder();
+        expectedBuilder.finish(GeometryConversions.serialize(expectedBuilder, expected, (byte) geometryType));
+        assertThat(actualBuilder.sizedByteArray()).isEqualTo(expectedBuilder.sizedByteArray());
+
+        WkbGeometry scanned = new WkbGeometry();
+        scanned.set(ByteBuffer.wrap(wkb));
+        assertThat(new Envelope(scanned.minX(), scanned.maxX(), scanned.minY(), scanned.maxY()))
+                .isEqualTo(expected.getEnvelopeInternal());
+    }
+
+    @Test
+    void readsIsoDimensionTypeCodes() throws Exception {
+        byte[] wkb = toWkb(new WKTReader().read("POLYGON Z((0 0 1, 4 0 2, 4 4 3, 0 0 1))"), ByteOrderValues.LITTLE_ENDIAN);
+        ByteBuffer buffer = ByteBuffer.wrap(wkb).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(1, 1003);
+
+        WkbGeometryTranscoder transcoder = new WkbGeometryTranscoder();
+        assertThat(transcoder.read(buffer, (byte) GeometryType.Polygon)).isTrue();
+        FlatBufferBuilder builder = new FlatBufferBuilder();
+        builder.finish(transcoder.write(builder));
+        Geometry geometry = GeometryConversions.deserialize(
+                org.wololo.flatgeobuf.generated.Geometry.getRootAsGeometry(builder.dataBuffer()), (byte) GeometryType.Polygon);
+        assertThat(geometry.getCoordinates()[2].getZ()).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @MethodSource("fallbackCases")
+    void leavesGeometriesJtsWouldRepairToTheJtsPath(String wkt, int geometryType) throws Exception {
+        byte[] wkb = toWkb(new WKTReader().read(wkt), ByteOrderValues.LITTLE_ENDIAN);
+
+        assertThat(new WkbGeometryTranscoder().read(ByteBuffer.wrap(wkb), (byte) geometryType)).isFalse();
+    }
+
+    @Test
+    void rejectsUnclosedRings() {
+        ByteBuffer wkb = ByteBuffer.allocate(1 + 4 + 4 + 4 + 4 * 16).order(ByteOrder.LITTLE_ENDIAN);
+        wkb.put((byte) 1).putInt(3).putInt(1).putInt(4);
+        wkb.putDouble(0).putDouble(0).putDouble(4).putDouble(0).putDouble(4).putDouble(4).putDouble(0).putDouble(4);
+        wkb.flip();
+
+        assertThat(new WkbGeometryTranscoder().read(wkb, (byte) GeometryType.Polygon)).isFalse();
+    }
+
+    @Test
+    void writesSameFileAsJtsPathForGeoPackage() throws Exception {
+        Path geopackage = Path.of(getClass().getResource("/data/ch.so.afu.abbaustellen.gpkg").toURI());
+        TableDescriptor table = new TableDescriptor("abbaustelle", "mpoly", 2056, (byte) GeometryType.MultiPolygon);
+        GeoPackageGeometryReader geoPackageReader = new GeoPackageGeometryReader();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + geopackage)) {
+            ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+            new FlatGeobufTableWriter(geoPackageReader).writeTable(connection, table, transcoded);
+            ByteArrayOutputStream viaJts = new ByteArrayOutputStream();
+            new FlatGeobufTableWriter(geoPackageReader::readGeometry).writeTable(connection, table, viaJts);
+
+            assertThat(transcoded.size()).isPositive();
+            assertThat(transcoded.toByteArray()).isEqualTo(viaJts.toByteArray());
+        }
+    }
+
+    private static byte[] toWkb(Geometry geometry, int byteOrder) {
+        boolean hasZ = !geometry.isEmpty() && !Double.isNaN(geometry.getCoordinate().getZ());
+        boolean hasM = !geometry.isEmpty() && !Double.isNaN(geometry.getCoordinate().getM());
+        EnumSet<Ordinate> ordinates = EnumSet.of(Ordinate.X, Ordinate.Y);
+        if (hasZ) {
+            ordinates.add(Ordinate.Z);
+        }
+        if (hasM) {
+            ordinates.add(Ordinate.M);
+        }
+        WKBWriter writer = new WKBWriter(ordinates.size(), byteOrder);
+        writer.setOutputOrdinates(ordinates);
+        return writer.write(geometry);
+    }
+
+    private static Stream<Arguments> geometryCases() {
+        int little = ByteOrderValues.LITTLE_ENDIAN;
+        int big = ByteOrderValues.BIG_ENDIAN;
+        return Stream.of(
+                Arguments.of("POINT(1 2)", "POINT(1 2)", GeometryType.Point, little),
+                Arguments.of("POINT(1 2)", "POINT(1 2)", GeometryType.Point, big),
+                Arguments.of("LINESTRING(0 0, 1 1, 2 0)", "LINESTRING(0 0, 1 1, 2 0)", GeometryType.LineString, little),
+                Arguments.of("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 3 2, 3 3, 2 2))",
+                        "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 3 2, 3 3, 2 2))", GeometryType.Polygon, big),
+                Arguments.of("MULTIPOINT((0 0), (5 5))", "MULTIPOINT((0 0), (5 5))", GeometryType.MultiPoint, little),
+                Arguments.of("MULTILINESTRING((0 0, 1 1))", "MULTILINESTRING((0 0, 1 1))",
+                        GeometryType.MultiLineString, little),
+                Arguments.of("MULTILINESTRING((0 0, 1 1), (2 2, 3 3, 4 2))",
+                        "MULTILINESTRING((0 0, 1 1), (2 2, 3 3, 4 2))", GeometryType.MultiLineString, little),
+                Arguments.of("MULTIPOLYGON(((0 0, 4 0, 4 4, 0 0)), ((10 10, 12 10, 12 12, 10 12, 10 10), "
+                                + "(11 11, 11.5 11, 11.5 11.5, 11 11)))",
+                        "MULTIPOLYGON(((0 0, 4 0, 4 4, 0 0)), ((10 10, 12 10, 12 12, 10 12, 10 10), "
+                                + "(11 11, 11.5 11, 11.5 11.5, 11 11)))", GeometryType.MultiPolygon, big),
+                Arguments.of("POLYGON((0 0, 4 0, 4 4, 0 0))", "MULTIPOLYGON(((0 0, 4 0, 4 4, 0 0)))",
+                        GeometryType.MultiPolygon, little),
+                Arguments.of("LINESTRING(0 0, 1 1)", "MULTILINESTRING((0 0, 1 1))", GeometryType.MultiLineString,
+                        little),
+                Arguments.of("POINT(3 4)", "MULTIPOINT((3 4))", GeometryType.MultiPoint, little),
+                Arguments.of("LINESTRING Z(0 0 1, 1 1 2)", "LINESTRING Z(0 0 1, 1 1 2)", GeometryType.LineString,
+                        little),
+                Arguments.of("MULTIPOLYGON ZM(((0 0 1 5, 4 0 2 6, 4 4 3 7, 0 0 1 5)))",
+                        "MULTIPOLYGON ZM(((0 0 1 5, 4 0 2 6, 4 4 3 7, 0 0 1 5)))", GeometryType.MultiPolygon, big));
+    }
+
+    private static Stream<Arguments> fallbackCases() {
+        return Stream.of(
+                Arguments.of("POINT EMPTY", GeometryType.Point),
+                Arguments.of("POLYGON EMPTY", GeometryType.Polygon),
+                Arguments.of("MULTIPOLYGON EMPTY", GeometryType.MultiPolygon),
+                Arguments.of("LINESTRING(0 0, 1 1)", GeometryType.Polygon),
+                Arguments.of("POLYGON M((0 0 1, 4 0 2, 4 4 3, 0 0 1))", GeometryType.Polygon),
+                Arguments.of("GEOMETRYCOLLECTION(POINT(0 0))", GeometryType.GeometryCollection));
+    }
+}
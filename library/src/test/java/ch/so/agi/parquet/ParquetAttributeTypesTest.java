@@ -33,8 +33,9 @@ class ParquetAttributeTypesTest {
     }
 
     private static Object invokeBuildField(String name, int sqlType, boolean required) throws Exception {
-        Method method = ParquetTableWriter.class.getDeclaredMethod("buildField", String.class, int.class, boolean.class);
+        Method method = ParquetTableWriter.class.getDeclaredMethod("buildField", String.class, int.class, int.class,
+                boolean.class);
         method.setAccessible(true);
-        return method.invoke(null, name, sqlType, required);
+        return method.invoke(null, name, 1, sqlType, required);
     }
 }
@@ -0,0 +1,132 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import org.apache.parquet.column.Encoding;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.api.Binary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParquetEncodingOptionsTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appliesCompressionEncodingAndColumnOptions() throws Exception {
+        Path database = createDatabase();
+        TableDescriptor descriptor = TableDescriptor.of("features", "geom", 2056, 1);
+        ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        Path plain = tempDir.resolve("plain.parquet");
+        Path tuned = tempDir.resolve("tuned.parquet");
+        writer.writeTable(connectionFactory, descriptor, plain, writer.defaultOptions());
+        writer.writeTable(connectionFactory, descriptor, tuned, ParquetTableWriter.ParquetWriteOptions.builder()
+                .compression(ParquetTableWriter.Compression.ZSTD)
+                .pageSize(16 * 1024)
+                .byteStreamSplit(true)
+                .column("T_ILI_TID", ParquetTableWriter.ColumnOptions.builder()
+                        .dictionaryEncoding(false)
+                        .bloomFilter(true)
+                        .build())
+                .column("area", ParquetTableWriter.ColumnOptions.builder().statistics(false).build())
+                .parallelism(2)
+                .build());
+
+        assertThat(Files.size(tuned)).isLessThan(Files.size(plain));
+        assertThat(ParquetRangeSplitTest.readRows(tuned)).containsExactlyElementsOf(ParquetRangeSplitTest.readRows(plain));
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(tuned))) {
+            List<BlockMetaData> blocks = reader.getFooter().getBlocks();
+            assertThat(blocks).hasSize(2);
+            for (BlockMetaData block : blocks) {
+                for (ColumnChunkMetaData column : block.getColumns()) {
+                    String name = column.getPath().toDotString();
+                    assertThat(reader.readOffsetIndex(column)).as(name).isNotNull();
+                    assertThat(column.getCodec()).isEqualTo(CompressionCodecName.ZSTD);
+                    assertThat(column.getBloomFilterOffset() >= 0).as(name).isEqualTo(name.equals("t_ili_tid"));
+                    if (name.equals("t_ili_tid")) {
+                        assertThat(column.getEncodings()).doesNotContain(Encoding.RLE_DICTIONARY, Encoding.PLAIN_DICTIONARY);
+                        BloomFilter bloomFilter = reader.readBloomFilter(column);
+                        assertThat(bloomFilter.getBitsetSize()).isLessThanOrEqualTo(4096);
+                        long first = block.getRowIndexOffset();
+                        assertThat(bloomFilter.findHash(bloomFilter.hash(Binary.fromString("tid-" + first)))).isTrue();
+                    }
+                    if (name.equals("area")) {
+                        assertThat(column.getEncodings()).contains(Encoding.BYTE_STREAM_SPLIT);
+                        assertThat(column.getStatistics().hasNonNullValue()).isFalse();
+                    }
+                    if (name.equals("id")) {
+                        assertThat(column.getStatistics().hasNonNullValue()).isTrue();
+                    }
+                }
+            }
+        }
+    }
+
+    // Pages are compressed by our own codec factory, Hadoop's codecs in the test reader must decompress them.
+    @ParameterizedTest
+    @EnumSource(ParquetTableWriter.Compression.class)
+    void writesEveryCompressionReadableByParquetMr(ParquetTableWriter.Compression compression) throws Exception {
+        Path database = createDatabase();
+        TableDescriptor descriptor = TableDescriptor.of("features", "geom", 2056, 1);
+        ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+        Path plain = tempDir.resolve("plain.parquet");
+        Path compressed = tempDir.resolve("compressed.parquet");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            writer.writeTable(connection, descriptor, plain, writer.defaultOptions());
+            writer.writeTable(connection, descriptor, compressed, ParquetTableWriter.ParquetWriteOptions.builder()
+                    .compression(compression)
+                    .build());
+        }
+
+        assertThat(ParquetRangeSplitTest.readRows(compressed))
+                .containsExactlyElementsOf(ParquetRangeSplitTest.readRows(plain));
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(compressed))) {
+            for (ColumnChunkMetaData column : reader.getFooter().getBlocks().get(0).getColumns()) {
+                assertThat(column.getCodec().name()).isEqualTo(compression.name());
+            }
+        }
+    }
+
+    private Path createDatabase() throws Exception {
+        Path database = tempDir.resolve("features.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, t_ili_tid TEXT, area DOUBLE, geom BLOB)");
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO features (id, t_ili_tid, area, geom) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < 5000; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, "tid-" + i);
+                    insert.setDouble(3, 1000 + i * 0.25);
+                    insert.setBytes(4, wkbWriter.write(geometryFactory.createPoint(new Coordinate(i, i % 100))));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        return database;
+    }
+}
@@ -0,0 +1,168 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParquetNativeGeometryTest {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesMultiPolygonsAsNestedCoordinateColumns() throws Exception {
+        Path output = tempDir.resolve("features.parquet");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, 0, triangle(0), GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{
+                    triangle(1), triangle(5)}), null);
+            new ParquetTableWriter(new WkbGeometryReader()).writeTable(connection,
+                    TableDescriptor.of("features", "geom", 2056, 6), output, nativeOptions());
+        }
+
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(output))) {
+            assertThat(reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo"))
+                    .contains("\"encoding\":\"multipolygon\"")
+                    .contains("\"geometry_types\":[\"MultiPolygon\"]")
+                    .contains("\"bbox\":[0.0,0.0,6.0,6.0]");
+            for (ColumnChunkMetaData column : reader.getFooter().getBlocks().get(0).getColumns()) {
+                if (column.getPath().toDotString().equals("geom.list.element.list.element.list.element.x")) {
+                    // Parquet stores a zero minimum as -0.0.
+                    assertThat(column.getStatistics().genericGetMin()).isEqualTo(-0.0);
+                    assertThat(column.getStatistics().genericGetMax()).isEqualTo(6.0);
+                }
+            }
+            assertThat(reader.getFooter().getBlocks().get(0).getColumns())
+                    .extracting(column -> column.getPath().toDotString())
+                    .contains("geom.list.element.list.element.list.element.x",
+                            "geom.list.element.list.element.list.element.y");
+        }
+        List<Group> rows = readRows(output);
+        assertThat(rows).hasSize(3);
+        assertThat(polygons(rows.get(0))).isEqualTo(1);
+        assertThat(polygons(rows.get(1))).isEqualTo(2);
+        assertThat(rows.get(2).getFieldRepetitionCount("geom")).isZero();
+        Group ring = rows.get(1).getGroup("geom", 0).getGroup("list", 1).getGroup("element", 0)
+                .getGroup("list", 0).getGroup("element", 0);
+        assertThat(ring.getFieldRepetitionCount("list")).isEqualTo(4);
+        Group vertex = ring.getGroup("list", 1).getGroup("element", 0);
+        assertThat(vertex.getDouble("x", 0)).isEqualTo(6.0);
+        assertThat(vertex.getDouble("y", 0)).isEqualTo(5.0);
+    }
+
+    @Test
+    void writesPointsWithZWhenTheColumnAllowsIt() throws Exception {
+        Path output = tempDir.resolve("points.parquet");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, 2, GEOMETRY_FACTORY.createPoint(new Coordinate(1, 2, 3)),
+                    GEOMETRY_FACTORY.createPoint(new Coordinate(4, 5)));
+            new ParquetTableWriter(new WkbGeometryReader()).writeTable(connection,
+                    TableDescriptor.of("features", "geom", 2056, 1), output, ParquetTableWriter.ParquetWriteOptions
+                            .builder()
+                            .geometryEncoding(ParquetTableWriter.GeometryEncoding.NATIVE)
+                            .hilbertOrder(true)
+                            .build());
+        }
+
+        List<Group> rows = readRows(output);
+        assertThat(rows).extracting(row -> row.getGroup("geom", 0).toString().replace("\n", " ").trim())
+                .containsExactlyInAnyOrder("x: 1.0 y: 2.0 z: 3.0", "x: 4.0 y: 5.0 z: NaN");
+    }
+
+    @Test
+    void rejectsMixedGeometryTypesAndMismatchingRows() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, 0, triangle(0), GEOMETRY_FACTORY.createPoint(new Coordinate(1, 1)));
+            ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+
+            assertThatThrownBy(() -> writer.writeTable(connection, TableDescriptor.of("features", "geom", 2056, 0),
+                    tempDir.resolve("mixed.parquet"), nativeOptions()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("features");
+            assertThatThrownBy(() -> writer.writeTable(connection, TableDescriptor.of("features", "geom", 2056, 3),
+                    tempDir.resolve("polygons.parquet"), nativeOptions()))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Point");
+        }
+    }
+
+    private static ParquetTableWriter.ParquetWriteOptions nativeOptions() {
+        return ParquetTableWriter.ParquetWriteOptions.builder()
+                .geometryEncoding(ParquetTableWriter.GeometryEncoding.NATIVE)
+                .build();
+    }
+
+    private static int polygons(Group row) {
+        return row.getGroup("geom", 0).getFieldRepetitionCount("list");
+    }
+
+    private static void createTable(Connection connection, int z, Geometry... geometries) throws Exception {
+        WKBWriter wkbWriter = new WKBWriter(z > 0 ? 3 : 2);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, geom BLOB)");
+            statement.executeUpdate("""
+                    CREATE TABLE gpkg_geometry_columns (table_name TEXT, column_name TEXT, geometry_type_name TEXT,
+                                                        srs_id INTEGER, z INTEGER, m INTEGER)
+                    """);
+            statement.executeUpdate("INSERT INTO gpkg_geometry_columns VALUES ('features', 'geom', 'GEOMETRY', 2056, "
+                    + z + ", 0)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO features (id, geom) VALUES (?, ?)")) {
+            for (int i = 0; i < geometries.length; i++) {
+                insert.setInt(1, i);
+                insert.setBytes(2, geometries[i] == null ? null : wkbWriter.write(geometries[i]));
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static Polygon triangle(double origin) {
+        return GEOMETRY_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(origin, origin),
+                new Coordinate(origin + 1, origin),
+                new Coordinate(origin + 1, origin + 1),
+                new Coordinate(origin, origin)});
+    }
+
+    private static List<Group> readRows(Path file) throws Exception {
+        List<Group> rows = new ArrayList<>();
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                RecordReader<Group> recordReader = new ColumnIOFactory().getColumnIO(schema)
+                        .getRecordReader(pages, new GroupRecordConverter(schema));
+                for (long i = 0; i < pages.getRowCount(); i++) {
+                    rows.add(recordReader.read());
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,106 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalInputFile;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParquetParallelEncodingTest {
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void writesSameRowsAsSequentialEncoding(boolean hilbertOrder) throws Exception {
+        Path database = createDatabase();
+        TableDescriptor table = TableDescriptor.of("features", "geom", 2056, 1);
+        ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+        Path sequential = tempDir.resolve("sequential.parquet");
+        Path parallel = tempDir.resolve("parallel.parquet");
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            writer.writeTable(connection, table, sequential, options(hilbertOrder).build());
+            writer.writeTable(connection, table, parallel, options(hilbertOrder)
+                    .encodingThreads(4)
+                    .maxRowGroupsInFlight(3)
+                    .build());
+        }
+
+        assertThat(ParquetRangeSplitTest.readRows(parallel))
+                .hasSize(ROWS)
+                .containsExactlyElementsOf(ParquetRangeSplitTest.readRows(sequential));
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(parallel))) {
+            List<BlockMetaData> blocks = reader.getFooter().getBlocks();
+            assertThat(blocks).hasSizeGreaterThan(4);
+            long rowIndex = 0;
+            for (BlockMetaData block : blocks) {
+                assertThat(block.getRowIndexOffset()).isEqualTo(rowIndex);
+                rowIndex += block.getRowCount();
+                for (ColumnChunkMetaData column : block.getColumns()) {
+                    assertThat(column.getCodec()).isEqualTo(CompressionCodecName.ZSTD);
+                    assertThat(reader.readOffsetIndex(column)).isNotNull();
+                }
+            }
+            assertThat(reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo"))
+                    .isEqualTo(geoMetadata(sequential));
+        }
+    }
+
+    private static ParquetTableWriter.ParquetWriteOptions.Builder options(boolean hilbertOrder) {
+        return ParquetTableWriter.ParquetWriteOptions.builder()
+                .rowGroupSize(64 * 1024)
+                .compression(ParquetTableWriter.Compression.ZSTD)
+                .bboxColumn(true)
+                .hilbertOrder(hilbertOrder);
+    }
+
+    private static String geoMetadata(Path file) throws Exception {
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            return reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo");
+        }
+    }
+
+    private Path createDatabase() throws Exception {
+        Path database = tempDir.resolve("features.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, name TEXT, area DOUBLE, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO features (id, name, area, geom) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, i % 11 == 0 ? null : "feature-" + i);
+                    insert.setDouble(3, i * 0.75);
+                    insert.setBytes(4, i % 97 == 0 ? null : wkbWriter.write(geometryFactory.createPoint(
+                            new Coordinate((i * 37) % 1009, (i * 53) % 887))));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+        return database;
+    }
+}
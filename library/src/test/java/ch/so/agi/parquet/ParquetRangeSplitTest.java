@@ -0,0 +1,97 @@
+package ch.so.agi.parquet;
+
+import ch.so.agi.cloudformats.ConnectionFactory;
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.schema.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParquetRangeSplitTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesSameRowsAsSequentialExport() throws Exception {
+        Path database = tempDir.resolve("features.sqlite");
+        GeometryFactory geometryFactory = new GeometryFactory();
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, name TEXT, area DOUBLE, geom BLOB)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO features (id, name, area, geom) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < 500; i++) {
+                    insert.setInt(1, i);
+                    insert.setString(2, i % 7 == 0 ? null : "feature-" + i);
+                    insert.setDouble(3, i * 1.5);
+                    insert.setBytes(4, wkbWriter.write(geometryFactory.createPoint(new Coordinate(i, -i))));
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+
+        TableDescriptor table = TableDescriptor.of("features", "geom", 2056, 1);
+        ParquetTableWriter writer = new ParquetTableWriter(new WkbGeometryReader());
+        ConnectionFactory connectionFactory = ConnectionFactory.sqliteReadOnly(database);
+        Path sequential = tempDir.resolve("sequential.parquet");
+        Path split = tempDir.resolve("split.parquet");
+
+        writer.writeTable(connectionFactory, table, sequential, writer.defaultOptions());
+        writer.writeTable(connectionFactory, table, split,
+                ParquetTableWriter.ParquetWriteOptions.builder().parallelism(3).build());
+
+        List<String> expected = readRows(sequential);
+        assertThat(expected).hasSize(500);
+        assertThat(readRows(split)).containsExactlyElementsOf(expected);
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(split))) {
+            assertThat(reader.getFooter().getBlocks()).hasSize(3);
+            assertThat(reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo"))
+                    .isEqualTo(geoMetadata(sequential))
+                    .contains("\"bbox\":[0.0,-499.0,499.0,0.0]");
+        }
+    }
+
+    private static String geoMetadata(Path file) throws Exception {
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            return reader.getFooter().getFileMetaData().getKeyValueMetaData().get("geo");
+        }
+    }
+
+    static List<String> readRows(Path file) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (ParquetFileReader reader = ParquetFileReader.open(new LocalInputFile(file))) {
+            MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+            PageReadStore pages;
+            while ((pages = reader.readNextRowGroup()) != null) {
+                RecordReader<Group> recordReader = new ColumnIOFactory().getColumnIO(schema)
+                        .getRecordReader(pages, new GroupRecordConverter(schema));
+                for (long i = 0; i < pages.getRowCount(); i++) {
+                    rows.add(recordReader.read().toString());
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,366 @@
+package ch.so.agi.pmtiles;
+
+import ch.so.agi.cloudformats.TableDescriptor;
+import ch.so.agi.cloudformats.WkbGeometryReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class PmTilesTableWriterTest {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void tileIdsFollowThePmTilesHilbertCurve() {
+        assertThat(TileId.of(0, 0, 0)).isZero();
+        assertThat(TileId.of(1, 0, 0)).isEqualTo(1);
+        assertThat(TileId.of(1, 0, 1)).isEqualTo(2);
+        assertThat(TileId.of(1, 1, 1)).isEqualTo(3);
+        assertThat(TileId.of(1, 1, 0)).isEqualTo(4);
+        assertThat(TileId.of(2, 0, 0)).isEqualTo(5);
+        assertThat(TileId.of(12, 3423, 1763)).isEqualTo(19078479);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                assertThat(TileId.position(3, TileId.hilbert(3, x, y))).containsExactly(x, y);
+            }
+        }
+    }
+
+    @Test
+    void writesVectorTilesIntoAPmTilesArchive() throws Exception {
+        Path output = tempDir.resolve("features.pmtiles");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection,
+                    GEOMETRY_FACTORY.toGeometry(new Envelope(2_606_000, 2_608_000, 1_227_000, 1_229_000)),
+                    GEOMETRY_FACTORY.createPoint(new Coordinate(2_607_500, 1_228_500)));
+            new PmTilesTableWriter(new WkbGeometryReader()).writeTable(connection,
+                    TableDescriptor.of("features", "geom", 2056, 0), output,
+                    PmTilesTableWriter.PmTilesWriteOptions.builder().maxZoom(12).build());
+        }
+
+        Archive archive = Archive.read(output);
+        assertThat(archive.header().get(7)).isEqualTo((byte) 3);
+        assertThat(archive.header().get(96)).isEqualTo((byte) 1);
+        assertThat(archive.header().get(99)).isEqualTo((byte) 1);
+        assertThat(archive.header().get(100)).isZero();
+        assertThat(archive.header().get(101)).isEqualTo((byte) 12);
+        assertThat(archive.header().getInt(102) / 1e7).isCloseTo(7.53, offset(0.02));
+        assertThat(archive.header().getInt(106) / 1e7).isCloseTo(47.2, offset(0.02));
+        assertThat(archive.metadata())
+                .contains("\"vector_layers\":[{\"id\":\"features\"")
+                .contains("\"name\":\"String\"", "\"flaeche\":\"Number\"", "\"maxzoom\":12");
+        long pointTile = tileAt(12, 2_607_500, 1_228_500);
+        assertThat(archive.entries()).extracting(entry -> entry[0])
+                .contains(TileId.of(0, 0, 0), pointTile)
+                .isSorted();
+
+        // The 2 km square is smaller than a pixel at zoom 0 and only shows up further down.
+        assertThat(decode(archive.tile(TileId.of(0, 0, 0)))).extracting(Feature::type).containsExactly(1);
+        List<Feature> features = decode(archive.tile(tileAt(10, 2_607_500, 1_228_500)));
+        assertThat(features).extracting(Feature::type).containsExactly(3, 1);
+        assertThat(features.get(0).properties()).containsExactly("id=0", "name=Flaeche", "flaeche=4000000.0");
+        assertThat(features.get(1).properties()).containsExactly("id=1", "name=Punkt");
+
+        List<Feature> clipped = decode(archive.tile(pointTile));
+        assertThat(clipped).isNotEmpty();
+        for (Feature feature : clipped) {
+            assertThat(feature.extent()).isEqualTo(4096);
+            // Clipped to the tile plus the default buffer of 64.
+            assertThat(Arrays.stream(feature.geometry()).allMatch(value -> value >= -64 && value <= 4096 + 64))
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void dropsFeaturesOverTheTileLimitsAndSplitsLevelsByTheMemoryBudget() throws Exception {
+        Geometry[] points = new Geometry[200];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = GEOMETRY_FACTORY.createPoint(new Coordinate(2_600_000 + 200 * i, 1_220_000 + 150 * i));
+        }
+        Path sequential = tempDir.resolve("sequential.pmtiles");
+        Path parallel = tempDir.resolve("parallel.pmtiles");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, points);
+            PmTilesTableWriter writer = new PmTilesTableWriter(new WkbGeometryReader());
+            TableDescriptor table = TableDescriptor.of("features", "geom", 2056, 1);
+            writer.writeTable(connection, table, sequential, PmTilesTableWriter.PmTilesWriteOptions.builder()
+                    .maxZoom(13)
+                    .maxFeaturesPerTile(50)
+                    .build());
+            writer.writeTable(connection, table, parallel, PmTilesTableWriter.PmTilesWriteOptions.builder()
+                    .maxZoom(13)
+                    .maxFeaturesPerTile(50)
+                    .encodingThreads(3)
+                    .memoryBudget(64 * Long.BYTES)
+                    .build());
+        }
+
+        assertThat(Files.readAllBytes(parallel)).isEqualTo(Files.readAllBytes(sequential));
+        Archive archive = Archive.read(sequential);
+        List<Feature> world = decode(archive.tile(TileId.of(0, 0, 0)));
+        assertThat(world).hasSize(50);
+        // Thinned evenly along the line of points, not just its start.
+        assertThat(world.get(world.size() - 1).properties()).first().asString()
+                .matches("id=1[5-9][0-9]");
+    }
+
+    @Test
+    void movesDirectoryEntriesIntoLeavesWhenTheRootGetsTooLarge() throws Exception {
+        Path output = tempDir.resolve("leaves.pmtiles");
+        Random random = new Random(1);
+        long[] tileIds = new long[40_000];
+        try (PmTilesArchive archive = new PmTilesArchive()) {
+            long tileId = TileId.base(12);
+            for (int tile = 0; tile < tileIds.length; tile++) {
+                tileId += 1 + random.nextInt(200);
+                tileIds[tile] = tileId;
+                archive.addTile(tileId, ByteBuffer.allocate(4 + random.nextInt(500)).putInt(tile).array());
+            }
+            archive.finish(output, "{}", 12, 12, 7, 47, 8, 48);
+        }
+
+        Archive archive = Archive.read(output);
+        assertThat(archive.header().getLong(16)).isLessThanOrEqualTo(16384 - PmTilesArchive.HEADER_SIZE);
+        assertThat(archive.header().getLong(48)).isPositive();
+        assertThat(archive.header().getLong(72)).isEqualTo(tileIds.length);
+        assertThat(archive.entries()).hasSize(tileIds.length);
+        assertThat(ByteBuffer.wrap(archive.tile(tileIds[12_345])).getInt()).isEqualTo(12_345);
+    }
+
+    @Test
+    void rejectsUnsupportedReferenceSystems() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            createTable(connection, GEOMETRY_FACTORY.createPoint(new Coordinate(1, 1)));
+            assertThatThrownBy(() -> new PmTilesTableWriter(new WkbGeometryReader()).writeTable(connection,
+                    TableDescriptor.of("features", "geom", 25832, 1), tempDir.resolve("utm.pmtiles"),
+                    PmTilesTableWriter.PmTilesWriteOptions.builder().build()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("EPSG:25832");
+        }
+    }
+
+    private static long tileAt(int z, double e, double n) {
+        Geometry point = GEOMETRY_FACTORY.createPoint(new Coordinate(e, n));
+        point.apply(WebMercator.toWorld(2056));
+        Coordinate world = point.getCoordinate();
+        return TileId.of(z, (int) (world.x * (1 << z)), (int) (world.y * (1 << z)));
+    }
+
+    private static void createTable(Connection connection, Geometry... geometries) throws Exception {
+        WKBWriter wkbWriter = new WKBWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE features (id INTEGER, name TEXT, flaeche REAL, geom BLOB)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO features (id, name, flaeche, geom) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < geometries.length; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, geometries[i].getDimension() == 2 ? "Flaeche" : "Punkt");
+                if (geometries[i].getDimension() == 2) {
+                    insert.setDouble(3, geometries[i].getArea());
+                } else {
+                    insert.setNull(3, java.sql.Types.REAL);
+                }
+                insert.setBytes(4, wkbWriter.write(geometries[i]));
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private record Feature(int type, int[] geometry, List<String> properties, int extent) {
+    }
+
+    // Decodes the single layer of a gzipped vector tile; properties as key=value in tag order.
+    private static List<Feature> decode(byte[] gzippedTile) throws IOException {
+        ByteBuffer tile = ByteBuffer.wrap(gunzip(gzippedTile));
+        ByteBuffer layer = null;
+        while (tile.hasRemaining()) {
+            long tag = VectorTileEncoder.readVarint(tile);
+            assertThat(tag >>> 3).isEqualTo(3);
+            layer = slice(tile);
+        }
+        List<ByteBuffer> featureMessages = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        int extent = 0;
+        while (layer.hasRemaining()) {
+            long tag = VectorTileEncoder.readVarint(layer);
+            switch ((int) (tag >>> 3)) {
+                case 1 -> assertThat(string(slice(layer))).isEqualTo("features");
+                case 2 -> featureMessages.add(slice(layer));
+                case 3 -> keys.add(string(slice(layer)));
+                case 4 -> values.add(value(slice(layer)));
+                case 5 -> extent = (int) VectorTileEncoder.readVarint(layer);
+                case 15 -> assertThat(VectorTileEncoder.readVarint(layer)).isEqualTo(2);
+                default -> throw new AssertionError("Unexpected layer field " + (tag >>> 3));
+            }
+        }
+        List<Feature> features = new ArrayList<>();
+        for (ByteBuffer message : featureMessages) {
+            int type = 0;
+            int[] geometry = new int[0];
+            List<String> properties = new ArrayList<>();
+            while (message.hasRemaining()) {
+                long tag = VectorTileEncoder.readVarint(message);
+                if (tag >>> 3 == 3) {
+                    type = (int) VectorTileEncoder.readVarint(message);
+                } else if (tag >>> 3 == 2) {
+                    int[] tags = packed(slice(message));
+                    for (int i = 0; i < tags.length; i += 2) {
+                        properties.add(keys.get(tags[i]) + "=" + values.get(tags[i + 1]));
+                    }
+                } else {
+                    geometry = packed(slice(message));
+                }
+            }
+            features.add(new Feature(type, decodeCommands(geometry), properties, extent));
+        }
+        return features;
+    }
+
+    // Absolute coordinates of all command parameters.
+    private static int[] decodeCommands(int[] commands) {
+        List<Integer> coordinates = new ArrayList<>();
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < commands.length; ) {
+            int id = commands[i] & 0x7;
+            int count = commands[i++] >>> 3;
+            if (id == 7) {
+                continue;
+            }
+            for (int c = 0; c < count; c++) {
+                x += (commands[i] >>> 1) ^ -(commands[i] & 1);
+                y += (commands[i + 1] >>> 1) ^ -(commands[i + 1] & 1);
+                coordinates.add(x);
+                coordinates.add(y);
+                i += 2;
+            }
+        }
+        return coordinates.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] packed(ByteBuffer field) {
+        List<Integer> values = new ArrayList<>();
+        while (field.hasRemaining()) {
+            values.add((int) VectorTileEncoder.readVarint(field));
+        }
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String value(ByteBuffer message) {
+        long tag = VectorTileEncoder.readVarint(message);
+        return switch ((int) (tag >>> 3)) {
+            case 1 -> string(slice(message));
+            case 3 -> String.valueOf(message.order(ByteOrder.LITTLE_ENDIAN).getDouble());
+            case 6 -> {
+                long zigZag = VectorTileEncoder.readVarint(message);
+                yield String.valueOf((zigZag >>> 1) ^ -(zigZag & 1));
+            }
+            default -> throw new AssertionError("Unexpected value field " + (tag >>> 3));
+        };
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer) {
+        int length = (int) VectorTileEncoder.readVarint(buffer);
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private record Archive(ByteBuffer header, byte[] file, String metadata, List<long[]> entries) {
+        static Archive read(Path path) throws IOException {
+            byte[] file = Files.readAllBytes(path);
+            ByteBuffer header = ByteBuffer.wrap(file, 0, PmTilesArchive.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            assertThat(new String(file, 0, 7, StandardCharsets.US_ASCII)).isEqualTo("PMTiles");
+            String metadata = new String(gunzip(section(file, header, 24)), StandardCharsets.UTF_8);
+            List<long[]> entries = new ArrayList<>();
+            for (long[] entry : directory(section(file, header, 8))) {
+                if (entry[3] == 0) {
+                    byte[] leaf = Arrays.copyOfRange(file, (int) (header.getLong(40) + entry[1]),
+                            (int) (header.getLong(40) + entry[1] + entry[2]));
+                    entries.addAll(directory(leaf));
+                } else {
+                    entries.add(entry);
+                }
+            }
+            return new Archive(header, file, metadata, entries);
+        }
+
+        byte[] tile(long tileId) {
+            for (long[] entry : entries) {
+                if (tileId >= entry[0] && tileId < entry[0] + entry[3]) {
+                    int offset = (int) (header.getLong(56) + entry[1]);
+                    return Arrays.copyOfRange(file, offset, offset + (int) entry[2]);
+                }
+            }
+            throw new AssertionError("No tile " + tileId);
+        }
+
+        private static byte[] section(byte[] file, ByteBuffer header, int position) {
+            int offset = (int) header.getLong(position);
+            return Arrays.copyOfRange(file, offset, offset + (int) header.getLong(position + 8));
+        }
+
+        // Entries as {tile id, offset, length, run length}.
+        private static List<long[]> directory(byte[] gzipped) throws IOException {
+            ByteBuffer directory = ByteBuffer.wrap(gunzip(gzipped));
+            int count = (int) VectorTileEncoder.readVarint(directory);
+            long[][] entries = new long[count][4];
+            long id = 0;
+            for (long[] entry : entries) {
+                id += VectorTileEncoder.readVarint(directory);
+                entry[0] = id;
+            }
+            for (long[] entry : entries) {
+                entry[3] = VectorTileEncoder.readVarint(directory);
+            }
+            for (long[] entry : entries) {
+                entry[2] = VectorTileEncoder.readVarint(directory);
+            }
+            for (int i = 0; i < count; i++) {
+                long offset = VectorTileEncoder.readVarint(directory);
+                entries[i][1] = offset == 0 ? entries[i - 1][1] + entries[i - 1][2] : offset - 1;
+            }
+            return List.of(entries);
+        }
+    }
+}